@@ -0,0 +1,311 @@
+package Backend.Databases;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import Backend.Transactions.Transaction;
+
+/**
+ * File Name: CopyHistoryStore.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Keeps the history of every copy in an append-only file instead of on the copy's line in the resource files.
+ * Each record holds one past transaction of a copy and the position of the copy's previous record, so the
+ * history of a copy can be paged through from the newest transaction backwards. The record numbers of each
+ * copy's history are held in memory, so a page is read by seeking straight to its records rather than following
+ * the chain from the newest record.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class CopyHistoryStore {
+
+    /**
+     * Resource ID, copy ID, transaction ID and previous record number, each a 4 byte int
+     */
+    private static final int RECORD_SIZE = 16;
+    private static final int NO_RECORD = -1;
+    /**
+     * Offset of the transaction ID in a record
+     */
+    private static final int TRANSACTION_OFFSET = 8;
+    private static final int INITIAL_CHAIN_CAPACITY = 4;
+
+    /**
+     * The history file
+     */
+    private static File file = new File("src/data/CopyHistory.dat");
+
+    /**
+     * The open history file, null until the store is loaded
+     */
+    private static RandomAccessFile out;
+
+    /**
+     * Number of records in the file
+     */
+    private static int recordCount;
+
+    /**
+     * The record numbers of each copy's history, by resource and copy ID
+     */
+    private static HashMap<Long, Chain> chains = new HashMap<>();
+
+    /**
+     * The record numbers of one copy's history, oldest first
+     */
+    private static class Chain {
+        private int[] records = new int[INITIAL_CHAIN_CAPACITY];
+        private int size;
+
+        private void add(int record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+        }
+
+        private int newestRecord() {
+            return size == 0 ? NO_RECORD : records[size - 1];
+        }
+    }
+
+    /**
+     * Reads the history file, rebuilding the position of the newest record of every copy. A record cut short by
+     * the program stopping is removed.
+     */
+    public static synchronized void load() {
+        chains = new HashMap<>();
+        recordCount = 0;
+        try {
+            if (file.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    long records = file.length() / RECORD_SIZE;
+                    for (int i = 0; i < records; i++) {
+                        int resourceID = in.readInt();
+                        int copyID = in.readInt();
+                        in.readInt();
+                        in.readInt();
+                        getChain(resourceID, copyID).add(i);
+                        recordCount++;
+                    }
+                }
+            }
+            if (out != null) {
+                out.close();
+            }
+            out = new RandomAccessFile(file, "rw");
+            out.setLength((long) recordCount * RECORD_SIZE);
+        } catch (IOException ex) {
+            System.out.println("Cannot open: " + file + " " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds a transaction to the end of a copy's history
+     *
+     * @param resourceID the ID of the copy's resource
+     * @param copyID the ID of the copy
+     * @param transactionID the ID of the transaction
+     */
+    public static synchronized void append(int resourceID, int copyID, int transactionID) {
+        open();
+        Chain chain = getChain(resourceID, copyID);
+        try {
+            out.seek((long) recordCount * RECORD_SIZE);
+            byte[] record = new byte[RECORD_SIZE];
+            putInt(record, 0, resourceID);
+            putInt(record, 4, copyID);
+            putInt(record, 8, transactionID);
+            putInt(record, 12, chain.newestRecord());
+            out.write(record);
+        } catch (IOException ex) {
+            System.out.println("File Write Error: " + ex.getMessage());
+            return;
+        }
+        chain.add(recordCount++);
+    }
+
+    /**
+     * Adds the history read from a copy line written before the store existed. Transactions the store already
+     * holds for the copy are skipped, so reading the same line again adds nothing.
+     *
+     * @param resourceID the ID of the copy's resource
+     * @param copyID the ID of the copy
+     * @param transactionIDs the history of the copy, oldest first
+     */
+    public static synchronized void importHistory(int resourceID, int copyID, int[] transactionIDs) {
+        for (int i = getSize(resourceID, copyID); i < transactionIDs.length; i++) {
+            append(resourceID, copyID, transactionIDs[i]);
+        }
+    }
+
+    /**
+     * Gets the number of transactions in a copy's history
+     *
+     * @param resourceID the ID of the copy's resource
+     * @param copyID the ID of the copy
+     * @return the number of transactions
+     */
+    public static synchronized int getSize(int resourceID, int copyID) {
+        open();
+        Chain chain = chains.get(key(resourceID, copyID));
+        return chain == null ? 0 : chain.size;
+    }
+
+    /**
+     * Reads one page of a copy's history, newest transaction first
+     *
+     * @param resourceID the ID of the copy's resource
+     * @param copyID the ID of the copy
+     * @param page the page to read, 0 being the newest
+     * @param pageSize the number of transactions on a page
+     * @return the transactions on the page, newest first, leaving out any not in the transaction database
+     */
+    public static synchronized ArrayList<Transaction> readPage(int resourceID, int copyID, int page, int pageSize) {
+        open();
+        Chain chain = chains.get(key(resourceID, copyID));
+        if (chain == null) {
+            return new ArrayList<>();
+        }
+        // Position in the chain of the newest transaction on the page, counting from the oldest
+        int newest = chain.size - 1 - page * pageSize;
+        int oldest = Math.max(0, newest - pageSize + 1);
+        ArrayList<Transaction> transactions = new ArrayList<>();
+        try {
+            for (int i = newest; i >= oldest; i--) {
+                addTransaction(transactions, chain.records[i]);
+            }
+        } catch (IOException ex) {
+            System.out.println("File Read Error: " + ex.getMessage());
+        }
+        return transactions;
+    }
+
+    /**
+     * Reads the whole of a copy's history
+     *
+     * @param resourceID the ID of the copy's resource
+     * @param copyID the ID of the copy
+     * @return the transactions, oldest first, leaving out any not in the transaction database
+     */
+    public static synchronized ArrayList<Transaction> readAll(int resourceID, int copyID) {
+        open();
+        ArrayList<Transaction> transactions = new ArrayList<>();
+        Chain chain = chains.get(key(resourceID, copyID));
+        if (chain == null) {
+            return transactions;
+        }
+        try {
+            for (int i = 0; i < chain.size; i++) {
+                addTransaction(transactions, chain.records[i]);
+            }
+        } catch (IOException ex) {
+            System.out.println("File Read Error: " + ex.getMessage());
+        }
+        return transactions;
+    }
+
+    /**
+     * Forces every appended record to disk
+     */
+    public static synchronized void sync() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.getFD().sync();
+        } catch (IOException ex) {
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Forces every appended record to disk and gets the length of the file they fill. Records are only ever
+     * appended whole, so the file up to this length holds the history as it is now even if more records are
+     * appended while it is being read.
+     *
+     * @return the length of the file in bytes, without a record cut short by the program stopping
+     */
+    static synchronized long getSyncedLength() {
+        if (out == null) {
+            return file.exists() ? file.length() / RECORD_SIZE * RECORD_SIZE : 0;
+        }
+        sync();
+        return (long) recordCount * RECORD_SIZE;
+    }
+
+    /**
+     * @return the history file
+     */
+    static File getFile() {
+        return file;
+    }
+
+    /**
+     * Forces the store to disk and closes it
+     */
+    public static synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        sync();
+        try {
+            out.close();
+        } catch (IOException ex) {
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+        out = null;
+    }
+
+    /**
+     * Loads the store the first time it is used if it has not been loaded already
+     */
+    private static void open() {
+        if (out == null) {
+            load();
+        }
+    }
+
+    /**
+     * Adds the transaction held by a record to a list. A transaction which is not in the transaction database, for
+     * example because the transaction file was restored from an older snapshot, is left out.
+     *
+     * @param transactions the list to add to
+     * @param record the number of the record
+     * @throws IOException if the record could not be read
+     */
+    private static void addTransaction(ArrayList<Transaction> transactions, int record) throws IOException {
+        out.seek((long) record * RECORD_SIZE + TRANSACTION_OFFSET);
+        int transactionID = out.readInt();
+        Transaction transaction = TransactionDatabase.getSpecificTransaction(transactionID);
+        if (transaction != null) {
+            transactions.add(transaction);
+        } else {
+            System.out.println("Copy History Error: transaction " + transactionID + " not found");
+        }
+    }
+
+    private static Chain getChain(int resourceID, int copyID) {
+        return chains.computeIfAbsent(key(resourceID, copyID), k -> new Chain());
+    }
+
+    private static Long key(int resourceID, int copyID) {
+        return ((long) resourceID << 32) | (copyID & 0xFFFFFFFFL);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
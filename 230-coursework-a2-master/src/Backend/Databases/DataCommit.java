@@ -0,0 +1,395 @@
+package Backend.Databases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * File Name: DataCommit.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Replaces a set of database files as one generation without ever leaving a half written file in place.
+ * Every file is written to a temporary file beside it, named uniquely so commits made at the same time never share
+ * one, and forced to disk. The manifest, which records the
+ * generation and the checksum of every database file, is then replaced atomically; this is the point at which the
+ * generation is committed. Only then are the temporary files renamed over the live files. If the program stops
+ * before the manifest is replaced the old files are untouched and the temporary files are discarded on the next
+ * start, if it stops afterwards the next start finishes the renames.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class DataCommit {
+
+    private static final String DELIMITER = "\t";
+    private static final String GENERATION_META_FLAG = "Generation";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The manifest describing the last committed generation
+     */
+    private static File manifestFile = new File("src/data/Manifest.txt");
+
+    /**
+     * If the files left by an interrupted commit have been dealt with
+     */
+    private static boolean recovered = false;
+
+    /**
+     * Number of files staged so far, used to give every temporary file its own name
+     */
+    private static final AtomicLong stagedCount = new AtomicLong();
+
+    /**
+     * Temporary files waiting to be committed, by the file they replace
+     */
+    private final LinkedHashMap<File, File> stagedFiles = new LinkedHashMap<>();
+
+    /**
+     * Work on the SQL database waiting to be committed, in the order it was staged
+     */
+    private final ArrayList<JdbcStore.Work<?>> stagedWork = new ArrayList<>();
+
+    /**
+     * Actions to run once the commit has succeeded
+     */
+    private final ArrayList<Runnable> commitActions = new ArrayList<>();
+
+    /**
+     * Actions to run if the commit is abandoned
+     */
+    private final ArrayList<Runnable> abortActions = new ArrayList<>();
+
+    /**
+     * Stages a new version of a database file. The caller writes the new contents to the returned temporary
+     * file, which replaces the target when the commit succeeds.
+     *
+     * @param target the database file to replace
+     * @return the temporary file to write the new contents to
+     */
+    public File stage(File target) {
+        // A temporary file left by an interrupted commit may have the same name, so it is dealt with first
+        recover();
+        File temp = new File(target.getPath() + "." + stagedCount.incrementAndGet() + TEMP_SUFFIX);
+        File replaced = stagedFiles.put(target, temp);
+        if (replaced != null) {
+            replaced.delete();
+        }
+        return temp;
+    }
+
+    /**
+     * Withdraws a staged file, for example because writing it failed, leaving the live file as it is
+     *
+     * @param target the database file which is no longer to be replaced
+     */
+    public void unstage(File target) {
+        File temp = stagedFiles.remove(target);
+        if (temp != null) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Stages work on the SQL database. Every piece of work staged in a commit is done in one SQL transaction when
+     * the commit is made, so either all of it is saved or none of it.
+     *
+     * @param work the work to do
+     */
+    void stageDatabaseWork(JdbcStore.Work<?> work) {
+        stagedWork.add(work);
+    }
+
+    /**
+     * Registers an action to run once every staged file has been committed, such as restarting a journal against
+     * the new file
+     *
+     * @param action the action to run
+     */
+    public void onCommit(Runnable action) {
+        commitActions.add(action);
+    }
+
+    /**
+     * Registers an action to run if the commit is abandoned, such as releasing a lock which would otherwise be
+     * released by an action run on commit
+     *
+     * @param action the action to run
+     */
+    public void onAbort(Runnable action) {
+        abortActions.add(action);
+    }
+
+    /**
+     * Gets the files staged so far
+     *
+     * @return the temporary file holding the new contents of each database file, by the file it replaces
+     */
+    Map<File, File> getStagedFiles() {
+        return Collections.unmodifiableMap(stagedFiles);
+    }
+
+    /**
+     * Commits the staged work on the SQL database, then forces every staged file to disk, commits them as a new
+     * generation and renames them over the live files. If the work on the database fails nothing is committed, if
+     * the files fail the live files are left as they were. Either way the staged files are deleted. A commit with
+     * no files staged does not start a new generation, and one with nothing staged only runs its actions.
+     *
+     * @return the generation the files were committed as
+     * @throws IOException if the work or the generation could not be committed
+     */
+    public long commit() throws IOException {
+        if (!stagedWork.isEmpty()) {
+            try {
+                JdbcStore.inTransaction(this::runStagedWork);
+            } catch (IOException ex) {
+                abort();
+                throw ex;
+            }
+            stagedWork.clear();
+        }
+
+        long generation;
+        synchronized (DataCommit.class) {
+            if (stagedFiles.isEmpty()) {
+                generation = getGeneration();
+            } else {
+                generation = commitStaged();
+            }
+        }
+
+        abortActions.clear();
+        for (Runnable action : commitActions) {
+            action.run();
+        }
+        commitActions.clear();
+        return generation;
+    }
+
+    private Void runStagedWork(Connection connection) throws SQLException {
+        for (JdbcStore.Work<?> work : stagedWork) {
+            work.run(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Writes the staged files into the manifest as a new generation and renames them over the live files. Must be
+     * called holding the lock on DataCommit.
+     */
+    private long commitStaged() throws IOException {
+        recover();
+        long generation;
+        try {
+            LinkedHashMap<String, String> manifest = readManifest();
+            for (Map.Entry<File, File> staged : stagedFiles.entrySet()) {
+                force(staged.getValue());
+                manifest.put(staged.getKey().getPath(), describe(staged.getValue()));
+            }
+            generation = writeManifest(manifest);
+        } catch (IOException ex) {
+            abort();
+            throw ex;
+        }
+
+        for (Map.Entry<File, File> staged : stagedFiles.entrySet()) {
+            replace(staged.getValue(), staged.getKey());
+        }
+        forceDirectory(manifestFile.getAbsoluteFile().getParentFile());
+        stagedFiles.clear();
+        return generation;
+    }
+
+    /**
+     * Discards every staged file and piece of work without touching the live files or the database, and runs the
+     * actions registered to run if the commit is abandoned
+     */
+    public void abort() {
+        for (File temp : stagedFiles.values()) {
+            temp.delete();
+        }
+        stagedFiles.clear();
+        stagedWork.clear();
+        commitActions.clear();
+        for (Runnable action : abortActions) {
+            action.run();
+        }
+        abortActions.clear();
+    }
+
+    /**
+     * Gets the generation of the last committed set of files
+     *
+     * @return the generation number, 0 if nothing has been committed yet
+     */
+    public static synchronized long getGeneration() {
+        String generation = readManifest().get(GENERATION_META_FLAG);
+        return generation == null ? 0 : Long.parseLong(generation);
+    }
+
+    /**
+     * Finishes or discards a commit interrupted by the program stopping. A temporary file matching the manifest
+     * was committed and is renamed over its live file, any other temporary file was never committed and is deleted.
+     * Only the first call does anything, so every database calls this before reading its files.
+     */
+    public static synchronized void recover() {
+        if (recovered) {
+            return;
+        }
+        recovered = true;
+
+        new File(manifestFile.getPath() + TEMP_SUFFIX).delete();
+        LinkedHashMap<String, String> manifest = readManifest();
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            if (!entry.getKey().equals(GENERATION_META_FLAG)) {
+                recoverFile(new File(entry.getKey()), entry.getValue(), manifest.get(GENERATION_META_FLAG));
+            }
+        }
+    }
+
+    /**
+     * Renames the temporary file of a target which matches the manifest over the target and deletes the rest
+     */
+    private static void recoverFile(File target, String committed, String generation) {
+        boolean isCompleted = false;
+        try {
+            for (File temp : findTempFiles(target)) {
+                if (!isCompleted && describe(temp).equals(committed)) {
+                    System.out.println("Completing commit of " + target + " from generation " + generation);
+                    replace(temp, target);
+                    isCompleted = true;
+                } else {
+                    System.out.println("Discarding uncommitted changes to " + target);
+                    temp.delete();
+                }
+            }
+            if (!isCompleted && target.exists() && !describe(target).equals(committed)) {
+                System.out.println("Warning: " + target + " has changed since generation " + generation);
+            }
+        } catch (IOException ex) {
+            System.out.println("Cannot recover " + target + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Finds the temporary files staged for a target, including one named the way they were before every staged
+     * file had its own name
+     */
+    private static File[] findTempFiles(File target) {
+        String prefix = target.getName() + ".";
+        File directory = target.getAbsoluteFile().getParentFile();
+        File[] temps = directory.listFiles((parent, name) -> name.startsWith(prefix) && name.endsWith(TEMP_SUFFIX)
+                && name.length() >= prefix.length() + TEMP_SUFFIX.length() - 1);
+        return temps == null ? new File[0] : temps;
+    }
+
+    /**
+     * Reads the manifest, the generation is held against the generation flag and every other entry is a file path
+     * against its checksum and length
+     */
+    private static LinkedHashMap<String, String> readManifest() {
+        LinkedHashMap<String, String> manifest = new LinkedHashMap<>();
+        if (!manifestFile.exists()) {
+            return manifest;
+        }
+
+        try (Scanner in = new Scanner(manifestFile)) {
+            while (in.hasNextLine()) {
+                String[] line = in.nextLine().split(DELIMITER, 2);
+                if (line.length == 2) {
+                    manifest.put(line[0], line[1]);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open: " + manifestFile);
+        }
+        return manifest;
+    }
+
+    /**
+     * Replaces the manifest with one for the next generation
+     *
+     * @return the number of the new generation
+     */
+    private static long writeManifest(LinkedHashMap<String, String> manifest) throws IOException {
+        String previous = manifest.get(GENERATION_META_FLAG);
+        long generation = previous == null ? 1 : Long.parseLong(previous) + 1;
+        manifest.put(GENERATION_META_FLAG, Long.toString(generation));
+
+        File temp = new File(manifestFile.getPath() + TEMP_SUFFIX);
+        try (FileWriter fw = new FileWriter(temp, false)) {
+            fw.write(GENERATION_META_FLAG + DELIMITER + manifest.get(GENERATION_META_FLAG));
+            fw.write(System.lineSeparator());
+            for (Map.Entry<String, String> entry : manifest.entrySet()) {
+                if (!entry.getKey().equals(GENERATION_META_FLAG)) {
+                    fw.write(entry.getKey() + DELIMITER + entry.getValue());
+                    fw.write(System.lineSeparator());
+                }
+            }
+        }
+        force(temp);
+        replace(temp, manifestFile);
+        return generation;
+    }
+
+    /**
+     * Describes the contents of a file by its checksum and length
+     */
+    private static String describe(File file) throws IOException {
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = in.read(buffer);
+            while (read != -1) {
+                checksum.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        return checksum.getValue() + DELIMITER + file.length();
+    }
+
+    static void force(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces a rename to disk. Not every platform allows a directory to be opened, so this is best effort.
+     */
+    private static void forceDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // The rename is still atomic, it just may not have reached the disk yet
+        }
+    }
+
+    static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Backend.Databases;
+
+import java.text.ParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * File Name: DatabaseLoader.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Loads every database when the program is started. The transaction, resource and user files do not depend on
+ * each other to be read, so they are read at the same time, each on its own worker. Only once all three are in
+ * memory are the copies linked to their transactions and the users linked to their items. Setting the timings
+ * property prints the time taken by each phase, so slow start ups can be traced to the file responsible.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class DatabaseLoader {
+
+    /**
+     * System property which, when set to true, prints the time taken by each phase of loading
+     */
+    public static final String TIMINGS_PROPERTY = "tawelib.timings";
+
+    /**
+     * One worker for each database file
+     */
+    private static final int LOAD_WORKERS = 3;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * Loads and links every database. Must be called before any database is used.
+     *
+     * @throws ParseException if the user file could not be read
+     */
+    public static void loadAll() throws ParseException {
+        long start = System.nanoTime();
+        DataCommit.recover();
+
+        ExecutorService workers = Executors.newFixedThreadPool(LOAD_WORKERS);
+        try {
+            CompletableFuture<Void> transactions = CompletableFuture.runAsync(TransactionDatabase::init, workers);
+            CompletableFuture<Void> resources = CompletableFuture.runAsync(ResourceDatabase::load, workers);
+            CompletableFuture<Void> users = CompletableFuture.runAsync(DatabaseLoader::loadUsers, workers);
+            CompletableFuture.allOf(transactions, resources, users).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof ParseException) {
+                throw (ParseException) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            workers.shutdown();
+        }
+        long loaded = System.nanoTime();
+        printTiming("read", start, loaded);
+
+        ResourceDatabase.link();
+        long resourcesLinked = System.nanoTime();
+        printTiming("copy linking", loaded, resourcesLinked);
+
+        UserDatabase.link();
+        long usersLinked = System.nanoTime();
+        printTiming("user linking", resourcesLinked, usersLinked);
+        printTiming("total", start, usersLinked);
+    }
+
+    /**
+     * Prints the time taken by a phase of loading if the timings property is set
+     *
+     * @param phase the name of the phase
+     * @param start the value of System.nanoTime when the phase started
+     * @param end the value of System.nanoTime when the phase ended
+     */
+    private static void printTiming(String phase, long start, long end) {
+        if (Boolean.getBoolean(TIMINGS_PROPERTY)) {
+            System.out.println(String.format("Startup phase %s took %.2f ms", phase, (end - start) / NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * Reads the user file, passing a parse failure back to loadAll
+     */
+    private static void loadUsers() {
+        try {
+            UserDatabase.load();
+        } catch (ParseException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+}
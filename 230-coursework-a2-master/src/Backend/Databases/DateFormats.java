@@ -0,0 +1,124 @@
+package Backend.Databases;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * File Name: DateFormats.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Converts the dates held by the model to and from the text they are written as in the data files and shown as in
+ * the user interface. The model holds dates as epoch days or epoch seconds, so a date is only parsed when a file
+ * is read and only formatted when it is written or displayed.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class DateFormats {
+
+    /**
+     * Epoch day standing for no date, such as the due date of a copy which is not on loan
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Written in place of a date which has not been set
+     */
+    private static final String NULL_DATE = "null";
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+    /**
+     * Format of day dates in files written before years were written in full
+     */
+    private static final DateTimeFormatter LEGACY_DAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yy");
+
+    /**
+     * Reads a day date in the format dd/MM/yyyy. Dates in the older format dd/MM/yy are also read, and are written
+     * back in the full format the next time the file is saved.
+     *
+     * @param date the date, or "null" or null for no date
+     * @return the date in epoch days, or NO_DATE
+     * @throws DateTimeParseException if the date is in neither format
+     */
+    public static long parseDay(String date) {
+        if (date == null || date.equals(NULL_DATE)) {
+            return NO_DATE;
+        }
+        try {
+            return LocalDate.parse(date, DAY_FORMAT).toEpochDay();
+        } catch (DateTimeParseException ex) {
+            return LocalDate.parse(date, LEGACY_DAY_FORMAT).toEpochDay();
+        }
+    }
+
+    /**
+     * Formats a day date as dd/MM/yyyy
+     *
+     * @param epochDay the date in epoch days, or NO_DATE
+     * @return the formatted date, or null if there is no date
+     */
+    public static String formatDay(long epochDay) {
+        if (epochDay == NO_DATE) {
+            return null;
+        }
+        return DAY_FORMAT.format(LocalDate.ofEpochDay(epochDay));
+    }
+
+    /**
+     * Reads a date and time in the format yyyy/MM/dd HH:mm:ss, in the system time zone
+     *
+     * @param dateTime the date and time
+     * @return the date and time in epoch seconds
+     * @throws DateTimeParseException if the date is not in the format
+     */
+    public static long parseDateTime(String dateTime) {
+        return LocalDateTime.parse(dateTime, DATE_TIME_FORMAT).atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * Formats a date and time as yyyy/MM/dd HH:mm:ss, in the system time zone
+     *
+     * @param epochSecond the date and time in epoch seconds
+     * @return the formatted date and time
+     */
+    public static String formatDateTime(long epochSecond) {
+        return DATE_TIME_FORMAT.format(toDateTime(epochSecond));
+    }
+
+    /**
+     * @param epochSecond a date and time in epoch seconds
+     * @return the date and time in the system time zone
+     */
+    public static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+    }
+
+    /**
+     * @param epochDay a day date in epoch days
+     * @return the start of the day in the system time zone, in epoch seconds
+     */
+    public static long startOfDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * @return the current date in epoch days
+     */
+    public static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * @return the current date and time in epoch seconds
+     */
+    public static long now() {
+        return Instant.now().getEpochSecond();
+    }
+}
@@ -0,0 +1,443 @@
+package Backend.Databases;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * File Name: FormatMigrator.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Keeps track of the version of the format of each data file and upgrades files written in an older version. The
+ * first line of a data file is a header naming the kind of file and the version of its format. Files written
+ * before the header was added have no header and are version 1.
+ *
+ * A file is upgraded while it is streamed from the old file to a staged copy, one record at a time, so only a
+ * single record is ever held in memory however large the file is. Each version has an upgrade which turns a record
+ * of that version into a record of the next one, and a record is passed through every upgrade between the version
+ * of the file and the current version. The journal of the file is upgraded the same way, so the changes in it are
+ * still replayed over the upgraded file. The lines are read and written as ISO-8859-1, which maps every byte to a
+ * single character, so text which an upgrade does not change is written back byte for byte whatever its charset.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class FormatMigrator {
+
+    /**
+     * Upgrades the records of one version of a file format to the next version
+     */
+    interface Upgrade {
+
+        /**
+         * @param firstLine the first line of a record in the old version
+         * @return the number of lines in the record
+         */
+        int recordLength(String firstLine);
+
+        /**
+         * @param record the lines of a record in the old version
+         * @return the lines of the record in the new version
+         */
+        String[] upgrade(String[] record);
+    }
+
+    public static final String BOOK_FILE = "Books";
+    public static final String DVD_FILE = "DVDs";
+    public static final String LAPTOP_FILE = "Laptops";
+    public static final String USER_FILE = "Users";
+    public static final String TRANSACTION_FILE = "Transactions";
+
+    /**
+     * Flag marking the header line of a data file
+     */
+    static final String FORMAT_META_FLAG = "#Format";
+
+    private static final String DELIMITER = "\t";
+    private static final String JOURNAL_UPGRADE_SUFFIX = ".upgrade";
+
+    /**
+     * The upgrades of each kind of file, the upgrade from version 1 first. The current version of a kind of file
+     * is one more than the number of its upgrades.
+     */
+    private static final HashMap<String, Upgrade[]> upgrades = new HashMap<>();
+
+    static {
+        // Version 2 adds the header and writes every day date with a four digit year
+        upgrades.put(BOOK_FILE, new Upgrade[] {new DueDateUpgrade(ResourceDatabase::bookRecordLength)});
+        upgrades.put(DVD_FILE, new Upgrade[] {new DueDateUpgrade(ResourceDatabase::dvdRecordLength)});
+        upgrades.put(LAPTOP_FILE, new Upgrade[] {new DueDateUpgrade(ResourceDatabase::laptopRecordLength)});
+        upgrades.put(USER_FILE, new Upgrade[] {new UserDateUpgrade()});
+        upgrades.put(TRANSACTION_FILE, new Upgrade[] {new HeaderUpgrade()});
+    }
+
+    /**
+     * Gets the version of the format a kind of file is written in
+     *
+     * @param kind the kind of file
+     * @return the current version
+     */
+    public static int currentVersion(String kind) {
+        return upgrades.get(kind).length + 1;
+    }
+
+    /**
+     * Writes the header line of a file in the current version of its format
+     *
+     * @param out the writer of the file, before anything else is written
+     * @param kind the kind of file
+     * @throws IOException if the header could not be written
+     */
+    static void writeHeader(RecordWriter out, String kind) throws IOException {
+        out.write(FORMAT_META_FLAG).delimiter().write(kind).delimiter().write(currentVersion(kind)).newLine();
+    }
+
+    /**
+     * @param line the first line of a file
+     * @return true if the line is the header of a data file
+     */
+    static boolean isHeader(String line) {
+        return line.startsWith(FORMAT_META_FLAG + DELIMITER);
+    }
+
+    /**
+     * Reads the version of the format a file is written in from its header
+     *
+     * @param file the file to read
+     * @param kind the kind of file it should be
+     * @return the version, 1 if the file has no header
+     * @throws IOException if the file could not be read or its header is for another kind of file
+     */
+    public static int readVersion(File file, String kind) throws IOException {
+        String firstLine;
+        try (BufferedReader in = openReader(new FileInputStream(file))) {
+            firstLine = in.readLine();
+        }
+        if (firstLine == null || !isHeader(firstLine)) {
+            return 1;
+        }
+
+        String[] header = firstLine.split(DELIMITER);
+        if (header.length != 3 || !header[1].equals(kind)) {
+            throw new IOException(file + " is not a " + kind + " file");
+        }
+        try {
+            return Integer.parseInt(header[2]);
+        } catch (NumberFormatException ex) {
+            throw new IOException(file + " has an unreadable format version " + header[2]);
+        }
+    }
+
+    /**
+     * Upgrades a file and its journal to the current version of their format, if they are written in an older
+     * one. Called before the file is read. A file written by a newer version of the program cannot be read, so the
+     * program is stopped rather than risk overwriting it.
+     *
+     * @param file the data file
+     * @param kind the kind of file
+     * @param journalFile the journal of the file, or null if it has none
+     */
+    static void upgrade(File file, String kind, File journalFile) {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            finishJournalUpgrade(file, kind, journalFile);
+
+            int version = readVersion(file, kind);
+            int current = currentVersion(kind);
+            if (version > current) {
+                System.out.println(String.format("%s is written in format %d, newer than the format %d this "
+                        + "version can read", file, version, current));
+                System.exit(0);
+            } else if (version < current) {
+                migrate(file, kind, version, journalFile);
+            }
+        } catch (IOException ex) {
+            System.out.println("File Upgrade Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Upgrades every data file in the data folder, so it can be done before the program is next started
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        DataCommit.recover();
+        ResourceDatabase.upgradeFiles();
+        UserDatabase.upgradeFile();
+        TransactionDatabase.upgradeFile();
+    }
+
+    /**
+     * Streams a file to a staged copy in the current version and commits it. The upgraded journal is written
+     * beside the journal before the commit and only replaces it after, so until the commit the old journal still
+     * matches the old file.
+     */
+    private static void migrate(File file, String kind, int version, File journalFile) throws IOException {
+        double ms = System.currentTimeMillis();
+        Upgrade[] steps = upgrades.get(kind);
+        steps = Arrays.copyOfRange(steps, version - 1, steps.length);
+
+        DataCommit commit = new DataCommit();
+        File upgradedJournal = null;
+        long records;
+        try {
+            long oldChecksum;
+            long newChecksum;
+            try (CheckedInputStream input = new CheckedInputStream(
+                    new BufferedInputStream(new FileInputStream(file)), new CRC32());
+                 BufferedReader in = openReader(input);
+                 CheckedOutputStream output = new CheckedOutputStream(
+                         new BufferedOutputStream(new FileOutputStream(commit.stage(file))), new CRC32());
+                 Writer out = openWriter(output)) {
+
+                if (version > 1) {
+                    in.readLine();
+                }
+                out.write(FORMAT_META_FLAG + DELIMITER + kind + DELIMITER + currentVersion(kind));
+                out.write(System.lineSeparator());
+                records = copyRecords(in, out, steps);
+
+                out.flush();
+                oldChecksum = input.getChecksum().getValue();
+                newChecksum = output.getChecksum().getValue();
+            }
+
+            if (journalFile != null && journalFile.exists()) {
+                upgradedJournal = new File(journalFile.getPath() + JOURNAL_UPGRADE_SUFFIX);
+                if (!upgradeJournal(journalFile, upgradedJournal, oldChecksum, newChecksum, steps)) {
+                    upgradedJournal = null;
+                }
+            }
+
+            commit.commit();
+        } catch (IOException | RuntimeException ex) {
+            commit.abort();
+            if (upgradedJournal != null) {
+                upgradedJournal.delete();
+            }
+            throw ex;
+        }
+
+        if (upgradedJournal != null) {
+            DataCommit.replace(upgradedJournal, journalFile);
+        }
+        System.out.println(String.format("Upgraded %s from format %d to %d. %d records in %.2f ms", file,
+                version, currentVersion(kind), records, System.currentTimeMillis() - ms));
+    }
+
+    /**
+     * Writes an upgraded copy of a journal which was started against the old file, started instead against the
+     * upgraded file
+     *
+     * @return false if the journal was not started against the old file, so there is nothing in it to replay
+     */
+    private static boolean upgradeJournal(File journalFile, File upgradedJournal, long oldChecksum,
+            long newChecksum, Upgrade[] steps) throws IOException {
+        try (BufferedReader in = openReader(new FileInputStream(journalFile))) {
+            String header = in.readLine();
+            if (header == null || !header.equals(Journal.SNAPSHOT_META_FLAG + DELIMITER + oldChecksum)) {
+                return false;
+            }
+
+            try (Writer out = openWriter(new FileOutputStream(upgradedJournal))) {
+                out.write(Journal.SNAPSHOT_META_FLAG + DELIMITER + newChecksum);
+                out.write(System.lineSeparator());
+                copyRecords(in, out, steps);
+            }
+        }
+        DataCommit.force(upgradedJournal);
+        return true;
+    }
+
+    /**
+     * Puts the upgraded journal of an interrupted upgrade in place of the journal if the file was committed before
+     * the interruption, or deletes it if the file was not
+     */
+    private static void finishJournalUpgrade(File file, String kind, File journalFile) throws IOException {
+        if (journalFile == null) {
+            return;
+        }
+        File upgradedJournal = new File(journalFile.getPath() + JOURNAL_UPGRADE_SUFFIX);
+        if (upgradedJournal.exists()) {
+            if (readVersion(file, kind) == currentVersion(kind)) {
+                DataCommit.replace(upgradedJournal, journalFile);
+            } else {
+                upgradedJournal.delete();
+            }
+        }
+    }
+
+    /**
+     * Copies every record left in a file, passing each through the upgrades. Blank lines are copied as they are,
+     * as is a record cut short by the end of the file.
+     *
+     * @return the number of records copied
+     */
+    private static long copyRecords(BufferedReader in, Writer out, Upgrade[] steps) throws IOException {
+        long records = 0;
+        String line = in.readLine();
+        while (line != null) {
+            if (line.isEmpty()) {
+                out.write(System.lineSeparator());
+            } else {
+                copyRecord(line, in, out, steps);
+                records++;
+            }
+            line = in.readLine();
+        }
+        return records;
+    }
+
+    /**
+     * Copies the record starting with a line, passing it through the upgrades if it is whole
+     */
+    private static void copyRecord(String firstLine, BufferedReader in, Writer out, Upgrade[] steps)
+            throws IOException {
+        String[] record;
+        try {
+            record = new String[steps[0].recordLength(firstLine)];
+        } catch (RuntimeException ex) {
+            throw new IOException("Cannot read the record starting " + firstLine);
+        }
+        record[0] = firstLine;
+        int read = 1;
+        String line = firstLine;
+        while (read < record.length && (line = in.readLine()) != null) {
+            record[read++] = line;
+        }
+
+        if (read == record.length) {
+            try {
+                for (Upgrade step : steps) {
+                    record = step.upgrade(record);
+                }
+            } catch (RuntimeException ex) {
+                throw new IOException("Cannot upgrade the record starting " + record[0]);
+            }
+        } else {
+            record = Arrays.copyOf(record, read);
+        }
+
+        for (String recordLine : record) {
+            out.write(recordLine);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private static BufferedReader openReader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+    }
+
+    private static Writer openWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Rewrites one field of a line
+     */
+    private static String replaceField(String line, int fieldIndex, UnaryOperator<String> change) {
+        String[] fields = line.split(DELIMITER, -1);
+        fields[fieldIndex] = change.apply(fields[fieldIndex]);
+        return String.join(DELIMITER, fields);
+    }
+
+    /**
+     * Rewrites a day date written as dd/MM/yy with a four digit year
+     */
+    private static String fullYear(String date) {
+        String upgraded = DateFormats.formatDay(DateFormats.parseDay(date));
+        return upgraded == null ? date : upgraded;
+    }
+
+    /**
+     * Version 1 to 2 of a resource file: the due date of each copy is written with a four digit year. A record is
+     * the resource line, a line for each copy and the review line.
+     */
+    private static class DueDateUpgrade implements Upgrade {
+
+        private final ToIntFunction<String> recordLength;
+
+        DueDateUpgrade(ToIntFunction<String> recordLength) {
+            this.recordLength = recordLength;
+        }
+
+        @Override
+        public int recordLength(String firstLine) {
+            return recordLength.applyAsInt(firstLine);
+        }
+
+        @Override
+        public String[] upgrade(String[] record) {
+            // ID | Available | Due date | ...
+            for (int i = 1; i < record.length - 1; i++) {
+                record[i] = replaceField(record[i], 2, FormatMigrator::fullYear);
+            }
+            return record;
+        }
+    }
+
+    /**
+     * Version 1 to 2 of the user file: the creation date of each user and the employment date of each librarian
+     * are written with a four digit year. A record is the four lines of a user, or in the journal a single line
+     * for a deleted user.
+     */
+    private static class UserDateUpgrade implements Upgrade {
+
+        private static final int CREATION_DATE_FIELD = 11;
+        private static final int EMPLOYMENT_DATE_FIELD = 13;
+
+        @Override
+        public int recordLength(String firstLine) {
+            return firstLine.startsWith("D" + DELIMITER) ? 1 : 4;
+        }
+
+        @Override
+        public String[] upgrade(String[] record) {
+            if (record.length == 4) {
+                record[0] = replaceField(record[0], CREATION_DATE_FIELD, FormatMigrator::fullYear);
+                if (record[0].startsWith("L" + DELIMITER)) {
+                    record[0] = replaceField(record[0], EMPLOYMENT_DATE_FIELD, FormatMigrator::fullYear);
+                }
+            }
+            return record;
+        }
+    }
+
+    /**
+     * An upgrade which only adds the header, leaving every record of the file as it is
+     */
+    private static class HeaderUpgrade implements Upgrade {
+
+        @Override
+        public int recordLength(String firstLine) {
+            return 1;
+        }
+
+        @Override
+        public String[] upgrade(String[] record) {
+            return record;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package Backend.Databases;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * File Name: IdSequence.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Hands out IDs which are never handed out twice, even by a later run of the program, without scanning the
+ * database for the highest ID in use. An ID is taken from an atomic counter, so allocating one never waits for
+ * another thread. IDs are reserved in blocks: before the first ID of a block is handed out the end of the block,
+ * the high water mark, is committed to the sequence file. A later run starts from the high water mark, skipping
+ * whatever was left of the block, so no ID handed out before the program stopped is handed out again. An ID is
+ * never handed out beyond the committed high water mark: if it cannot be committed the allocation fails.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class IdSequence {
+
+    private static final String DELIMITER = "\t";
+
+    /**
+     * The file holding the high water mark of every sequence
+     */
+    private static File sequenceFile = new File("src/data/Sequences.txt");
+
+    /**
+     * The high water mark of every sequence, by name, as last committed. Read from the file when the first
+     * sequence is created.
+     */
+    private static LinkedHashMap<String, Integer> highWaterMarks;
+
+    private final String name;
+    private final int blockSize;
+    private final AtomicInteger next;
+
+    /**
+     * IDs below this have been reserved in the sequence file and can be handed out straight away
+     */
+    private volatile int limit;
+
+    /**
+     * Creates a sequence starting from its high water mark in the sequence file, or from 0 if it has none
+     *
+     * @param name the name of the sequence in the sequence file
+     * @param blockSize the number of IDs reserved each time the sequence file is written
+     */
+    public IdSequence(String name, int blockSize) {
+        this.name = name;
+        this.blockSize = blockSize;
+        this.limit = readHighWaterMark(name);
+        this.next = new AtomicInteger(limit);
+    }
+
+    /**
+     * Moves the sequence past IDs found in the database, such as those written by a version of the program which
+     * did not keep a sequence file. The sequence never moves backwards.
+     *
+     * @param floor the lowest ID the sequence may hand out next
+     */
+    public void start(int floor) {
+        next.accumulateAndGet(floor, Math::max);
+    }
+
+    /**
+     * Gets the next ID of the sequence. Only the first ID of each block waits for the sequence file to be written.
+     *
+     * @return an ID which has never been handed out before
+     * @throws UncheckedIOException if the sequence file could not be written, in which case no ID is handed out
+     */
+    public int next() {
+        int id = next.getAndIncrement();
+        if (id >= limit) {
+            reserve(id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the ID the sequence will hand out next
+     */
+    public int peek() {
+        return next.get();
+    }
+
+    /**
+     * Commits a new high water mark covering the given ID, unless another thread already has. If it cannot be
+     * committed the ID is skipped and the next ID handed out tries again.
+     */
+    private synchronized void reserve(int id) {
+        if (id < limit) {
+            return;
+        }
+        int highWaterMark = id + blockSize;
+        try {
+            writeHighWaterMark(name, highWaterMark);
+            limit = highWaterMark;
+        } catch (IOException ex) {
+            System.out.println("File Write Error: " + ex.getMessage());
+            throw new UncheckedIOException("Cannot reserve " + name + " ID " + id, ex);
+        }
+    }
+
+    private static synchronized int readHighWaterMark(String name) {
+        if (highWaterMarks == null) {
+            highWaterMarks = readFile();
+        }
+        return highWaterMarks.getOrDefault(name, 0);
+    }
+
+    private static LinkedHashMap<String, Integer> readFile() {
+        DataCommit.recover();
+        LinkedHashMap<String, Integer> marks = new LinkedHashMap<>();
+        if (!sequenceFile.exists()) {
+            return marks;
+        }
+        try (Scanner in = new Scanner(sequenceFile)) {
+            while (in.hasNextLine()) {
+                String[] fields = in.nextLine().split(DELIMITER);
+                if (fields.length == 2) {
+                    marks.put(fields[0], Integer.parseInt(fields[1]));
+                }
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Cannot open: " + sequenceFile);
+        }
+        return marks;
+    }
+
+    /**
+     * Commits the sequence file with a new high water mark for one sequence
+     */
+    private static synchronized void writeHighWaterMark(String name, int highWaterMark) throws IOException {
+        LinkedHashMap<String, Integer> marks = new LinkedHashMap<>(highWaterMarks);
+        marks.put(name, highWaterMark);
+
+        DataCommit commit = new DataCommit();
+        try (RecordWriter out = new RecordWriter(commit.stage(sequenceFile))) {
+            for (Map.Entry<String, Integer> mark : marks.entrySet()) {
+                out.write(mark.getKey()).delimiter().write(mark.getValue()).newLine();
+            }
+        } catch (IOException ex) {
+            commit.abort();
+            throw ex;
+        }
+        commit.commit();
+        highWaterMarks = marks;
+    }
+}
@@ -0,0 +1,234 @@
+package Backend.Databases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * File Name: IntHashMap.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * A hash map from primitive int keys to values, used for the ID indexes of the databases so that keys are never
+ * boxed. Keys are stored in an open addressed table and null values are not permitted.
+ *
+ * @param <V> the type of value stored in the map
+ * @version 1.0
+ * @author agent
+ */
+public class IntHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float MAX_LOAD_FACTOR = 0.6f;
+    /**
+     * Multiplier used to spread sequential IDs across the table (the golden ratio as a 32 bit integer)
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Creates an empty map
+     */
+    public IntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map with room for the given number of entries before it has to grow
+     *
+     * @param expectedSize the number of entries expected
+     */
+    public IntHashMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * MAX_LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Creates a map holding the same entries as another map
+     *
+     * @param other the map to copy
+     */
+    public IntHashMap(IntHashMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * Gets the value stored against a key
+     *
+     * @param key the key to look up
+     * @return the value stored against the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a value is stored against a key
+     *
+     * @param key the key to look up
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores a value against a key, replacing any value already stored against it
+     *
+     * @param key the key to store the value against
+     * @param value the value to store, must not be null
+     * @return the value previously stored against the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntHashMap can not hold null values");
+        }
+        if (size + 1 > keys.length * MAX_LOAD_FACTOR) {
+            resize(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Stores a value against a key only if nothing is stored against it yet
+     *
+     * @param key the key to store the value against
+     * @param value the value to store, must not be null
+     * @return the value already stored against the key, or null if the new value was stored
+     */
+    public V putIfAbsent(int key, V value) {
+        V existing = get(key);
+        if (existing == null) {
+            put(key, value);
+        }
+        return existing;
+    }
+
+    /**
+     * Removes the value stored against a key
+     *
+     * @param key the key to remove
+     * @return the value that was stored against the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return null;
+        }
+
+        V removed = (V) values[slot];
+        values[slot] = null;
+        size--;
+
+        // Shift later entries of the probe sequence back so no lookup stops early at the new gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = slotOf(keys[next], mask);
+            boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (movable) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                values[next] = null;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the number of entries in the map
+     *
+     * @return the number of keys with a value stored against them
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry from the map
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets every value in the map, in no particular order
+     *
+     * @return a new list of the values
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<V> values() {
+        ArrayList<V> allValues = new ArrayList<>(size);
+        for (Object value : values) {
+            if (value != null) {
+                allValues.add((V) value);
+            }
+        }
+        return allValues;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private static int slotOf(int key, int mask) {
+        int hash = key * HASH_MULTIPLIER;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,434 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import Backend.Resources.Book;
+import Backend.Resources.Copy;
+import Backend.Resources.DVD;
+import Backend.Resources.Element;
+import Backend.Resources.Laptop;
+import Backend.Resources.Resource;
+import Backend.Resources.Review;
+
+/**
+ * File Name: JdbcResourceRepository.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Keeps the catalogue in the resources table of the SQL database, with the subtitles of the DVDs, the copies, the
+ * request queues and the reviews in tables of their own. The catalogue is changed in memory without telling the
+ * repository, so the repository remembers a fingerprint of the rows of every resource as they were last saved and
+ * only rewrites the rows of the resources whose fingerprint has changed.
+ *
+ * @version 1.0
+ * @author agent
+ */
+class JdbcResourceRepository implements ResourceRepository {
+
+    private static final String BOOK_KIND = "Book";
+    private static final String DVD_KIND = "DVD";
+    private static final String LAPTOP_KIND = "Laptop";
+
+    /**
+     * Number of columns of the resources table before list_order, and of each child table after its position
+     */
+    private static final int RESOURCE_COLUMNS = 17;
+    private static final int SUBTITLE_COLUMNS = 1;
+    private static final int COPY_COLUMNS = 4;
+    private static final int REQUEST_COLUMNS = 1;
+    private static final int REVIEW_COLUMNS = 3;
+
+    private static final int CHECKSUM_SHIFT = 32;
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    private static final String SELECT_RESOURCES = "SELECT id, kind, thumbnail, title, release_year, "
+            + "min_loan_duration, next_copy_id, author, publisher, genre, isbn, language, director, runtime, "
+            + "manufacturer, model, operating_system FROM resources ORDER BY kind, list_order";
+    private static final String INSERT_RESOURCE = "INSERT INTO resources (id, kind, thumbnail, title, release_year, "
+            + "min_loan_duration, next_copy_id, author, publisher, genre, isbn, language, director, runtime, "
+            + "manufacturer, model, operating_system, list_order) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_RESOURCE = "DELETE FROM resources WHERE id = ?";
+
+    /**
+     * The tables holding the parts of a resource, with the columns of each after the resource ID and position
+     */
+    private static final String[][] CHILD_TABLES = {
+            {"dvd_subtitles", "language"},
+            {"copies", "copy_id, available, due_day, current_transaction_id"},
+            {"resource_requests", "username"},
+            {"reviews", "rating, review_text, posted_by"}
+    };
+    private static final int SUBTITLES = 0;
+    private static final int COPIES = 1;
+    private static final int REQUESTS = 2;
+    private static final int REVIEWS = 3;
+
+    /**
+     * The rows of a resource in each table, as they are written to the database
+     */
+    private static class ResourceRows {
+
+        private final Object[] resource;
+        private final ArrayList<ArrayList<Object[]>> children = new ArrayList<>();
+
+        private ResourceRows(Object[] resource) {
+            this.resource = resource;
+            for (int i = 0; i < CHILD_TABLES.length; i++) {
+                children.add(new ArrayList<>());
+            }
+        }
+
+        private int getID() {
+            return ((Number) resource[0]).intValue();
+        }
+
+        /**
+         * @return a 64 bit fingerprint of every value in the rows, which changes if any value changes
+         */
+        private long fingerprint() {
+            Object[] rows = new Object[children.size() + 1];
+            rows[0] = resource;
+            for (int i = 0; i < children.size(); i++) {
+                rows[i + 1] = children.get(i).toArray();
+            }
+            String values = Arrays.deepToString(rows);
+            CRC32 checksum = new CRC32();
+            checksum.update(values.getBytes(StandardCharsets.UTF_8));
+            return (checksum.getValue() << CHECKSUM_SHIFT) | (values.hashCode() & LOW_BITS);
+        }
+    }
+
+    /**
+     * The fingerprint of each resource as it was last saved, by resource ID
+     */
+    private HashMap<Integer, Long> savedFingerprints = new HashMap<>();
+
+    /**
+     * The position of each resource saved, which keeps the resources of each kind in the same order
+     */
+    private HashMap<Integer, Integer> savedOrders = new HashMap<>();
+
+    /**
+     * Position given to the next resource added
+     */
+    private int nextOrder;
+
+    @Override
+    public synchronized Catalogue load() throws IOException {
+        LinkedHashMap<Integer, ResourceRows> rows = JdbcStore.inTransaction(JdbcResourceRepository::readRows);
+
+        ArrayList<Book> books = new ArrayList<>();
+        ArrayList<DVD> dvds = new ArrayList<>();
+        ArrayList<Laptop> laptops = new ArrayList<>();
+        savedFingerprints = new HashMap<>();
+        savedOrders = new HashMap<>();
+        for (ResourceRows resourceRows : rows.values()) {
+            String kind = (String) resourceRows.resource[1];
+            if (kind.equals(BOOK_KIND)) {
+                books.add(readResource(toBook(resourceRows.resource), resourceRows));
+            } else if (kind.equals(DVD_KIND)) {
+                dvds.add(readResource(toDVD(resourceRows), resourceRows));
+            } else {
+                laptops.add(readResource(toLaptop(resourceRows.resource), resourceRows));
+            }
+            savedFingerprints.put(resourceRows.getID(), resourceRows.fingerprint());
+            savedOrders.put(resourceRows.getID(), savedOrders.size());
+        }
+        nextOrder = savedOrders.size();
+        return new Catalogue(books, dvds, laptops);
+    }
+
+    /**
+     * Stages the rows of every resource added or changed since the catalogue was last saved, and the deletion of
+     * every resource removed, in the SQL transaction of the commit. The rows are taken now, so later changes are
+     * saved by the next checkpoint.
+     */
+    @Override
+    public synchronized void save(Catalogue catalogue, DataCommit commit) {
+        ArrayList<ResourceRows> changed = new ArrayList<>();
+        HashMap<Integer, Long> fingerprints = new HashMap<>();
+        collectChanges(catalogue.books, BOOK_KIND, changed, fingerprints);
+        collectChanges(catalogue.dvds, DVD_KIND, changed, fingerprints);
+        collectChanges(catalogue.laptops, LAPTOP_KIND, changed, fingerprints);
+
+        // The rows of a removed resource are deleted, as are the old rows of a changed one
+        ArrayList<Integer> deletedIDs = new ArrayList<>();
+        for (int resourceID : savedFingerprints.keySet()) {
+            if (!fingerprints.containsKey(resourceID)) {
+                deletedIDs.add(resourceID);
+            }
+        }
+        for (ResourceRows resourceRows : changed) {
+            if (savedFingerprints.containsKey(resourceRows.getID())) {
+                deletedIDs.add(resourceRows.getID());
+            }
+        }
+
+        HashMap<Integer, Integer> orders = new HashMap<>();
+        int order = nextOrder;
+        for (ResourceRows resourceRows : changed) {
+            Integer savedOrder = savedOrders.get(resourceRows.getID());
+            orders.put(resourceRows.getID(), savedOrder == null ? order++ : savedOrder);
+        }
+        int newNextOrder = order;
+
+        commit.stageDatabaseWork(connection -> writeRows(connection, deletedIDs, changed, orders));
+        commit.onCommit(() -> saved(fingerprints, orders, newNextOrder));
+    }
+
+    /**
+     * Records the resources saved by a commit
+     */
+    private synchronized void saved(HashMap<Integer, Long> fingerprints, HashMap<Integer, Integer> orders,
+            int newNextOrder) {
+        savedFingerprints = fingerprints;
+        savedOrders.keySet().retainAll(fingerprints.keySet());
+        savedOrders.putAll(orders);
+        nextOrder = Math.max(nextOrder, newNextOrder);
+    }
+
+    /**
+     * Adds the rows of each resource whose fingerprint differs from the one saved to the changed rows
+     */
+    private <T extends Resource> void collectChanges(List<T> resources, String kind,
+            ArrayList<ResourceRows> changed, HashMap<Integer, Long> fingerprints) {
+        for (T resource : resources) {
+            ResourceRows resourceRows = toRows(resource, kind);
+            long fingerprint = resourceRows.fingerprint();
+            Long savedFingerprint = savedFingerprints.get(resource.getID());
+            if (savedFingerprint == null || savedFingerprint != fingerprint) {
+                changed.add(resourceRows);
+            }
+            fingerprints.put(resource.getID(), fingerprint);
+        }
+    }
+
+    /**
+     * Reads the rows of every resource, in the order they are kept in
+     */
+    private static LinkedHashMap<Integer, ResourceRows> readRows(Connection connection) throws SQLException {
+        LinkedHashMap<Integer, ResourceRows> rows = new LinkedHashMap<>();
+        try (Statement select = connection.createStatement()) {
+            try (ResultSet result = select.executeQuery(SELECT_RESOURCES)) {
+                while (result.next()) {
+                    ResourceRows resourceRows = new ResourceRows(JdbcStore.getValues(result, 1, RESOURCE_COLUMNS));
+                    rows.put(resourceRows.getID(), resourceRows);
+                }
+            }
+            int[] columns = {SUBTITLE_COLUMNS, COPY_COLUMNS, REQUEST_COLUMNS, REVIEW_COLUMNS};
+            for (int table = 0; table < CHILD_TABLES.length; table++) {
+                String sql = "SELECT resource_id, " + CHILD_TABLES[table][1] + " FROM " + CHILD_TABLES[table][0]
+                        + " ORDER BY resource_id, position";
+                try (ResultSet result = select.executeQuery(sql)) {
+                    while (result.next()) {
+                        ResourceRows resourceRows = rows.get(result.getInt(1));
+                        if (resourceRows != null) {
+                            resourceRows.children.get(table).add(JdbcStore.getValues(result, 2, columns[table]));
+                        }
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Deletes the rows of some resources, then inserts the rows of the changed resources
+     */
+    private static Void writeRows(Connection connection, List<Integer> deletedIDs, List<ResourceRows> changed,
+            HashMap<Integer, Integer> orders) throws SQLException {
+        PreparedStatement[] deletes = new PreparedStatement[CHILD_TABLES.length + 1];
+        PreparedStatement[] inserts = new PreparedStatement[CHILD_TABLES.length + 1];
+        try {
+            deletes[0] = connection.prepareStatement(DELETE_RESOURCE);
+            inserts[0] = connection.prepareStatement(INSERT_RESOURCE);
+            for (int table = 0; table < CHILD_TABLES.length; table++) {
+                String columns = CHILD_TABLES[table][1];
+                deletes[table + 1] = connection.prepareStatement(
+                        "DELETE FROM " + CHILD_TABLES[table][0] + " WHERE resource_id = ?");
+                inserts[table + 1] = connection.prepareStatement("INSERT INTO " + CHILD_TABLES[table][0]
+                        + " (resource_id, position, " + columns + ") VALUES (?, ?"
+                        + ", ?".repeat(columns.split(", ").length) + ")");
+            }
+
+            for (int resourceID : deletedIDs) {
+                deleteResource(deletes, resourceID);
+            }
+            for (ResourceRows resourceRows : changed) {
+                insertResource(inserts, resourceRows, orders.get(resourceRows.getID()));
+            }
+            for (int table = 0; table < inserts.length; table++) {
+                inserts[table].executeBatch();
+            }
+        } finally {
+            for (int table = 0; table < deletes.length; table++) {
+                closeStatement(deletes[table]);
+                closeStatement(inserts[table]);
+            }
+        }
+        return null;
+    }
+
+    private static void closeStatement(PreparedStatement statement) throws SQLException {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+
+    private static void deleteResource(PreparedStatement[] deletes, int resourceID) throws SQLException {
+        for (PreparedStatement delete : deletes) {
+            delete.setInt(1, resourceID);
+            delete.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds the rows of a resource to the batches of the insert statements
+     */
+    private static void insertResource(PreparedStatement[] inserts, ResourceRows resourceRows, int order)
+            throws SQLException {
+        int index = JdbcStore.setValues(inserts[0], 1, resourceRows.resource);
+        inserts[0].setInt(index, order);
+        inserts[0].addBatch();
+        for (int table = 0; table < CHILD_TABLES.length; table++) {
+            ArrayList<Object[]> childRows = resourceRows.children.get(table);
+            for (int position = 0; position < childRows.size(); position++) {
+                inserts[table + 1].setInt(1, resourceRows.getID());
+                inserts[table + 1].setInt(2, position);
+                JdbcStore.setValues(inserts[table + 1], 3, childRows.get(position));
+                inserts[table + 1].addBatch();
+            }
+        }
+    }
+
+    /**
+     * Gets the rows of a resource as they are now. Each row is read from one state of the copy, as when it is
+     * written to the resource files.
+     */
+    private static ResourceRows toRows(Resource resource, String kind) {
+        Object[] values = new Object[RESOURCE_COLUMNS];
+        values[0] = resource.getID();
+        values[1] = kind;
+        values[2] = resource.getThumbnail();
+        values[3] = resource.getTitle();
+        values[4] = resource.getYear();
+        values[5] = resource.getMinLoanDuration();
+        values[6] = resource.getNextCopyID();
+        if (resource instanceof Book) {
+            Book book = (Book) resource;
+            values[7] = book.getAuthor();
+            values[8] = book.getPublisher();
+            values[9] = book.getGenre();
+            values[10] = book.getISBN();
+            values[11] = book.getLanguage();
+        } else if (resource instanceof DVD) {
+            DVD dvd = (DVD) resource;
+            values[11] = dvd.getLanguage();
+            values[12] = dvd.getDirector();
+            values[13] = dvd.getRuntime();
+        } else {
+            Laptop laptop = (Laptop) resource;
+            values[14] = laptop.getManufacturer();
+            values[15] = laptop.getModel();
+            values[16] = laptop.getOS();
+        }
+
+        ResourceRows resourceRows = new ResourceRows(values);
+        if (resource instanceof DVD) {
+            for (String language : ((DVD) resource).getSubtitles()) {
+                resourceRows.children.get(SUBTITLES).add(new Object[] {language});
+            }
+        }
+        for (Copy copy : resource.getCopyList()) {
+            Copy.State state = copy.getState();
+            long dueDay = state.getDueDateEpochDay();
+            resourceRows.children.get(COPIES).add(new Object[] {copy.getID(), state.isAvailable() ? 1 : 0,
+                    dueDay == DateFormats.NO_DATE ? null : dueDay,
+                    state.getCurrentTransaction() == null ? null
+                            : state.getCurrentTransaction().getTRANSACTION_ID()});
+        }
+        for (String username : resource.getRequestQueue()) {
+            resourceRows.children.get(REQUESTS).add(new Object[] {username});
+        }
+        for (Element element : resource.getReview().getReviewList()) {
+            resourceRows.children.get(REVIEWS).add(
+                    new Object[] {element.getRating(), element.getReviewText(), element.getPostedBy()});
+        }
+        return resourceRows;
+    }
+
+    private static Book toBook(Object[] values) {
+        return new Book(text(values[2]), intValue(values[0]), text(values[3]), intValue(values[4]),
+                StringDictionary.intern(text(values[5])), StringDictionary.intern(text(values[7])),
+                StringDictionary.intern(text(values[8])), StringDictionary.intern(text(values[9])),
+                text(values[10]), StringDictionary.intern(text(values[11])), intValue(values[6]));
+    }
+
+    private static DVD toDVD(ResourceRows resourceRows) {
+        Object[] values = resourceRows.resource;
+        ArrayList<Object[]> subtitleRows = resourceRows.children.get(SUBTITLES);
+        String[] subtitles = new String[subtitleRows.size()];
+        for (int i = 0; i < subtitles.length; i++) {
+            subtitles[i] = StringDictionary.intern(text(subtitleRows.get(i)[0]));
+        }
+        return new DVD(text(values[2]), intValue(values[0]), text(values[3]), intValue(values[4]),
+                StringDictionary.intern(text(values[5])), StringDictionary.intern(text(values[12])),
+                StringDictionary.intern(text(values[11])), subtitles, intValue(values[13]), intValue(values[6]));
+    }
+
+    private static Laptop toLaptop(Object[] values) {
+        return new Laptop(text(values[2]), intValue(values[0]), text(values[3]), intValue(values[4]),
+                StringDictionary.intern(text(values[5])), StringDictionary.intern(text(values[14])),
+                StringDictionary.intern(text(values[15])), StringDictionary.intern(text(values[16])),
+                intValue(values[6]));
+    }
+
+    /**
+     * Fills in the copies, request queue and reviews of a resource from its rows
+     */
+    private static <T extends Resource> T readResource(T resource, ResourceRows resourceRows) {
+        ArrayList<Copy> copies = new ArrayList<>();
+        for (Object[] values : resourceRows.children.get(COPIES)) {
+            copies.add(new Copy(resource, intValue(values[1]) != 0,
+                    values[3] == null ? Copy.NO_TRANSACTION : intValue(values[3]), new int[0],
+                    values[2] == null ? DateFormats.NO_DATE : ((Number) values[2]).longValue(),
+                    intValue(values[0])));
+        }
+        resource.setCopyList(copies);
+
+        ArrayList<String> requestQueue = new ArrayList<>();
+        for (Object[] values : resourceRows.children.get(REQUESTS)) {
+            requestQueue.add(StringDictionary.intern(text(values[0])));
+        }
+        resource.setRequestQueue(requestQueue);
+
+        ArrayList<Element> elements = new ArrayList<>();
+        for (Object[] values : resourceRows.children.get(REVIEWS)) {
+            elements.add(new Element(intValue(values[0]), text(values[1]),
+                    StringDictionary.intern(text(values[2]))));
+        }
+        resource.setReview(new Review(elements));
+        return resource;
+    }
+
+    private static int intValue(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static String text(Object value) {
+        return (String) value;
+    }
+}
@@ -0,0 +1,241 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+
+/**
+ * File Name: JdbcStore.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * The embedded SQL database the repositories keep the library in when one is configured, in place of the text
+ * files. The database is chosen by setting the system property tawelib.jdbc.url to a JDBC URL, for example
+ * jdbc:h2:./src/data/library for H2 or jdbc:sqlite:src/data/library.db for SQLite, with the driver on the class
+ * path. Only standard SQL is used so either will do.
+ *
+ * Every field is kept in its own column, with the copies, subtitles, request queues, reviews and items of users in
+ * tables of their own, so the transactions can be looked up by the database rather than held in memory. One
+ * connection is shared by every repository and work on it is done one transaction at a time. Work staged in a
+ * DataCommit is done in a single transaction when the commit is made, so a checkpoint is saved whole or not at all.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class JdbcStore {
+
+    /**
+     * Work done on the database inside one SQL transaction
+     *
+     * @param <T> the result of the work
+     */
+    interface Work<T> {
+
+        /**
+         * @param connection the connection to the database
+         * @return the result of the work
+         * @throws SQLException if the work failed, in which case the transaction is rolled back
+         */
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * System property holding the JDBC URL of the database
+     */
+    public static final String URL_PROPERTY = "tawelib.jdbc.url";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS resources (id INTEGER NOT NULL PRIMARY KEY, kind VARCHAR(16) NOT NULL, "
+                    + "thumbnail VARCHAR(1024), title VARCHAR(1024), release_year INTEGER, "
+                    + "min_loan_duration VARCHAR(64), next_copy_id INTEGER, author VARCHAR(1024), "
+                    + "publisher VARCHAR(1024), genre VARCHAR(255), isbn VARCHAR(64), language VARCHAR(255), "
+                    + "director VARCHAR(1024), runtime INTEGER, manufacturer VARCHAR(255), model VARCHAR(255), "
+                    + "operating_system VARCHAR(255), list_order INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS resources_order ON resources (kind, list_order)",
+            "CREATE INDEX IF NOT EXISTS resources_title ON resources (title)",
+            "CREATE TABLE IF NOT EXISTS dvd_subtitles (resource_id INTEGER NOT NULL, position INTEGER NOT NULL, "
+                    + "language VARCHAR(255), PRIMARY KEY (resource_id, position))",
+            "CREATE TABLE IF NOT EXISTS copies (resource_id INTEGER NOT NULL, position INTEGER NOT NULL, "
+                    + "copy_id INTEGER NOT NULL, available INTEGER NOT NULL, due_day BIGINT, "
+                    + "current_transaction_id INTEGER, PRIMARY KEY (resource_id, position))",
+            "CREATE TABLE IF NOT EXISTS resource_requests (resource_id INTEGER NOT NULL, position INTEGER NOT NULL, "
+                    + "username VARCHAR(255), PRIMARY KEY (resource_id, position))",
+            "CREATE TABLE IF NOT EXISTS reviews (resource_id INTEGER NOT NULL, position INTEGER NOT NULL, "
+                    + "rating INTEGER, review_text VARCHAR(65535), posted_by VARCHAR(255), "
+                    + "PRIMARY KEY (resource_id, position))",
+            "CREATE TABLE IF NOT EXISTS users (username VARCHAR(255) NOT NULL PRIMARY KEY, "
+                    + "user_type VARCHAR(1) NOT NULL, first_name VARCHAR(255), last_name VARCHAR(255), "
+                    + "mobile_number VARCHAR(64), email_address VARCHAR(255), address_line1 VARCHAR(255), "
+                    + "address_line2 VARCHAR(255), post_town VARCHAR(255), postcode VARCHAR(16), "
+                    + "profile_image VARCHAR(1024), creation_day BIGINT, account_balance REAL, "
+                    + "employment_day BIGINT, staff_number INTEGER, list_order INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS users_order ON users (list_order)",
+            "CREATE TABLE IF NOT EXISTS user_items (username VARCHAR(255) NOT NULL, item_kind VARCHAR(1) NOT NULL, "
+                    + "position INTEGER NOT NULL, resource_id INTEGER NOT NULL, copy_id INTEGER, "
+                    + "PRIMARY KEY (username, item_kind, position))",
+            "CREATE TABLE IF NOT EXISTS transactions (id INTEGER NOT NULL PRIMARY KEY, "
+                    + "username VARCHAR(255) NOT NULL, resource_id INTEGER NOT NULL, copy_id INTEGER NOT NULL, "
+                    + "reserved INTEGER NOT NULL, start_time BIGINT NOT NULL, return_time BIGINT)",
+            "CREATE INDEX IF NOT EXISTS transactions_username ON transactions (username)",
+            "CREATE INDEX IF NOT EXISTS transactions_copy ON transactions (resource_id, copy_id)",
+            "CREATE TABLE IF NOT EXISTS financial_transactions (list_order INTEGER NOT NULL PRIMARY KEY, "
+                    + "kind VARCHAR(1) NOT NULL, username VARCHAR(255) NOT NULL, amount REAL NOT NULL, "
+                    + "transaction_time BIGINT NOT NULL, copy_id INTEGER, resource_id INTEGER, days_overdue INTEGER)",
+            "CREATE INDEX IF NOT EXISTS financial_transactions_username ON financial_transactions (username)"
+    };
+
+    /**
+     * Every table, emptied when the library is copied into the database
+     */
+    private static final String[] TABLES = {"resources", "dvd_subtitles", "copies", "resource_requests", "reviews",
+            "users", "user_items", "transactions", "financial_transactions"};
+
+    private static Connection connection;
+
+    /**
+     * @return true if a SQL database has been configured
+     */
+    public static boolean isConfigured() {
+        return System.getProperty(URL_PROPERTY) != null;
+    }
+
+    /**
+     * Runs some work on the database in its own SQL transaction, which is committed if the work succeeds and
+     * rolled back if it fails. The database is opened, and its tables created, the first time it is used.
+     *
+     * @param work the work to run
+     * @param <T> the result of the work
+     * @return the result of the work
+     * @throws IOException if the database could not be opened or the work failed
+     */
+    static synchronized <T> T inTransaction(Work<T> work) throws IOException {
+        try {
+            Connection open = getConnection();
+            try {
+                T result = work.run(open);
+                open.commit();
+                return result;
+            } catch (SQLException ex) {
+                open.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Database Error: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Closes the connection to the database. It is opened again if the database is used after.
+     */
+    public static synchronized void close() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                System.out.println("Database Error: " + ex.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Copies the library from the text files into the configured SQL database, replacing anything already in it
+     *
+     * @param args not used
+     * @throws ParseException if the user file could not be read
+     * @throws IOException if the database could not be written
+     */
+    public static void main(String[] args) throws ParseException, IOException {
+        if (!isConfigured()) {
+            System.out.println("Set " + URL_PROPERTY + " to the JDBC URL of the database to copy the library into");
+            return;
+        }
+
+        ResourceDatabase.setRepository(new ResourceDatabase.FlatFileRepository());
+        UserDatabase.setRepository(new UserDatabase.FlatFileRepository());
+        TransactionDatabase.setRepository(new TransactionDatabase.FlatFileRepository());
+        DatabaseLoader.loadAll();
+
+        DataCommit commit = new DataCommit();
+        commit.stageDatabaseWork(JdbcStore::deleteAll);
+        new JdbcResourceRepository().save(ResourceDatabase.getCatalogue(), commit);
+        new JdbcUserRepository().save(UserDatabase.getUsers(), commit);
+        new JdbcTransactionRepository().saveAll(TransactionDatabase.getAllFinancialTransactions(),
+                TransactionDatabase.getAllTransactions(), commit);
+        commit.commit();
+        PersistenceWriter.shutdown();
+        close();
+        System.out.println("Copied the library into " + System.getProperty(URL_PROPERTY));
+    }
+
+    /**
+     * Sets the parameters of a statement to some values, in order
+     *
+     * @param statement the statement to set the parameters of
+     * @param first the index of the first parameter to set
+     * @param values the values, null for a SQL NULL
+     * @return the index of the parameter after the last one set
+     * @throws SQLException if a parameter could not be set
+     */
+    static int setValues(PreparedStatement statement, int first, Object[] values) throws SQLException {
+        int index = first;
+        for (Object value : values) {
+            statement.setObject(index++, value);
+        }
+        return index;
+    }
+
+    /**
+     * Reads some columns of the current row of a result
+     *
+     * @param row the result, on the row to read
+     * @param first the index of the first column to read
+     * @param count the number of columns to read
+     * @return the values of the columns, null for a SQL NULL
+     * @throws SQLException if a column could not be read
+     */
+    static Object[] getValues(ResultSet row, int first, int count) throws SQLException {
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = row.getObject(first + i);
+        }
+        return values;
+    }
+
+    /**
+     * Empties every table
+     */
+    private static Void deleteAll(Connection connection) throws SQLException {
+        try (Statement delete = connection.createStatement()) {
+            for (String table : TABLES) {
+                delete.executeUpdate("DELETE FROM " + table);
+            }
+        }
+        return null;
+    }
+
+    private static Connection getConnection() throws SQLException {
+        if (connection == null) {
+            Connection open = DriverManager.getConnection(System.getProperty(URL_PROPERTY));
+            try {
+                open.setAutoCommit(false);
+                try (Statement statement = open.createStatement()) {
+                    for (String sql : SCHEMA) {
+                        statement.execute(sql);
+                    }
+                }
+                open.commit();
+            } catch (SQLException ex) {
+                open.close();
+                throw ex;
+            }
+            connection = open;
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,345 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import Backend.Transactions.FinancialTransaction;
+import Backend.Transactions.FineTransaction;
+import Backend.Transactions.PaymentTransaction;
+import Backend.Transactions.Transaction;
+
+/**
+ * File Name: JdbcTransactionRepository.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Keeps the transactions in the transactions and financial_transactions tables of the SQL database and looks them
+ * up there, so they are not held in memory. A new or changed transaction is saved as soon as it is made, in its
+ * own SQL transaction, so there is no journal and nothing to compact. A transaction is created from its row when it
+ * is asked for, unless the transaction database still holds the instance created before.
+ *
+ * @version 1.0
+ * @author agent
+ */
+class JdbcTransactionRepository implements TransactionRepository {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String FINE_KIND = "F";
+    private static final String PAYMENT_KIND = "P";
+
+    private static final String TRANSACTION_COLUMNS =
+            "SELECT id, username, resource_id, copy_id, reserved, start_time, return_time FROM transactions";
+    private static final String SELECT_TRANSACTION = TRANSACTION_COLUMNS + " WHERE id = ?";
+    private static final String SELECT_ALL = TRANSACTION_COLUMNS + " ORDER BY id";
+    private static final String SELECT_USER = TRANSACTION_COLUMNS + " WHERE username = ? ORDER BY id";
+    private static final String SELECT_OPEN_USER =
+            TRANSACTION_COLUMNS + " WHERE username = ? AND return_time IS NULL ORDER BY id";
+    private static final String SELECT_COPY =
+            TRANSACTION_COLUMNS + " WHERE resource_id = ? AND copy_id = ? ORDER BY id";
+    private static final String SELECT_COUNTS =
+            "SELECT COUNT(*), MAX(id), (SELECT MAX(list_order) FROM financial_transactions) FROM transactions";
+    private static final String INSERT_TRANSACTION = "INSERT INTO transactions "
+            + "(id, username, resource_id, copy_id, reserved, start_time, return_time) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_TRANSACTION = "UPDATE transactions SET username = ?, resource_id = ?, "
+            + "copy_id = ?, reserved = ?, start_time = ?, return_time = ? WHERE id = ?";
+
+    private static final String FINANCIAL_COLUMNS = "SELECT kind, username, amount, transaction_time, copy_id, "
+            + "resource_id, days_overdue FROM financial_transactions";
+    private static final String SELECT_ALL_FINANCIAL = FINANCIAL_COLUMNS + " ORDER BY list_order";
+    private static final String SELECT_USER_FINANCIAL = FINANCIAL_COLUMNS + " WHERE username = ? ORDER BY list_order";
+    private static final String INSERT_FINANCIAL = "INSERT INTO financial_transactions (list_order, kind, username, "
+            + "amount, transaction_time, copy_id, resource_id, days_overdue) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Number of resource transactions and ID of the last one, kept so they are not counted on every call
+     */
+    private int transactionCount;
+    private int lastTransactionID;
+
+    /**
+     * Position of the next financial transaction, which keeps them in the order they were made
+     */
+    private int nextFinancialOrder;
+
+    /**
+     * Reads how many transactions there are. The transactions themselves are read when they are asked for.
+     */
+    @Override
+    public void load() throws IOException {
+        JdbcStore.inTransaction(connection -> {
+            try (Statement select = connection.createStatement();
+                 ResultSet rows = select.executeQuery(SELECT_COUNTS)) {
+                rows.next();
+                transactionCount = rows.getInt(1);
+                lastTransactionID = rows.getInt(2);
+                // MAX is null when there are no financial transactions
+                nextFinancialOrder = rows.getObject(3) == null ? 0 : rows.getInt(3) + 1;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void add(Transaction transaction) {
+        update(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_TRANSACTION)) {
+                setTransaction(insert, transaction);
+                insert.executeUpdate();
+            }
+            return null;
+        });
+        TransactionDatabase.share(transaction);
+        transactionCount++;
+        lastTransactionID = Math.max(lastTransactionID, transaction.getTRANSACTION_ID());
+    }
+
+    @Override
+    public void update(Transaction transaction) {
+        update(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(UPDATE_TRANSACTION)) {
+                update.setString(1, transaction.getUSERNAME());
+                update.setInt(2, transaction.getRESOURCE_ID());
+                update.setInt(3, transaction.getCOPY_ID());
+                update.setInt(4, transaction.getReserved() ? 1 : 0);
+                update.setLong(5, transaction.startDateEpoch());
+                update.setObject(6, returnTime(transaction));
+                update.setInt(7, transaction.getTRANSACTION_ID());
+                if (update.executeUpdate() == 0) {
+                    throw new SQLException("No transaction " + transaction.getTRANSACTION_ID());
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void addFinancial(FinancialTransaction financialTransaction) {
+        update(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_FINANCIAL)) {
+                setFinancial(insert, nextFinancialOrder, financialTransaction);
+                insert.executeUpdate();
+            }
+            return null;
+        });
+        nextFinancialOrder++;
+    }
+
+    @Override
+    public Transaction find(int transactionID) {
+        Transaction shared = TransactionDatabase.sharedTransaction(transactionID);
+        if (shared != null) {
+            return shared;
+        }
+        ArrayList<Transaction> transactions = query(SELECT_TRANSACTION, transactionID);
+        return transactions.isEmpty() ? null : transactions.get(0);
+    }
+
+    @Override
+    public ArrayList<Transaction> findAll() {
+        return query(SELECT_ALL);
+    }
+
+    @Override
+    public ArrayList<Transaction> findByUser(String username) {
+        return query(SELECT_USER, username);
+    }
+
+    @Override
+    public ArrayList<Transaction> findOpenByUser(String username) {
+        return query(SELECT_OPEN_USER, username);
+    }
+
+    @Override
+    public ArrayList<Transaction> findByCopy(int resourceID, int copyID) {
+        return query(SELECT_COPY, resourceID, copyID);
+    }
+
+    @Override
+    public ArrayList<FinancialTransaction> findAllFinancial() {
+        return queryFinancial(SELECT_ALL_FINANCIAL);
+    }
+
+    @Override
+    public ArrayList<FinancialTransaction> findFinancialByUser(String username) {
+        return queryFinancial(SELECT_USER_FINANCIAL, username);
+    }
+
+    @Override
+    public int getLastTransactionID() {
+        return lastTransactionID;
+    }
+
+    @Override
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Every change is saved as it is made, so there is nothing more to save
+     */
+    @Override
+    public void checkpoint(DataCommit commit) {
+    }
+
+    /**
+     * The connection is shared with the other repositories, so it is left open
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Stages the insertion of some transactions, used when the library is copied into the database
+     *
+     * @param financialTransactions the financial transactions, in the order they were made
+     * @param transactions the resource transactions
+     * @param commit the commit to stage the rows in
+     */
+    void saveAll(List<FinancialTransaction> financialTransactions, List<Transaction> transactions,
+            DataCommit commit) {
+        commit.stageDatabaseWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_FINANCIAL)) {
+                for (int i = 0; i < financialTransactions.size(); i++) {
+                    setFinancial(insert, i, financialTransactions.get(i));
+                    insert.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_TRANSACTION)) {
+                for (int i = 0; i < transactions.size(); i++) {
+                    setTransaction(insert, transactions.get(i));
+                    insert.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Saves a change in its own SQL transaction
+     *
+     * @throws UncheckedIOException if the change could not be saved, in which case nothing was saved
+     */
+    private static void update(JdbcStore.Work<Void> work) {
+        try {
+            JdbcStore.inTransaction(work);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Reads the resource transactions selected by a query, giving out the instance of each still in use
+     */
+    private static ArrayList<Transaction> query(String sql, Object... parameters) {
+        try {
+            return JdbcStore.inTransaction(connection -> {
+                ArrayList<Transaction> transactions = new ArrayList<>();
+                try (PreparedStatement select = connection.prepareStatement(sql)) {
+                    JdbcStore.setValues(select, 1, parameters);
+                    try (ResultSet rows = select.executeQuery()) {
+                        while (rows.next()) {
+                            transactions.add(toTransaction(rows));
+                        }
+                    }
+                }
+                return transactions;
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static ArrayList<FinancialTransaction> queryFinancial(String sql, Object... parameters) {
+        try {
+            return JdbcStore.inTransaction(connection -> {
+                ArrayList<FinancialTransaction> financialTransactions = new ArrayList<>();
+                try (PreparedStatement select = connection.prepareStatement(sql)) {
+                    JdbcStore.setValues(select, 1, parameters);
+                    try (ResultSet rows = select.executeQuery()) {
+                        while (rows.next()) {
+                            financialTransactions.add(toFinancialTransaction(rows));
+                        }
+                    }
+                }
+                return financialTransactions;
+            });
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Transaction toTransaction(ResultSet row) throws SQLException {
+        Transaction shared = TransactionDatabase.sharedTransaction(row.getInt(1));
+        if (shared != null) {
+            return shared;
+        }
+        long returnTime = row.getLong(7);
+        if (row.wasNull()) {
+            returnTime = Transaction.NOT_RETURNED;
+        }
+        return TransactionDatabase.share(new Transaction(row.getInt(1), StringDictionary.intern(row.getString(2)),
+                row.getInt(3), row.getInt(4), row.getInt(5) != 0, row.getLong(6), returnTime));
+    }
+
+    private static FinancialTransaction toFinancialTransaction(ResultSet row) throws SQLException {
+        String username = StringDictionary.intern(row.getString(2));
+        if (row.getString(1).equals(FINE_KIND)) {
+            return new FineTransaction(username, row.getFloat(3), row.getInt(5), row.getInt(6), row.getInt(7),
+                    row.getLong(4));
+        }
+        return new PaymentTransaction(username, row.getFloat(3), row.getLong(4));
+    }
+
+    private static void setTransaction(PreparedStatement insert, Transaction transaction) throws SQLException {
+        insert.setInt(1, transaction.getTRANSACTION_ID());
+        insert.setString(2, transaction.getUSERNAME());
+        insert.setInt(3, transaction.getRESOURCE_ID());
+        insert.setInt(4, transaction.getCOPY_ID());
+        insert.setInt(5, transaction.getReserved() ? 1 : 0);
+        insert.setLong(6, transaction.startDateEpoch());
+        insert.setObject(7, returnTime(transaction));
+    }
+
+    private static void setFinancial(PreparedStatement insert, int order, FinancialTransaction financialTransaction)
+            throws SQLException {
+        insert.setInt(1, order);
+        insert.setString(3, financialTransaction.getUSERNAME());
+        insert.setFloat(4, financialTransaction.getVALUE());
+        insert.setLong(5, financialTransaction.getTRANSACTION_DATE_epoch());
+        if (financialTransaction instanceof FineTransaction) {
+            FineTransaction fine = (FineTransaction) financialTransaction;
+            insert.setString(2, FINE_KIND);
+            insert.setInt(6, fine.getCOPY_ID());
+            insert.setInt(7, fine.getRESOURCE_ID());
+            insert.setInt(8, fine.getDAYS_OVERDUE());
+        } else {
+            insert.setString(2, PAYMENT_KIND);
+            insert.setObject(6, null);
+            insert.setObject(7, null);
+            insert.setObject(8, null);
+        }
+    }
+
+    /**
+     * @return the return time of a transaction in epoch seconds, or null if it has not been returned
+     */
+    private static Long returnTime(Transaction transaction) {
+        long returnTime = transaction.returnDateEpoch();
+        return returnTime == Transaction.NOT_RETURNED ? null : returnTime;
+    }
+}
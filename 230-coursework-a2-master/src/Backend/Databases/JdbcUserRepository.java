@@ -0,0 +1,312 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import Backend.Resources.Copy;
+import Backend.Resources.Resource;
+import Backend.Users.Librarian;
+import Backend.Users.User;
+
+/**
+ * File Name: JdbcUserRepository.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Keeps the users in the users table of the SQL database, with their borrowed, reserved and requested items in
+ * the user_items table. A changed user is updated in place, so saving the changes touches only the rows of the
+ * changed users. The rows are staged in the SQL transaction of the commit.
+ *
+ * @version 1.0
+ * @author agent
+ */
+class JdbcUserRepository implements UserRepository {
+
+    private static final String USER_TYPE = "U";
+    private static final String LIBRARIAN_TYPE = "L";
+
+    private static final String BORROWED_KIND = "B";
+    private static final String RESERVED_KIND = "R";
+    private static final String REQUESTED_KIND = "Q";
+    private static final int BORROWED = 0;
+    private static final int RESERVED = 1;
+    private static final int REQUESTED = 2;
+
+    /**
+     * Number of columns of the users table before list_order
+     */
+    private static final int USER_COLUMNS = 15;
+
+    private static final String DELIMITER = "\t";
+
+    private static final String SELECT_USERS = "SELECT username, user_type, first_name, last_name, mobile_number, "
+            + "email_address, address_line1, address_line2, post_town, postcode, profile_image, creation_day, "
+            + "account_balance, employment_day, staff_number FROM users ORDER BY list_order";
+    private static final String SELECT_ITEMS = "SELECT username, item_kind, resource_id, copy_id FROM user_items "
+            + "ORDER BY username, item_kind, position";
+    private static final String SELECT_USERNAMES = "SELECT username FROM users";
+    private static final String SELECT_LAST_ORDER = "SELECT MAX(list_order) FROM users";
+    private static final String UPDATE_USER = "UPDATE users SET username = ?, user_type = ?, first_name = ?, "
+            + "last_name = ?, mobile_number = ?, email_address = ?, address_line1 = ?, address_line2 = ?, "
+            + "post_town = ?, postcode = ?, profile_image = ?, creation_day = ?, account_balance = ?, "
+            + "employment_day = ?, staff_number = ? WHERE username = ?";
+    private static final String INSERT_USER = "INSERT INTO users (username, user_type, first_name, last_name, "
+            + "mobile_number, email_address, address_line1, address_line2, post_town, postcode, profile_image, "
+            + "creation_day, account_balance, employment_day, staff_number, list_order) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_USER = "DELETE FROM users WHERE username = ?";
+    private static final String DELETE_ITEMS = "DELETE FROM user_items WHERE username = ?";
+    private static final String INSERT_ITEM = "INSERT INTO user_items (username, item_kind, position, resource_id, "
+            + "copy_id) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * The rows of a user as they are written to the database
+     */
+    private static class UserRows {
+
+        private final Object[] user;
+        private final ArrayList<Object[]> items = new ArrayList<>();
+
+        private UserRows(Object[] user) {
+            this.user = user;
+        }
+
+        private String getUsername() {
+            return (String) user[0];
+        }
+    }
+
+    /**
+     * The item lines of a user, built up as their items are read
+     */
+    private static class ItemLines {
+
+        private final int[] counts = new int[REQUESTED + 1];
+        private final StringBuilder[] items = {new StringBuilder(), new StringBuilder(), new StringBuilder()};
+
+        private String line(int kind) {
+            return counts[kind] + items[kind].toString();
+        }
+    }
+
+    /**
+     * Reads every user and the items they are to be linked to
+     */
+    @Override
+    public ArrayList<User> load() throws IOException {
+        return JdbcStore.inTransaction(connection -> {
+            ArrayList<User> users = new ArrayList<>();
+            HashMap<String, User> usersByUsername = new HashMap<>();
+            try (Statement select = connection.createStatement()) {
+                try (ResultSet rows = select.executeQuery(SELECT_USERS)) {
+                    while (rows.next()) {
+                        User user = toUser(JdbcStore.getValues(rows, 1, USER_COLUMNS));
+                        users.add(user);
+                        usersByUsername.put(user.getUsername(), user);
+                    }
+                }
+                readItems(select, usersByUsername);
+            }
+            return users;
+        });
+    }
+
+    /**
+     * Stages the deletion of the rows of the deleted usernames, then the update of the rows of each changed user,
+     * adding rows at the end of the list for a user who has none. Nothing is staged if nothing has changed.
+     */
+    @Override
+    public void saveChanges(List<User> users, Collection<User> changed, Collection<String> deletedUsernames,
+            DataCommit commit) {
+        if (changed.isEmpty() && deletedUsernames.isEmpty()) {
+            return;
+        }
+
+        ArrayList<String> deleted = new ArrayList<>(deletedUsernames);
+        ArrayList<UserRows> changedRows = toRows(changed);
+        commit.stageDatabaseWork(connection -> {
+            for (String username : deleted) {
+                deleteUser(connection, username);
+            }
+            writeUsers(connection, changedRows);
+            return null;
+        });
+    }
+
+    /**
+     * Stages the rows of every user, deleting the rows of any username which no longer belongs to a user
+     */
+    @Override
+    public void save(List<User> users, DataCommit commit) {
+        ArrayList<UserRows> rows = toRows(users);
+        commit.stageDatabaseWork(connection -> {
+            HashSet<String> usernames = new HashSet<>();
+            for (UserRows userRows : rows) {
+                usernames.add(userRows.getUsername());
+            }
+            ArrayList<String> deleted = new ArrayList<>();
+            try (Statement select = connection.createStatement();
+                 ResultSet saved = select.executeQuery(SELECT_USERNAMES)) {
+                while (saved.next()) {
+                    if (!usernames.contains(saved.getString(1))) {
+                        deleted.add(saved.getString(1));
+                    }
+                }
+            }
+            for (String username : deleted) {
+                deleteUser(connection, username);
+            }
+            writeUsers(connection, rows);
+            return null;
+        });
+    }
+
+    /**
+     * The connection is shared with the other repositories, so it is left open
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reads the items of every user, in the format of the item lines of the user file, for the user database to
+     * link once the catalogue has been loaded
+     */
+    private static void readItems(Statement select, HashMap<String, User> usersByUsername) throws SQLException {
+        HashMap<String, ItemLines> itemLines = new HashMap<>();
+        try (ResultSet rows = select.executeQuery(SELECT_ITEMS)) {
+            while (rows.next()) {
+                ItemLines lines = itemLines.computeIfAbsent(rows.getString(1), username -> new ItemLines());
+                int kind = itemIndex(rows.getString(2));
+                lines.counts[kind]++;
+                lines.items[kind].append(DELIMITER).append(rows.getInt(3));
+                int copyID = rows.getInt(4);
+                if (!rows.wasNull()) {
+                    lines.items[kind].append(DELIMITER).append(copyID);
+                }
+            }
+        }
+
+        for (User user : usersByUsername.values()) {
+            ItemLines lines = itemLines.getOrDefault(user.getUsername(), new ItemLines());
+            UserDatabase.setUnlinkedItems(user, lines.line(BORROWED), lines.line(RESERVED), lines.line(REQUESTED));
+        }
+    }
+
+    private static int itemIndex(String kind) {
+        if (kind.equals(BORROWED_KIND)) {
+            return BORROWED;
+        } else if (kind.equals(RESERVED_KIND)) {
+            return RESERVED;
+        } else {
+            return REQUESTED;
+        }
+    }
+
+    private static User toUser(Object[] values) {
+        String username = StringDictionary.intern((String) values[0]);
+        String postTown = StringDictionary.intern((String) values[8]);
+        String profileImage = StringDictionary.intern((String) values[10]);
+        long creationDay = ((Number) values[11]).longValue();
+        float balance = ((Number) values[12]).floatValue();
+        if (values[1].equals(LIBRARIAN_TYPE)) {
+            return new Librarian(username, (String) values[2], (String) values[3], (String) values[4],
+                    (String) values[5], (String) values[6], (String) values[7], postTown, (String) values[9],
+                    profileImage, creationDay, balance, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    ((Number) values[13]).longValue(), ((Number) values[14]).intValue());
+        }
+        return new User(username, (String) values[2], (String) values[3], (String) values[4],
+                (String) values[5], (String) values[6], (String) values[7], postTown, (String) values[9],
+                profileImage, creationDay, balance, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * Gets the rows of some users as they are now
+     */
+    private static ArrayList<UserRows> toRows(Collection<User> users) {
+        ArrayList<UserRows> rows = new ArrayList<>();
+        for (User user : users) {
+            boolean isLibrarian = user instanceof Librarian;
+            UserRows userRows = new UserRows(new Object[] {user.getUsername(),
+                    isLibrarian ? LIBRARIAN_TYPE : USER_TYPE, user.getFirstName(), user.getLastName(),
+                    user.getMobileNumber(), user.getEmailAddress(), user.getAddressLine1(), user.getAddressLine2(),
+                    user.getPostTown(), user.getPostcode(), user.getProfileImageLocation(),
+                    user.getUSER_CREATION_DATE_epochDay(), user.getAccountBalance(),
+                    isLibrarian ? ((Librarian) user).getEMPLOYMENT_DATE_epochDay() : null,
+                    isLibrarian ? ((Librarian) user).getStaffNumber() : null});
+            addCopies(userRows, BORROWED_KIND, user.getBorrowedItems());
+            addCopies(userRows, RESERVED_KIND, user.getReservedItems());
+            ArrayList<Resource> requested = user.getRequestedItems();
+            for (int i = 0; i < requested.size(); i++) {
+                userRows.items.add(new Object[] {REQUESTED_KIND, i, requested.get(i).getID(), null});
+            }
+            rows.add(userRows);
+        }
+        return rows;
+    }
+
+    private static void addCopies(UserRows userRows, String kind, List<Copy> copies) {
+        for (int i = 0; i < copies.size(); i++) {
+            userRows.items.add(new Object[] {kind, i, copies.get(i).getResource().getID(), copies.get(i).getID()});
+        }
+    }
+
+    /**
+     * Updates the rows of each user, adding rows at the end of the list for a user who has none, and replaces
+     * their items
+     */
+    private static void writeUsers(Connection connection, List<UserRows> rows) throws SQLException {
+        int nextOrder = lastOrder(connection) + 1;
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_USER);
+             PreparedStatement insert = connection.prepareStatement(INSERT_USER);
+             PreparedStatement deleteItems = connection.prepareStatement(DELETE_ITEMS);
+             PreparedStatement insertItem = connection.prepareStatement(INSERT_ITEM)) {
+            for (UserRows userRows : rows) {
+                int index = JdbcStore.setValues(update, 1, userRows.user);
+                update.setString(index, userRows.getUsername());
+                if (update.executeUpdate() == 0) {
+                    index = JdbcStore.setValues(insert, 1, userRows.user);
+                    insert.setInt(index, nextOrder++);
+                    insert.executeUpdate();
+                }
+
+                deleteItems.setString(1, userRows.getUsername());
+                deleteItems.executeUpdate();
+                for (Object[] item : userRows.items) {
+                    insertItem.setString(1, userRows.getUsername());
+                    JdbcStore.setValues(insertItem, 2, item);
+                    insertItem.addBatch();
+                }
+                insertItem.executeBatch();
+            }
+        }
+    }
+
+    private static void deleteUser(Connection connection, String username) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_USER)) {
+            delete.setString(1, username);
+            delete.executeUpdate();
+        }
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_ITEMS)) {
+            delete.setString(1, username);
+            delete.executeUpdate();
+        }
+    }
+
+    private static int lastOrder(Connection connection) throws SQLException {
+        try (Statement select = connection.createStatement();
+             ResultSet rows = select.executeQuery(SELECT_LAST_ORDER)) {
+            // MAX is null when there are no users, which getInt reads as 0
+            return rows.next() && rows.getObject(1) != null ? rows.getInt(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package Backend.Databases;
+
+/**
+ * File Name: Journal.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * @version 1.0
+ * @author agent
+ */
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Purpose:
+ * An append-only log of the records created or changed since a database file was last written.
+ * Records are written in the same format as the database file, so replaying the journal on top of the database
+ * file reproduces the state of the database at the time of the last append.
+ * The first line of the journal holds the checksum of the database file it was started against, so a journal
+ * that has already been folded into the database file is never replayed twice.
+ * Every line is ended by a line separator when it is appended, so a line without one was cut short by a crash
+ * while it was being written, and is cut off the journal when it is read.
+ * A mark records how far the journal had got when a database file was snapshotted, so when the file has been
+ * written the journal can be restarted against it keeping only the records appended after the snapshot.
+ * The restarted journal is written to a next file before the database file is committed, and every record appended
+ * while the commit is in progress goes to both journals, so whichever database file is found after a crash there is
+ * a journal started against it. The next file is renamed over the journal once the database file has been committed.
+ */
+class Journal {
+
+    /**
+     * A point in the journal, set by {@link #mark(Mark)}
+     */
+    static class Mark {
+
+        /**
+         * Sequence number of the first record appended after the mark, -1 until it is set
+         */
+        private long sequence = -1;
+
+        /**
+         * Number of failed writes made before the mark, which the database file taken with it covers
+         */
+        private int failureCount;
+    }
+
+    /**
+     * Flag marking the header line of the journal
+     */
+    static final String SNAPSHOT_META_FLAG = "S";
+
+    private static final String DELIMITER = "\t";
+
+    /**
+     * Number of appended records after which the journal is forced to disk
+     */
+    private static final int SYNC_BATCH_SIZE = 16;
+
+    /**
+     * Longest time in milliseconds an appended record may wait before the journal is forced to disk
+     */
+    private static final long SYNC_INTERVAL_MS = 200;
+
+    /**
+     * The file the journal is kept in
+     */
+    private final File file;
+
+    /**
+     * The file the restarted journal is written to until it replaces the journal
+     */
+    private final File nextFile;
+
+    /**
+     * Stream used to append to the journal, null until the first append
+     */
+    private FileOutputStream journalStream;
+
+    /**
+     * Buffered writer over the journal stream
+     */
+    private Writer journalWriter;
+
+    /**
+     * Stream used to append to the next journal, null when it is not open
+     */
+    private FileOutputStream nextStream;
+
+    /**
+     * Buffered writer over the next journal stream
+     */
+    private Writer nextWriter;
+
+    /**
+     * Set while a restarted journal is kept in the next file alongside the journal
+     */
+    private boolean restarting;
+
+    /**
+     * Set once the database file the next journal was started against has been committed, so the next journal
+     * must not be thrown away even if it could not yet replace the journal
+     */
+    private boolean restartCommitted;
+
+    /**
+     * Sequence number of the first record in the next journal
+     */
+    private long nextFirstSequence;
+
+    /**
+     * Number of failed writes covered by the database file the next journal was started against
+     */
+    private int nextFailureCount;
+
+    /**
+     * Number of records in the journal (excluding the header)
+     */
+    private int recordCount;
+
+    /**
+     * Number of records appended since the journal was last forced to disk
+     */
+    private int unsyncedCount;
+
+    /**
+     * Time of the last time the journal was forced to disk
+     */
+    private long lastSyncTime;
+
+    /**
+     * Offset of the end of each line returned by the last read, and of the header before them, so the journal
+     * can be cut back to the lines which could be replayed
+     */
+    private ArrayList<Long> lineEnds = new ArrayList<>();
+
+    /**
+     * The records in the journal, kept so the ones appended after a mark can be carried over when the journal is
+     * restarted
+     */
+    private ArrayList<String> records = new ArrayList<>();
+
+    /**
+     * Sequence number of the first record in the journal. Sequence numbers carry on across restarts.
+     */
+    private long firstSequence;
+
+    /**
+     * Number of writes which have failed, so a restart only clears the failure when its mark was set after them
+     */
+    private int failureCount;
+
+    /**
+     * Set when a write fails or the journal cannot be reset, cleared when the journal is restarted against a
+     * database file written since
+     */
+    private volatile boolean failed;
+
+    /**
+     * Creates a journal kept in the given file
+     * @param file the file the journal is kept in
+     */
+    Journal(File file) {
+        this.file = file;
+        this.nextFile = new File(file.getPath() + ".next");
+    }
+
+    /**
+     * Reads the lines of the journal if it was started against a database file with the given checksum
+     * @param snapshotChecksum checksum of the database file which was loaded
+     * @return the non-empty lines of the journal in the order they were appended, empty if there are none to replay
+     */
+    synchronized ArrayList<String> readRecords(long snapshotChecksum) {
+
+        ArrayList<String> records = new ArrayList<>();
+        lineEnds = new ArrayList<>();
+        if (nextFile.exists()) {
+            recoverNext(snapshotChecksum);
+        }
+        if (!file.exists()) {
+            return records;
+        }
+
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            System.out.println("Cannot open: " + file);
+            contents = new byte[0];
+        }
+
+        int lineStart = 0;
+        boolean isStarted = false;
+        boolean isCurrent = true;
+        for (int i = 0; i < contents.length && isCurrent; i++) {
+            if (contents[i] == '\n') {
+                String line = decodeLine(contents, lineStart, i);
+                if (!isStarted) {
+                    isCurrent = isHeaderFor(line, snapshotChecksum);
+                    isStarted = true;
+                    lineEnds.add((long) i + 1);
+                } else if (!line.isEmpty()) {
+                    records.add(line);
+                    lineEnds.add((long) i + 1);
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        if (isCurrent && isStarted && lineStart < contents.length) {
+            System.out.println("Ignoring a record cut short at the end of " + file);
+            truncate(records.size());
+        }
+        if (!isCurrent) {
+            records.clear();
+        }
+
+        recordCount = records.size();
+        this.records = new ArrayList<>(records);
+        return records;
+    }
+
+    /**
+     * Cuts the journal back to the first records returned by the last read, dropping every line after them, so
+     * the records appended next follow straight on from them
+     * @param keptRecords the number of records to keep
+     */
+    synchronized void truncate(int keptRecords) {
+
+        if (keptRecords >= lineEnds.size()) {
+            return;
+        }
+        try {
+            close();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(lineEnds.get(keptRecords));
+                channel.force(true);
+            }
+            lineEnds = new ArrayList<>(lineEnds.subList(0, keptRecords + 1));
+            records = new ArrayList<>(records.subList(0, keptRecords));
+            recordCount = keptRecords;
+        } catch (IOException ex) {
+            System.out.println("Journal Write Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Appends a record to the journal. The record is handed to the operating system straight away and forced to
+     * disk together with the records appended around it.
+     * @param record the record to append, which may span several lines
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void append(String record) throws IOException {
+
+        write(record);
+        journalWriter.flush();
+
+        if (unsyncedCount >= SYNC_BATCH_SIZE || System.currentTimeMillis() - lastSyncTime >= SYNC_INTERVAL_MS) {
+            sync();
+        }
+    }
+
+    /**
+     * Writes a record to the journal's buffer without handing it to the operating system. The record is only safe
+     * once the journal has been synced.
+     * @param record the record to write, which may span several lines
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void write(String record) throws IOException {
+
+        if (journalWriter == null) {
+            openForAppend();
+        }
+
+        journalWriter.write(record);
+        journalWriter.write(System.lineSeparator());
+        if (restarting) {
+            if (nextWriter == null) {
+                openNextForAppend();
+            }
+            nextWriter.write(record);
+            nextWriter.write(System.lineSeparator());
+        }
+        records.add(record);
+        recordCount++;
+        unsyncedCount++;
+    }
+
+    /**
+     * Forces every appended record to disk
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void sync() throws IOException {
+
+        if (journalWriter != null) {
+            journalWriter.flush();
+            journalStream.getFD().sync();
+        }
+        if (nextWriter != null) {
+            nextWriter.flush();
+            nextStream.getFD().sync();
+        }
+        unsyncedCount = 0;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Empties the journal and starts it again against a newly written database file. The empty journal is written
+     * to the next file and renamed over the journal, so the journal is never left without its header.
+     * @param snapshotChecksum checksum of the database file which was written
+     * @throws IOException if the journal could not be written, in which case the journal is left as it was
+     */
+    synchronized void reset(long snapshotChecksum) throws IOException {
+
+        Mark end = new Mark();
+        mark(end);
+        prepareRestart(snapshotChecksum, end);
+        completeRestart();
+    }
+
+    /**
+     * Marks the point the journal has got to, which falls after every record written so far
+     * @param mark the mark to set
+     */
+    synchronized void mark(Mark mark) {
+
+        mark.sequence = firstSequence + records.size();
+        mark.failureCount = failureCount;
+    }
+
+    /**
+     * Starts the journal again in the next file against a newly written database file, keeping the records
+     * appended after the mark, which are not in the file. Until the restart is completed or abandoned every record
+     * is written to both journals.
+     * @param snapshotChecksum checksum of the database file which was written
+     * @param mark the mark set when the contents of the file were taken
+     * @throws IOException if the next journal could not be written, in which case the journal is left as it was
+     */
+    synchronized void prepareRestart(long snapshotChecksum, Mark mark) throws IOException {
+
+        if (restartCommitted) {
+            completeRestart();
+        }
+        abandonRestart();
+
+        long keptFrom = Math.max(firstSequence, Math.min(firstSequence + records.size(), mark.sequence));
+        try {
+            nextStream = new FileOutputStream(nextFile, false);
+            nextWriter = new BufferedWriter(new OutputStreamWriter(nextStream, StandardCharsets.UTF_8));
+            nextWriter.write(SNAPSHOT_META_FLAG + DELIMITER + snapshotChecksum);
+            nextWriter.write(System.lineSeparator());
+            for (String record : records.subList((int) (keptFrom - firstSequence), records.size())) {
+                nextWriter.write(record);
+                nextWriter.write(System.lineSeparator());
+            }
+            nextWriter.flush();
+            nextStream.getFD().sync();
+        } catch (IOException ex) {
+            abandonRestart();
+            throw ex;
+        }
+        nextFirstSequence = keptFrom;
+        nextFailureCount = mark.failureCount;
+        restarting = true;
+    }
+
+    /**
+     * Replaces the journal with the next journal, once the database file it was started against has been
+     * committed. If the journal cannot be replaced both journals are kept, and replacing it is tried again before
+     * the journal is next restarted.
+     * @throws IOException if the journal could not be replaced
+     */
+    synchronized void completeRestart() throws IOException {
+
+        if (!restarting) {
+            return;
+        }
+        restartCommitted = true;
+
+        close();
+        DataCommit.replace(nextFile, file);
+
+        int kept = (int) (firstSequence + records.size() - nextFirstSequence);
+        records = new ArrayList<>(records.subList(records.size() - kept, records.size()));
+        failed = failureCount > nextFailureCount;
+        firstSequence = nextFirstSequence;
+        recordCount = kept;
+        restarting = false;
+        restartCommitted = false;
+    }
+
+    /**
+     * Throws away the next journal when the database file it was started against was not committed
+     */
+    synchronized void abandonRestart() {
+
+        if (restartCommitted) {
+            return;
+        }
+        restarting = false;
+        closeNext();
+        if (nextFile.exists() && !nextFile.delete()) {
+            System.out.println("Cannot delete " + nextFile);
+        }
+    }
+
+    /**
+     * Gets the file the journal is kept in
+     * @return the journal file
+     */
+    File getFile() {
+
+        return file;
+    }
+
+    /**
+     * Gets the number of records appended since the journal was last reset
+     * @return the number of records in the journal
+     */
+    synchronized int getRecordCount() {
+
+        return recordCount;
+    }
+
+    /**
+     * Forces the journal to disk and releases the file
+     * @throws IOException if the journal could not be written
+     */
+    synchronized void close() throws IOException {
+
+        sync();
+        if (journalWriter != null) {
+            journalWriter.close();
+            journalWriter = null;
+            journalStream = null;
+        }
+        if (nextWriter != null) {
+            nextWriter.close();
+            nextWriter = null;
+            nextStream = null;
+        }
+    }
+
+    /**
+     * Closes the journal and deletes its file, so none of the records in it are ever replayed
+     * @throws IOException if the journal could not be closed or deleted
+     */
+    synchronized void discard() throws IOException {
+
+        close();
+        firstSequence += records.size();
+        records = new ArrayList<>();
+        recordCount = 0;
+        failed = false;
+        restarting = false;
+        restartCommitted = false;
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+        if (nextFile.exists() && !nextFile.delete()) {
+            throw new IOException("Cannot delete " + nextFile);
+        }
+    }
+
+    /**
+     * Records that a write failed or the journal could not be reset, so the records in the journal can no longer be
+     * trusted to be complete
+     */
+    synchronized void markFailed() {
+
+        failureCount++;
+        failed = true;
+    }
+
+    /**
+     * Checks if a write to the journal has failed since it was last reset
+     * @return true if records may be missing from the journal
+     */
+    boolean hasFailed() {
+
+        return failed;
+    }
+
+    private void openForAppend() throws IOException {
+
+        journalStream = new FileOutputStream(file, true);
+        journalWriter = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    private void openNextForAppend() throws IOException {
+
+        nextStream = new FileOutputStream(nextFile, true);
+        nextWriter = new BufferedWriter(new OutputStreamWriter(nextStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Closes the next journal without forcing it to disk
+     */
+    private void closeNext() {
+
+        if (nextWriter != null) {
+            try {
+                nextWriter.close();
+            } catch (IOException ex) {
+                System.out.println("Journal Write Error: " + ex.getMessage());
+            }
+            nextWriter = null;
+            nextStream = null;
+        }
+    }
+
+    /**
+     * Puts the next journal left by a crash in place of the journal if it was started against the database file
+     * which was loaded, meaning the crash came after the file was committed, and otherwise throws it away
+     */
+    private void recoverNext(long snapshotChecksum) {
+
+        String header = null;
+        try (BufferedReader reader = Files.newBufferedReader(nextFile.toPath(), StandardCharsets.UTF_8)) {
+            header = reader.readLine();
+        } catch (IOException e) {
+            System.out.println("Cannot open: " + nextFile);
+        }
+
+        try {
+            if (header != null && isHeaderFor(header, snapshotChecksum)) {
+                System.out.println("Recovering restarted journal: " + nextFile);
+                DataCommit.replace(nextFile, file);
+            } else if (!nextFile.delete()) {
+                System.out.println("Cannot delete " + nextFile);
+            }
+        } catch (IOException ex) {
+            System.out.println("Journal Write Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Decodes a line of the journal, leaving out a carriage return at the end
+     */
+    private static String decodeLine(byte[] contents, int start, int end) {
+
+        int length = end - start;
+        if (length > 0 && contents[end - 1] == '\r') {
+            length--;
+        }
+        return new String(contents, start, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isHeaderFor(String header, long snapshotChecksum) {
+
+        String[] headerLine = header.split(DELIMITER);
+        return headerLine.length == 2 && headerLine[0].equals(SNAPSHOT_META_FLAG)
+                && headerLine[1].equals(Long.toString(snapshotChecksum));
+    }
+}
@@ -0,0 +1,398 @@
+package Backend.Databases;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import Backend.Transactions.Transaction;
+
+/**
+ * File Name: MappedTransactionFile.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * The transaction file indexed by the offset of each resource transaction line, so a transaction can be read from
+ * the file when it is asked for instead of every transaction being created when the file is loaded. Scanning the
+ * file also fills in the columns of its transactions, so most questions about a transaction can be answered
+ * without reading its line again. The file is written in UTF-8.
+ *
+ * The file is kept open and read through a window of it held in memory, which is moved whenever a byte outside of
+ * it is read. The file is only ever replaced as a whole, by renaming a new file over it, and an open channel keeps
+ * reading the file it was opened on after it has been replaced. The file is not memory mapped because a mapped
+ * file cannot be replaced on Windows until the mapping is garbage collected, where an open channel does not stop
+ * it being replaced.
+ *
+ * @version 1.0
+ * @author agent
+ */
+class MappedTransactionFile {
+
+    /**
+     * Receives the lines of the file as it is scanned
+     */
+    interface Visitor {
+
+        /**
+         * Called for each resource transaction line
+         * @param transactionID the ID of the transaction
+         * @param username the username of the transaction, the same instance for every line of the user
+         * @param resourceID the resource ID of the transaction
+         * @param copyID the copy ID of the transaction
+         */
+        void resourceTransaction(int transactionID, String username, int resourceID, int copyID);
+
+        /**
+         * Called for each line which is not a resource transaction
+         * @param line the line
+         */
+        void otherLine(String line);
+    }
+
+    /**
+     * Size of the part of the file held in memory at a time
+     */
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final byte DELIMITER = '\t';
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte RESOURCE_META_FLAG = 'R';
+    private static final byte HEADER_META_FLAG = '#';
+
+    /**
+     * Written in place of a return date for a transaction which has not been returned
+     */
+    private static final String NULL_DATE = "null";
+
+    /**
+     * Closes the channels of files which are no longer used, as a mapping would be released
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * The open file, or null if there is no file
+     */
+    private final FileChannel channel;
+    private final long length;
+    private final long checksum;
+
+    /**
+     * The part of the file read into memory, starting at windowStart. Only read by scan, before the file is shared,
+     * and by copyLine, which is synchronized.
+     */
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE).limit(0);
+    private long windowStart;
+
+    /**
+     * Offset of each resource transaction line, in file order
+     */
+    private long[] recordOffsets = new long[0];
+    private int recordCount;
+
+    /**
+     * The values of each resource transaction line, in file order
+     */
+    private TransactionColumns columns = new TransactionColumns();
+
+    /**
+     * Transaction ID in the high half and record number in the low half, sorted so IDs can be binary searched
+     */
+    private long[] sortedIDs = new long[0];
+
+    private MappedTransactionFile(FileChannel channel, long length, long checksum) {
+        this.channel = channel;
+        this.length = length;
+        this.checksum = checksum;
+        CLEANER.register(this, () -> closeChannel(channel));
+    }
+
+    /**
+     * Opens a transaction file. The file has to be scanned before transactions can be found in it.
+     * @param file the file to open
+     * @return the opened file
+     * @throws IOException if the file could not be opened or read
+     */
+    static MappedTransactionFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            CRC32 crc = new CRC32();
+            ByteBuffer chunk = ByteBuffer.allocate(WINDOW_SIZE);
+            long position = 0;
+            while (position < length) {
+                chunk.clear();
+                int read = channel.read(chunk, position);
+                if (read < 0) {
+                    throw new IOException("File shorter than expected: " + file);
+                }
+                chunk.flip();
+                crc.update(chunk);
+                position += read;
+            }
+            return new MappedTransactionFile(channel, length, crc.getValue());
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads every line of the file once, indexing the resource transaction lines and passing every other line
+     * except the header to the visitor
+     * @param visitor receives the lines of the file, or null if only the index is needed
+     */
+    synchronized void scan(Visitor visitor) {
+        recordOffsets = new long[1024];
+        recordCount = 0;
+        columns = new TransactionColumns();
+        ZoneId zone = ZoneId.systemDefault();
+
+        long offset = 0;
+        if (length > 0 && byteAt(0) == HEADER_META_FLAG) {
+            offset = lineEnd(0) + 1;
+        }
+        while (offset < length) {
+            long end = lineEnd(offset);
+            if (end > offset && byteAt(offset) == RESOURCE_META_FLAG) {
+                // R | Transaction ID | Username | Copy ID | Resource ID | Reserved | Date | Time | Returned Date
+                long idStart = offset + 2;
+                long usernameStart = fieldEnd(idStart, end) + 1;
+                long copyStart = fieldEnd(usernameStart, end) + 1;
+                long resourceStart = fieldEnd(copyStart, end) + 1;
+                long reservedStart = fieldEnd(resourceStart, end) + 1;
+                long dateStart = fieldEnd(reservedStart, end) + 1;
+                long timeStart = fieldEnd(dateStart, end) + 1;
+                long returnStart = fieldEnd(timeStart, end) + 1;
+
+                int transactionID = parseInt(idStart, usernameStart - 1);
+                String username = columns.intern(decode(usernameStart, copyStart - 1));
+                int copyID = parseInt(copyStart, resourceStart - 1);
+                int resourceID = parseInt(resourceStart, reservedStart - 1);
+                boolean isReserved = Boolean.parseBoolean(decode(reservedStart, dateStart - 1));
+                long startEpoch = parseEpoch(dateStart, timeStart, zone);
+                String returnDate = decode(returnStart, fieldEnd(returnStart, end));
+                long returnEpoch = returnDate.equals(NULL_DATE)
+                        ? Transaction.NOT_RETURNED : parseEpoch(returnStart, returnStart + 11, zone);
+
+                addRecord(offset);
+                columns.add(transactionID, username, resourceID, copyID, isReserved, startEpoch, returnEpoch);
+                if (visitor != null) {
+                    visitor.resourceTransaction(transactionID, username, resourceID, copyID);
+                }
+            } else if (end > offset && visitor != null) {
+                visitor.otherLine(decode(offset, end));
+            }
+            offset = end + 1;
+        }
+
+        sortedIDs = new long[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            sortedIDs[i] = ((long) columns.getID(i) << Integer.SIZE) | i;
+        }
+        Arrays.sort(sortedIDs);
+    }
+
+    /**
+     * Finds the line of a transaction. If the ID appears more than once the last line is used.
+     * @param transactionID the ID of the transaction
+     * @return the record number of the line, or -1 if the transaction is not in the file
+     */
+    int findRecord(int transactionID) {
+        int low = 0;
+        int high = sortedIDs.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleID = (int) (sortedIDs[middle] >> Integer.SIZE);
+            if (middleID <= transactionID) {
+                if (middleID == transactionID) {
+                    found = middle;
+                }
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found == -1 ? -1 : (int) sortedIDs[found];
+    }
+
+    /**
+     * Copies a whole line of the file to a writer as it is, without decoding it
+     * @param offset the offset the line starts at
+     * @param out the writer to copy the line to, which is given the line without its line separator
+     * @throws IOException if the line could not be written
+     */
+    synchronized void copyLine(long offset, RecordWriter out) throws IOException {
+        try {
+            long end = lineEnd(offset);
+            if (end > offset && byteAt(end - 1) == CARRIAGE_RETURN) {
+                end--;
+            }
+            while (offset < end) {
+                byteAt(offset);
+                ByteBuffer part = window.duplicate();
+                int start = (int) (offset - windowStart);
+                int limit = (int) Math.min(part.limit(), start + (end - offset));
+                part.limit(limit);
+                part.position(start);
+                out.write(part);
+                offset += limit - start;
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * @return the number of resource transaction lines in the file
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @param record the number of a resource transaction line, in file order
+     * @return the transaction ID on the line
+     */
+    int getRecordID(int record) {
+        return columns.getID(record);
+    }
+
+    /**
+     * @param record the number of a resource transaction line, in file order
+     * @return the offset of the line
+     */
+    long getRecordOffset(int record) {
+        return recordOffsets[record];
+    }
+
+    /**
+     * @return the values of the resource transaction lines, by record number
+     */
+    TransactionColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the checksum of the whole file
+     */
+    long getChecksum() {
+        return checksum;
+    }
+
+    private void addRecord(long offset) {
+        if (recordCount == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, recordCount * 2);
+        }
+        recordOffsets[recordCount] = offset;
+        recordCount++;
+    }
+
+    private byte byteAt(long offset) {
+        if (offset < windowStart || offset >= windowStart + window.limit()) {
+            moveWindow(offset);
+        }
+        return window.get((int) (offset - windowStart));
+    }
+
+    /**
+     * Reads the part of the file starting at an offset into the window
+     * @throws UncheckedIOException if the file could not be read
+     */
+    private void moveWindow(long offset) {
+        window.clear();
+        try {
+            int read = 0;
+            while (read >= 0 && window.hasRemaining() && offset + window.position() < length) {
+                read = channel.read(window, offset + window.position());
+            }
+        } catch (IOException ex) {
+            window.limit(0);
+            throw new UncheckedIOException(ex);
+        }
+        window.flip();
+        windowStart = offset;
+        if (window.limit() == 0) {
+            throw new UncheckedIOException(new IOException("Transaction file ends before offset " + offset));
+        }
+    }
+
+    private static void closeChannel(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            System.out.println("File Read Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Finds the end of the line starting at an offset
+     * @return the offset of the new line character, or the length of the file if it is the last line
+     */
+    private long lineEnd(long offset) {
+        while (offset < length && byteAt(offset) != NEW_LINE) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private long fieldEnd(long offset, long lineEnd) {
+        while (offset < lineEnd && byteAt(offset) != DELIMITER) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private int parseInt(long start, long end) {
+        boolean negative = start < end && byteAt(start) == '-';
+        int value = 0;
+        for (long i = negative ? start + 1 : start; i < end; i++) {
+            byte digit = byteAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new NumberFormatException("Invalid transaction line at offset " + start);
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads a date in the format yyyy/MM/dd followed by a time in the format HH:mm:ss
+     * @param dateStart the offset of the date
+     * @param timeStart the offset of the time
+     * @param zone the time zone the date was written in
+     * @return the date and time in epoch seconds
+     */
+    private long parseEpoch(long dateStart, long timeStart, ZoneId zone) {
+        LocalDateTime dateTime = LocalDateTime.of(
+                parseInt(dateStart, dateStart + 4),
+                parseInt(dateStart + 5, dateStart + 7),
+                parseInt(dateStart + 8, dateStart + 10),
+                parseInt(timeStart, timeStart + 2),
+                parseInt(timeStart + 3, timeStart + 5),
+                parseInt(timeStart + 6, timeStart + 8));
+        return dateTime.atZone(zone).toEpochSecond();
+    }
+
+    /**
+     * Decodes part of a line from UTF-8, leaving out a carriage return at the end
+     */
+    private String decode(long start, long end) {
+        if (end > start && byteAt(end - 1) == CARRIAGE_RETURN) {
+            end--;
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = byteAt(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
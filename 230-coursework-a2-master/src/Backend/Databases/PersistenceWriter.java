@@ -0,0 +1,204 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File Name: PersistenceWriter.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * A background thread which saves changes to the databases so the thread making a change, usually the user
+ * interface, never waits for the disk. Writes are carried out one at a time in the order they were submitted.
+ * Journal records are written as they arrive but only forced to disk once no more have arrived for a short window,
+ * or the group has grown large, so a burst of changes costs a single forced write (group commit).
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class PersistenceWriter {
+
+    /**
+     * Longest time in milliseconds a journal record may wait to be forced to disk
+     */
+    private static final long GROUP_COMMIT_WINDOW_MS = 20;
+
+    /**
+     * Number of writes after which the group is forced to disk without waiting for the window to end
+     */
+    private static final int MAX_GROUP_SIZE = 256;
+
+    /**
+     * Writes waiting to be carried out
+     */
+    private static final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Journals written to since they were last forced to disk, only used by the writer thread
+     */
+    private static final LinkedHashSet<Journal> unsyncedJournals = new LinkedHashSet<>();
+
+    /**
+     * The writer thread, null until the first write is submitted
+     */
+    private static Thread writer;
+
+    /**
+     * Set by the writer thread when it has been asked to stop
+     */
+    private static boolean stopRequested;
+
+    private static long groupStartTime;
+    private static int groupSize;
+
+    /**
+     * Submits a write to be carried out on the writer thread after every write submitted before it
+     *
+     * @param write the write to carry out
+     */
+    static synchronized void submit(Runnable write) {
+        if (writer == null) {
+            stopRequested = false;
+            writer = new Thread(PersistenceWriter::run, "Persistence Writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        queue.add(write);
+    }
+
+    /**
+     * Submits a record to be appended to a journal. The journal is forced to disk with the rest of its group, and
+     * is marked as failed if the record can not be written.
+     *
+     * @param journal the journal to append to
+     * @param record the record to append
+     */
+    static void append(Journal journal, String record) {
+        submit(() -> {
+            try {
+                journal.write(record);
+                if (unsyncedJournals.isEmpty()) {
+                    groupStartTime = System.currentTimeMillis();
+                }
+                unsyncedJournals.add(journal);
+            } catch (IOException ex) {
+                System.out.println("Journal Write Error: " + ex.getMessage());
+                journal.markFailed();
+            }
+        });
+    }
+
+    /**
+     * Marks a journal after every record submitted to it so far and before every record submitted after. The mark
+     * is queued even on the writer thread, as records submitted while a write is carried out are still waiting
+     * behind it.
+     *
+     * @param journal the journal to mark
+     * @param mark the mark to set
+     */
+    static void mark(Journal journal, Journal.Mark mark) {
+        submit(() -> journal.mark(mark));
+    }
+
+    /**
+     * Waits until every write submitted so far has been carried out and forced to disk
+     */
+    public static void flush() {
+        if (Thread.currentThread() == writer) {
+            syncJournals();
+            return;
+        }
+        synchronized (PersistenceWriter.class) {
+            if (writer == null) {
+                return;
+            }
+        }
+
+        CountDownLatch flushed = new CountDownLatch(1);
+        submit(() -> {
+            syncJournals();
+            flushed.countDown();
+        });
+        try {
+            flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Carries out every outstanding write and stops the writer thread. A later write starts a new thread.
+     * MUST be called at the end of the program
+     */
+    public static void shutdown() {
+        flush();
+        Thread stopping;
+        synchronized (PersistenceWriter.class) {
+            stopping = writer;
+            writer = null;
+        }
+        if (stopping == null) {
+            return;
+        }
+
+        queue.add(() -> stopRequested = true);
+        try {
+            stopping.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void run() {
+        while (!stopRequested) {
+            Runnable write = nextWrite();
+            if (write != null) {
+                try {
+                    write.run();
+                } catch (RuntimeException ex) {
+                    System.out.println("Persistence Error: " + ex);
+                }
+                groupSize++;
+            }
+
+            boolean windowEnded = System.currentTimeMillis() - groupStartTime >= GROUP_COMMIT_WINDOW_MS;
+            if (write == null || groupSize >= MAX_GROUP_SIZE || windowEnded) {
+                syncJournals();
+            }
+        }
+        syncJournals();
+    }
+
+    /**
+     * Waits for the next write, but only until the current group's window ends if there is one
+     *
+     * @return the next write, or null if the window ended first
+     */
+    private static Runnable nextWrite() {
+        try {
+            if (unsyncedJournals.isEmpty()) {
+                return queue.take();
+            }
+            long remaining = groupStartTime + GROUP_COMMIT_WINDOW_MS - System.currentTimeMillis();
+            return queue.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return null;
+        }
+    }
+
+    private static void syncJournals() {
+        for (Journal journal : unsyncedJournals) {
+            try {
+                journal.sync();
+            } catch (IOException ex) {
+                System.out.println("Journal Write Error: " + ex.getMessage());
+                journal.markFailed();
+            }
+        }
+        unsyncedJournals.clear();
+        groupSize = 0;
+    }
+}
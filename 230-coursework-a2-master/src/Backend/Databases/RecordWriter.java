@@ -0,0 +1,331 @@
+package Backend.Databases;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * File Name: RecordWriter.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Writes the fields of the records of a data file straight into a reused buffer which is written to the file
+ * through a channel whenever it fills, so a record is never built up as a String first. Numbers are written digit
+ * by digit and text is written a character at a time, so writing a field creates no objects. Text is encoded in
+ * the default charset, as the files have always been written in, unless the file is opened with another charset.
+ *
+ * A record writer can also collect a single record in memory, for the lines appended to the journals.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class RecordWriter implements Closeable {
+
+    /**
+     * Writes one record, or part of one, to a record writer
+     */
+    public interface Serializer {
+
+        /**
+         * @param out the writer to write the fields to
+         * @throws IOException if the fields could not be written
+         */
+        void writeTo(RecordWriter out) throws IOException;
+    }
+
+    /**
+     * The delimiter between the fields of every data file
+     */
+    private static final byte DELIMITER = '\t';
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL_TEXT = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE_TEXT = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE_TEXT = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int LINE_BUFFER_SIZE = 256;
+
+    private final FileChannel channel;
+    private final Charset charset;
+
+    /**
+     * True if the charset writes each ASCII character as the single byte of its code, which lets text be
+     * written without an encoder
+     */
+    private final boolean asciiCompatible;
+    private final CRC32 checksum = new CRC32();
+    private final byte[] digits = new byte[20];
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * Opens a file to write records to, replacing anything already in it
+     *
+     * @param target the file to write to
+     * @throws IOException if the file could not be opened
+     */
+    public RecordWriter(File target) throws IOException {
+        this(target, Charset.defaultCharset());
+    }
+
+    /**
+     * Opens a file to write records to in a given charset, replacing anything already in it
+     *
+     * @param target the file to write to
+     * @param charset the charset to encode text in
+     * @throws IOException if the file could not be opened
+     */
+    public RecordWriter(File target, Charset charset) throws IOException {
+        this.channel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = new byte[BUFFER_SIZE];
+        this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    /**
+     * Creates a writer which collects what is written in memory. It is collected as UTF-8, which can hold any
+     * text, so the line is given back exactly as the text was given even if the default charset cannot hold it.
+     */
+    private RecordWriter() {
+        this.channel = null;
+        this.buffer = new byte[LINE_BUFFER_SIZE];
+        this.charset = StandardCharsets.UTF_8;
+        this.asciiCompatible = true;
+    }
+
+    /**
+     * Writes a record to a String rather than a file
+     *
+     * @param record the record to write
+     * @return what the record writes, in the format it is written to a file
+     */
+    public static String toLine(Serializer record) {
+        RecordWriter line = new RecordWriter();
+        try {
+            record.writeTo(line);
+        } catch (IOException ex) {
+            // Nothing is written to a channel, so only the record itself could have failed
+            throw new UncheckedIOException(ex);
+        }
+        return new String(line.buffer, 0, line.position, line.charset);
+    }
+
+    /**
+     * Writes text, or "null" if it is null
+     *
+     * @param text the text to write
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter write(String text) throws IOException {
+        if (text == null) {
+            return write(NULL_TEXT, 0, NULL_TEXT.length);
+        }
+        return write(text, 0, text.length());
+    }
+
+    /**
+     * Writes part of some text
+     *
+     * @param text the text to write part of
+     * @param start the index of the first character to write
+     * @param end the index after the last character to write
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter write(CharSequence text, int start, int end) throws IOException {
+        int next = start;
+        while (next < end) {
+            if (position == buffer.length) {
+                makeRoom(end - next);
+            }
+            int chunkEnd = Math.min(end, next + buffer.length - position);
+            for (; next < chunkEnd; next++) {
+                char c = text.charAt(next);
+                if (c >= 0x80 || !asciiCompatible) {
+                    byte[] encoded = text.subSequence(next, end).toString().getBytes(charset);
+                    return write(encoded, 0, encoded.length);
+                }
+                buffer[position++] = (byte) c;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes a whole number in decimal
+     *
+     * @param value the number to write
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter write(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            return write(Long.toString(value));
+        }
+        int start = digits.length;
+        long remaining = Math.abs(value);
+        do {
+            digits[--start] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--start] = '-';
+        }
+        return write(digits, start, digits.length - start);
+    }
+
+    /**
+     * Writes a number the way it is converted to a String
+     *
+     * @param value the number to write
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter write(float value) throws IOException {
+        return write(Float.toString(value));
+    }
+
+    /**
+     * Writes "true" or "false"
+     *
+     * @param value the value to write
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter write(boolean value) throws IOException {
+        byte[] text = value ? TRUE_TEXT : FALSE_TEXT;
+        return write(text, 0, text.length);
+    }
+
+    /**
+     * Writes bytes which are already encoded in the charset of the file
+     *
+     * @param bytes the bytes to write, from their position to their limit
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (position == buffer.length) {
+                makeRoom(bytes.remaining());
+            }
+            int length = Math.min(bytes.remaining(), buffer.length - position);
+            bytes.get(buffer, position, length);
+            position += length;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the delimiter between two fields
+     *
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter delimiter() throws IOException {
+        if (position == buffer.length) {
+            makeRoom(1);
+        }
+        buffer[position++] = DELIMITER;
+        return this;
+    }
+
+    /**
+     * Ends the current line with the line separator of the system
+     *
+     * @return this writer
+     * @throws IOException if the buffer could not be written to the file
+     */
+    public RecordWriter newLine() throws IOException {
+        return write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+    }
+
+    /**
+     * Writes a whole record
+     *
+     * @param record the record to write
+     * @return this writer
+     * @throws IOException if the record could not be written
+     */
+    public RecordWriter write(Serializer record) throws IOException {
+        record.writeTo(this);
+        return this;
+    }
+
+    /**
+     * Writes what is left in the buffer to the file
+     *
+     * @throws IOException if the buffer could not be written
+     */
+    public void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        checksum.update(buffer, 0, position);
+        ByteBuffer pending = ByteBuffer.wrap(buffer, 0, position);
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        position = 0;
+    }
+
+    /**
+     * @return the CRC32 checksum of everything written to the file so far
+     */
+    public long getChecksum() {
+        return checksum.getValue();
+    }
+
+    /**
+     * Writes what is left in the buffer and closes the file
+     *
+     * @throws IOException if the buffer could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private RecordWriter write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            return write(ByteBuffer.wrap(bytes, offset, length));
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+        return this;
+    }
+
+    /**
+     * Makes room in the buffer, by writing it to the file or, for a writer collecting a line, by growing it
+     *
+     * @param needed the number of bytes about to be written
+     */
+    private void makeRoom(int needed) throws IOException {
+        if (channel != null) {
+            flush();
+            return;
+        }
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + needed));
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        String sample = "\t\r\n 0123456789/:.-ABCXYZabcxyz~";
+        return Arrays.equals(sample.getBytes(charset), sample.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -1,19 +1,26 @@
 package Backend.Databases;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 import Backend.Resources.*;
-import Backend.Transactions.Transaction;
 
 /**
  * File Name: ResourceDatabase.java
  * Creation Date: 9/12/2018
  * Copyright: No Copyright
  *
+ * The lists of resources and the ID index are never changed once they have been published. A change copies them,
+ * changes the copy and publishes it, so the catalogue can be read from any thread without locking and a list
+ * given out is never changed under its reader. Changes are made one at a time.
+ *
  * @version 1.0
  * @author William Lovett
  */
@@ -22,21 +29,46 @@ public class ResourceDatabase {
     public static final String DELIMITER = "\t";
 
     /**
-     * The next unassigned resource ID
+     * Number of lines of a resource file parsed by one worker while loading
+     */
+    private static final int LINES_PER_CHUNK = 10000;
+
+    /**
+     * Number of resource IDs reserved each time the sequence file is written
+     */
+    private static final int RESOURCE_ID_BLOCK = 100;
+    /**
+     * The resource IDs handed out
+     */
+    private static final IdSequence resourceIDs = new IdSequence("Resources", RESOURCE_ID_BLOCK);
+    /**
+     * A static arraylist of books, replaced rather than changed
+     */
+    private static volatile ArrayList<Book> book;
+    /**
+     * A static arraylist of dvds, replaced rather than changed
      */
-    private static Integer nextResourceID = null;
+    private static volatile ArrayList<DVD> dvd;
     /**
-     * A static arraylist of books
+     * A static arraylist of laptops, replaced rather than changed
      */
-    private static ArrayList<Book> book;
+    private static volatile ArrayList<Laptop> laptop;
     /**
-     * A static arraylist of dvds
+     * Every resource in the catalogue indexed by its ID, replaced rather than changed
      */
-    private static ArrayList<DVD> dvd;
+    private static volatile IntHashMap<Resource> resourcesByID = new IntHashMap<>();
     /**
-     * A static arraylist of laptops
+     * Search index over the searchable fields of every book
      */
-    private static ArrayList<Laptop> laptop;
+    private static volatile SearchIndex<Book> bookIndex = new SearchIndex<>();
+    /**
+     * Search index over the searchable fields of every dvd
+     */
+    private static volatile SearchIndex<DVD> dvdIndex = new SearchIndex<>();
+    /**
+     * Search index over the searchable fields of every laptop
+     */
+    private static volatile SearchIndex<Laptop> laptopIndex = new SearchIndex<>();
     /**
      * The static File name for books
      */
@@ -49,19 +81,160 @@ public class ResourceDatabase {
      * The static File name for laptops
      */
     private static File laptopFile = new File("src/data/Laptops.txt");
+    /**
+     * The static File name for the binary snapshot of the whole catalogue
+     */
+    private static File snapshotFile = new File("src/data/Resources.snapshot");
+    /**
+     * Where the catalogue is read from and saved to, chosen when the catalogue is first loaded
+     */
+    private static ResourceRepository repository;
 
 
     /**
-     * @param resourceId
-     * @return r
+     * Gets the resource with the given ID
+     *
+     * @param resourceId the ID of the resource
+     * @return the resource with that ID, or null if there is none in the catalogue
      */
     public static Resource getResourceByID(int resourceId) {
+        return resourcesByID.get(resourceId);
+    }
+
+    /**
+     * Keeps the catalogue index up to date when a resource's ID is changed
+     *
+     * @param resource the resource whose ID has changed
+     * @param oldID the ID the resource had before
+     */
+    public static synchronized void changeResourceID(Resource resource, int oldID) {
+        if (resourcesByID.get(oldID) == resource) {
+            changeIDs(byID -> {
+                byID.remove(oldID);
+                byID.putIfAbsent(resource.getID(), resource);
+            });
+            reindex(resource);
+        }
+    }
+
+    /**
+     * Publishes a changed copy of the ID index
+     *
+     * @param change the change to make to the copy
+     */
+    private static void changeIDs(Consumer<IntHashMap<Resource>> change) {
+        IntHashMap<Resource> byID = new IntHashMap<>(resourcesByID);
+        change.accept(byID);
+        resourcesByID = byID;
+    }
+
+    /**
+     * Updates the search index after the searchable fields of a resource have been changed. Resources which are
+     * not in the catalogue are ignored.
+     *
+     * @param resource the resource which has been edited
+     */
+    public static synchronized void reindex(Resource resource) {
+        if (resource instanceof Book && bookIndex.contains((Book) resource)) {
+            indexBook((Book) resource);
+        } else if (resource instanceof DVD && dvdIndex.contains((DVD) resource)) {
+            indexDVD((DVD) resource);
+        } else if (resource instanceof Laptop && laptopIndex.contains((Laptop) resource)) {
+            indexLaptop((Laptop) resource);
+        }
+    }
+
+    /**
+     * Empties the catalogue. The lists are replaced rather than cleared, as readers may still hold the old ones.
+     */
+    private static synchronized void clearCatalogue() {
+        book = new ArrayList<>();
+        dvd = new ArrayList<>();
+        laptop = new ArrayList<>();
+        rebuildIndex();
+    }
+
+    /**
+     * Rebuilds the catalogue and search indexes from the lists of books, dvds and laptops
+     */
+    private static synchronized void rebuildIndex() {
+        IntHashMap<Resource> byID = new IntHashMap<>(book.size() + dvd.size() + laptop.size());
+        int highestID = -1;
         for (Resource r : getResources()) {
-            if (r.getID() == resourceId) {
-                return r;
-            }
+            byID.putIfAbsent(r.getID(), r);
+            highestID = Math.max(highestID, r.getID());
+        }
+        resourcesByID = byID;
+        resourceIDs.start(highestID + 1);
+        SearchIndex<Book> books = new SearchIndex<>();
+        for (Book b : book) {
+            books.add(b, bookFields(b));
+        }
+        bookIndex = books;
+        SearchIndex<DVD> dvds = new SearchIndex<>();
+        for (DVD d : dvd) {
+            dvds.add(d, dvdFields(d));
         }
-        return null;
+        dvdIndex = dvds;
+        SearchIndex<Laptop> laptops = new SearchIndex<>();
+        for (Laptop l : laptop) {
+            laptops.add(l, laptopFields(l));
+        }
+        laptopIndex = laptops;
+    }
+
+    /**
+     * Removes a resource from the catalogue and search indexes
+     *
+     * @param resource the resource being removed from the catalogue
+     */
+    private static void unindex(Resource resource) {
+        removeID(resource);
+        if (resource instanceof Book) {
+            bookIndex.remove((Book) resource);
+        } else if (resource instanceof DVD) {
+            dvdIndex.remove((DVD) resource);
+        } else if (resource instanceof Laptop) {
+            laptopIndex.remove((Laptop) resource);
+        }
+    }
+
+    /**
+     * Removes a resource from the map of resources by ID, if it is the resource mapped to its ID
+     *
+     * @param resource the resource being removed from the catalogue
+     */
+    private static void removeID(Resource resource) {
+        if (resourcesByID.get(resource.getID()) == resource) {
+            changeIDs(byID -> byID.remove(resource.getID()));
+        }
+    }
+
+    private static void indexBook(Book b) {
+        bookIndex.add(b, bookFields(b));
+    }
+
+    private static void indexDVD(DVD d) {
+        dvdIndex.add(d, dvdFields(d));
+    }
+
+    private static void indexLaptop(Laptop l) {
+        laptopIndex.add(l, laptopFields(l));
+    }
+
+    private static String[] bookFields(Book b) {
+        return new String[]{Integer.toString(b.getID()), b.getTitle(), Integer.toString(b.getYear()), b.getAuthor(),
+                b.getPublisher(), b.getGenre(), b.getISBN(), b.getLanguage()};
+    }
+
+    private static String[] dvdFields(DVD d) {
+        return new String[]{Integer.toString(d.getID()), d.getTitle(), Integer.toString(d.getYear()),
+                d.getDirector(), d.getLanguage(), Integer.toString(d.getRuntime())};
+    }
+
+    private static String[] laptopFields(Laptop l) {
+        return new String[]{Integer.toString(l.getID()), l.getTitle(), Integer.toString(l.getYear()),
+                l.getManufacturer(), l.getModel(), l.getOS()};
     }
 
     /**
@@ -82,7 +255,7 @@ public class ResourceDatabase {
      * @return desiredBook Book
      */
     public static ArrayList<Book> queryBook(String query) {
-        return queryBook(query, book);
+        return bookIndex.query(query);
     }
 
     /**
@@ -95,7 +268,7 @@ public class ResourceDatabase {
 
         ArrayList<Book> queryResultB = new ArrayList<Book>();
         for (Book bookTrans : books) {
-            if (partialMatch(query, false, true, Integer.toString(bookTrans.getID()), bookTrans.getTitle(),
+            if (SearchIndex.partialMatch(query, Integer.toString(bookTrans.getID()), bookTrans.getTitle(),
                     Integer.toString(bookTrans.getYear()), bookTrans.getAuthor(), bookTrans.getPublisher(),
                     bookTrans.getGenre(), bookTrans.getISBN(), bookTrans.getLanguage())) {
 
@@ -107,47 +280,19 @@ public class ResourceDatabase {
         return queryResultB;
     }
 
-    /** Checks to see if the query matches with any resource even if the query isn't in the right case
-     * @param matchWith
-     * @param caseSensitive
-     * @param ignoreSpaces
-     * @return Returns either true or false
-     */
-    private static boolean partialMatch(String matchWith, boolean caseSensitive, boolean ignoreSpaces, String... candidates) {
-        if (!caseSensitive) {
-            matchWith = matchWith.toLowerCase();
-        }
-        if (ignoreSpaces) {
-            matchWith = matchWith.replaceAll(" ", "");
-        }
-
-        for (String candidate : candidates) {
-            if (!caseSensitive) {
-                candidate = candidate.toLowerCase();
-            }
-            if (ignoreSpaces) {
-                candidate = candidate.replaceAll(" ", "");
-            }
-            if (candidate.contains(matchWith)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Loads books into an ArrayList of Books
      *
-     * @param in
+     * @param in the lines of the file
      * @return book
      */
-    private static ArrayList<Book> readBook(Scanner in) {
-        book = new ArrayList<Book>();
+    static ArrayList<Book> readBook(Iterator<String> in) {
+        ArrayList<Book> books = new ArrayList<Book>();
         String str;
         String[] bookList;
 
         while (in.hasNext()) {
-            str = in.nextLine();
+            str = in.next();
             bookList = str.split(DELIMITER);
             int index = 0;
 
@@ -155,13 +300,13 @@ public class ResourceDatabase {
             int ID = Integer.parseInt(bookList[index++]);
             String title = bookList[index++];
             int year = Integer.parseInt(bookList[index++]);
-            String minLoanDuration = bookList[index++];
+            String minLoanDuration = StringDictionary.intern(bookList[index++]);
             int maxCopyID = Integer.parseInt(bookList[index++]);
-            String author = bookList[index++];
-            String publisher = bookList[index++];
-            String genre = bookList[index++];
+            String author = StringDictionary.intern(bookList[index++]);
+            String publisher = StringDictionary.intern(bookList[index++]);
+            String genre = StringDictionary.intern(bookList[index++]);
             String iSBN = bookList[index++];
-            String language = bookList[index++];
+            String language = StringDictionary.intern(bookList[index++]);
             int copyListSize = Integer.parseInt(bookList[index++]);
             int requestQueueSize = Integer.parseInt(bookList[index++]);
 
@@ -173,13 +318,13 @@ public class ResourceDatabase {
             newBook.setCopyList(copyList);
             newBook.setRequestQueue(requestQueue);
 
-            String[] reviewString = in.nextLine().split(DELIMITER);
+            String[] reviewString = in.next().split(DELIMITER);
             newBook.setReview(readReview(reviewString));
 
-            book.add(newBook);
+            books.add(newBook);
         }
 
-        return book;
+        return books;
 
     }
 
@@ -189,22 +334,11 @@ public class ResourceDatabase {
      *
      * @return ResourceDatabase.readBook(in)
      */
-    public static ArrayList<Book> readBookFile() {
-
-        Scanner in = null;
-
-        try {
-            in = new Scanner(bookFile);
-
-        } catch (FileNotFoundException e) {
-
-            System.out.println("Cannot open: " + bookFile);
-
-            System.exit(0);
-        }
-
-        return ResourceDatabase.readBook(in);
+    public static synchronized ArrayList<Book> readBookFile() {
 
+        book = readBook(readLines(bookFile).iterator());
+        linkCopies(book);
+        return book;
     }
 
     /**
@@ -214,49 +348,57 @@ public class ResourceDatabase {
      */
     public static void writeBookFile(ArrayList<Book> newBook) {
 
-        FileWriter fw;
+        DataCommit commit = new DataCommit();
 
         try {
 
-            fw = new FileWriter(bookFile, false);
+            writeBookFile(newBook, commit.stage(bookFile));
+            commit.commit();
 
-            for (Book tempBook : newBook) {
-
-                String tempBookLine = tempBook.getThumbnail() + DELIMITER + tempBook.getID() + DELIMITER
-                        + tempBook.getTitle() + DELIMITER + tempBook.getYear()
-                        + DELIMITER + tempBook.getMinLoanDuration() + DELIMITER + tempBook.getNextCopyID() + DELIMITER
-                        + tempBook.getAuthor() + DELIMITER + tempBook.getPublisher() + DELIMITER + tempBook.getGenre()
-                        + DELIMITER + tempBook.getISBN() + DELIMITER + tempBook.getLanguage() + DELIMITER
-                        + tempBook.getCopyList().size() + DELIMITER + tempBook.getRequestQueue().size() + DELIMITER;
-
-                for (int i = 0; i < tempBook.getRequestQueue().size(); i++) {
-                    tempBookLine += tempBook.getRequestQueue().get(i);
-                    if (i != tempBook.getRequestQueue().size() - 1) {
-                        tempBookLine += DELIMITER;
-                    }
-                }
+        } catch (IOException ex) {
 
-                // Copies
-                for (int i = 0; i < tempBook.getCopyList().size(); i++) {
-                    tempBookLine += System.lineSeparator();
-                    tempBookLine += tempBook.getCopyList().get(i).toLine();
-                }
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
 
-                tempBookLine += System.lineSeparator();
+    }
 
-                tempBookLine += tempBook.getReview().toLine();
+    /**
+     * Writes an ArrayList of Books in the format of the Book file
+     *
+     * @param newBook the Books to write
+     * @param target the file to write to
+     * @throws IOException if the file could not be written
+     */
+    static void writeBookFile(ArrayList<Book> newBook, File target) throws IOException {
 
-                fw.write(tempBookLine);
-                fw.write(System.lineSeparator());
+        try (RecordWriter out = new RecordWriter(target)) {
+            FormatMigrator.writeHeader(out, FormatMigrator.BOOK_FILE);
+            for (Book tempBook : newBook) {
+                writeBook(tempBook, out);
             }
-
-            fw.close();
-
-        } catch (IOException ex) {
-
-            System.out.println("File Write Error");
         }
+    }
 
+    /**
+     * Writes the record of a Book in the format of the Book file, ending with a line separator
+     *
+     * @param tempBook the Book to write
+     * @param out the writer to write the record to
+     * @throws IOException if the record could not be written
+     */
+    static void writeBook(Book tempBook, RecordWriter out) throws IOException {
+
+        out.write(tempBook.getThumbnail()).delimiter().write(tempBook.getID()).delimiter()
+                .write(tempBook.getTitle()).delimiter().write(tempBook.getYear()).delimiter()
+                .write(tempBook.getMinLoanDuration()).delimiter().write(tempBook.getNextCopyID()).delimiter()
+                .write(tempBook.getAuthor()).delimiter().write(tempBook.getPublisher()).delimiter()
+                .write(tempBook.getGenre()).delimiter().write(tempBook.getISBN()).delimiter()
+                .write(tempBook.getLanguage()).delimiter()
+                .write(tempBook.getCopyList().size()).delimiter()
+                .write(tempBook.getRequestQueue().size()).delimiter();
+
+        writeCirculation(tempBook, out);
     }
 
     /**
@@ -264,12 +406,11 @@ public class ResourceDatabase {
      *
      * @param ripBook
      */
-    public static void removeBook(Book ripBook) {
-        for (int i = 0; i < book.size(); i++) {
-            if (book.get(i).equals(ripBook)) {
-                book.remove(i);
-            }
-        }
+    public static synchronized void removeBook(Book ripBook) {
+        ArrayList<Book> books = new ArrayList<>(book);
+        books.removeIf(r -> r.equals(ripBook));
+        book = books;
+        unindex(ripBook);
 
     }
 
@@ -279,12 +420,14 @@ public class ResourceDatabase {
      * @param oldBook a book to be removed from the database
      * @param newBook a book to take its place
      */
-    public static void updateBook(Book oldBook, Book newBook) {
-        for (int i = 0; i < book.size(); i++) {
-            if (book.get(i).equals(oldBook)) {
-                book.set(i, newBook);
-            }
-        }
+    public static synchronized void updateBook(Book oldBook, Book newBook) {
+        ArrayList<Book> books = new ArrayList<>(book);
+        books.replaceAll(r -> r.equals(oldBook) ? newBook : r);
+        book = books;
+        removeID(oldBook);
+        changeIDs(byID -> byID.putIfAbsent(newBook.getID(), newBook));
+        // The new book takes the old one's place in the index so searches keep their order
+        bookIndex.replace(oldBook, newBook, bookFields(newBook));
     }
 
     /**
@@ -292,8 +435,12 @@ public class ResourceDatabase {
      *
      * @param newBook
      */
-    public static void addBook(Book newBook) {
-        book.add(newBook);
+    public static synchronized void addBook(Book newBook) {
+        ArrayList<Book> books = new ArrayList<>(book);
+        books.add(newBook);
+        book = books;
+        changeIDs(byID -> byID.putIfAbsent(newBook.getID(), newBook));
+        indexBook(newBook);
     }
 
     ///////////////////////////////
@@ -307,7 +454,7 @@ public class ResourceDatabase {
      * @return queryDVD(query, dvd)
      */
     public static ArrayList<DVD> queryDVD(String query) {
-        return queryDVD(query, dvd);
+        return dvdIndex.query(query);
     }
 
     /**
@@ -321,7 +468,7 @@ public class ResourceDatabase {
 
         ArrayList<DVD> queryResultD = new ArrayList<DVD>();
         for (DVD dvdTrans : dvds) {
-            if (partialMatch(query, false, true, Integer.toString(dvdTrans.getID()), dvdTrans.getTitle(),
+            if (SearchIndex.partialMatch(query, Integer.toString(dvdTrans.getID()), dvdTrans.getTitle(),
                     Integer.toString(dvdTrans.getYear()), dvdTrans.getDirector(), dvdTrans.getLanguage(),
                     Integer.toString(dvdTrans.getRuntime()))) {
                 queryResultD.add(dvdTrans);
@@ -334,17 +481,17 @@ public class ResourceDatabase {
     /**
      * Loads dvds into an ArrayList of DVDS
      *
-     * @param in
+     * @param in the lines of the file
      * @return dvd
      */
-    private static ArrayList<DVD> readDVD(Scanner in) {
-        dvd = new ArrayList<DVD>();
+    static ArrayList<DVD> readDVD(Iterator<String> in) {
+        ArrayList<DVD> dvds = new ArrayList<DVD>();
 
         String str;
         String[] dvdList;
 
         while (in.hasNext()) {
-            str = in.nextLine();
+            str = in.next();
             dvdList = str.split(DELIMITER);
             int index = 0;
 
@@ -352,15 +499,15 @@ public class ResourceDatabase {
             int ID = Integer.parseInt(dvdList[index++]);
             String title = dvdList[index++];
             int year = Integer.parseInt(dvdList[index++]);
-            String minLoanDuration = dvdList[index++];
+            String minLoanDuration = StringDictionary.intern(dvdList[index++]);
             int maxCopyID = Integer.parseInt(dvdList[index++]);
-            String director = dvdList[index++];
-            String language = dvdList[index++];
+            String director = StringDictionary.intern(dvdList[index++]);
+            String language = StringDictionary.intern(dvdList[index++]);
 
             int subtitlesLength = Integer.parseInt(dvdList[index++]);
             String[] subtitles = new String[subtitlesLength];
             for (int i = 0; i < subtitlesLength; i++) {
-                subtitles[i] = dvdList[index++];
+                subtitles[i] = StringDictionary.intern(dvdList[index++]);
             }
 
             int runtime = Integer.parseInt(dvdList[index++]);
@@ -374,13 +521,13 @@ public class ResourceDatabase {
             newDVD.setCopyList(copyList);
             newDVD.setRequestQueue(requestQueue);
 
-            String[] reviewString = in.nextLine().split(DELIMITER);
+            String[] reviewString = in.next().split(DELIMITER);
             newDVD.setReview(readReview(reviewString));
 
 
-            dvd.add(newDVD);
+            dvds.add(newDVD);
         }
-        return dvd;
+        return dvds;
 
     }
 
@@ -389,22 +536,11 @@ public class ResourceDatabase {
      *
      * @return ResourceDatabase.readDVD(in)
      */
-    public static ArrayList<DVD> readDVDFile() {
-
-        Scanner in = null;
-
-        try {
-            in = new Scanner(dvdFile);
-
-        } catch (FileNotFoundException e) {
-
-            System.out.println("Cannot open: " + dvdFile);
-
-            System.exit(0);
-        }
-
-        return ResourceDatabase.readDVD(in);
+    public static synchronized ArrayList<DVD> readDVDFile() {
 
+        dvd = readDVD(readLines(dvdFile).iterator());
+        linkCopies(dvd);
+        return dvd;
     }
 
     /**
@@ -414,53 +550,62 @@ public class ResourceDatabase {
      */
     public static void writeDVDFile(ArrayList<DVD> newDVD) {
 
-        FileWriter fw;
+        DataCommit commit = new DataCommit();
 
         try {
 
-            fw = new FileWriter(dvdFile, false);
-
-            for (DVD tempDVD : newDVD) {
-
-                String tempDVDLine = tempDVD.getThumbnail() + DELIMITER + tempDVD.getID() + DELIMITER + tempDVD.getTitle() + DELIMITER + tempDVD.getYear() + DELIMITER
-                        + tempDVD.getMinLoanDuration() + DELIMITER + tempDVD.getNextCopyID() + DELIMITER
-                        + tempDVD.getDirector() + DELIMITER + tempDVD.getLanguage() + DELIMITER;
+            writeDVDFile(newDVD, commit.stage(dvdFile));
+            commit.commit();
 
-                tempDVDLine += tempDVD.getSubtitles().length;
-
-                for (String language : tempDVD.getSubtitles()) {
-                    tempDVDLine += DELIMITER + language;
-                }
-
-                tempDVDLine += DELIMITER + tempDVD.getRuntime() + DELIMITER + tempDVD.getCopyList().size() + DELIMITER + tempDVD.getRequestQueue().size() + DELIMITER;
-
-                for (int i = 0; i < tempDVD.getRequestQueue().size(); i++) {
-                    tempDVDLine += tempDVD.getRequestQueue().get(i);
-                    if (i != tempDVD.getCopyList().size() - 1) {
-                        tempDVDLine += DELIMITER;
-                    }
-                }
+        } catch (IOException ex) {
 
-                for (int i = 0; i < tempDVD.getCopyList().size(); i++) {
-                    tempDVDLine += System.lineSeparator();
-                    tempDVDLine += tempDVD.getCopyList().get(i).toLine();
-                }
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
 
-                tempDVDLine += System.lineSeparator();
+    }
 
-                tempDVDLine += tempDVD.getReview().toLine();
+    /**
+     * Writes an ArrayList of DVDs in the format of the DVD file
+     *
+     * @param newDVD the DVDs to write
+     * @param target the file to write to
+     * @throws IOException if the file could not be written
+     */
+    static void writeDVDFile(ArrayList<DVD> newDVD, File target) throws IOException {
 
-                fw.write(tempDVDLine);
-                fw.write(System.lineSeparator());
+        try (RecordWriter out = new RecordWriter(target)) {
+            FormatMigrator.writeHeader(out, FormatMigrator.DVD_FILE);
+            for (DVD tempDVD : newDVD) {
+                writeDVD(tempDVD, out);
             }
+        }
+    }
 
-            fw.close();
+    /**
+     * Writes the record of a DVD in the format of the DVD file, ending with a line separator
+     *
+     * @param tempDVD the DVD to write
+     * @param out the writer to write the record to
+     * @throws IOException if the record could not be written
+     */
+    static void writeDVD(DVD tempDVD, RecordWriter out) throws IOException {
 
-        } catch (IOException ex) {
+        out.write(tempDVD.getThumbnail()).delimiter().write(tempDVD.getID()).delimiter()
+                .write(tempDVD.getTitle()).delimiter().write(tempDVD.getYear()).delimiter()
+                .write(tempDVD.getMinLoanDuration()).delimiter().write(tempDVD.getNextCopyID()).delimiter()
+                .write(tempDVD.getDirector()).delimiter().write(tempDVD.getLanguage()).delimiter();
 
-            System.out.println("File Write Error");
+        out.write(tempDVD.getSubtitles().length);
+        for (String language : tempDVD.getSubtitles()) {
+            out.delimiter().write(language);
         }
 
+        out.delimiter().write(tempDVD.getRuntime()).delimiter()
+                .write(tempDVD.getCopyList().size()).delimiter()
+                .write(tempDVD.getRequestQueue().size()).delimiter();
+
+        writeCirculation(tempDVD, out);
     }
 
     /**
@@ -468,12 +613,11 @@ public class ResourceDatabase {
      *
      * @param ripDVD
      */
-    public static void removeDVD(DVD ripDVD) {
-        for (int i = 0; i < dvd.size(); i++) {
-            if (dvd.get(i).equals(ripDVD)) {
-                dvd.remove(i);
-            }
-        }
+    public static synchronized void removeDVD(DVD ripDVD) {
+        ArrayList<DVD> dvds = new ArrayList<>(dvd);
+        dvds.removeIf(r -> r.equals(ripDVD));
+        dvd = dvds;
+        unindex(ripDVD);
 
     }
 
@@ -483,12 +627,14 @@ public class ResourceDatabase {
      * @param oldDVD the dvd to remove from the database
      * @param newDVD the dvd to add to the database
      */
-    public static void updateDVD(DVD oldDVD, DVD newDVD) {
-        for (int i = 0; i < dvd.size(); i++) {
-            if (dvd.get(i).equals(oldDVD)) {
-                dvd.set(i, newDVD);
-            }
-        }
+    public static synchronized void updateDVD(DVD oldDVD, DVD newDVD) {
+        ArrayList<DVD> dvds = new ArrayList<>(dvd);
+        dvds.replaceAll(r -> r.equals(oldDVD) ? newDVD : r);
+        dvd = dvds;
+        removeID(oldDVD);
+        changeIDs(byID -> byID.putIfAbsent(newDVD.getID(), newDVD));
+        // The new DVD takes the old one's place in the index so searches keep their order
+        dvdIndex.replace(oldDVD, newDVD, dvdFields(newDVD));
     }
 
     /**
@@ -496,8 +642,12 @@ public class ResourceDatabase {
      *
      * @param newDvd
      */
-    public static void addDvd(DVD newDvd) {
-        dvd.add(newDvd);
+    public static synchronized void addDvd(DVD newDvd) {
+        ArrayList<DVD> dvds = new ArrayList<>(dvd);
+        dvds.add(newDvd);
+        dvd = dvds;
+        changeIDs(byID -> byID.putIfAbsent(newDvd.getID(), newDvd));
+        indexDVD(newDvd);
     }
 
 ///////////////////////////////
@@ -511,7 +661,7 @@ public class ResourceDatabase {
      * @return queryLaptop(query, laptop)
      */
     public static ArrayList<Laptop> queryLaptop(String query) {
-        return queryLaptop(query, laptop);
+        return laptopIndex.query(query);
     }
 
     /**
@@ -524,7 +674,7 @@ public class ResourceDatabase {
 
         ArrayList<Laptop> queryResultL = new ArrayList<Laptop>();
         for (Laptop laptopTrans : laptops) {
-            if (partialMatch(query, false, true, Integer.toString(laptopTrans.getID()), laptopTrans.getTitle(),
+            if (SearchIndex.partialMatch(query, Integer.toString(laptopTrans.getID()), laptopTrans.getTitle(),
                     Integer.toString(laptopTrans.getYear()), laptopTrans.getManufacturer(), laptopTrans.getModel(),
                     laptopTrans.getOS())) {
                 queryResultL.add(laptopTrans);
@@ -544,17 +694,17 @@ public class ResourceDatabase {
     /**
      * Loads laptops into an ArrayList of Laptop
      *
-     * @param in
+     * @param in the lines of the file
      * @return Laptop
      */
-    private static ArrayList<Laptop> readLaptop(Scanner in) {
-        laptop = new ArrayList<Laptop>();
+    static ArrayList<Laptop> readLaptop(Iterator<String> in) {
+        ArrayList<Laptop> laptops = new ArrayList<Laptop>();
 
         String str;
         String[] laptopList;
 
         while (in.hasNext()) {
-            str = in.nextLine();
+            str = in.next();
             laptopList = str.split(DELIMITER);
             int index = 0;
 
@@ -562,11 +712,11 @@ public class ResourceDatabase {
             int ID = Integer.parseInt(laptopList[index++]);
             String title = laptopList[index++];
             int year = Integer.parseInt(laptopList[index++]);
-            String minLoanDuration = laptopList[index++];
+            String minLoanDuration = StringDictionary.intern(laptopList[index++]);
             int maxCopyID = Integer.parseInt(laptopList[index++]);
-            String manufacturer = laptopList[index++];
-            String model = laptopList[index++];
-            String oS = laptopList[index++];
+            String manufacturer = StringDictionary.intern(laptopList[index++]);
+            String model = StringDictionary.intern(laptopList[index++]);
+            String oS = StringDictionary.intern(laptopList[index++]);
             int copyListSize = Integer.parseInt(laptopList[index++]);
             int requestQueueSize = Integer.parseInt(laptopList[index++]);
             ArrayList<String> requestQueue = readRequestQueue(requestQueueSize, index, laptopList);
@@ -578,12 +728,12 @@ public class ResourceDatabase {
             newLaptop.setCopyList(copyList);
             newLaptop.setRequestQueue(requestQueue);
 
-            String[] reviewString = in.nextLine().split(DELIMITER);
+            String[] reviewString = in.next().split(DELIMITER);
             newLaptop.setReview(readReview(reviewString));
 
-            laptop.add(newLaptop);
+            laptops.add(newLaptop);
         }
-        return laptop;
+        return laptops;
 
     }
 
@@ -592,22 +742,11 @@ public class ResourceDatabase {
      *
      * @return ResourceDatabase.readLaptop(in);
      */
-    public static ArrayList<Laptop> readLaptopFile() {
-
-        Scanner in = null;
-
-        try {
-            in = new Scanner(laptopFile);
-
-        } catch (FileNotFoundException e) {
-
-            System.out.println("Cannot open: " + laptopFile);
-
-            System.exit(0);
-        }
-
-        return ResourceDatabase.readLaptop(in);
+    public static synchronized ArrayList<Laptop> readLaptopFile() {
 
+        laptop = readLaptop(readLines(laptopFile).iterator());
+        linkCopies(laptop);
+        return laptop;
     }
 
     /**
@@ -617,47 +756,84 @@ public class ResourceDatabase {
      */
     public static void writeLaptopFile(ArrayList<Laptop> newLaptop) {
 
-        FileWriter fw;
+        DataCommit commit = new DataCommit();
 
         try {
 
-            fw = new FileWriter(laptopFile, false);
+            writeLaptopFile(newLaptop, commit.stage(laptopFile));
+            commit.commit();
 
-            for (Laptop tempLaptop : newLaptop) {
+        } catch (IOException ex) {
 
-                String tempLaptopLine = tempLaptop.getThumbnail() + DELIMITER + tempLaptop.getID() + DELIMITER + tempLaptop.getTitle() + DELIMITER + tempLaptop.getYear()
-                        + DELIMITER + tempLaptop.getMinLoanDuration() + DELIMITER + tempLaptop.getNextCopyID()
-                        + DELIMITER + tempLaptop.getManufacturer() + DELIMITER + tempLaptop.getModel()
-                        + DELIMITER + tempLaptop.getOS() + DELIMITER + tempLaptop.getCopyList().size() + DELIMITER
-                        + tempLaptop.getRequestQueue().size() + DELIMITER;
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
 
-                for (int i = 0; i < tempLaptop.getRequestQueue().size(); i++) {
-                    tempLaptopLine += tempLaptop.getRequestQueue().get(i);
-                    if (i != tempLaptop.getCopyList().size() - 1) {
-                        tempLaptopLine += DELIMITER;
-                    }
-                }
+    }
 
-                for (int i = 0; i < tempLaptop.getCopyList().size(); i++) {
-                    tempLaptopLine += System.lineSeparator();
-                    tempLaptopLine += tempLaptop.getCopyList().get(i).toLine();
-                }
+    /**
+     * Writes an ArrayList of Laptops in the format of the Laptop file
+     *
+     * @param newLaptop the Laptops to write
+     * @param target the file to write to
+     * @throws IOException if the file could not be written
+     */
+    static void writeLaptopFile(ArrayList<Laptop> newLaptop, File target) throws IOException {
 
-                tempLaptopLine += System.lineSeparator();
+        try (RecordWriter out = new RecordWriter(target)) {
+            FormatMigrator.writeHeader(out, FormatMigrator.LAPTOP_FILE);
+            for (Laptop tempLaptop : newLaptop) {
+                writeLaptop(tempLaptop, out);
+            }
+        }
+    }
+
+    /**
+     * Writes the record of a Laptop in the format of the Laptop file, ending with a line separator
+     *
+     * @param tempLaptop the Laptop to write
+     * @param out the writer to write the record to
+     * @throws IOException if the record could not be written
+     */
+    static void writeLaptop(Laptop tempLaptop, RecordWriter out) throws IOException {
 
-                tempLaptopLine += tempLaptop.getReview().toLine();
+        out.write(tempLaptop.getThumbnail()).delimiter().write(tempLaptop.getID()).delimiter()
+                .write(tempLaptop.getTitle()).delimiter().write(tempLaptop.getYear()).delimiter()
+                .write(tempLaptop.getMinLoanDuration()).delimiter().write(tempLaptop.getNextCopyID())
+                .delimiter().write(tempLaptop.getManufacturer()).delimiter().write(tempLaptop.getModel())
+                .delimiter().write(tempLaptop.getOS()).delimiter()
+                .write(tempLaptop.getCopyList().size()).delimiter()
+                .write(tempLaptop.getRequestQueue().size()).delimiter();
 
-                fw.write(tempLaptopLine);
-                fw.write(System.lineSeparator());
-            }
+        writeCirculation(tempLaptop, out);
+    }
 
-            fw.close();
+    /**
+     * Writes the end of the record of a resource, which is the same in every resource file: the usernames in the
+     * request queue, a line for each copy, and a line of reviews
+     *
+     * @param resource the resource to write
+     * @param out the writer of the resource file
+     * @throws IOException if the file could not be written
+     */
+    private static void writeCirculation(Resource resource, RecordWriter out) throws IOException {
 
-        } catch (IOException ex) {
+        ArrayList<String> requestQueue = resource.getRequestQueue();
+        for (int i = 0; i < requestQueue.size(); i++) {
+            if (i != 0) {
+                out.delimiter();
+            }
+            out.write(requestQueue.get(i));
+        }
 
-            System.out.println("File Write Error");
+        for (Copy copy : resource.getCopyList()) {
+            out.newLine();
+            copy.writeTo(out);
         }
 
+        out.newLine();
+        resource.getReview().writeTo(out);
+        out.newLine();
     }
 
     /**
@@ -665,12 +841,11 @@ public class ResourceDatabase {
      *
      * @param ripLaptop
      */
-    public static void removeLaptop(Laptop ripLaptop) {
-        for (int i = 0; i < laptop.size(); i++) {
-            if (laptop.get(i).equals(ripLaptop)) {
-                laptop.remove(i);
-            }
-        }
+    public static synchronized void removeLaptop(Laptop ripLaptop) {
+        ArrayList<Laptop> laptops = new ArrayList<>(laptop);
+        laptops.removeIf(r -> r.equals(ripLaptop));
+        laptop = laptops;
+        unindex(ripLaptop);
 
     }
 
@@ -679,12 +854,12 @@ public class ResourceDatabase {
      *
      * @param newLaptop
      */
-    public static void updateLaptop(Laptop newLaptop) {
-        for (int i = 0; i < laptop.size(); i++) {
-            if (laptop.get(i).equals(newLaptop)) {
-                laptop.set(i, newLaptop);
-            }
-        }
+    public static synchronized void updateLaptop(Laptop newLaptop) {
+        ArrayList<Laptop> laptops = new ArrayList<>(laptop);
+        laptops.replaceAll(r -> r.equals(newLaptop) ? newLaptop : r);
+        laptop = laptops;
+        changeIDs(byID -> byID.putIfAbsent(newLaptop.getID(), newLaptop));
+        indexLaptop(newLaptop);
     }
 
     /**
@@ -692,43 +867,44 @@ public class ResourceDatabase {
      *
      * @param newLaptop
      */
-    public static void addLaptop(Laptop newLaptop) {
-        laptop.add(newLaptop);
+    public static synchronized void addLaptop(Laptop newLaptop) {
+        ArrayList<Laptop> laptops = new ArrayList<>(laptop);
+        laptops.add(newLaptop);
+        laptop = laptops;
+        changeIDs(byID -> byID.putIfAbsent(newLaptop.getID(), newLaptop));
+        indexLaptop(newLaptop);
     }
 
     /**
      * Reads the Book.txt, DVD.txt, Laptop.txt file and fetches the copies
      *
      * @param copyListSize
-     * @param in
+     * @param in the lines of the file
      * @param resource
      * @return copyList
      */
-    private static ArrayList<Copy> readCopyLines(int copyListSize, Scanner in, Resource resource) {
+    private static ArrayList<Copy> readCopyLines(int copyListSize, Iterator<String> in, Resource resource) {
         ArrayList<Copy> copyList = new ArrayList<>();
         for (int i = 0; i < copyListSize; i++) {
-            String str = in.nextLine();
+            String str = in.next();
             String[] copyStringArray = str.split(DELIMITER);
             //ID available duedate currentTransactionId LenHistory History...
             int index = 0;
 
             int copyID = Integer.parseInt(copyStringArray[index++]);
             boolean isAvailable = Boolean.valueOf(copyStringArray[index++]);
-            String dueDate = copyStringArray[index++];
+            long dueDate = DateFormats.parseDay(copyStringArray[index++]);
             String currentTransactionId = copyStringArray[index++];
-            Transaction currentTransaction;
+            int currentTransaction;
             if (currentTransactionId.equals("null")) {
-                currentTransaction = null;
+                currentTransaction = Copy.NO_TRANSACTION;
             } else {
-                currentTransaction = TransactionDatabase.getSpecificTransaction(Integer.parseInt(currentTransactionId));
-            }
-            if (dueDate.equals("null")) {
-                dueDate = null;
+                currentTransaction = Integer.parseInt(currentTransactionId);
             }
             int historyLength = Integer.parseInt(copyStringArray[index++]);
-            List<Transaction> history = new ArrayList<>();
-            for (int j = index; j < index + historyLength; j++) {
-                history.add(TransactionDatabase.getSpecificTransaction(Integer.parseInt(copyStringArray[j])));
+            int[] history = new int[historyLength];
+            for (int j = 0; j < historyLength; j++) {
+                history[j] = Integer.parseInt(copyStringArray[index + j]);
             }
             copyList.add(new Copy(resource, isAvailable, currentTransaction, history, dueDate, copyID));
         }
@@ -743,9 +919,8 @@ public class ResourceDatabase {
      */
     private static ArrayList<String> readRequestQueue(int requestQueueSize, int index, String[] usernameList) {
         ArrayList<String> requestQueue = new ArrayList<>();
-        System.out.println(Arrays.toString(usernameList) + "(" + index + ")" + requestQueueSize);
         for (int i = index; i < index + requestQueueSize; i++) {
-            requestQueue.add(usernameList[i]);
+            requestQueue.add(StringDictionary.intern(usernameList[i]));
         }
         return requestQueue;
     }
@@ -764,7 +939,7 @@ public class ResourceDatabase {
         for (int i = 0; i < length; i++) {
             int rating = Integer.parseInt(reviewList[index++]);
             String reviewText = reviewList[index++];
-            String poster = reviewList[index++];
+            String poster = StringDictionary.intern(reviewList[index++]);
             elements.add(new Element(rating, reviewText, poster));
         }
         return new Review(elements);
@@ -777,38 +952,293 @@ public class ResourceDatabase {
      * @return a unique integer.
      */
     public static int getNextResourceID() {
-        if (nextResourceID == null) {
-            nextResourceID = 0;
-            for (Resource r : getResources()) {
-                if (r.getID() >= nextResourceID) {
-                    nextResourceID = r.getID() + 1;
-                }
-            }
-        }
-        return nextResourceID++;
+        return resourceIDs.next();
     }
 
 
+    /**
+     * Gets the file the binary snapshot of the catalogue is kept in
+     *
+     * @return the snapshot file
+     */
+    public static File getSnapshotFile() {
+        return snapshotFile;
+    }
+
     /**
      * Loads the Datbase when the program is started
      */
     public static void init() {
+        load();
+        link();
+    }
+
+    /**
+     * Reads the catalogue without looking up the transactions of its copies, so it can be read at the same time
+     * as the transaction database. Each resource file is read on its own worker and large files are split between
+     * several workers at record boundaries. link must be called before the catalogue is used.
+     */
+    public static void load() {
         double ms = System.currentTimeMillis();
-        readBookFile();
-        readDVDFile();
-        readLaptopFile();
+        DataCommit.recover();
+        CopyHistoryStore.load();
+        ResourceRepository.Catalogue catalogue = null;
+        try {
+            catalogue = getRepository().load();
+        } catch (IOException e) {
+
+            System.out.println("Cannot open: " + e.getMessage());
+
+            System.exit(0);
+        }
+        book = catalogue.books;
+        dvd = catalogue.dvds;
+        laptop = catalogue.laptops;
+        // Any history moved out of the files must be on disk before the files are rewritten without it
+        CopyHistoryStore.sync();
+        rebuildIndex();
         System.out.println(
                 String.format("Resource Database Loaded. %d Books, %d DVDs, %d Laptops on file. In %.2f ms",
                         book.size(), dvd.size(), laptop.size(), System.currentTimeMillis() - ms));
     }
 
+    /**
+     * Links every copy to its current transaction. The transaction database must be loaded first. The history of
+     * a copy is only looked up when it is first asked for, so copies nobody views never need it.
+     */
+    public static void link() {
+        linkCopies(book);
+        linkCopies(dvd);
+        linkCopies(laptop);
+    }
+
+    private static void linkCopies(List<? extends Resource> resources) {
+        for (Resource r : resources) {
+            for (Copy c : r.getCopyList()) {
+                c.linkTransactions();
+            }
+        }
+    }
+
+    /**
+     * Upgrades any of the resource files written in an older version of their format
+     */
+    static void upgradeFiles() {
+        FormatMigrator.upgrade(bookFile, FormatMigrator.BOOK_FILE, null);
+        FormatMigrator.upgrade(dvdFile, FormatMigrator.DVD_FILE, null);
+        FormatMigrator.upgrade(laptopFile, FormatMigrator.LAPTOP_FILE, null);
+    }
+
+    /**
+     * Reads every line of a resource file, leaving out the header and blank lines at the end of the file
+     *
+     * @param file the file to read
+     * @return the lines of the file
+     */
+    private static List<String> readLines(File file) {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line = in.readLine();
+            while (line != null) {
+                lines.add(line);
+                line = in.readLine();
+            }
+        } catch (IOException e) {
+
+            System.out.println("Cannot open: " + file);
+
+            System.exit(0);
+        }
+
+        int start = !lines.isEmpty() && FormatMigrator.isHeader(lines.get(0)) ? 1 : 0;
+        int end = lines.size();
+        while (end > start && lines.get(end - 1).trim().isEmpty()) {
+            end--;
+        }
+        return lines.subList(start, end);
+    }
+
+    /**
+     * Splits the lines of a resource file into chunks of whole records and reads the chunks in parallel
+     *
+     * @param lines the lines of the file
+     * @param recordLength gives the number of lines in a record from its first line
+     * @param reader reads the records of one chunk
+     * @return the resources of every chunk, in the order they appear in the file
+     */
+    static <T extends Resource> ArrayList<T> readInChunks(List<String> lines,
+            ToIntFunction<String> recordLength, Function<Iterator<String>, ArrayList<T>> reader) {
+        ArrayList<CompletableFuture<ArrayList<T>>> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        int line = 0;
+        while (line < lines.size()) {
+            line = Math.min(lines.size(), line + recordLength.applyAsInt(lines.get(line)));
+            if (line - chunkStart >= LINES_PER_CHUNK || line == lines.size()) {
+                List<String> chunk = lines.subList(chunkStart, line);
+                chunks.add(CompletableFuture.supplyAsync(() -> reader.apply(chunk.iterator())));
+                chunkStart = line;
+            }
+        }
+
+        ArrayList<T> resources = new ArrayList<>();
+        for (CompletableFuture<ArrayList<T>> chunk : chunks) {
+            resources.addAll(chunk.join());
+        }
+        return resources;
+    }
+
+    // A record is the resource line, one line for each copy and the review line
+
+    static int bookRecordLength(String resourceLine) {
+        return 2 + Integer.parseInt(field(resourceLine, 11));
+    }
+
+    static int dvdRecordLength(String resourceLine) {
+        int subtitlesLength = Integer.parseInt(field(resourceLine, 8));
+        return 2 + Integer.parseInt(field(resourceLine, 10 + subtitlesLength));
+    }
+
+    static int laptopRecordLength(String resourceLine) {
+        return 2 + Integer.parseInt(field(resourceLine, 9));
+    }
+
+    /**
+     * Gets one field of a line without splitting the rest of it
+     */
+    private static String field(String line, int fieldIndex) {
+        int start = 0;
+        for (int i = 0; i < fieldIndex; i++) {
+            start = line.indexOf(DELIMITER, start) + 1;
+        }
+        int end = line.indexOf(DELIMITER, start);
+        return end == -1 ? line.substring(start) : line.substring(start, end);
+    }
+
+    /**
+     * Loads the catalogue from the binary snapshot if there is one at least as new as all of the text files
+     *
+     * @return the catalogue, or null if the text files need to be read
+     */
+    private static ResourceRepository.Catalogue readSnapshotFile() {
+        long snapshotModified = snapshotFile.lastModified();
+        if (!snapshotFile.exists() || snapshotModified < bookFile.lastModified()
+                || snapshotModified < dvdFile.lastModified() || snapshotModified < laptopFile.lastModified()) {
+            return null;
+        }
+
+        try {
+            ResourceSnapshot snapshot = ResourceSnapshot.read(snapshotFile);
+            return new ResourceRepository.Catalogue(snapshot.getBooks(), snapshot.getDVDs(), snapshot.getLaptops());
+        } catch (IOException ex) {
+            System.out.println("Cannot read snapshot, loading text files: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the repository the catalogue is kept in. The SQL database is used if one has been configured, otherwise
+     * the text files.
+     *
+     * @return the repository
+     */
+    static synchronized ResourceRepository getRepository() {
+        if (repository == null) {
+            repository = JdbcStore.isConfigured() ? new JdbcResourceRepository() : new FlatFileRepository();
+        }
+        return repository;
+    }
+
+    /**
+     * Changes the repository the catalogue is kept in. Must be called before the catalogue is loaded.
+     *
+     * @param newRepository the repository to use
+     */
+    public static synchronized void setRepository(ResourceRepository newRepository) {
+        repository = newRepository;
+    }
+
+    /**
+     * Gets the catalogue as it is now, without copying it
+     *
+     * @return the catalogue
+     */
+    static ResourceRepository.Catalogue getCatalogue() {
+        return new ResourceRepository.Catalogue(book, dvd, laptop);
+    }
+
     /**
      * Saves the database when the program is closed
      */
     public static void close() {
-        writeBookFile(book);
-        writeDVDFile(dvd);
-        writeLaptopFile(laptop);
+        DataCommit commit = new DataCommit();
+        try {
+            checkpoint(commit);
+            commit.commit();
+        } catch (IOException ex) {
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Saves the catalogue to its repository as part of a commit, after forcing the copy history to disk
+     *
+     * @param commit the commit the files are written as part of
+     * @throws IOException if the catalogue could not be saved
+     */
+    public static void checkpoint(DataCommit commit) throws IOException {
+        CopyHistoryStore.sync();
+        getRepository().save(getCatalogue(), commit);
+    }
+
+    /**
+     * Keeps the catalogue in the resource text files, with a binary snapshot of the whole catalogue which is read
+     * instead of the text files when it is up to date
+     */
+    static class FlatFileRepository implements ResourceRepository {
+
+        /**
+         * Reads the snapshot if it is up to date, otherwise reads each text file on its own worker, upgrading any
+         * written in an older format first
+         */
+        @Override
+        public Catalogue load() {
+            upgradeFiles();
+            Catalogue catalogue = readSnapshotFile();
+            if (catalogue != null) {
+                return catalogue;
+            }
+
+            CompletableFuture<ArrayList<Book>> books = CompletableFuture.supplyAsync(
+                    () -> readInChunks(readLines(bookFile), ResourceDatabase::bookRecordLength,
+                            ResourceDatabase::readBook));
+            CompletableFuture<ArrayList<DVD>> dvds = CompletableFuture.supplyAsync(
+                    () -> readInChunks(readLines(dvdFile), ResourceDatabase::dvdRecordLength,
+                            ResourceDatabase::readDVD));
+            CompletableFuture<ArrayList<Laptop>> laptops = CompletableFuture.supplyAsync(
+                    () -> readInChunks(readLines(laptopFile), ResourceDatabase::laptopRecordLength,
+                            ResourceDatabase::readLaptop));
+            return new Catalogue(books.join(), dvds.join(), laptops.join());
+        }
+
+        /**
+         * Stages the text files and the binary snapshot. The snapshot is only a faster way to load, so if it can
+         * not be written the text files are committed without it.
+         */
+        @Override
+        public void save(Catalogue catalogue, DataCommit commit) throws IOException {
+            writeBookFile(catalogue.books, commit.stage(bookFile));
+            writeDVDFile(catalogue.dvds, commit.stage(dvdFile));
+            writeLaptopFile(catalogue.laptops, commit.stage(laptopFile));
+            try {
+                ResourceSnapshot.write(commit.stage(snapshotFile), catalogue.books, catalogue.dvds,
+                        catalogue.laptops);
+            } catch (IOException ex) {
+                System.out.println("Snapshot Write Error");
+                commit.unstage(snapshotFile);
+                snapshotFile.delete();
+            }
+        }
     }
 
     public static void main(String... args) {// Load all data from file
@@ -834,9 +1264,7 @@ public class ResourceDatabase {
         } catch (Exception e) {
             System.out.println(e.toString());
         }
-        book.clear();
-        dvd.clear();
-        laptop.clear();
+        clearCatalogue();
 
         // Create a new book
         Book book = new Book("Thumbnail Location", 420, "Book title", 2018, Resource.ONE_DAY,
@@ -850,7 +1278,7 @@ public class ResourceDatabase {
 
         book.getReview().addReview("This book makes literally no sense", 5, "Jeff");
         book.getReview().addReview("I agree with jeff", 0, "Not jeff");
-        book.getRequestQueue().addAll(Arrays.asList("Alphie", "Betty", "Charlie", "Donnie", "Egbert"));
+        book.setRequestQueue(new ArrayList<>(Arrays.asList("Alphie", "Betty", "Charlie", "Donnie", "Egbert")));
 
         Book book2 = new Book("Another thumbnail", 421, "Title of the book", 2017, Resource.FOUR_WEEKS,
                 "J. K. Rowling", "Publisher", "Fantasy", "1111", "German");
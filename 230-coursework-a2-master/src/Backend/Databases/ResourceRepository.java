@@ -0,0 +1,55 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import Backend.Resources.Book;
+import Backend.Resources.DVD;
+import Backend.Resources.Laptop;
+
+/**
+ * File Name: ResourceRepository.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Where the catalogue is kept between runs of the program. The resource database holds the catalogue in memory
+ * and only uses its repository to read it when the program is started and to save it.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public interface ResourceRepository {
+
+    /**
+     * Every resource in the catalogue, each kind in the order it is kept in
+     */
+    class Catalogue {
+
+        public final ArrayList<Book> books;
+        public final ArrayList<DVD> dvds;
+        public final ArrayList<Laptop> laptops;
+
+        public Catalogue(ArrayList<Book> books, ArrayList<DVD> dvds, ArrayList<Laptop> laptops) {
+            this.books = books;
+            this.dvds = dvds;
+            this.laptops = laptops;
+        }
+    }
+
+    /**
+     * Reads the whole catalogue. The copies are not yet linked to their transactions.
+     *
+     * @return the catalogue
+     * @throws IOException if the catalogue could not be read
+     */
+    Catalogue load() throws IOException;
+
+    /**
+     * Saves the catalogue as part of a commit. Nothing is saved until the commit is made.
+     *
+     * @param catalogue the catalogue as it is now
+     * @param commit the commit to stage any files or database work in
+     * @throws IOException if the catalogue could not be saved
+     */
+    void save(Catalogue catalogue, DataCommit commit) throws IOException;
+}
@@ -0,0 +1,517 @@
+package Backend.Databases;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import Backend.Resources.*;
+import Backend.Transactions.Transaction;
+
+/**
+ * File Name: ResourceSnapshot.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * A binary snapshot of the whole resource catalogue which loads much faster than the Books, DVDs and Laptops
+ * text files. The snapshot starts with a fixed size header (magic number, format version and the offset and
+ * record count of the book, DVD and laptop sections) followed by the records of each section. Integers are
+ * written as variable length integers and strings as a length followed by their UTF-8 bytes. Values which repeat
+ * across the catalogue, such as genres, languages and usernames, are written in full once and then by number.
+ *
+ * Running this class converts the current text files into a snapshot.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class ResourceSnapshot {
+
+    /**
+     * The format version written by this class
+     */
+    public static final int FORMAT_VERSION = 3;
+
+    /**
+     * The version which wrote due dates as strings rather than epoch days. It is still read, and is replaced by the
+     * current version the next time the snapshot is written.
+     */
+    private static final int STRING_DATE_VERSION = 1;
+
+    /**
+     * The first version which writes repeated values, such as genres and usernames, only once and then refers
+     * to them by number. Older versions are still read.
+     */
+    private static final int SHARED_STRING_VERSION = 3;
+
+    /**
+     * "TLRS", marks a file as a resource snapshot
+     */
+    private static final int MAGIC_NUMBER = 0x544C5253;
+    private static final int SECTION_COUNT = 3;
+    private static final int BOOK_SECTION = 0;
+    private static final int DVD_SECTION = 1;
+    private static final int LAPTOP_SECTION = 2;
+    /**
+     * Magic number, version, section count then an offset(long) and record count(int) per section
+     */
+    private static final int HEADER_SIZE = 12 + SECTION_COUNT * 12;
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+    private static final int VARINT_CONTINUE_FLAG = 0x80;
+
+    private final ArrayList<Book> books;
+    private final ArrayList<DVD> dvds;
+    private final ArrayList<Laptop> laptops;
+
+    private ResourceSnapshot(ArrayList<Book> books, ArrayList<DVD> dvds, ArrayList<Laptop> laptops) {
+        this.books = books;
+        this.dvds = dvds;
+        this.laptops = laptops;
+    }
+
+    /**
+     * Gets the books held in the snapshot
+     *
+     * @return the books in catalogue order
+     */
+    public ArrayList<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * Gets the DVDs held in the snapshot
+     *
+     * @return the DVDs in catalogue order
+     */
+    public ArrayList<DVD> getDVDs() {
+        return dvds;
+    }
+
+    /**
+     * Gets the laptops held in the snapshot
+     *
+     * @return the laptops in catalogue order
+     */
+    public ArrayList<Laptop> getLaptops() {
+        return laptops;
+    }
+
+    /**
+     * Reads a snapshot. Copies only hold the IDs of their transactions until they are linked, so the snapshot can
+     * be read before the TransactionDatabase has been loaded.
+     *
+     * @param snapshotFile the snapshot to read
+     * @return the catalogue held in the snapshot
+     * @throws IOException if the file can not be read or is not a snapshot this version understands
+     */
+    public static ResourceSnapshot read(File snapshotFile) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + snapshotFile);
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            buffer.flip();
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC_NUMBER) {
+            throw new IOException("Not a resource snapshot: " + snapshotFile);
+        }
+        int version = buffer.getInt();
+        if (version < STRING_DATE_VERSION || version > FORMAT_VERSION || buffer.getInt() != SECTION_COUNT) {
+            throw new IOException("Unsupported resource snapshot version " + version + ": " + snapshotFile);
+        }
+
+        long[] offsets = new long[SECTION_COUNT];
+        int[] counts = new int[SECTION_COUNT];
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            offsets[i] = buffer.getLong();
+            counts[i] = buffer.getInt();
+        }
+
+        try {
+            // Shared strings are numbered across all three sections in the order they are read
+            ArrayList<String> sharedStrings = new ArrayList<>();
+
+            ArrayList<Book> books = new ArrayList<>(counts[BOOK_SECTION]);
+            buffer.position((int) offsets[BOOK_SECTION]);
+            for (int i = 0; i < counts[BOOK_SECTION]; i++) {
+                books.add(readBook(buffer, version, sharedStrings));
+            }
+
+            ArrayList<DVD> dvds = new ArrayList<>(counts[DVD_SECTION]);
+            buffer.position((int) offsets[DVD_SECTION]);
+            for (int i = 0; i < counts[DVD_SECTION]; i++) {
+                dvds.add(readDVD(buffer, version, sharedStrings));
+            }
+
+            ArrayList<Laptop> laptops = new ArrayList<>(counts[LAPTOP_SECTION]);
+            buffer.position((int) offsets[LAPTOP_SECTION]);
+            for (int i = 0; i < counts[LAPTOP_SECTION]; i++) {
+                laptops.add(readLaptop(buffer, version, sharedStrings));
+            }
+            return new ResourceSnapshot(books, dvds, laptops);
+
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt resource snapshot: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Writes the given catalogue to a snapshot, replacing any existing file.
+     *
+     * @param snapshotFile the file to write
+     * @param books the books to save
+     * @param dvds the DVDs to save
+     * @param laptops the laptops to save
+     * @throws IOException if the file could not be written
+     */
+    public static void write(File snapshotFile, List<Book> books, List<DVD> dvds, List<Laptop> laptops)
+            throws IOException {
+
+        long[] offsets = new long[SECTION_COUNT];
+        HashMap<String, Integer> sharedStrings = new HashMap<>();
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(snapshotFile, false)))) {
+
+            // Placeholder header, filled in once the section offsets are known
+            out.write(new byte[HEADER_SIZE]);
+
+            offsets[BOOK_SECTION] = out.size();
+            for (Book book : books) {
+                writeResource(out, book, sharedStrings);
+                writeSharedString(out, book.getAuthor(), sharedStrings);
+                writeSharedString(out, book.getPublisher(), sharedStrings);
+                writeSharedString(out, book.getGenre(), sharedStrings);
+                writeString(out, book.getISBN());
+                writeSharedString(out, book.getLanguage(), sharedStrings);
+                writeCirculation(out, book, sharedStrings);
+            }
+
+            offsets[DVD_SECTION] = out.size();
+            for (DVD dvd : dvds) {
+                writeResource(out, dvd, sharedStrings);
+                writeSharedString(out, dvd.getDirector(), sharedStrings);
+                writeSharedString(out, dvd.getLanguage(), sharedStrings);
+                writeVarInt(out, dvd.getSubtitles().length);
+                for (String subtitle : dvd.getSubtitles()) {
+                    writeSharedString(out, subtitle, sharedStrings);
+                }
+                writeSignedVarInt(out, dvd.getRuntime());
+                writeCirculation(out, dvd, sharedStrings);
+            }
+
+            offsets[LAPTOP_SECTION] = out.size();
+            for (Laptop laptop : laptops) {
+                writeResource(out, laptop, sharedStrings);
+                writeSharedString(out, laptop.getManufacturer(), sharedStrings);
+                writeSharedString(out, laptop.getModel(), sharedStrings);
+                writeSharedString(out, laptop.getOS(), sharedStrings);
+                writeCirculation(out, laptop, sharedStrings);
+            }
+        }
+
+        try (RandomAccessFile header = new RandomAccessFile(snapshotFile, "rw")) {
+            header.writeInt(MAGIC_NUMBER);
+            header.writeInt(FORMAT_VERSION);
+            header.writeInt(SECTION_COUNT);
+            header.writeLong(offsets[BOOK_SECTION]);
+            header.writeInt(books.size());
+            header.writeLong(offsets[DVD_SECTION]);
+            header.writeInt(dvds.size());
+            header.writeLong(offsets[LAPTOP_SECTION]);
+            header.writeInt(laptops.size());
+        }
+    }
+
+    private static Book readBook(ByteBuffer in, int version, ArrayList<String> sharedStrings) {
+        String thumbnail = readString(in);
+        int ID = readSignedVarInt(in);
+        String title = readString(in);
+        int year = readSignedVarInt(in);
+        String minLoanDuration = readSharedString(in, version, sharedStrings);
+        int nextCopyID = readVarInt(in);
+        String author = readSharedString(in, version, sharedStrings);
+        String publisher = readSharedString(in, version, sharedStrings);
+        String genre = readSharedString(in, version, sharedStrings);
+        String iSBN = readString(in);
+        String language = readSharedString(in, version, sharedStrings);
+
+        Book newBook = new Book(thumbnail, ID, title, year, minLoanDuration, author, publisher, genre, iSBN,
+                language, nextCopyID);
+        readCirculation(in, newBook, version, sharedStrings);
+        return newBook;
+    }
+
+    private static DVD readDVD(ByteBuffer in, int version, ArrayList<String> sharedStrings) {
+        String thumbnail = readString(in);
+        int ID = readSignedVarInt(in);
+        String title = readString(in);
+        int year = readSignedVarInt(in);
+        String minLoanDuration = readSharedString(in, version, sharedStrings);
+        int nextCopyID = readVarInt(in);
+        String director = readSharedString(in, version, sharedStrings);
+        String language = readSharedString(in, version, sharedStrings);
+        String[] subtitles = new String[readVarInt(in)];
+        for (int i = 0; i < subtitles.length; i++) {
+            subtitles[i] = readSharedString(in, version, sharedStrings);
+        }
+        int runtime = readSignedVarInt(in);
+
+        DVD newDVD = new DVD(thumbnail, ID, title, year, minLoanDuration, director, language, subtitles, runtime,
+                nextCopyID);
+        readCirculation(in, newDVD, version, sharedStrings);
+        return newDVD;
+    }
+
+    private static Laptop readLaptop(ByteBuffer in, int version, ArrayList<String> sharedStrings) {
+        String thumbnail = readString(in);
+        int ID = readSignedVarInt(in);
+        String title = readString(in);
+        int year = readSignedVarInt(in);
+        String minLoanDuration = readSharedString(in, version, sharedStrings);
+        int nextCopyID = readVarInt(in);
+        String manufacturer = readSharedString(in, version, sharedStrings);
+        String model = readSharedString(in, version, sharedStrings);
+        String oS = readSharedString(in, version, sharedStrings);
+
+        Laptop newLaptop = new Laptop(thumbnail, ID, title, year, minLoanDuration, manufacturer, model, oS,
+                nextCopyID);
+        readCirculation(in, newLaptop, version, sharedStrings);
+        return newLaptop;
+    }
+
+    /**
+     * Reads the request queue, copies and reviews of a resource
+     */
+    private static void readCirculation(ByteBuffer in, Resource resource, int version,
+                                        ArrayList<String> sharedStrings) {
+
+        int requestQueueSize = readVarInt(in);
+        ArrayList<String> requestQueue = new ArrayList<>(requestQueueSize);
+        for (int i = 0; i < requestQueueSize; i++) {
+            requestQueue.add(readSharedString(in, version, sharedStrings));
+        }
+        resource.setRequestQueue(requestQueue);
+
+        int copyListSize = readVarInt(in);
+        ArrayList<Copy> copyList = new ArrayList<>(copyListSize);
+        for (int i = 0; i < copyListSize; i++) {
+            int copyID = readVarInt(in);
+            boolean isAvailable = in.get() != 0;
+            long dueDate = version == STRING_DATE_VERSION
+                    ? DateFormats.parseDay(readNullableString(in)) : readDueDate(in);
+            int currentTransaction = readTransactionReference(in);
+            int historyLength = readVarInt(in);
+            int[] history = new int[historyLength];
+            for (int j = 0; j < historyLength; j++) {
+                history[j] = readTransactionReference(in);
+            }
+            copyList.add(new Copy(resource, isAvailable, currentTransaction, history, dueDate, copyID));
+        }
+        resource.setCopyList(copyList);
+
+        int reviewCount = readVarInt(in);
+        ArrayList<Element> elements = new ArrayList<>(reviewCount);
+        for (int i = 0; i < reviewCount; i++) {
+            int rating = readSignedVarInt(in);
+            String reviewText = readString(in);
+            String poster = readSharedString(in, version, sharedStrings);
+            elements.add(new Element(rating, reviewText, poster));
+        }
+        resource.setReview(new Review(elements));
+    }
+
+    /**
+     * Transaction references are written as ID + 1 so that 0 can stand for no transaction
+     */
+    private static int readTransactionReference(ByteBuffer in) {
+        int reference = readVarInt(in);
+        if (reference == 0) {
+            return Copy.NO_TRANSACTION;
+        }
+        return reference - 1;
+    }
+
+    /**
+     * Due dates are written as a byte which is 0 for no due date, followed by the epoch day if there is one
+     */
+    private static long readDueDate(ByteBuffer in) {
+        if (in.get() == 0) {
+            return DateFormats.NO_DATE;
+        }
+        return readSignedVarInt(in);
+    }
+
+    private static void writeResource(DataOutputStream out, Resource resource,
+                                      HashMap<String, Integer> sharedStrings) throws IOException {
+        writeString(out, resource.getThumbnail());
+        writeSignedVarInt(out, resource.getID());
+        writeString(out, resource.getTitle());
+        writeSignedVarInt(out, resource.getYear());
+        writeSharedString(out, resource.getMinLoanDuration(), sharedStrings);
+        writeVarInt(out, resource.getNextCopyID());
+    }
+
+    private static void writeCirculation(DataOutputStream out, Resource resource,
+                                         HashMap<String, Integer> sharedStrings) throws IOException {
+
+        writeVarInt(out, resource.getRequestQueue().size());
+        for (String username : resource.getRequestQueue()) {
+            writeSharedString(out, username, sharedStrings);
+        }
+
+        writeVarInt(out, resource.getCopyList().size());
+        for (Copy copy : resource.getCopyList()) {
+            writeVarInt(out, copy.getID());
+            out.writeByte(copy.isAvailable() ? 1 : 0);
+            writeDueDate(out, copy.getDueDateEpochDay());
+            writeTransactionReference(out, copy.getCurrentTransaction());
+            // The history is kept in the CopyHistoryStore
+            writeVarInt(out, 0);
+        }
+
+        ArrayList<Element> elements = resource.getReview().getReviewList();
+        writeVarInt(out, elements.size());
+        for (Element element : elements) {
+            writeSignedVarInt(out, element.getRating());
+            writeString(out, element.getReviewText());
+            writeSharedString(out, element.getPostedBy(), sharedStrings);
+        }
+    }
+
+    private static void writeTransactionReference(DataOutputStream out, Transaction transaction)
+            throws IOException {
+        if (transaction == null) {
+            writeVarInt(out, 0);
+        } else {
+            writeVarInt(out, transaction.getTRANSACTION_ID() + 1);
+        }
+    }
+
+    private static void writeDueDate(DataOutputStream out, long dueDate) throws IOException {
+        if (dueDate == DateFormats.NO_DATE) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1);
+            writeSignedVarInt(out, (int) dueDate);
+        }
+    }
+
+    /**
+     * Shared strings are written as 0 followed by the string the first time they appear, and after that as the
+     * number of the string, counting from 1 in the order they first appeared. Versions before
+     * SHARED_STRING_VERSION wrote every string in full.
+     */
+    private static String readSharedString(ByteBuffer in, int version, ArrayList<String> sharedStrings) {
+        if (version < SHARED_STRING_VERSION) {
+            return StringDictionary.intern(readString(in));
+        }
+        int number = readVarInt(in);
+        if (number == 0) {
+            String value = StringDictionary.intern(readString(in));
+            sharedStrings.add(value);
+            return value;
+        }
+        return sharedStrings.get(number - 1);
+    }
+
+    private static void writeSharedString(DataOutputStream out, String value, HashMap<String, Integer> sharedStrings)
+            throws IOException {
+        Integer number = sharedStrings.get(value);
+        if (number == null) {
+            writeVarInt(out, 0);
+            writeString(out, value);
+            sharedStrings.put(value, sharedStrings.size() + 1);
+        } else {
+            writeVarInt(out, number);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Nullable strings were written with their length + 1 so that 0 can stand for null, only used by version 1
+     */
+    private static String readNullableString(ByteBuffer in) {
+        int lengthPlusOne = readVarInt(in);
+        if (lengthPlusOne == 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), lengthPlusOne - 1,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + lengthPlusOne - 1);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte next;
+        do {
+            next = in.get();
+            value |= (next & VARINT_PAYLOAD_MASK) << shift;
+            shift += VARINT_PAYLOAD_BITS;
+        } while ((next & VARINT_CONTINUE_FLAG) != 0);
+        return value;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~VARINT_PAYLOAD_MASK) != 0) {
+            out.writeByte((value & VARINT_PAYLOAD_MASK) | VARINT_CONTINUE_FLAG);
+            value >>>= VARINT_PAYLOAD_BITS;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Signed values are zig-zag encoded so small negative numbers stay short
+     */
+    private static int readSignedVarInt(ByteBuffer in) {
+        int encoded = readVarInt(in);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    private static void writeSignedVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Converts the Books, DVDs and Laptops text files into a snapshot
+     *
+     * @param args unused
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        TransactionDatabase.init();
+        double ms = System.currentTimeMillis();
+        ArrayList<Book> books = ResourceDatabase.readBookFile();
+        ArrayList<DVD> dvds = ResourceDatabase.readDVDFile();
+        ArrayList<Laptop> laptops = ResourceDatabase.readLaptopFile();
+        write(ResourceDatabase.getSnapshotFile(), books, dvds, laptops);
+        System.out.println(String.format("Converted %d Books, %d DVDs, %d Laptops to %s. In %.2f ms",
+                books.size(), dvds.size(), laptops.size(), ResourceDatabase.getSnapshotFile(),
+                System.currentTimeMillis() - ms));
+    }
+}
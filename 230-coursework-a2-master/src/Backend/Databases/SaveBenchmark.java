@@ -0,0 +1,102 @@
+package Backend.Databases;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import Backend.Resources.Book;
+import Backend.Resources.DVD;
+import Backend.Resources.Laptop;
+import Backend.Resources.Resource;
+
+/**
+ * File Name: SaveBenchmark.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Measures how quickly the resource files are saved. A catalogue of made up Books, DVDs and Laptops, each with
+ * copies, reviews and a request queue, is written to temporary files several times and the throughput of each
+ * save is printed. Only the files are written, so nothing in the data folder is changed.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class SaveBenchmark {
+
+    private static final int DEFAULT_RESOURCES = 100000;
+    private static final int RUNS = 5;
+    private static final int COPIES_PER_RESOURCE = 3;
+    private static final int REVIEWS_PER_RESOURCE = 4;
+    private static final int REQUESTS_PER_RESOURCE = 2;
+
+    /**
+     * Saves a made up catalogue and prints the throughput of each save
+     *
+     * @param args the number of resources to save, 100000 if not given
+     * @throws IOException if the temporary files could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        int resourceCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RESOURCES;
+
+        ArrayList<Book> books = new ArrayList<>();
+        ArrayList<DVD> dvds = new ArrayList<>();
+        ArrayList<Laptop> laptops = new ArrayList<>();
+        for (int id = 0; id < resourceCount; id++) {
+            if (id % 3 == 0) {
+                books.add(fill(new Book("thumbnails/book" + id + ".png", id, "Book title " + id, 1990 + id % 30,
+                        Resource.FOUR_WEEKS, "Author " + id % 500, "Publisher " + id % 50, "Genre " + id % 20,
+                        "978" + id, "English")));
+            } else if (id % 3 == 1) {
+                dvds.add(fill(new DVD("thumbnails/dvd" + id + ".png", id, "DVD title " + id, 1990 + id % 30,
+                        Resource.TWO_WEEKS, "Director " + id % 500, "English",
+                        new String[]{"English", "French", "German"}, 90 + id % 60)));
+            } else {
+                laptops.add(fill(new Laptop("thumbnails/laptop" + id + ".png", id, "Laptop " + id,
+                        2010 + id % 10, Resource.ONE_DAY, "Manufacturer " + id % 10, "Model " + id % 100,
+                        "Linux")));
+            }
+        }
+
+        File bookFile = File.createTempFile("Books", ".txt");
+        File dvdFile = File.createTempFile("DVDs", ".txt");
+        File laptopFile = File.createTempFile("Laptops", ".txt");
+        try {
+            for (int run = 1; run <= RUNS; run++) {
+                long start = System.nanoTime();
+                ResourceDatabase.writeBookFile(books, bookFile);
+                ResourceDatabase.writeDVDFile(dvds, dvdFile);
+                ResourceDatabase.writeLaptopFile(laptops, laptopFile);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                double megabytes = (bookFile.length() + dvdFile.length() + laptopFile.length()) / (1024.0 * 1024.0);
+                System.out.println(String.format("Run %d: saved %d resources (%.2f MB) in %.2f ms, "
+                                + "%.0f resources/s, %.2f MB/s", run, resourceCount, megabytes, seconds * 1000,
+                        resourceCount / seconds, megabytes / seconds));
+            }
+        } finally {
+            bookFile.delete();
+            dvdFile.delete();
+            laptopFile.delete();
+        }
+    }
+
+    /**
+     * Gives a resource copies, reviews and a request queue
+     */
+    private static <T extends Resource> T fill(T resource) {
+        for (int i = 0; i < COPIES_PER_RESOURCE; i++) {
+            resource.createAndAddCopy();
+        }
+        for (int i = 0; i < REVIEWS_PER_RESOURCE; i++) {
+            resource.getReview().addReview("Review number " + i + " of " + resource.getTitle(), i % 6,
+                    "user" + (resource.getID() + i) % 1000);
+        }
+        // The request queue is replaced rather than changed, as it is by the resource itself
+        ArrayList<String> requestQueue = new ArrayList<>();
+        for (int i = 0; i < REQUESTS_PER_RESOURCE; i++) {
+            requestQueue.add("user" + (resource.getID() + i * 7) % 1000);
+        }
+        resource.setRequestQueue(requestQueue);
+        return resource;
+    }
+}
@@ -0,0 +1,385 @@
+package Backend.Databases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * File Name: SearchIndex.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * An inverted index answering the partial match searches of the databases. A document matches a query when one
+ * of its fields contains the query, ignoring case and spaces. Every three character sequence (trigram) of every
+ * field is mapped to a posting list of the documents containing it, so a query only has to check the documents
+ * found in the posting lists of all of its own trigrams.
+ *
+ * The index can be shared between threads. Searches share a read lock so any number run at once, and a change
+ * waits for the searches running when it is made.
+ *
+ * @param <T> the type of document held in the index
+ * @version 1.0
+ * @author agent
+ */
+public class SearchIndex<T> {
+
+    private static final int GRAM_LENGTH = 3;
+    /**
+     * Separates the fields of a document so that no match can span two fields
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+
+    /**
+     * The ID given to each document in the index
+     */
+    private final IdentityHashMap<T, Integer> documentIDs = new IdentityHashMap<>();
+    /**
+     * The documents of the index by their ID
+     */
+    private final IntHashMap<T> documents = new IntHashMap<>();
+    /**
+     * The normalised fields of each document, joined by the field separator
+     */
+    private final IntHashMap<String> documentText = new IntHashMap<>();
+    /**
+     * The IDs of the documents containing each trigram, in ascending order
+     */
+    private HashMap<Long, PostingList> postings = new HashMap<>();
+    /**
+     * IDs are handed out in ascending order so documents keep the order they were first added in
+     */
+    private int nextDocumentID = 0;
+    /**
+     * Number of removals and updates since the posting lists were last rebuilt
+     */
+    private int staleCount = 0;
+    /**
+     * Held for reading by searches and for writing by changes
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a document to the index, or updates its fields if it is already in the index
+     *
+     * @param document the document to add
+     * @param fields the searchable fields of the document, null fields are ignored
+     */
+    public void add(T document, String... fields) {
+        lock.writeLock().lock();
+        try {
+            String text = joinFields(fields);
+            Integer existingID = documentIDs.get(document);
+            int documentID;
+            if (existingID == null) {
+                documentID = nextDocumentID++;
+                documentIDs.put(document, documentID);
+                documents.put(documentID, document);
+            } else {
+                documentID = existingID;
+                staleCount++;
+            }
+            documentText.put(documentID, text);
+            addPostings(documentID, text);
+            compactIfStale();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Puts a document in the place of another in the index, so it is found in the same order as the document it
+     * replaces. The document is added as new if the document it replaces is not in the index.
+     *
+     * @param oldDocument the document being replaced
+     * @param newDocument the document taking its place
+     * @param fields the searchable fields of the new document, null fields are ignored
+     */
+    public void replace(T oldDocument, T newDocument, String... fields) {
+        lock.writeLock().lock();
+        try {
+            Integer documentID = documentIDs.get(oldDocument);
+            if (documentID != null && oldDocument != newDocument) {
+                remove(newDocument);
+                documentIDs.remove(oldDocument);
+                documentIDs.put(newDocument, documentID);
+                documents.put(documentID, newDocument);
+            }
+            // The write lock is reentrant, so searches never see the document between its removal and addition
+            add(newDocument, fields);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a document from the index
+     *
+     * @param document the document to remove
+     */
+    public void remove(T document) {
+        lock.writeLock().lock();
+        try {
+            Integer documentID = documentIDs.remove(document);
+            if (documentID != null) {
+                documents.remove(documentID);
+                documentText.remove(documentID);
+                staleCount++;
+                compactIfStale();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a document is in the index
+     *
+     * @param document the document to check
+     * @return true if the document has been added and not removed
+     */
+    public boolean contains(T document) {
+        lock.readLock().lock();
+        try {
+            return documentIDs.containsKey(document);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every document from the index
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documentIDs.clear();
+            documents.clear();
+            documentText.clear();
+            postings = new HashMap<>();
+            staleCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of documents in the index
+     *
+     * @return the number of documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentIDs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds every document with a field containing the query, ignoring case and spaces
+     *
+     * @param query the text to search for
+     * @return the matching documents in the order they were first added
+     */
+    public ArrayList<T> query(String query) {
+        lock.readLock().lock();
+        try {
+            String normalisedQuery = normalise(query);
+            ArrayList<T> results = new ArrayList<>();
+
+            if (normalisedQuery.length() < GRAM_LENGTH) {
+                for (int documentID = 0; documentID < nextDocumentID; documentID++) {
+                    addIfMatching(results, documentID, normalisedQuery);
+                }
+                return results;
+            }
+
+            int[] candidates = findCandidates(normalisedQuery);
+            for (int documentID : candidates) {
+                addIfMatching(results, documentID, normalisedQuery);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if any of the candidates contains the query, ignoring case and spaces
+     *
+     * @param query the text to search for
+     * @param candidates the text to search in
+     * @return true if at least one candidate contains the query
+     */
+    public static boolean partialMatch(String query, String... candidates) {
+        String normalisedQuery = normalise(query);
+        for (String candidate : candidates) {
+            if (candidate != null && normalise(candidate).contains(normalisedQuery)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts text into the form it is searched in: lower case with spaces removed
+     *
+     * @param text the text to normalise
+     * @return the normalised text
+     */
+    public static String normalise(String text) {
+        String lowerCase = text.toLowerCase();
+        if (lowerCase.indexOf(' ') < 0) {
+            return lowerCase;
+        }
+        StringBuilder normalised = new StringBuilder(lowerCase.length());
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (lowerCase.charAt(i) != ' ') {
+                normalised.append(lowerCase.charAt(i));
+            }
+        }
+        return normalised.toString();
+    }
+
+    private void addIfMatching(ArrayList<T> results, int documentID, String normalisedQuery) {
+        String text = documentText.get(documentID);
+        if (text != null && text.contains(normalisedQuery)) {
+            results.add(documents.get(documentID));
+        }
+    }
+
+    /**
+     * Intersects the posting lists of every trigram of the query, starting with the shortest list
+     */
+    private int[] findCandidates(String normalisedQuery) {
+        ArrayList<PostingList> queryPostings = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= normalisedQuery.length(); i++) {
+            PostingList posting = postings.get(gramKey(normalisedQuery, i));
+            if (posting == null) {
+                return new int[0];
+            }
+            queryPostings.add(posting);
+        }
+        queryPostings.sort((first, second) -> Integer.compare(first.size, second.size));
+
+        int[] candidates = Arrays.copyOf(queryPostings.get(0).documentIDs, queryPostings.get(0).size);
+        for (int i = 1; i < queryPostings.size() && candidates.length > 0; i++) {
+            candidates = queryPostings.get(i).intersect(candidates);
+        }
+        return candidates;
+    }
+
+    private void addPostings(int documentID, String text) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            if (!spansFields(text, i)) {
+                postings.computeIfAbsent(gramKey(text, i), key -> new PostingList()).add(documentID);
+            }
+        }
+    }
+
+    private static boolean spansFields(String text, int start) {
+        boolean spans = false;
+        for (int i = start; i < start + GRAM_LENGTH; i++) {
+            spans = spans || text.charAt(i) == FIELD_SEPARATOR;
+        }
+        return spans;
+    }
+
+    /**
+     * Rebuilds the posting lists once updates and removals have left as many stale entries as live documents
+     */
+    private void compactIfStale() {
+        if (staleCount <= documentIDs.size()) {
+            return;
+        }
+        postings = new HashMap<>();
+        for (int documentID = 0; documentID < nextDocumentID; documentID++) {
+            String text = documentText.get(documentID);
+            if (text != null) {
+                addPostings(documentID, text);
+            }
+        }
+        staleCount = 0;
+    }
+
+    private static String joinFields(String... fields) {
+        StringBuilder text = new StringBuilder();
+        for (String field : fields) {
+            if (field != null) {
+                text.append(normalise(field)).append(FIELD_SEPARATOR);
+            }
+        }
+        return text.toString();
+    }
+
+    private static long gramKey(String text, int start) {
+        long key = 0;
+        for (int i = start; i < start + GRAM_LENGTH; i++) {
+            key = (key << Character.SIZE) | text.charAt(i);
+        }
+        return key;
+    }
+
+    /**
+     * A growable, ascending list of document IDs
+     */
+    private static class PostingList {
+
+        private int[] documentIDs = new int[INITIAL_POSTING_CAPACITY];
+        private int size = 0;
+
+        /**
+         * Adds a document ID, keeping the list ascending and free of duplicates
+         */
+        private void add(int documentID) {
+            if (size > 0 && documentIDs[size - 1] >= documentID) {
+                insert(documentID);
+                return;
+            }
+            if (size == documentIDs.length) {
+                documentIDs = Arrays.copyOf(documentIDs, size * 2);
+            }
+            documentIDs[size++] = documentID;
+        }
+
+        private void insert(int documentID) {
+            int position = Arrays.binarySearch(documentIDs, 0, size, documentID);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == documentIDs.length) {
+                documentIDs = Arrays.copyOf(documentIDs, size * 2);
+            }
+            System.arraycopy(documentIDs, position, documentIDs, position + 1, size - position);
+            documentIDs[position] = documentID;
+            size++;
+        }
+
+        /**
+         * Keeps only the given IDs which are also in this list
+         */
+        private int[] intersect(int[] others) {
+            int[] common = new int[Math.min(others.length, size)];
+            int commonSize = 0;
+            int mine = 0;
+            int theirs = 0;
+            while (mine < size && theirs < others.length) {
+                if (documentIDs[mine] < others[theirs]) {
+                    mine++;
+                } else if (documentIDs[mine] > others[theirs]) {
+                    theirs++;
+                } else {
+                    common[commonSize++] = others[theirs];
+                    mine++;
+                    theirs++;
+                }
+            }
+            return Arrays.copyOf(common, commonSize);
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package Backend.Databases;
+
+import Backend.Library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * File Name: SnapshotManager.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Keeps compressed archives of the whole library, so the databases can be put back as they were at an earlier
+ * point in time. Taking a snapshot checkpoints every database in full as one generation and, just before the
+ * generation is committed, copies the staged files and the copy history into a single archive named after the
+ * generation. Each file is split into blocks which are compressed on their own and carry the CRC32 of their
+ * compressed bytes, so an archive can be checked without decompressing it and damage is found block by block.
+ * Snapshots can be taken on a schedule while the program runs, and only the newest are kept.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class SnapshotManager {
+
+    /**
+     * "LSNP", the first four bytes of every archive
+     */
+    private static final int MAGIC = 0x4C534E50;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Largest number of bytes of a file compressed as one block
+     */
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * A file replaced as part of a generation, restored through a commit
+     */
+    private static final byte COMMITTED_FILE = 0;
+
+    /**
+     * A file only ever appended to, such as the copy history, restored once the generation is committed
+     */
+    private static final byte APPENDED_FILE = 1;
+
+    private static final String ARCHIVE_PREFIX = "Library-";
+    private static final String ARCHIVE_SUFFIX = ".archive";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final DateTimeFormatter ARCHIVE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * Number of archives kept, older archives are deleted when a new one is taken
+     */
+    private static final int KEPT_SNAPSHOTS = 48;
+
+    /**
+     * The folder the archives are kept in, inside the folder of the database files
+     */
+    private static File snapshotDirectory = new File("src/data/snapshots");
+
+    /**
+     * The thread taking scheduled snapshots, null when none are scheduled
+     */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Saves every database in full as a new generation and archives it. No library operation runs while the
+     * databases are saved. If the archive cannot be written the databases are still saved.
+     *
+     * @return the archive, or null if no archive was written
+     */
+    public static synchronized File takeSnapshot() {
+        Lock quiesced = Library.quiesce();
+        DataCommit commit = new DataCommit();
+        File temp = null;
+        try {
+            UserDatabase.checkpointFull(commit);
+            ResourceDatabase.checkpoint(commit);
+            TransactionDatabase.checkpoint(commit);
+
+            try {
+                snapshotDirectory.mkdirs();
+                temp = File.createTempFile(ARCHIVE_PREFIX, ARCHIVE_SUFFIX + TEMP_SUFFIX, snapshotDirectory);
+                writeArchive(temp, commit.getStagedFiles());
+            } catch (IOException ex) {
+                System.out.println("Snapshot Write Error: " + ex.getMessage());
+                if (temp != null) {
+                    temp.delete();
+                    temp = null;
+                }
+            }
+
+            long generation = commit.commit();
+            if (temp == null) {
+                return null;
+            }
+            File archive = new File(snapshotDirectory, ARCHIVE_PREFIX + String.format("%08d", generation) + "-"
+                    + ARCHIVE_DATE_FORMAT.format(DateFormats.toDateTime(DateFormats.now())) + ARCHIVE_SUFFIX);
+            DataCommit.replace(temp, archive);
+            System.out.println("Snapshot of generation " + generation + " saved to " + archive);
+            prune(KEPT_SNAPSHOTS);
+            return archive;
+
+        } catch (IOException ex) {
+            commit.abort();
+            if (temp != null) {
+                temp.delete();
+            }
+            System.out.println("Snapshot failed, keeping generation " + DataCommit.getGeneration() + ": "
+                    + ex.getMessage());
+            return null;
+        } finally {
+            quiesced.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot at a fixed interval until the schedule is cancelled, replacing any earlier schedule.
+     * The databases are not safe to read while they are being changed, so each snapshot is handed to the
+     * executor of the thread which changes them, such as the user interface thread.
+     *
+     * @param interval the time between snapshots
+     * @param unit the unit of the interval
+     * @param databaseThread runs each snapshot on the thread which changes the databases
+     */
+    public static synchronized void schedule(long interval, TimeUnit unit, Executor databaseThread) {
+        cancelSchedule();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Snapshot scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                databaseThread.execute(SnapshotManager::takeSnapshot);
+            } catch (RuntimeException ex) {
+                System.out.println("Cannot start scheduled snapshot: " + ex.getMessage());
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stops taking scheduled snapshots. A snapshot already handed to the database thread still runs.
+     */
+    public static synchronized void cancelSchedule() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Gets every archive kept, oldest first
+     *
+     * @return the archives
+     */
+    public static File[] listSnapshots() {
+        File[] archives = snapshotDirectory.listFiles(
+                (directory, name) -> name.startsWith(ARCHIVE_PREFIX) && name.endsWith(ARCHIVE_SUFFIX));
+        if (archives == null) {
+            return new File[0];
+        }
+        Arrays.sort(archives);
+        return archives;
+    }
+
+    /**
+     * Checks an archive against its checksums. A quick check reads every block and compares it with the checksum
+     * of its compressed bytes, a full check also decompresses every file and compares it with its own checksum.
+     *
+     * @param archive the archive to check
+     * @param full true to decompress every file as well
+     * @return true if the archive is whole
+     */
+    public static boolean verify(File archive, boolean full) {
+        try {
+            int files = readArchive(archive, full, null);
+            System.out.println("Snapshot " + archive + " verified, " + files + " files");
+            return true;
+        } catch (IOException ex) {
+            System.out.println("Snapshot " + archive + " is damaged: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Puts back every database file as it was when an archive was taken. The whole archive is decompressed and
+     * checked before anything is replaced, and the files are replaced as one generation, so a damaged archive or
+     * a failed restore leaves the databases as they were. The journals are deleted so no later change is replayed
+     * over the restored files. Must be called before the databases are loaded.
+     *
+     * @param archive the archive to restore
+     * @return true if the archive was restored
+     */
+    public static boolean restore(File archive) {
+        DataCommit.recover();
+        DataCommit commit = new DataCommit();
+        LinkedHashMap<File, File> appendedFiles = new LinkedHashMap<>();
+        File dataDirectory = snapshotDirectory.getAbsoluteFile().getParentFile();
+
+        try {
+            readArchive(archive, true, (path, kind) -> {
+                File target = new File(path);
+                if (!dataDirectory.equals(target.getAbsoluteFile().getParentFile())) {
+                    throw new IOException("Archive holds a file outside the data folder: " + path);
+                }
+                File temp;
+                if (kind == APPENDED_FILE) {
+                    temp = new File(path + TEMP_SUFFIX);
+                    appendedFiles.put(target, temp);
+                } else {
+                    temp = commit.stage(target);
+                }
+                return new BufferedOutputStream(new FileOutputStream(temp, false));
+            });
+
+            for (File temp : appendedFiles.values()) {
+                DataCommit.force(temp);
+            }
+            if (!commit.getStagedFiles().containsKey(ResourceDatabase.getSnapshotFile())) {
+                // Otherwise a newer snapshot of the catalogue would be loaded instead of the restored text files
+                ResourceDatabase.getSnapshotFile().delete();
+            }
+            UserDatabase.discardJournal();
+            TransactionDatabase.discardJournal();
+
+            long generation = commit.commit();
+            for (Map.Entry<File, File> appended : appendedFiles.entrySet()) {
+                DataCommit.replace(appended.getValue(), appended.getKey());
+            }
+            System.out.println("Restored " + archive + " as generation " + generation);
+            return true;
+
+        } catch (IOException ex) {
+            commit.abort();
+            for (File temp : appendedFiles.values()) {
+                temp.delete();
+            }
+            System.out.println("Restore failed, keeping generation " + DataCommit.getGeneration() + ": "
+                    + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes all but the newest archives, along with any archive left half written by the program stopping
+     *
+     * @param kept the number of archives to keep
+     */
+    public static synchronized void prune(int kept) {
+        File[] archives = listSnapshots();
+        for (int i = 0; i < archives.length - kept; i++) {
+            archives[i].delete();
+        }
+        File[] unfinished = snapshotDirectory.listFiles((directory, name) -> name.endsWith(TEMP_SUFFIX));
+        if (unfinished != null) {
+            for (File temp : unfinished) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Receives the files of an archive as it is read
+     */
+    private interface ArchiveTarget {
+
+        /**
+         * @param path the path of the file the contents were taken from
+         * @param kind COMMITTED_FILE or APPENDED_FILE
+         * @return the stream to write the contents of the file to, which is closed once the file has been read
+         * @throws IOException if the stream could not be opened
+         */
+        OutputStream open(String path, byte kind) throws IOException;
+    }
+
+    /**
+     * Writes an archive of the staged files of a commit and the copy history, forcing it to disk
+     *
+     * Magic | Version | Created | File count, then for each file
+     * Path | Kind | Length | Blocks | CRC32 of the whole file, where each block is
+     * Length | Stored length | CRC32 of the stored bytes | Stored bytes
+     * A block is stored uncompressed, with its stored length equal to its length, when compressing does not
+     * make it smaller.
+     */
+    private static void writeArchive(File target, Map<File, File> stagedFiles) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(DateFormats.now());
+            out.writeInt(stagedFiles.size() + 1);
+
+            for (Map.Entry<File, File> staged : stagedFiles.entrySet()) {
+                writeFile(out, deflater, staged.getKey().getPath(), COMMITTED_FILE, staged.getValue(),
+                        staged.getValue().length());
+            }
+            // The history is appended to while it is copied, so only the records synced now are archived
+            writeFile(out, deflater, CopyHistoryStore.getFile().getPath(), APPENDED_FILE,
+                    CopyHistoryStore.getFile(), CopyHistoryStore.getSyncedLength());
+        } finally {
+            deflater.end();
+        }
+        DataCommit.force(target);
+    }
+
+    private static void writeFile(DataOutputStream out, Deflater deflater, String path, byte kind, File source,
+                                  long length) throws IOException {
+        out.writeUTF(path);
+        out.writeByte(kind);
+        out.writeLong(length);
+
+        CRC32 fileChecksum = new CRC32();
+        CRC32 blockChecksum = new CRC32();
+        byte[] block = new byte[BLOCK_SIZE];
+        byte[] compressed = new byte[BLOCK_SIZE];
+        try (InputStream in = length == 0 ? null : new FileInputStream(source)) {
+            long remaining = length;
+            while (remaining > 0) {
+                int blockLength = (int) Math.min(BLOCK_SIZE, remaining);
+                readFully(in, block, blockLength, path);
+                fileChecksum.update(block, 0, blockLength);
+
+                deflater.reset();
+                deflater.setInput(block, 0, blockLength);
+                deflater.finish();
+                int compressedLength = 0;
+                while (!deflater.finished() && compressedLength < blockLength) {
+                    compressedLength += deflater.deflate(compressed, compressedLength,
+                            compressed.length - compressedLength);
+                }
+                boolean stored = !deflater.finished() || compressedLength >= blockLength;
+                byte[] storedBytes = stored ? block : compressed;
+                int storedLength = stored ? blockLength : compressedLength;
+
+                blockChecksum.reset();
+                blockChecksum.update(storedBytes, 0, storedLength);
+                out.writeInt(blockLength);
+                out.writeInt(storedLength);
+                out.writeInt((int) blockChecksum.getValue());
+                out.write(storedBytes, 0, storedLength);
+                remaining -= blockLength;
+            }
+        }
+        out.writeLong(fileChecksum.getValue());
+    }
+
+    /**
+     * Reads every file of an archive, checking every block against its checksum
+     *
+     * @param archive the archive to read
+     * @param full true to decompress every file and check it against its checksum and length
+     * @param target receives the contents of every file, which are then always decompressed, or null
+     * @return the number of files in the archive
+     * @throws IOException if the archive could not be read or does not match its checksums
+     */
+    private static int readArchive(File archive, boolean full, ArchiveTarget target) throws IOException {
+        boolean decompress = full || target != null;
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archive)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot archive");
+            }
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported archive version " + version);
+            }
+            in.readLong();
+            int fileCount = in.readInt();
+
+            CRC32 blockChecksum = new CRC32();
+            byte[] stored = new byte[BLOCK_SIZE];
+            byte[] block = new byte[BLOCK_SIZE];
+            for (int i = 0; i < fileCount; i++) {
+                String path = in.readUTF();
+                byte kind = in.readByte();
+                long length = in.readLong();
+                if (length < 0 || (kind != COMMITTED_FILE && kind != APPENDED_FILE)) {
+                    throw new IOException("Damaged entry for " + path);
+                }
+
+                CRC32 fileChecksum = new CRC32();
+                try (OutputStream out = target == null ? null : target.open(path, kind)) {
+                    long remaining = length;
+                    while (remaining > 0) {
+                        int blockLength = in.readInt();
+                        int storedLength = in.readInt();
+                        int checksum = in.readInt();
+                        if (blockLength <= 0 || blockLength > Math.min(BLOCK_SIZE, remaining)
+                                || storedLength <= 0 || storedLength > blockLength) {
+                            throw new IOException("Damaged block in " + path);
+                        }
+                        in.readFully(stored, 0, storedLength);
+                        blockChecksum.reset();
+                        blockChecksum.update(stored, 0, storedLength);
+                        if ((int) blockChecksum.getValue() != checksum) {
+                            throw new IOException("Checksum mismatch in a block of " + path);
+                        }
+
+                        if (decompress) {
+                            byte[] contents = stored;
+                            if (storedLength < blockLength) {
+                                inflate(inflater, stored, storedLength, block, blockLength, path);
+                                contents = block;
+                            }
+                            fileChecksum.update(contents, 0, blockLength);
+                            if (out != null) {
+                                out.write(contents, 0, blockLength);
+                            }
+                        }
+                        remaining -= blockLength;
+                    }
+                }
+                long checksum = in.readLong();
+                if (decompress && fileChecksum.getValue() != checksum) {
+                    throw new IOException("Checksum mismatch in " + path);
+                }
+            }
+            if (in.read() != -1) {
+                throw new IOException("Unexpected data after the last file");
+            }
+            return fileCount;
+        } catch (EOFException ex) {
+            throw new IOException("Archive ends part way through");
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void inflate(Inflater inflater, byte[] stored, int storedLength, byte[] block, int blockLength,
+                                String path) throws IOException {
+        inflater.reset();
+        inflater.setInput(stored, 0, storedLength);
+        int inflated = 0;
+        try {
+            // Stalled once the inflater can produce nothing more from the stored block
+            boolean stalled = false;
+            while (inflated < blockLength && !inflater.finished() && !stalled) {
+                int read = inflater.inflate(block, inflated, blockLength - inflated);
+                inflated += read;
+                stalled = read == 0 && (inflater.needsInput() || inflater.needsDictionary());
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Damaged block in " + path + ": " + ex.getMessage());
+        }
+        if (inflated != blockLength || !inflater.finished()) {
+            throw new IOException("Damaged block in " + path);
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length, String path) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, read, length - read);
+            if (count == -1) {
+                throw new IOException(path + " changed while it was archived");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Lists, checks, takes or restores snapshots
+     *
+     * list, verify [archive] [full], take, or restore archive
+     *
+     * @param args the command and its arguments
+     * @throws ParseException if the user file could not be read
+     */
+    public static void main(String[] args) throws ParseException {
+        String command = args.length > 0 ? args[0] : "list";
+        switch (command) {
+            case "verify":
+                verifyArchives(args);
+                return;
+            case "take":
+                DatabaseLoader.loadAll();
+                takeSnapshot();
+                PersistenceWriter.shutdown();
+                return;
+            case "restore":
+                restoreArchive(args);
+                return;
+            default:
+                listArchives();
+        }
+    }
+
+    /**
+     * Checks the archive given, or every snapshot if none is given
+     *
+     * @param args verify, then optionally the archive and full to decompress every file
+     */
+    private static void verifyArchives(String[] args) {
+        File[] archives = args.length > 1 ? new File[]{new File(args[1])} : listSnapshots();
+        boolean full = args.length > 2 && args[2].equals("full");
+        for (File archive : archives) {
+            verify(archive, full);
+        }
+    }
+
+    /**
+     * Restores the archive given
+     *
+     * @param args restore, then the archive
+     */
+    private static void restoreArchive(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: restore archive");
+        } else {
+            restore(new File(args[1]));
+        }
+    }
+
+    /**
+     * Prints the name and size of every snapshot
+     */
+    private static void listArchives() {
+        for (File archive : listSnapshots()) {
+            System.out.println(String.format("%s\t%.1f KB", archive.getName(), archive.length() / 1024.0));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package Backend.Databases;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File Name: StringDictionary.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Shares a single instance of the values which repeat across the data files, such as genres, languages,
+ * publishers, operating systems and usernames. Every line read from a file is split into new Strings, so without
+ * this each copy of a repeated value would be kept in memory separately. The loaders may run on several threads
+ * at once, so the dictionary is safe to use from any thread.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public class StringDictionary {
+
+    /**
+     * The instance kept for each value
+     */
+    private static final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the instance of a value kept by the dictionary, adding the value if it is not already kept
+     *
+     * @param value the value read from a file
+     * @return an equal String, the same instance for every equal value, or null if value is null
+     */
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String kept = values.putIfAbsent(value, value);
+        return kept == null ? value : kept;
+    }
+
+    /**
+     * Interns every value of an array in place
+     *
+     * @param values the values read from a file
+     * @return the same array
+     */
+    public static String[] internAll(String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = intern(values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @return the number of distinct values kept
+     */
+    public static int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,148 @@
+package Backend.Databases;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import Backend.Transactions.Transaction;
+
+/**
+ * File Name: TransactionColumns.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * The resource transactions of the transaction file held column by column rather than as one object each. Dates
+ * are kept as epoch seconds, usernames as a number into a dictionary of the usernames in the file, and the reserve
+ * and returned status as bits, so transactions can be filtered and compared by date without a Transaction being
+ * created or a date being parsed. Records are numbered in file order.
+ *
+ * @version 1.0
+ * @author agent
+ */
+class TransactionColumns {
+
+    private int[] ids = new int[1024];
+    private int[] userCodes = new int[1024];
+    private int[] resourceIDs = new int[1024];
+    private int[] copyIDs = new int[1024];
+    private long[] startEpochs = new long[1024];
+    private long[] returnEpochs = new long[1024];
+    private final BitSet reserved = new BitSet();
+    private final BitSet returned = new BitSet();
+    private int size;
+
+    /**
+     * Every username in the file, indexed by its code
+     */
+    private String[] usernames = new String[16];
+    private final HashMap<String, Integer> userCodesByName = new HashMap<>();
+    private int usernameCount;
+
+    /**
+     * Adds the next record of the file
+     * @param transactionID the ID of the transaction
+     * @param username the username of the transaction
+     * @param resourceID the resource ID of the transaction
+     * @param copyID the copy ID of the transaction
+     * @param isReserved if the transaction is a reservation
+     * @param startEpoch the transaction date in epoch seconds
+     * @param returnEpoch the return date in epoch seconds, or Transaction.NOT_RETURNED
+     * @return the record number
+     */
+    int add(int transactionID, String username, int resourceID, int copyID, boolean isReserved,
+            long startEpoch, long returnEpoch) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            userCodes = Arrays.copyOf(userCodes, capacity);
+            resourceIDs = Arrays.copyOf(resourceIDs, capacity);
+            copyIDs = Arrays.copyOf(copyIDs, capacity);
+            startEpochs = Arrays.copyOf(startEpochs, capacity);
+            returnEpochs = Arrays.copyOf(returnEpochs, capacity);
+        }
+        ids[size] = transactionID;
+        userCodes[size] = userCode(username);
+        resourceIDs[size] = resourceID;
+        copyIDs[size] = copyID;
+        startEpochs[size] = startEpoch;
+        returnEpochs[size] = returnEpoch;
+        reserved.set(size, isReserved);
+        returned.set(size, returnEpoch != Transaction.NOT_RETURNED);
+        return size++;
+    }
+
+    /**
+     * @return the number of records
+     */
+    int size() {
+        return size;
+    }
+
+    int getID(int record) {
+        return ids[record];
+    }
+
+    /**
+     * @return the username of a record, the same instance for every record of the user
+     */
+    String getUsername(int record) {
+        return usernames[userCodes[record]];
+    }
+
+    int getResourceID(int record) {
+        return resourceIDs[record];
+    }
+
+    int getCopyID(int record) {
+        return copyIDs[record];
+    }
+
+    boolean isReserved(int record) {
+        return reserved.get(record);
+    }
+
+    boolean isReturned(int record) {
+        return returned.get(record);
+    }
+
+    long getStartEpoch(int record) {
+        return startEpochs[record];
+    }
+
+    long getReturnEpoch(int record) {
+        return returnEpochs[record];
+    }
+
+    /**
+     * Gets the instance of a username held by the dictionary, which is the instance kept by the StringDictionary
+     * @param username the username read from the file
+     * @return the shared instance of the username
+     */
+    String intern(String username) {
+        return usernames[userCode(username)];
+    }
+
+    /**
+     * Creates a transaction from a record
+     * @param record the record number
+     * @return a new transaction holding the values of the record
+     */
+    Transaction toTransaction(int record) {
+        return new Transaction(ids[record], getUsername(record), resourceIDs[record], copyIDs[record],
+                reserved.get(record), startEpochs[record], returnEpochs[record]);
+    }
+
+    private int userCode(String username) {
+        Integer code = userCodesByName.get(username);
+        if (code == null) {
+            if (usernameCount == usernames.length) {
+                usernames = Arrays.copyOf(usernames, usernameCount * 2);
+            }
+            code = usernameCount;
+            username = StringDictionary.intern(username);
+            usernames[usernameCount++] = username;
+            userCodesByName.put(username, code);
+        }
+        return code;
+    }
+}
@@ -14,9 +14,14 @@ import Backend.Transactions.FinancialTransaction;
 import Backend.Transactions.FineTransaction;
 import Backend.Transactions.PaymentTransaction;
 import Backend.Transactions.Transaction;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -24,6 +29,10 @@ import java.io.*;
  * The transaction database is used to save transactions to a file. When the system is started, previous transactions
  * will be imported, manipulated if necessary in the execution of the library system, then saved back to file, once
  * the system is closed.
+ * In journal mode every new or changed transaction is appended to a journal as it happens instead of rewriting the
+ * whole file, and the journal is periodically compacted back into the transaction file.
+ * The transaction file is indexed by line rather than read whole and its transactions are held in columns rather than as objects when the
+ * system is started. A transaction is created from the columns when it is first asked for.
  */
 public class TransactionDatabase {
 
@@ -38,87 +47,374 @@ public class TransactionDatabase {
     private static final String FINE_META_FLAG = "F";
     private static final String PAYMENT_META_FLAG = "P";
 
+    /**
+     * Number of fields in a resource transaction line, a payment line and a fine line
+     */
+    private static final int RESOURCE_FIELD_COUNT = 9;
+    private static final int PAYMENT_FIELD_COUNT = 5;
+    private static final int FINE_FIELD_COUNT = 8;
+
+    /**
+     * Number of journal records after which the journal is compacted into the transaction file
+     */
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 1000;
+
+    /**
+     * Number of transaction IDs reserved each time the sequence file is written
+     */
+    private static final int TRANSACTION_ID_BLOCK = 1000;
+
+    /**
+     * The transaction IDs handed out
+     */
+    private static final IdSequence transactionIDs = new IdSequence("Transactions", TRANSACTION_ID_BLOCK);
+
     /**
      * File path of the text file
      */
     private static String filePath = "src/data/transactions.txt";
 
     /**
-     * Array which is used to store the file information on transactions once imported
+     * Journal of the transactions created or changed since the text file was last written
+     */
+    private static Journal journal = new Journal(new File("src/data/transactions.journal"));
+
+    /**
+     * Held from taking the contents of the transaction file until the journal has been restarted against it, so
+     * the file is rewritten by one writer at a time and never replaced by a file taken before it
+     */
+    private static final ReentrantLock rewriteLock = new ReentrantLock();
+
+    /**
+     * If changes are appended to the journal rather than rewriting the text file
+     */
+    private static volatile boolean journalMode = true;
+
+    /**
+     * Number of changes submitted to the journal since the transaction file was last rewritten
+     */
+    private static int changesSinceCompaction;
+
+    /**
+     * Checksum of the text file as it was last read or written
      */
-    private static ArrayList<Transaction> transactionArrayList;
+    private static long snapshotChecksum;
+
+    /**
+     * The transaction file as it was last read or written
+     */
+    private static MappedTransactionFile mappedFile;
+
+    /**
+     * Transactions created or changed since the transaction file was last written, which can not be read from it
+     */
+    private static IntHashMap<Transaction> changedTransactions = new IntHashMap<>();
+
+    /**
+     * IDs of the transactions created since the transaction file was last written, in the order they were made
+     */
+    private static TransactionIDList newTransactionIDs = new TransactionIDList();
+
+    /**
+     * Transactions read from the file which may still be in use, so the same instance is given out each time
+     */
+    private static IntHashMap<ReadTransaction> readTransactions = new IntHashMap<>();
+    private static ReferenceQueue<Transaction> unusedTransactions = new ReferenceQueue<>();
+
+    /**
+     * Number of resource transactions in the system
+     */
+    private static int transactionCount;
 
     /**
      * Array which is used to store the file information on financial transactions once imported
      */
     private static ArrayList<FinancialTransaction> financialTransactionsArrayList;
 
+    /**
+     * IDs of the transactions of each user, in the order they were made
+     */
+    private static HashMap<String, TransactionIDList> transactionsByUser = new HashMap<>();
+
+    /**
+     * IDs of the transactions of each copy, keyed by resource ID and copy ID, in the order they were made
+     */
+    private static HashMap<Long, TransactionIDList> transactionsByCopy = new HashMap<>();
+
+    /**
+     * Financial transactions of each user, in the order they were made
+     */
+    private static HashMap<String, ArrayList<FinancialTransaction>> financialTransactionsByUser = new HashMap<>();
+
     /**
      * Last Transaction ID currently in the system
      */
     private static int lastTransactionID;
 
+    /**
+     * Where the transactions are read from and saved to, chosen when the transactions are first loaded
+     */
+    private static TransactionRepository repository;
+
+    /**
+     * A growable list of transaction IDs, so the indexes do not hold a Transaction for every transaction
+     */
+    private static class TransactionIDList {
+
+        private int[] ids = new int[4];
+        private int size;
+
+        private void add(int transactionID) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = transactionID;
+        }
+
+        private void removeFirst(int count) {
+            System.arraycopy(ids, count, ids, 0, size - count);
+            size -= count;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * A transaction read from the file, forgotten once nothing else refers to it
+     */
+    private static class ReadTransaction extends WeakReference<Transaction> {
+
+        private final int transactionID;
+
+        private ReadTransaction(Transaction transaction) {
+            super(transaction, unusedTransactions);
+            this.transactionID = transaction.getTRANSACTION_ID();
+        }
+    }
+
+    /**
+     * The contents of the transaction file to be written, taken at one point in time
+     */
+    private static class FileContents {
+
+        private final MappedTransactionFile source;
+        private final int[] changedIDs;
+        private final IntHashMap<String> changedLines = new IntHashMap<>();
+        private final int[] newIDs;
+        private final ArrayList<FinancialTransaction> financialTransactions;
+
+        /**
+         * The point the journal had got to when the contents were taken. Marked in order with the records
+         * submitted to the persistence writer, so it falls after the ones submitted before the contents were taken
+         * and before the ones submitted after.
+         */
+        private final Journal.Mark journalMark = new Journal.Mark();
+
+        private FileContents() {
+            source = mappedFile;
+            ArrayList<Transaction> changed = changedTransactions.values();
+            changedIDs = new int[changed.size()];
+            for (int i = 0; i < changedIDs.length; i++) {
+                changedIDs[i] = changed.get(i).getTRANSACTION_ID();
+                changedLines.put(changedIDs[i], transactionToFileLine(changed.get(i)));
+            }
+            newIDs = newTransactionIDs.toArray();
+            financialTransactions = new ArrayList<>(financialTransactionsArrayList);
+            PersistenceWriter.mark(journal, journalMark);
+        }
+    }
+
     /**
      * Constructs the database from the file
      */
     public static void init() {
 
         double ms = System.currentTimeMillis();
-        TransactionDatabase.readFile();
-        lastTransactionID = getLastTransactionID();
+        DataCommit.recover();
+        try {
+            getRepository().load();
+        } catch (IOException e) {
+            System.out.println ("Cannot open: " + e.getMessage());
+            System.exit(0);
+        }
+        transactionIDs.start(getLastTransactionID() + 1);
         System.out.println(
                 String.format("Transaction Database Loaded. %d Transactions on file. In %.2f ms",
-                        transactionArrayList.size(), System.currentTimeMillis()-ms));
+                        getRepository().getTransactionCount(), System.currentTimeMillis()-ms));
     }
 
     /**
-     * Reads the data file into the system
-     * @param in the scanner used to parse the file
-     * @return An arraylist of transactions produced from the file
+     * Indexes the lines of the mapped file, creating only the financial transactions
      */
-    private static void readDataFile (Scanner in) {
+    private static void readDataFile () {
 
-        transactionArrayList = new ArrayList<>();
         financialTransactionsArrayList = new ArrayList<>();
+        financialTransactionsByUser = new HashMap<>();
+        transactionsByUser = new HashMap<>();
+        transactionsByCopy = new HashMap<>();
+        changedTransactions = new IntHashMap<>();
+        newTransactionIDs = new TransactionIDList();
+        readTransactions = new IntHashMap<>();
+        transactionCount = 0;
+        lastTransactionID = 0;
+
+        mappedFile.scan(new MappedTransactionFile.Visitor() {
+
+            @Override
+            public void resourceTransaction(int transactionID, String username, int resourceID, int copyID) {
+                indexTransaction(transactionID, username, resourceID, copyID);
+                lastTransactionID = transactionID;
+            }
+
+            @Override
+            public void otherLine(String line) {
+                if (!line.isEmpty()) {
+                    addFinancialTransaction(readFinancialTransaction(line.split(DELIMITER), 1));
+                }
+            }
+        });
+    }
+
+    private static void indexTransaction(int transactionID, String username, int resourceID, int copyID) {
+
+        transactionsByUser.computeIfAbsent(username, user -> new TransactionIDList()).add(transactionID);
+        transactionsByCopy.computeIfAbsent(copyKey(resourceID, copyID), key -> new TransactionIDList())
+                .add(transactionID);
+        transactionCount++;
+    }
+
+    private static void addFinancialTransaction(FinancialTransaction financialTransaction) {
+
+        financialTransactionsArrayList.add(financialTransaction);
+        indexFinancialTransaction(financialTransaction);
+    }
+
+    private static void indexFinancialTransaction(FinancialTransaction financialTransaction) {
+
+        financialTransactionsByUser.computeIfAbsent(financialTransaction.getUSERNAME(),
+                username -> new ArrayList<>()).add(financialTransaction);
+    }
+
+    private static long copyKey(int resourceID, int copyID) {
 
-        while (in.hasNext()) {
+        return ((long) resourceID << Integer.SIZE) | (copyID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Applies the journal on top of the transactions read from the text file. A journalled resource transaction
+     * replaces the transaction with the same ID, every other record is added as a new transaction.
+     */
+    private static void replayJournal() {
+
+        ArrayList<String> records = journal.readRecords(snapshotChecksum);
+        if (records.isEmpty()) {
+            startJournal();
+            return;
+        }
+
+        int replayed = applyRecords(records);
+        if (replayed < records.size()) {
+            // The records after one which cannot be read are dropped, so new records are not appended after it
+            System.out.println(String.format("Journal record %d cannot be read, %d records dropped",
+                    replayed + 1, records.size() - replayed));
+            journal.truncate(replayed);
+        }
+        System.out.println(String.format("Replayed %d journalled transactions", replayed));
+    }
+
+    /**
+     * Applies records on top of the transactions already loaded, stopping at the first record which cannot be
+     * read, such as one cut short by a crash
+     * @return the number of records applied
+     */
+    private static int applyRecords(ArrayList<String> records) {
+
+        int applied = 0;
+        boolean isReadable = true;
+        while (isReadable && applied < records.size()) {
+            isReadable = applyRecord(records.get(applied));
+            if (isReadable) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies one record, only once all of it has been read
+     * @return false if the record could not be read, in which case nothing was applied
+     */
+    private static boolean applyRecord(String record) {
 
-            String[] transactionLine = in.nextLine().split(DELIMITER);
-            int index = 0;
-            if(transactionLine[index++].equals(RESOURCE_META_FLAG)) {
-                transactionArrayList.add(readResourceTransaction(transactionLine, index));
+        String[] transactionLine = record.split(DELIMITER);
+        try {
+            if (transactionLine[0].equals(RESOURCE_META_FLAG)) {
+                if (transactionLine.length != RESOURCE_FIELD_COUNT) {
+                    return false;
+                }
+                applyResourceTransaction(readResourceTransaction(transactionLine, 1));
             } else {
-                financialTransactionsArrayList.add(readFinancialTransaction(transactionLine, index));
+                if (!hasFinancialFieldCount(transactionLine)) {
+                    return false;
+                }
+                addFinancialTransaction(readFinancialTransaction(transactionLine, 1));
             }
+            return true;
+        } catch (RuntimeException ex) {
+            // A field which cannot be parsed, such as a date cut short
+            return false;
         }
     }
 
+    private static boolean hasFinancialFieldCount(String[] transactionLine) {
+
+        if (!transactionLine[0].equals(FINANCIAL_META_FLAG) || transactionLine.length < 2) {
+            return false;
+        } else if (transactionLine[1].equals(FINE_META_FLAG)) {
+            return transactionLine.length == FINE_FIELD_COUNT;
+        } else {
+            return transactionLine[1].equals(PAYMENT_META_FLAG) && transactionLine.length == PAYMENT_FIELD_COUNT;
+        }
+    }
+
+    private static void applyResourceTransaction(Transaction transaction) {
+
+        int transactionID = transaction.getTRANSACTION_ID();
+        if (!changedTransactions.containsKey(transactionID) && mappedFile.findRecord(transactionID) == -1) {
+            newTransactionIDs.add(transactionID);
+            indexTransaction(transactionID, transaction.getUSERNAME(), transaction.getRESOURCE_ID(),
+                    transaction.getCOPY_ID());
+            lastTransactionID = transactionID;
+        }
+        changedTransactions.put(transactionID, transaction);
+    }
+
     private static Transaction readResourceTransaction(String[] transactionLine, int index) {
         int transactionID = Integer.valueOf(transactionLine[index++]);
-        String username = transactionLine[index++];
+        String username = StringDictionary.intern(transactionLine[index++]);
         int copyID = Integer.valueOf(transactionLine[index++]);
         int resourceID = Integer.valueOf(transactionLine[index++]);
-        Boolean isReserved = Boolean.valueOf(transactionLine[index++]);
+        boolean isReserved = Boolean.parseBoolean(transactionLine[index++]);
 
         String date = transactionLine[index++];
         String time = transactionLine[index++];
         String returnDate = transactionLine[index++];
-        if (returnDate.equals("null")) {
-            returnDate = null;
-        }
-        String transactionDate = date + " " + time;
+        long transactionDate = DateFormats.parseDateTime(date + " " + time);
+        long returnEpoch = returnDate.equals("null") ? Transaction.NOT_RETURNED : DateFormats.parseDateTime(returnDate);
 
         Transaction newTransaction = new Transaction(transactionID, username, resourceID, copyID,
-                isReserved, transactionDate, returnDate);
+                isReserved, transactionDate, returnEpoch);
         return newTransaction;
     }
 
     private static FinancialTransaction readFinancialTransaction(String[] transactionLine, int index) {
 
         String metaFlag = transactionLine[index++];
-        String username = transactionLine[index++];
+        String username = StringDictionary.intern(transactionLine[index++]);
         float value = Float.valueOf(transactionLine[index++]);
-        String transactionDate = transactionLine[index++];
+        long transactionDate = DateFormats.parseDateTime(transactionLine[index++]);
         if(metaFlag.equals(FINE_META_FLAG)){
             int copyID = Integer.valueOf(transactionLine[index++]);
             int resourceID = Integer.valueOf(transactionLine[index++]);
@@ -130,68 +426,338 @@ public class TransactionDatabase {
     }
 
     /**
-     * Loads the file into the system and produces the arraylist of transactions
-     * @return An arraylist of transactions produced from the file
+     * Opens the file and indexes the transactions in it
      */
-    public static void readFile () {
+    public static synchronized void readFile () {
 
         File inputFile = new File (filePath);
-
-        Scanner in = null;
+        upgradeFile();
 
         try {
 
-            in = new Scanner(inputFile);
+            mappedFile = MappedTransactionFile.open(inputFile);
 
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
 
             System.out.println ("Cannot open: " + filePath);
 
             System.exit(0);
         }
 
-        TransactionDatabase.readDataFile(in);
+        TransactionDatabase.readDataFile();
+        snapshotChecksum = mappedFile.getChecksum();
     }
 
     /**
-     * Writes a list of transaction instances to a file
+     * Writes a list of transaction instances to a file, once every change waiting to be saved in the background
+     * has been saved
      */
     public static void writeFile () {
 
-        FileWriter transactionFile;
+        PersistenceWriter.flush();
+        DataCommit commit = new DataCommit();
 
         try {
 
-            transactionFile = new FileWriter(new File (filePath), false);
+            getRepository().checkpoint(commit);
+            commit.commit();
 
-            for (FinancialTransaction financialTransaction : financialTransactionsArrayList) {
+        } catch (IOException ex) {
 
-                String tempTransactionLine = financialTransaction.toLine();
-                if(financialTransaction instanceof FineTransaction){
-                    tempTransactionLine = FINE_META_FLAG + DELIMITER + tempTransactionLine;
-                } else if(financialTransaction instanceof PaymentTransaction){
-                    tempTransactionLine = PAYMENT_META_FLAG + DELIMITER + tempTransactionLine;
-                }
-                tempTransactionLine = FINANCIAL_META_FLAG + DELIMITER + tempTransactionLine;
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Saves the transactions to their repository as part of a commit, once every change waiting to be saved in the
+     * background has been saved. For the transaction file the journal is restarted against the new file once the
+     * commit succeeds.
+     * @param commit the commit the file is written as part of
+     * @throws IOException if the file could not be written
+     */
+    public static void checkpoint (DataCommit commit) throws IOException {
+
+        PersistenceWriter.flush();
+        getRepository().checkpoint(commit);
+    }
+
+    /**
+     * Gets the repository the transactions are kept in. The SQL database is used if one has been configured,
+     * otherwise the transaction file.
+     * @return the repository
+     */
+    static synchronized TransactionRepository getRepository () {
+
+        if (repository == null) {
+            repository = JdbcStore.isConfigured() ? new JdbcTransactionRepository() : new FlatFileRepository();
+        }
+        return repository;
+    }
 
-                transactionFile.write(tempTransactionLine);
-                transactionFile.write(System.lineSeparator());
+    /**
+     * Changes the repository the transactions are kept in. Must be called before the transactions are loaded.
+     * @param newRepository the repository to use
+     */
+    public static synchronized void setRepository (TransactionRepository newRepository) {
+
+        repository = newRepository;
+    }
+
+    /**
+     * Gets every financial transaction, in the order they were made
+     * @return the financial transactions
+     */
+    static synchronized ArrayList<FinancialTransaction> getAllFinancialTransactions () {
+
+        return getRepository().findAllFinancial();
+    }
+
+    /**
+     * Upgrades the transaction file and its journal if they are written in an older version of their format
+     */
+    static void upgradeFile () {
+
+        FormatMigrator.upgrade(new File (filePath), FormatMigrator.TRANSACTION_FILE, journal.getFile());
+    }
+
+    /**
+     * Deletes the journal, so it is not replayed over a transaction file restored from an archive. Only used
+     * before the database is loaded.
+     * @throws IOException if the journal could not be deleted
+     */
+    static void discardJournal () throws IOException {
+
+        journal.discard();
+    }
+
+    /**
+     * Rewrites the transaction file on the persistence writer thread, from the transactions as they are when the
+     * rewrite starts. Changes made after that are journalled after the rewrite, so none are lost. Nothing is
+     * rewritten if a checkpoint is rewriting the file at the time.
+     * The file is written by a second write, queued behind the records which were submitted before the contents
+     * were taken but are not written yet, so the journal is marked after them.
+     */
+    private static void writeFileInBackground () {
+
+        changesSinceCompaction = 0;
+        PersistenceWriter.submit(() -> {
+            if (rewriteLock.tryLock()) {
+                FileContents contents = currentContents();
+                PersistenceWriter.submit(() -> {
+                    try {
+                        writeFile(contents);
+                    } finally {
+                        rewriteLock.unlock();
+                    }
+                });
             }
+        });
+    }
+
+    private static synchronized FileContents currentContents () {
 
-            for (Transaction tempTransaction : transactionArrayList) {
+        return new FileContents();
+    }
+
+    private static void writeFile (FileContents contents) {
+
+        DataCommit commit = new DataCommit();
+
+        try {
+
+            stageFile(commit, contents);
+            commit.commit();
+
+        } catch (IOException ex) {
+
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the transaction file to a staged file. Transactions which have not changed are copied line by line
+     * from the mapped file without being created. In journal mode the restarted journal is written before the
+     * commit, so a crash leaves a journal for whichever transaction file is found.
+     */
+    private static void stageFile (DataCommit commit, FileContents contents) throws IOException {
+
+        RecordWriter transactionFile = new RecordWriter(commit.stage(new File (filePath)), StandardCharsets.UTF_8);
+        try {
+
+            FormatMigrator.writeHeader(transactionFile, FormatMigrator.TRANSACTION_FILE);
+
+            for (FinancialTransaction financialTransaction : contents.financialTransactions) {
+
+                writeFinancialTransaction(financialTransaction, transactionFile);
+                transactionFile.newLine();
+            }
+
+            MappedTransactionFile source = contents.source;
+            for (int i = 0; i < source.getRecordCount(); i++) {
+
+                String changedLine = contents.changedLines.get(source.getRecordID(i));
+                if (changedLine != null) {
+                    transactionFile.write(changedLine);
+                } else {
+                    source.copyLine(source.getRecordOffset(i), transactionFile);
+                }
+                transactionFile.newLine();
+            }
 
-                String tempTransactionLine = RESOURCE_META_FLAG + DELIMITER + tempTransaction.transactionToLine();
+            for (int transactionID : contents.newIDs) {
 
-                transactionFile.write(tempTransactionLine);
-                transactionFile.write(System.lineSeparator());
+                transactionFile.write(contents.changedLines.get(transactionID));
+                transactionFile.newLine();
             }
 
+        } finally {
             transactionFile.close();
+        }
+        long checksum = transactionFile.getChecksum();
+
+        boolean journalled = journalMode;
+        if (journalled) {
+            prepareJournal(commit, checksum, contents.journalMark);
+        }
+
+        commit.onCommit(() -> {
+            snapshotChecksum = checksum;
+            fileWritten(contents);
+            if (journalled) {
+                restartJournal();
+            }
+        });
+    }
+
+    /**
+     * Opens the file which has just been written in place of the old one. Transactions written to it which have not
+     * changed again since are no longer held as changed.
+     * @param contents what was written to the file
+     */
+    private static synchronized void fileWritten (FileContents contents) {
+
+        MappedTransactionFile writtenFile;
+        try {
+            writtenFile = MappedTransactionFile.open(new File (filePath));
+            writtenFile.scan(null);
+        } catch (IOException ex) {
+            // The old file and the changed transactions still hold every transaction
+            System.out.println("Cannot open: " + filePath);
+            return;
+        }
+
+        mappedFile = writtenFile;
+        for (int transactionID : contents.changedIDs) {
+            Transaction transaction = changedTransactions.get(transactionID);
+            if (transaction != null
+                    && transactionToFileLine(transaction).equals(contents.changedLines.get(transactionID))) {
+                changedTransactions.remove(transactionID);
+                readTransactions.put(transactionID, new ReadTransaction(transaction));
+            }
+        }
+        // A rewrite queued before the previous one finished also holds the transactions that one wrote, so only
+        // the new transactions now in the file are dropped
+        int written = 0;
+        while (written < newTransactionIDs.size && writtenFile.findRecord(newTransactionIDs.ids[written]) != -1) {
+            written++;
+        }
+        newTransactionIDs.removeFirst(written);
+    }
+
+    /**
+     * Enables or disables journal mode. When disabled every change rewrites the whole transaction file.
+     * @param enabled true to journal changes, false to rewrite the file on every change
+     */
+    public static void setJournalMode(boolean enabled) {
+
+        if (journalMode && !enabled && mappedFile != null) {
+            writeFile();
+        }
+        journalMode = enabled;
+    }
+
+    /**
+     * Records that an existing transaction has changed, for example because it has been returned, so the change
+     * is saved.
+     * @param transaction the transaction which has changed
+     */
+    public static synchronized void updateTransaction(Transaction transaction) {
+
+        getRepository().update(transaction);
+    }
+
+    /**
+     * Folds the journal into the transaction file and empties the journal, waiting for the file to be written
+     */
+    public static void compact() {
+
+        TransactionDatabase.writeFile();
+    }
+
+    /**
+     * Starts an empty journal against the transaction file as it currently is on disk
+     */
+    private static void startJournal() {
+
+        try {
+            journal.reset(snapshotChecksum);
+        } catch (IOException ex) {
+            System.out.println("Journal Write Error: " + ex.getMessage());
+            journal.markFailed();
+        }
+    }
+
+    /**
+     * Writes the journal which is started against the transaction file being written, keeping the records
+     * journalled after its contents were taken, as they are not in the file
+     * @param commit the commit the transaction file is staged in
+     * @param checksum checksum of the transaction file
+     * @param mark the mark set when the contents of the file were taken
+     * @throws IOException if the journal could not be written
+     */
+    private static void prepareJournal(DataCommit commit, long checksum, Journal.Mark mark) throws IOException {
 
+        // Waits for the mark, which is queued behind the records submitted before the contents were taken
+        PersistenceWriter.flush();
+        journal.prepareRestart(checksum, mark);
+        commit.onAbort(journal::abandonRestart);
+    }
+
+    /**
+     * Puts the restarted journal in place once the transaction file has been committed. If it cannot be, both
+     * journals are kept and the restarted one is used if the program stops before it is put in place.
+     */
+    private static void restartJournal() {
+
+        try {
+            journal.completeRestart();
         } catch (IOException ex) {
+            System.out.println("Journal Write Error: " + ex.getMessage());
+        }
+    }
+
+    private static String transactionToFileLine(Transaction transaction) {
+
+        return RESOURCE_META_FLAG + DELIMITER + transaction.transactionToLine();
+    }
+
+    private static String financialTransactionToFileLine(FinancialTransaction financialTransaction) {
 
-                System.out.println("File Write Error");
+        return RecordWriter.toLine(out -> writeFinancialTransaction(financialTransaction, out));
+    }
+
+    private static void writeFinancialTransaction(FinancialTransaction financialTransaction, RecordWriter out)
+            throws IOException {
+
+        out.write(FINANCIAL_META_FLAG).delimiter();
+        if(financialTransaction instanceof FineTransaction){
+            out.write(FINE_META_FLAG).delimiter();
+        } else if(financialTransaction instanceof PaymentTransaction){
+            out.write(PAYMENT_META_FLAG).delimiter();
         }
+        financialTransaction.writeTo(out);
     }
 
 
@@ -199,56 +765,134 @@ public class TransactionDatabase {
      * Gets the transaction ID of the last transaction in the system
      * @return ID of the last transaction
      */
-    public static int getLastTransactionID () {
-        if(transactionArrayList.size() == 0) {
-            return 0;
-        }
-        Transaction lastTransaction = transactionArrayList.get(transactionArrayList.size()-1);
+    public static synchronized int getLastTransactionID () {
 
-        return lastTransaction.getTRANSACTION_ID();
+        return getRepository().getLastTransactionID();
     }
 
     /**
-     * Gets all transactions in the system
+     * Gets all transactions in the system. Every transaction is created, so this should only be used for reports
+     * which need all of them
      * @return Arraylist of transaction instances
      */
-    public static ArrayList getAllTransactions() {
+    public static synchronized ArrayList<Transaction> getAllTransactions() {
 
-        return transactionArrayList;
+        return getRepository().findAll();
     }
 
     /**
      * Gets a specific transaction using the transaction ID
      * @return Transaction instance with the corresponding transaction ID
      */
-    public static Transaction getSpecificTransaction(int transactionID) {
+    public static synchronized Transaction getSpecificTransaction(int transactionID) {
 
-        Transaction transaction = null;
+        return getRepository().find(transactionID);
+    }
 
-        for (Transaction tempTransaction : transactionArrayList) {
+    /**
+     * Creates a transaction from the columns of the mapped file, giving out the instance already created if it is
+     * still in use
+     * @param transactionID the ID of the transaction
+     * @return the transaction, or null if it is not in the file
+     */
+    private static Transaction readTransaction(int transactionID) {
+
+        Transaction transaction = sharedTransaction(transactionID);
+        if (transaction != null) {
+            return transaction;
+        }
 
-            if (tempTransaction.getTRANSACTION_ID() == transactionID) {
+        int record = mappedFile.findRecord(transactionID);
+        if (record == -1) {
+            return null;
+        }
+        return share(mappedFile.getColumns().toTransaction(record));
+    }
 
-                transaction = tempTransaction;
+    /**
+     * Gets the instance of a transaction read from the repository, if it is still in use
+     * @param transactionID the ID of the transaction
+     * @return the transaction, or null if it has not been read or is no longer in use
+     */
+    static Transaction sharedTransaction(int transactionID) {
+
+        ReadTransaction unused = (ReadTransaction) unusedTransactions.poll();
+        while (unused != null) {
+            if (readTransactions.get(unused.transactionID) == unused) {
+                readTransactions.remove(unused.transactionID);
             }
+            unused = (ReadTransaction) unusedTransactions.poll();
+        }
+
+        ReadTransaction read = readTransactions.get(transactionID);
+        return read == null ? null : read.get();
+    }
+
+    /**
+     * Gives out a transaction read from the repository as the instance already in use, if there is one, so a
+     * change made to a transaction is seen by everything holding it
+     * @param transaction the transaction as it has just been read
+     * @return the instance of the transaction to use
+     */
+    static Transaction share(Transaction transaction) {
+
+        Transaction shared = sharedTransaction(transaction.getTRANSACTION_ID());
+        if (shared != null) {
+            return shared;
+        }
+        readTransactions.put(transaction.getTRANSACTION_ID(), new ReadTransaction(transaction));
+        return transaction;
+    }
+
+    /**
+     * Gets the transactions with the given IDs
+     */
+    private static ArrayList<Transaction> getTransactions(TransactionIDList transactionIDs) {
+
+        ArrayList<Transaction> transactions = new ArrayList<>();
+        if (transactionIDs != null) {
+            for (int i = 0; i < transactionIDs.size; i++) {
+                transactions.add(findTransaction(transactionIDs.ids[i]));
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * Gets a transaction from the changed transactions or the transaction file
+     */
+    private static Transaction findTransaction(int transactionID) {
+
+        Transaction transaction = changedTransactions.get(transactionID);
+        if (transaction == null) {
+            transaction = readTransaction(transactionID);
         }
         return transaction;
     }
 
+    /**
+     * Gets every transaction of a specific copy of a resource
+     * @param resourceID the ID of the resource
+     * @param copyID the ID of the copy of the resource
+     * @return An arraylist of the copy's transactions, oldest first
+     */
+    public static synchronized ArrayList<Transaction> getAllTransactionsCopy(int resourceID, int copyID) {
+
+        return getRepository().findByCopy(resourceID, copyID);
+    }
+
     /**
      * Adds a new transaction to the database
      * @param username The username associated with the transaction
      * @param copyID The copy id associated with the transaction
      * @param isReserved If the item is reserved
      */
-    public static Transaction addNewTransaction (String username, int resourceID, int copyID, Boolean isReserved) {
+    public static synchronized Transaction addNewTransaction (String username, int resourceID, int copyID,
+                                                              Boolean isReserved) {
 
-        int transactionID = getLastTransactionID()+1;
+        int transactionID = transactionIDs.next();
         Transaction newTransaction = new Transaction(transactionID, username, resourceID, copyID, isReserved);
-
-        transactionArrayList.add(newTransaction);
-
-        TransactionDatabase.writeFile();
+        getRepository().add(newTransaction);
         return newTransaction;
     }
 
@@ -256,13 +900,11 @@ public class TransactionDatabase {
      * Adds a new transaction to the database
      * @param username The username associated with the transaction
      */
-    public static FineTransaction addNewFine(String username, float value, Copy c, int daysOverdue) {
+    public static synchronized FineTransaction addNewFine(String username, float value, Copy c, int daysOverdue) {
 
 
         FineTransaction newTransaction = new FineTransaction(username, value, c, daysOverdue);
-        financialTransactionsArrayList.add(newTransaction);
-
-        TransactionDatabase.writeFile();
+        getRepository().addFinancial(newTransaction);
         return newTransaction;
     }
 
@@ -270,25 +912,17 @@ public class TransactionDatabase {
      * Adds a new transaction to the database
      * @param username The username associated with the transaction
      */
-    public static PaymentTransaction addNewPayment(String username, float value) {
+    public static synchronized PaymentTransaction addNewPayment(String username, float value) {
 
         PaymentTransaction newTransaction = new PaymentTransaction(username, value);
-        financialTransactionsArrayList.add(newTransaction);
-
-        TransactionDatabase.writeFile();
+        getRepository().addFinancial(newTransaction);
         return newTransaction;
     }
 
 
-    public static ArrayList<FinancialTransaction> getUserFinancialTransactionHistory(String username) {
+    public static synchronized ArrayList<FinancialTransaction> getUserFinancialTransactionHistory(String username) {
 
-        ArrayList<FinancialTransaction> usersTransactions = new ArrayList<>();
-        for (FinancialTransaction tempTransaction : financialTransactionsArrayList) {
-            if (tempTransaction.getUSERNAME().equals(username)) {
-                usersTransactions.add(tempTransaction);
-            }
-        }
-        return usersTransactions;
+        return getRepository().findFinancialByUser(username);
     }
 
     /**
@@ -296,19 +930,34 @@ public class TransactionDatabase {
      * @param username username of the user
      * @return An arraylist of transactions
      */
-    public static ArrayList<Transaction> getAllTransactionsUser (String username) {
+    public static synchronized ArrayList<Transaction> getAllTransactionsUser (String username) {
 
-        ArrayList<Transaction> usersTransactions = new ArrayList<>();
+        return getRepository().findByUser(username);
+    }
 
-        for (Transaction tempTransaction : transactionArrayList) {
+    /**
+     * Gets the transactions of a specific user which have not been returned
+     * @param username username of the user
+     * @return An arraylist of transactions, oldest first
+     */
+    public static synchronized ArrayList<Transaction> getOpenTransactionsUser (String username) {
 
-            if (tempTransaction.getUSERNAME().equals(username)) {
+        return getRepository().findOpenByUser(username);
+    }
 
-                usersTransactions.add(tempTransaction);
-            }
-        }
+    /**
+     * Checks if a transaction might not have been returned, using the columns of the transaction file for a
+     * transaction which has not changed since the file was written
+     * @param transactionID the ID of the transaction
+     * @return false if the transaction is known to have been returned or is not in the file
+     */
+    private static boolean mayBeOpen (int transactionID) {
 
-        return usersTransactions;
+        if (changedTransactions.containsKey(transactionID)) {
+            return true;
+        }
+        int record = mappedFile.findRecord(transactionID);
+        return record != -1 && !mappedFile.getColumns().isReturned(record);
     }
 
     /**
@@ -317,24 +966,26 @@ public class TransactionDatabase {
      * @param copyID the copyID which the user has taken out
      * @param isReserved the reserve status of the transaction
      */
-    public static void changeReservedStatusOfTransaction (String username, int copyID, Boolean isReserved) {
+    public static synchronized void changeReservedStatusOfTransaction (String username, int copyID,
+                                                                       Boolean isReserved) {
 
         Transaction transaction = null;
+        ArrayList<Transaction> usersTransactions = getAllTransactionsUser(username);
 
-        for (Transaction tempTransaction : transactionArrayList) {
-
-            System.out.println(tempTransaction.getUSERNAME());
-            System.out.println(tempTransaction.getCOPY_ID());
+        // The most recent transaction of the user for the copy is the one to change
+        for (int i = usersTransactions.size() - 1; i >= 0 && transaction == null; i--) {
 
-            if (tempTransaction.getUSERNAME().equals(username) && tempTransaction.getCOPY_ID() == copyID) {
+            if (usersTransactions.get(i).getCOPY_ID() == copyID) {
 
-                transaction = tempTransaction;
+                transaction = usersTransactions.get(i);
             }
-
-
+        }
+        if (transaction == null) {
+            throw new IllegalArgumentException(
+                    String.format("User %s has no transaction for copy %d", username, copyID));
         }
         transaction.setReserved(isReserved);
-        TransactionDatabase.writeFile();
+        updateTransaction(transaction);
     }
 
     /**
@@ -361,6 +1012,184 @@ public class TransactionDatabase {
      */
     public static void close(){
         TransactionDatabase.writeFile();
+        try {
+            getRepository().close();
+        } catch (IOException ex) {
+            System.out.println("Journal Write Error");
+        }
+    }
+
+    /**
+     * Keeps the transactions in the indexed transaction file, with a journal of the transactions created or
+     * changed since the file was last written
+     */
+    static class FlatFileRepository implements TransactionRepository {
+
+        /**
+         * Maps the transaction file, upgrading it first if it is written in an older format, and replays the
+         * journal over it
+         */
+        @Override
+        public void load() {
+
+            TransactionDatabase.readFile();
+            TransactionDatabase.replayJournal();
+            changesSinceCompaction = journal.getRecordCount();
+        }
+
+        @Override
+        public void add(Transaction transaction) {
+
+            int transactionID = transaction.getTRANSACTION_ID();
+            lastTransactionID = transactionID;
+            changedTransactions.put(transactionID, transaction);
+            newTransactionIDs.add(transactionID);
+            indexTransaction(transactionID, transaction.getUSERNAME(), transaction.getRESOURCE_ID(),
+                    transaction.getCOPY_ID());
+            saveChange(transactionToFileLine(transaction));
+        }
+
+        @Override
+        public void update(Transaction transaction) {
+
+            changedTransactions.put(transaction.getTRANSACTION_ID(), transaction);
+            saveChange(transactionToFileLine(transaction));
+        }
+
+        @Override
+        public void addFinancial(FinancialTransaction financialTransaction) {
+
+            addFinancialTransaction(financialTransaction);
+            saveChange(financialTransactionToFileLine(financialTransaction));
+        }
+
+        @Override
+        public Transaction find(int transactionID) {
+
+            return findTransaction(transactionID);
+        }
+
+        /**
+         * Gets the transactions in the order of the transaction file, then the new transactions
+         */
+        @Override
+        public ArrayList<Transaction> findAll() {
+
+            ArrayList<Transaction> transactions = new ArrayList<>(transactionCount);
+            for (int i = 0; i < mappedFile.getRecordCount(); i++) {
+                transactions.add(findTransaction(mappedFile.getRecordID(i)));
+            }
+            for (int transactionID : newTransactionIDs.toArray()) {
+                transactions.add(findTransaction(transactionID));
+            }
+            return transactions;
+        }
+
+        @Override
+        public ArrayList<Transaction> findByUser(String username) {
+
+            return getTransactions(transactionsByUser.get(username));
+        }
+
+        /**
+         * Returned transactions in the transaction file are skipped using its columns, without being created
+         */
+        @Override
+        public ArrayList<Transaction> findOpenByUser(String username) {
+
+            ArrayList<Transaction> transactions = new ArrayList<>();
+            TransactionIDList transactionIDs = transactionsByUser.get(username);
+            if (transactionIDs == null) {
+                return transactions;
+            }
+
+            for (int i = 0; i < transactionIDs.size; i++) {
+                int transactionID = transactionIDs.ids[i];
+                if (mayBeOpen(transactionID)) {
+                    Transaction transaction = findTransaction(transactionID);
+                    if (transaction.returnDateEpoch() == Transaction.NOT_RETURNED) {
+                        transactions.add(transaction);
+                    }
+                }
+            }
+            return transactions;
+        }
+
+        @Override
+        public ArrayList<Transaction> findByCopy(int resourceID, int copyID) {
+
+            return getTransactions(transactionsByCopy.get(copyKey(resourceID, copyID)));
+        }
+
+        @Override
+        public ArrayList<FinancialTransaction> findAllFinancial() {
+
+            return new ArrayList<>(financialTransactionsArrayList);
+        }
+
+        @Override
+        public ArrayList<FinancialTransaction> findFinancialByUser(String username) {
+
+            ArrayList<FinancialTransaction> usersTransactions = financialTransactionsByUser.get(username);
+            if (usersTransactions == null) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(usersTransactions);
+        }
+
+        @Override
+        public int getLastTransactionID() {
+
+            return lastTransactionID;
+        }
+
+        @Override
+        public int getTransactionCount() {
+
+            return transactionCount;
+        }
+
+        /**
+         * Saves the change in the background, either by journalling it or by rewriting the transaction file
+         */
+        private void saveChange(String record) {
+
+            if (!journalMode) {
+                writeFileInBackground();
+                return;
+            }
+
+            if (journal.hasFailed()) {
+                System.out.println("Journal Write Error, rewriting transaction file");
+                writeFileInBackground();
+                return;
+            }
+
+            PersistenceWriter.append(journal, record);
+            changesSinceCompaction++;
+            if (changesSinceCompaction >= JOURNAL_COMPACTION_THRESHOLD) {
+                writeFileInBackground();
+            }
+        }
+
+        /**
+         * The file is not rewritten by anything else until the commit has been made or abandoned
+         */
+        @Override
+        public void checkpoint(DataCommit commit) throws IOException {
+
+            rewriteLock.lock();
+            commit.onAbort(rewriteLock::unlock);
+            changesSinceCompaction = 0;
+            stageFile(commit, currentContents());
+            commit.onCommit(rewriteLock::unlock);
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            journal.close();
+        }
     }
 
 
@@ -369,7 +1198,7 @@ public class TransactionDatabase {
 
         String toString = "";
 
-        for (Transaction tempTransaction : transactionArrayList) {
+        for (Transaction tempTransaction : getAllTransactions()) {
 
             toString = toString + "\n" + tempTransaction.toString();
 
@@ -385,11 +1214,9 @@ public class TransactionDatabase {
 
         //Initialize database
         init();
-        for(Transaction t: transactionArrayList) {
+        for(Transaction t: getAllTransactions()) {
             System.out.println(t);
         }
-        // Clear data for now
-        transactionArrayList.clear();
 
         addNewTransaction("Jeff", 80, 2, false);
         addNewTransaction("Long ass name with some weird characters in it ?", Integer.MIN_VALUE,
@@ -0,0 +1,120 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import Backend.Transactions.FinancialTransaction;
+import Backend.Transactions.Transaction;
+
+/**
+ * File Name: TransactionRepository.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Where the transactions are kept and looked up. The transaction database hands every new or changed transaction to
+ * its repository and asks the repository for the transactions it needs, so a repository may keep the transactions
+ * out of memory. Every method is called while the transaction database is locked, in the order the changes are
+ * made. A transaction which is still in use must be given out as the same instance each time it is asked for.
+ * A repository which cannot read or save a transaction throws an UncheckedIOException.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public interface TransactionRepository {
+
+    /**
+     * Opens the stored transactions, reading any the repository keeps in memory
+     *
+     * @throws IOException if the transactions could not be read
+     */
+    void load() throws IOException;
+
+    /**
+     * Saves a new resource transaction
+     *
+     * @param transaction the transaction
+     */
+    void add(Transaction transaction);
+
+    /**
+     * Saves a resource transaction which has changed, for example because it has been returned
+     *
+     * @param transaction the transaction
+     */
+    void update(Transaction transaction);
+
+    /**
+     * Saves a new financial transaction
+     *
+     * @param financialTransaction the fine or payment
+     */
+    void addFinancial(FinancialTransaction financialTransaction);
+
+    /**
+     * Looks up a resource transaction by its ID
+     *
+     * @param transactionID the ID of the transaction
+     * @return the transaction, or null if there is none with the ID
+     */
+    Transaction find(int transactionID);
+
+    /**
+     * @return every resource transaction, oldest first
+     */
+    ArrayList<Transaction> findAll();
+
+    /**
+     * @param username the username of the user
+     * @return the resource transactions of the user, oldest first
+     */
+    ArrayList<Transaction> findByUser(String username);
+
+    /**
+     * @param username the username of the user
+     * @return the resource transactions of the user which have not been returned, oldest first
+     */
+    ArrayList<Transaction> findOpenByUser(String username);
+
+    /**
+     * @param resourceID the ID of the resource
+     * @param copyID the ID of the copy of the resource
+     * @return the resource transactions of the copy, oldest first
+     */
+    ArrayList<Transaction> findByCopy(int resourceID, int copyID);
+
+    /**
+     * @return every financial transaction, in the order they were made
+     */
+    ArrayList<FinancialTransaction> findAllFinancial();
+
+    /**
+     * @param username the username of the user
+     * @return the financial transactions of the user, in the order they were made
+     */
+    ArrayList<FinancialTransaction> findFinancialByUser(String username);
+
+    /**
+     * @return the ID of the last resource transaction made, 0 if there are none
+     */
+    int getLastTransactionID();
+
+    /**
+     * @return the number of resource transactions
+     */
+    int getTransactionCount();
+
+    /**
+     * Saves every transaction as part of a commit, so nothing saved before the commit is needed to read them.
+     *
+     * @param commit the commit to stage any files in
+     * @throws IOException if the transactions could not be saved
+     */
+    void checkpoint(DataCommit commit) throws IOException;
+
+    /**
+     * Releases anything held open by the repository
+     *
+     * @throws IOException if the repository could not be closed cleanly
+     */
+    void close() throws IOException;
+}
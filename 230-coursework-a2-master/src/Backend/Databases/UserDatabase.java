@@ -1,7 +1,13 @@
 package Backend.Databases;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 
 import Backend.Resources.Book;
 import Backend.Resources.Copy;
@@ -13,12 +19,17 @@ import java.io.*;
 import java.text.SimpleDateFormat;
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 /**
  * File Name: UserDatabase.java
  * Creation Date: 9/12/2018
  * Copyright: No Copyright
  *
+ * Users can be looked up from any thread without locking. The list of users is replaced rather than changed, so a
+ * list given out is never changed under its reader, and changes to the database are made one at a time.
+ *
  * @version 1.0
  * @author William Lovett
  */
@@ -27,11 +38,21 @@ public class UserDatabase {
     private static final String DELIMITER = "\t";
     private static final String USER_META_FLAG = "U";
     private static final String LIBRARIAN_META_FLAG = "L";
+    private static final String DELETED_META_FLAG = "D";
+
+    /**
+     * Number of journal lines after which the journal is compacted into the user file
+     */
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 1000;
 
     /**
-     * The next unassigned librarian ID
+     * Number of staff IDs reserved each time the sequence file is written
      */
-    private static Integer nextStaffID = null;
+    private static final int STAFF_ID_BLOCK = 10;
+    /**
+     * The librarian IDs handed out
+     */
+    private static final IdSequence staffIDs = new IdSequence("Staff", STAFF_ID_BLOCK);
 
     /**
      * A static File of Users
@@ -42,9 +63,46 @@ public class UserDatabase {
      */
     private static File config_file = new File("src/data/UserDatabaseMeta.txt");
     /**
-     *
+     * Journal of the users changed or deleted since the user file was last written
+     */
+    private static Journal journal = new Journal(new File("src/data/Users.journal"));
+    /**
+     * Checksum of the user file as it was last read or written
+     */
+    private static long snapshotChecksum;
+    /**
+     * Every user, replaced rather than changed
+     */
+    private static volatile ArrayList<User> users;
+    /**
+     * Every user by their username
+     */
+    private static volatile ConcurrentHashMap<String, User> usersByUsername = new ConcurrentHashMap<>();
+    /**
+     * Search index over the searchable fields of every user
      */
-    private static ArrayList<User> users;
+    private static volatile SearchIndex<User> userIndex = new SearchIndex<>();
+    /**
+     * Users changed since the database was last saved, with the number of the change which last marked them
+     */
+    private static LinkedHashMap<User, Long> dirtyUsers = new LinkedHashMap<>();
+    /**
+     * Usernames which no longer belong to a saved user, because the user was removed or renamed, with the number
+     * of the change which deleted them
+     */
+    private static LinkedHashMap<String, Long> deletedUsernames = new LinkedHashMap<>();
+    /**
+     * Number of the last change marked, so a save only forgets the changes it saved
+     */
+    private static long changeCount;
+    /**
+     * The item lines of users read from file, kept until the users are linked to the resource database
+     */
+    private static IdentityHashMap<User, String[]> unlinkedItems = new IdentityHashMap<>();
+    /**
+     * Where the users are read from and saved to, chosen when the users are first loaded
+     */
+    private static UserRepository repository;
 
 
     /**  Searches through the ArrayList of Users for a specific user by userName
@@ -52,13 +110,22 @@ public class UserDatabase {
      * @return userTrans
      */
     public static User queryUserByUsername(String query) {
-        for (User userTrans : users) {
-            if (userTrans.getUsername().equals(query)) {
-                return userTrans;
-            }
+        return usersByUsername.get(query);
+    }
 
+    /**
+     * Keeps the username index up to date when a user's username is changed
+     *
+     * @param user the user whose username has changed
+     * @param oldUsername the username the user had before
+     */
+    public static synchronized void changeUsername(User user, String oldUsername) {
+        if (usersByUsername.get(oldUsername) == user) {
+            usersByUsername.remove(oldUsername);
+            usersByUsername.putIfAbsent(user.getUsername(), user);
+            deletedUsernames.put(oldUsername, ++changeCount);
+            reindex(user);
         }
-        return null;
     }
 
     /** Takes in the selected query and passes it on to queryUser (String, ArrayList<User>)
@@ -66,7 +133,7 @@ public class UserDatabase {
      * @return queryUser(query, users)
      */
     public static ArrayList<User> queryUser(String query) {
-        return queryUser(query, users);
+        return userIndex.query(query);
     }
 
     /**Searches through the ArrayList of Users for a specific user
@@ -78,7 +145,7 @@ public class UserDatabase {
 
         ArrayList<User> queryResultU = new ArrayList<User>();
         for (User userTrans : users) {
-            if (partialMatch(query, false, true, userTrans.getUsername(), userTrans.getFirstName(),
+            if (SearchIndex.partialMatch(query, userTrans.getUsername(), userTrans.getFirstName(),
                     userTrans.getLastName(), userTrans.getMobileNumber(), userTrans.getAddressLine1(),
                     userTrans.getAddressLine2(), userTrans.getPostTown(), userTrans.getPostcode(),
                     userTrans.getUSER_CREATION_DATE())) {
@@ -92,33 +159,62 @@ public class UserDatabase {
 
     }
 
-    /** Checks to see if the query matches with any users even if the query isn't in the right case
-     * @param matchWith
-     * @param caseSensitive
-     * @param ignoreSpaces
-     * @param candidates
-     * @return returns either true or false
+    /**
+     * Updates the search index after the searchable fields of a user have been changed and marks the user to be
+     * saved. Users which are not in the database are ignored.
+     *
+     * @param user the user which has been edited
      */
-    private static boolean partialMatch(String matchWith, boolean caseSensitive, boolean ignoreSpaces, String... candidates) {
-        if (!caseSensitive) {
-            matchWith = matchWith.toLowerCase();
+    public static synchronized void reindex(User user) {
+        if (userIndex.contains(user)) {
+            indexUser(user);
+            dirtyUsers.put(user, ++changeCount);
         }
-        if (ignoreSpaces) {
-            matchWith = matchWith.replaceAll(" ", "");
+    }
+
+    /**
+     * Marks a user as changed so their record is written the next time the database is saved. Users which are not
+     * in the database are ignored.
+     *
+     * @param user the user which has been edited
+     */
+    public static synchronized void markDirty(User user) {
+        if (userIndex.contains(user)) {
+            dirtyUsers.put(user, ++changeCount);
         }
+    }
 
-        for (String candidate : candidates) {
-            if (!caseSensitive) {
-                candidate = candidate.toLowerCase();
-            }
-            if (ignoreSpaces) {
-                candidate = candidate.replaceAll(" ", "");
-            }
-            if (candidate.contains(matchWith)) {
-                return true;
+    /**
+     * Rebuilds the username and search indexes from the list of users
+     */
+    private static synchronized void rebuildIndex() {
+        ConcurrentHashMap<String, User> byUsername = new ConcurrentHashMap<>();
+        SearchIndex<User> index = new SearchIndex<>();
+        int highestStaffID = 0;
+        for (User u : users) {
+            byUsername.putIfAbsent(u.getUsername(), u);
+            indexUser(index, u);
+            if (u instanceof Librarian) {
+                highestStaffID = Math.max(highestStaffID, ((Librarian) u).getStaffNumber());
             }
         }
-        return false;
+        usersByUsername = byUsername;
+        userIndex = index;
+        staffIDs.start(highestStaffID + 1);
+    }
+
+    private static void indexUser(User u) {
+        indexUser(userIndex, u);
+    }
+
+    private static void indexUser(SearchIndex<User> index, User u) {
+        index.add(u, userFields(u));
+    }
+
+    private static String[] userFields(User u) {
+        return new String[]{u.getUsername(), u.getFirstName(), u.getLastName(), u.getMobileNumber(),
+                u.getAddressLine1(), u.getAddressLine2(), u.getPostTown(), u.getPostcode(),
+                u.getUSER_CREATION_DATE()};
     }
 
     /** Takes in a Scanner of user entries and creates an ArrayList of Users
@@ -131,52 +227,126 @@ public class UserDatabase {
         // username firstName lastName 12 1 streetName postTown postcode
         // profileImageLocation 1999-10-10
         String str;
-        String[] userList;
 
         while (in.hasNext()) {
             str = in.nextLine();
-            System.out.println(str);
-            userList = str.split(DELIMITER);
-            int index = 0;
-
-            String userType = userList[index++];
-            String username = userList[index++];
-            String firstName = userList[index++];
-            String lastName = userList[index++];
-            String mobileNumber = userList[index++];
-            String emailAddress = userList[index++];
-            String addressLine1 = userList[index++];
-            String addressLine2 = userList[index++];
-            String postTown = userList[index++];
-            String postcode = userList[index++];
-            String profileImageLocation = userList[index++];
-            String userCreationDate = userList[index++];
-            float accountBalance = Float.parseFloat(userList[index++]);
-
-            ArrayList<Copy> borrowedItems = readCopies(in.nextLine().split(DELIMITER));
-            ArrayList<Copy> reservedItems = readCopies(in.nextLine().split(DELIMITER));
-            ArrayList<Resource> requestedItems = readResources(in.nextLine().split(DELIMITER));
-
-            User newUser;
-            if (userType.equals(LIBRARIAN_META_FLAG)) {
-                String employmentDate = userList[index++];
-                int staffNumber = Integer.parseInt(userList[index++]);
-                newUser = new Librarian(username, firstName, lastName, mobileNumber, emailAddress, addressLine1, addressLine2, postTown,
-                        postcode, profileImageLocation, userCreationDate, accountBalance, borrowedItems, reservedItems,
-                        requestedItems, employmentDate, staffNumber);
-            } else {
-                newUser = new User(username, firstName, lastName, mobileNumber, emailAddress, addressLine1, addressLine2, postTown,
-                        postcode, profileImageLocation, userCreationDate, accountBalance, borrowedItems, reservedItems, requestedItems);
-
+            if (!FormatMigrator.isHeader(str)) {
+                System.out.println(str);
+                users.add(readUser(str.split(DELIMITER), in.nextLine(), in.nextLine(), in.nextLine()));
             }
-
-            users.add(newUser);
         }
 
         return users;
 
     }
 
+    /** Creates a user from the four lines of their record
+     * @param userList the fields of the first line of the record
+     * @param borrowedLine the line of borrowed copies
+     * @param reservedLine the line of reserved copies
+     * @param requestedLine the line of requested resources
+     * @return the user
+     */
+    private static User readUser(String[] userList, String borrowedLine, String reservedLine, String requestedLine) {
+        int index = 0;
+
+        String userType = userList[index++];
+        String username = StringDictionary.intern(userList[index++]);
+        String firstName = userList[index++];
+        String lastName = userList[index++];
+        String mobileNumber = userList[index++];
+        String emailAddress = userList[index++];
+        String addressLine1 = userList[index++];
+        String addressLine2 = userList[index++];
+        String postTown = StringDictionary.intern(userList[index++]);
+        String postcode = userList[index++];
+        String profileImageLocation = StringDictionary.intern(userList[index++]);
+        long userCreationDate = DateFormats.parseDay(userList[index++]);
+        float accountBalance = Float.parseFloat(userList[index++]);
+
+        // The items are filled in by link once the resource database has been loaded
+        ArrayList<Copy> borrowedItems = new ArrayList<>();
+        ArrayList<Copy> reservedItems = new ArrayList<>();
+        ArrayList<Resource> requestedItems = new ArrayList<>();
+
+        User newUser;
+        if (userType.equals(LIBRARIAN_META_FLAG)) {
+            long employmentDate = DateFormats.parseDay(userList[index++]);
+            int staffNumber = Integer.parseInt(userList[index++]);
+            newUser = new Librarian(username, firstName, lastName, mobileNumber, emailAddress, addressLine1, addressLine2, postTown,
+                    postcode, profileImageLocation, userCreationDate, accountBalance, borrowedItems, reservedItems,
+                    requestedItems, employmentDate, staffNumber);
+        } else {
+            newUser = new User(username, firstName, lastName, mobileNumber, emailAddress, addressLine1, addressLine2, postTown,
+                    postcode, profileImageLocation, userCreationDate, accountBalance, borrowedItems, reservedItems, requestedItems);
+
+        }
+        setUnlinkedItems(newUser, borrowedLine, reservedLine, requestedLine);
+        return newUser;
+    }
+
+    /** Records the items a user is to be linked to once the resource database has been loaded
+     * @param user the user
+     * @param borrowedLine the line of borrowed copies, in the format of the user file
+     * @param reservedLine the line of reserved copies
+     * @param requestedLine the line of requested resources
+     */
+    static void setUnlinkedItems(User user, String borrowedLine, String reservedLine, String requestedLine) {
+        unlinkedItems.put(user, new String[] {borrowedLine, reservedLine, requestedLine});
+    }
+
+    /**
+     * Applies the journal on top of the users read from the user file. A journalled user replaces the user with
+     * the same username and a deletion removes it.
+     */
+    private static void replayJournal() {
+
+        ArrayList<String> lines = journal.readRecords(snapshotChecksum);
+        if (lines.isEmpty()) {
+            startJournal();
+            return;
+        }
+
+        LinkedHashMap<String, User> usersInOrder = new LinkedHashMap<>();
+        for (User u : users) {
+            usersInOrder.putIfAbsent(u.getUsername(), u);
+        }
+
+        int replayed = 0;
+        int line = 0;
+        boolean isReadable = true;
+        // A user record is four lines long, replay stops at a record cut short by a crash or otherwise unreadable
+        while (isReadable && line < lines.size()) {
+            String[] userList = lines.get(line).split(DELIMITER);
+            try {
+                if (userList[0].equals(DELETED_META_FLAG)) {
+                    usersInOrder.remove(userList[1]);
+                    line++;
+                    replayed++;
+                } else if (line + 4 <= lines.size()) {
+                    User journalled = readUser(userList, lines.get(line + 1), lines.get(line + 2),
+                            lines.get(line + 3));
+                    usersInOrder.put(journalled.getUsername(), journalled);
+                    line += 4;
+                    replayed++;
+                } else {
+                    isReadable = false;
+                }
+            } catch (RuntimeException ex) {
+                isReadable = false;
+            }
+        }
+        if (!isReadable) {
+            // The lines after the record are dropped, so new records are not appended after it
+            System.out.println(String.format("Journal line %d cannot be read, %d lines dropped", line + 1,
+                    lines.size() - line));
+            journal.truncate(line);
+        }
+
+        users = new ArrayList<>(usersInOrder.values());
+        System.out.println(String.format("Replayed %d journalled users", replayed));
+    }
+
     /** manages the resources associated with a user
      * @param split
      * @return resources
@@ -216,10 +386,10 @@ public class UserDatabase {
      * @throws ParseException
      */
     private static ArrayList<User> readUserFile() throws ParseException {
-        Scanner in = null;
+        CheckedInputStream checkedInput = null;
 
         try {
-            in = new Scanner(file);
+            checkedInput = new CheckedInputStream(new FileInputStream(file), new CRC32());
 
         } catch (FileNotFoundException e) {
 
@@ -228,102 +398,330 @@ public class UserDatabase {
             System.exit(0);
         }
 
-        return UserDatabase.loadUsers(in);
+        Scanner in = new Scanner(checkedInput);
+        UserDatabase.loadUsers(in);
+        in.close();
+        snapshotChecksum = checkedInput.getChecksum().getValue();
+        return users;
     }
 
-    /**Writes the User ArrayList to the User.txt file
+    /**Writes the User ArrayList to the User.txt file and empties the journal
      * @param user
      */
     public static void saveDatabase(ArrayList<User> user) {
 
-        FileWriter fw;
+        DataCommit commit = new DataCommit();
 
         try {
 
-            fw = new FileWriter(file, false);
+            saveAll(user, commit);
+            commit.commit();
 
-            for (User tempUser : user) {
+        } catch (IOException ex) {
 
-                String tempUserLine = tempUser.getUsername() + DELIMITER + tempUser.getFirstName() + DELIMITER
-                        + tempUser.getLastName() + DELIMITER + tempUser.getMobileNumber() + DELIMITER + tempUser.getEmailAddress() + DELIMITER + tempUser.getAddressLine1()
-                        + DELIMITER + tempUser.getAddressLine2() + DELIMITER + tempUser.getPostTown() + DELIMITER + tempUser.getPostcode()
-                        + DELIMITER + tempUser.getProfileImageLocation() + DELIMITER
-                        + tempUser.getUSER_CREATION_DATE() + DELIMITER + String.format("%.2f", tempUser.getAccountBalance());
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+    }
 
-                if (tempUser instanceof Librarian) {
-                    tempUserLine = LIBRARIAN_META_FLAG + DELIMITER + tempUserLine;
-                    Librarian tempLib = (Librarian) tempUser;
-                    tempUserLine += DELIMITER + tempLib.getEMPLOYMENT_DATE() + DELIMITER + tempLib.getStaffNumber();
-                } else {
-                    tempUserLine = USER_META_FLAG + DELIMITER + tempUserLine;
-                }
+    /**
+     * Saves the users changed since the database was last saved. With the text files the changes are appended to
+     * the journal, and the journal is folded into the user file once it grows past the compaction threshold.
+     */
+    public static void saveChanges() {
 
-                tempUserLine += System.lineSeparator();
+        DataCommit commit = new DataCommit();
 
-                tempUserLine += tempUser.getBorrowedItems().size();
+        try {
 
-                for (Copy c : tempUser.getBorrowedItems()) {
-                    tempUserLine += DELIMITER + c.getResource().getID() + DELIMITER + c.getID();
-                }
+            saveChanges(commit);
+            commit.commit();
 
-                tempUserLine += System.lineSeparator();
+        } catch (IOException ex) {
 
-                tempUserLine += tempUser.getReservedItems().size();
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+    }
 
-                for (Copy c : tempUser.getReservedItems()) {
-                    tempUserLine += DELIMITER + c.getResource().getID() + DELIMITER + c.getID();
-                }
+    /**
+     * Stages the user database as part of a commit. Only the users changed since the database was last saved are
+     * saved.
+     * @param commit the commit the files are written as part of
+     * @throws IOException if the files could not be written
+     */
+    public static void checkpoint(DataCommit commit) throws IOException {
 
-                tempUserLine += System.lineSeparator();
+        saveChanges(commit);
+        writeConfigFile(commit.stage(config_file));
+    }
 
-                tempUserLine += tempUser.getRequestedItems().size();
+    /**
+     * Stages the whole user database as part of a commit, folding any changes into the user file rather than
+     * journalling them, so the staged files hold every user without the journal
+     * @param commit the commit the files are written as part of
+     * @throws IOException if the files could not be written
+     */
+    public static void checkpointFull(DataCommit commit) throws IOException {
 
-                for (Resource r : tempUser.getRequestedItems()) {
-                    tempUserLine += DELIMITER + r.getID();
-                }
+        saveAll(users, commit);
+        writeConfigFile(commit.stage(config_file));
+    }
+
+    /**
+     * Saves every user to the repository. Once the commit succeeds every change made before the save counts as
+     * saved.
+     */
+    private static synchronized void saveAll(ArrayList<User> user, DataCommit commit) throws IOException {
 
-                fw.write(tempUserLine);
-                fw.write(System.lineSeparator());
+        LinkedHashMap<User, Long> savedUsers = new LinkedHashMap<>(dirtyUsers);
+        LinkedHashMap<String, Long> savedUsernames = new LinkedHashMap<>(deletedUsernames);
+        getRepository().save(user, commit);
+        commit.onCommit(() -> clearChanges(savedUsers, savedUsernames));
+    }
+
+    /**
+     * Saves the changed users to the repository. Once the commit succeeds they count as saved, unless they have
+     * been changed again since.
+     */
+    private static synchronized void saveChanges(DataCommit commit) throws IOException {
+
+        LinkedHashMap<User, Long> savedUsers = new LinkedHashMap<>(dirtyUsers);
+        LinkedHashMap<String, Long> savedUsernames = new LinkedHashMap<>(deletedUsernames);
+        getRepository().saveChanges(users, savedUsers.keySet(), savedUsernames.keySet(), commit);
+        commit.onCommit(() -> clearChanges(savedUsers, savedUsernames));
+    }
+
+    private static synchronized void clearChanges(Map<User, Long> savedUsers, Map<String, Long> savedUsernames) {
+
+        savedUsers.forEach((user, change) -> dirtyUsers.remove(user, change));
+        savedUsernames.forEach((username, change) -> deletedUsernames.remove(username, change));
+    }
+
+    /**
+     * Gets the repository the users are kept in. The SQL database is used if one has been configured, otherwise
+     * the user file.
+     * @return the repository
+     */
+    static synchronized UserRepository getRepository() {
+
+        if (repository == null) {
+            repository = JdbcStore.isConfigured() ? new JdbcUserRepository() : new FlatFileRepository();
+        }
+        return repository;
+    }
+
+    /**
+     * Changes the repository the users are kept in. Must be called before the users are loaded.
+     * @param newRepository the repository to use
+     */
+    public static synchronized void setRepository(UserRepository newRepository) {
+
+        repository = newRepository;
+    }
+
+    /**
+     * Gets every user, without copying the list
+     * @return the users
+     */
+    static ArrayList<User> getUsers() {
+
+        return users;
+    }
+
+    /**
+     * Upgrades the user file and its journal if they are written in an older version of their format
+     */
+    static void upgradeFile() {
+
+        FormatMigrator.upgrade(file, FormatMigrator.USER_FILE, journal.getFile());
+    }
+
+    /**
+     * Deletes the journal, so it is not replayed over a user file restored from an archive. Only used before the
+     * database is loaded.
+     * @throws IOException if the journal could not be deleted
+     */
+    static void discardJournal() throws IOException {
+
+        journal.discard();
+    }
+
+    /**
+     * Stages the user file as part of a commit, together with an empty journal started against it, which replaces
+     * the journal once the commit succeeds
+     */
+    private static void writeUserFile(List<User> user, DataCommit commit) throws IOException {
+
+        RecordWriter out = new RecordWriter(commit.stage(file));
+        try {
+            FormatMigrator.writeHeader(out, FormatMigrator.USER_FILE);
+            for (User tempUser : user) {
+
+                writeUser(tempUser, out);
+                out.newLine();
             }
+        } finally {
+            out.close();
+        }
+        long checksum = out.getChecksum();
 
-            fw.close();
+        Journal.Mark end = new Journal.Mark();
+        journal.mark(end);
+        journal.prepareRestart(checksum, end);
+        commit.onAbort(journal::abandonRestart);
 
+        commit.onCommit(() -> {
+            snapshotChecksum = checksum;
+            restartJournal();
+        });
+    }
 
+    /**
+     * Appends the removed, renamed and changed users to the journal and forces it to disk
+     */
+    private static void journalChanges(Collection<User> changed, Collection<String> deleted) throws IOException {
+
+        for (String username : deleted) {
+            journal.append(DELETED_META_FLAG + DELIMITER + username);
+        }
+        for (User u : changed) {
+            journal.append(userToRecord(u));
+        }
+        journal.sync();
+    }
+
+    /**
+     * Starts an empty journal against the user file as it currently is on disk
+     */
+    private static void startJournal() {
+
+        try {
+            journal.reset(snapshotChecksum);
         } catch (IOException ex) {
+            System.out.println("Journal Write Error: " + ex.getMessage());
+            journal.markFailed();
+        }
+    }
 
-            System.out.println("File Write Error");
+    /**
+     * Puts the journal staged with the user file in place once the file has been committed. If it cannot be, both
+     * journals are kept and the staged one is used if the program stops before it is put in place.
+     */
+    private static void restartJournal() {
+
+        try {
+            journal.completeRestart();
+        } catch (IOException ex) {
+            System.out.println("Journal Write Error: " + ex.getMessage());
         }
+    }
 
+    /**
+     * Converts a user into the four lines of their record in the user file
+     * @param tempUser the user to convert
+     * @return the record, without a trailing line separator
+     */
+    static String userToRecord(User tempUser) {
+
+        return RecordWriter.toLine(out -> writeUser(tempUser, out));
+    }
+
+    /**
+     * Writes the four lines of a user's record in the user file, without a trailing line separator
+     * @param tempUser the user to write
+     * @param out the writer to write the record to
+     * @throws IOException if the record could not be written
+     */
+    private static void writeUser(User tempUser, RecordWriter out) throws IOException {
+
+        if (tempUser instanceof Librarian) {
+            out.write(LIBRARIAN_META_FLAG).delimiter();
+        } else {
+            out.write(USER_META_FLAG).delimiter();
+        }
+
+        out.write(tempUser.getUsername()).delimiter().write(tempUser.getFirstName()).delimiter()
+                .write(tempUser.getLastName()).delimiter().write(tempUser.getMobileNumber()).delimiter()
+                .write(tempUser.getEmailAddress()).delimiter().write(tempUser.getAddressLine1()).delimiter()
+                .write(tempUser.getAddressLine2()).delimiter().write(tempUser.getPostTown()).delimiter()
+                .write(tempUser.getPostcode()).delimiter().write(tempUser.getProfileImageLocation()).delimiter()
+                .write(tempUser.getUSER_CREATION_DATE()).delimiter()
+                .write(String.format("%.2f", tempUser.getAccountBalance()));
+
+        if (tempUser instanceof Librarian) {
+            Librarian tempLib = (Librarian) tempUser;
+            out.delimiter().write(tempLib.getEMPLOYMENT_DATE()).delimiter().write(tempLib.getStaffNumber());
+        }
+
+        out.newLine();
+
+        out.write(tempUser.getBorrowedItems().size());
+
+        for (Copy c : tempUser.getBorrowedItems()) {
+            out.delimiter().write(c.getResource().getID()).delimiter().write(c.getID());
+        }
+
+        out.newLine();
+
+        out.write(tempUser.getReservedItems().size());
+
+        for (Copy c : tempUser.getReservedItems()) {
+            out.delimiter().write(c.getResource().getID()).delimiter().write(c.getID());
+        }
+
+        out.newLine();
+
+        out.write(tempUser.getRequestedItems().size());
+
+        for (Resource r : tempUser.getRequestedItems()) {
+            out.delimiter().write(r.getID());
+        }
     }
 
     /** Removes a User from the User ArrayList
      * @param ripUser
      */
-    public static void removeUser(User ripUser) {
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).equals(ripUser)) {
-                users.remove(i);
-            }
+    public static synchronized void removeUser(User ripUser) {
+        ArrayList<User> remaining = new ArrayList<>(users);
+        remaining.removeIf(u -> u.equals(ripUser));
+        users = remaining;
+        if (usersByUsername.remove(ripUser.getUsername(), ripUser)) {
+            deletedUsernames.put(ripUser.getUsername(), ++changeCount);
         }
+        dirtyUsers.remove(ripUser);
+        userIndex.remove(ripUser);
     }
 
     /** Changes the data in an element of the User ArrayList
      * @param oldUser
      * @param newUser
      */
-    public static void updateUser(User oldUser, User newUser) {
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).equals(oldUser)) {
-                users.set(i, newUser);
-            }
+    public static synchronized void updateUser(User oldUser, User newUser) {
+        ArrayList<User> updated = new ArrayList<>(users);
+        updated.replaceAll(u -> u.equals(oldUser) ? newUser : u);
+        users = updated;
+        if (usersByUsername.remove(oldUser.getUsername(), oldUser)
+                && !oldUser.getUsername().equals(newUser.getUsername())) {
+            deletedUsernames.put(oldUser.getUsername(), ++changeCount);
         }
+        usersByUsername.putIfAbsent(newUser.getUsername(), newUser);
+        dirtyUsers.remove(oldUser);
+        dirtyUsers.put(newUser, ++changeCount);
+        // The new user takes the old one's place in the index so searches keep their order
+        userIndex.replace(oldUser, newUser, userFields(newUser));
     }
 
     /** Adds a User to the ArrayList of Users
      * @param newUser
      */
-    public static void addUser(User newUser) {
-        users.add(newUser);
+    public static synchronized void addUser(User newUser) {
+        ArrayList<User> added = new ArrayList<>(users);
+        added.add(newUser);
+        users = added;
+        usersByUsername.putIfAbsent(newUser.getUsername(), newUser);
+        dirtyUsers.put(newUser, ++changeCount);
+        indexUser(newUser);
     }
 
 
@@ -332,27 +730,36 @@ public class UserDatabase {
      * @return a unique integer.
      */
     public static int nextStaffID() {
-        if (nextStaffID == null) {
-            nextStaffID = 0;
-            for (User u : users) {
-                if (u instanceof Librarian) {
-                    int staffNum = ((Librarian) u).getStaffNumber();
-                    if (staffNum > nextStaffID)
-                        nextStaffID = staffNum + 1;
-                }
-            }
-        }
-        nextStaffID++;
-        return nextStaffID;
+        return staffIDs.next();
     }
 
     /** Loads the Datbase when the program is started
      * @throws ParseException
      */
     public static void init() throws ParseException {
+        load();
+        link();
+    }
+
+    /** Reads the users without looking up their items, so it can be read at the same time as the resource
+     * database. link must be called before the users are used.
+     * @throws ParseException
+     */
+    public static void load() throws ParseException {
         double ms = System.currentTimeMillis();
+        DataCommit.recover();
+        usersByUsername = new ConcurrentHashMap<>();
+        userIndex = new SearchIndex<>();
+        unlinkedItems = new IdentityHashMap<>();
         readConfigFile();
-        readUserFile();
+        try {
+            users = getRepository().load();
+        } catch (IOException e) {
+
+            System.out.println("Cannot open: " + e.getMessage());
+
+            System.exit(0);
+        }
         System.out.println(
                 String.format("User Database Loaded. %d Users on file. In %.2f ms",
                         users.size(), System.currentTimeMillis() - ms));
@@ -360,10 +767,26 @@ public class UserDatabase {
     }
 
     /**
-     * Loads resource ids
+     * Links every user to their borrowed, reserved and requested items. The resource database must be loaded
+     * first.
+     */
+    public static void link() {
+        for (User u : users) {
+            String[] itemLines = unlinkedItems.get(u);
+            if (itemLines != null) {
+                u.setBorrowedItems(readCopies(itemLines[0].split(DELIMITER)));
+                u.setReservedItems(readCopies(itemLines[1].split(DELIMITER)));
+                u.setRequestedItems(readResources(itemLines[2].split(DELIMITER)));
+            }
+        }
+        unlinkedItems = new IdentityHashMap<>();
+        rebuildIndex();
+    }
+
+    /**
+     * Loads the last staff ID written by versions which kept it only in the config file
      */
     private static void readConfigFile() {
-        nextStaffID = 0;
         if (!config_file.exists()) {
             return;
         }
@@ -374,23 +797,19 @@ public class UserDatabase {
             e.printStackTrace();
         }
         in.nextLine();
-        nextStaffID = Integer.parseInt(in.nextLine());
+        staffIDs.start(Integer.parseInt(in.nextLine()) + 1);
     }
 
-    /** Saves the current resource id
-     *
+    /** Saves the last staff ID handed out
+     * @param target the file to write to
+     * @throws IOException if the file could not be written
      */
-    private static void writeConfigFile() {
-        FileWriter fw;
-        try {
-            fw = new FileWriter(config_file, false);
-            fw.write("Next Staff ID:");
-            fw.write(System.lineSeparator());
-            fw.write(nextStaffID.toString());
-            fw.close();
-        } catch (IOException ex) {
-            ex.printStackTrace();
-        }
+    private static void writeConfigFile(File target) throws IOException {
+        FileWriter fw = new FileWriter(target, false);
+        fw.write("Next Staff ID:");
+        fw.write(System.lineSeparator());
+        fw.write(Integer.toString(staffIDs.peek() - 1));
+        fw.close();
     }
 
 
@@ -398,8 +817,75 @@ public class UserDatabase {
      * Saves the database when the program is closed
      */
     public static void close() {
-        saveDatabase(users);
-        writeConfigFile();
+        DataCommit commit = new DataCommit();
+        try {
+            checkpoint(commit);
+            commit.commit();
+        } catch (IOException ex) {
+            commit.abort();
+            System.out.println("File Write Error: " + ex.getMessage());
+        }
+        try {
+            getRepository().close();
+        } catch (IOException ex) {
+            System.out.println("Journal Write Error");
+        }
+    }
+
+    /**
+     * Keeps the users in the user file, with a journal of the users changed since the file was last written
+     */
+    static class FlatFileRepository implements UserRepository {
+
+        /**
+         * Reads the user file, upgrading it first if it is written in an older format, and replays the journal
+         * over it
+         */
+        @Override
+        public ArrayList<User> load() throws IOException {
+
+            upgradeFile();
+            try {
+                readUserFile();
+            } catch (ParseException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+            replayJournal();
+            return users;
+        }
+
+        /**
+         * Appends the changes to the journal, unless the journal is due to be folded into the user file or can
+         * not be written, in which case the user file is staged instead
+         */
+        @Override
+        public void saveChanges(List<User> users, Collection<User> changed, Collection<String> deletedUsernames,
+                DataCommit commit) throws IOException {
+
+            if (journal.getRecordCount() + changed.size() >= JOURNAL_COMPACTION_THRESHOLD || journal.hasFailed()) {
+                writeUserFile(users, commit);
+                return;
+            }
+
+            try {
+                journalChanges(changed, deletedUsernames);
+            } catch (IOException ex) {
+                System.out.println("Journal Write Error, rewriting user file");
+                writeUserFile(users, commit);
+            }
+        }
+
+        @Override
+        public void save(List<User> users, DataCommit commit) throws IOException {
+
+            writeUserFile(users, commit);
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            journal.close();
+        }
     }
 
     public static void main(String[] args) {
@@ -411,6 +897,7 @@ public class UserDatabase {
             System.out.println(queryUser("xxx").get(0).getBorrowedItems().get(0));
             System.out.println(queryUser("lib"));
             users.clear();
+            rebuildIndex();
         } catch (Exception e) {
             System.out.println(e);
         }
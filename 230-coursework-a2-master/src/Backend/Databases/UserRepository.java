@@ -0,0 +1,58 @@
+package Backend.Databases;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import Backend.Users.User;
+
+/**
+ * File Name: UserRepository.java
+ * Creation Date: 17/10/2026
+ * Copyright: No Copyright
+ *
+ * Where the users are kept between runs of the program. The user database holds the users in memory and only uses
+ * its repository to read them when the program is started and to save the users which have changed.
+ *
+ * @version 1.0
+ * @author agent
+ */
+public interface UserRepository {
+
+    /**
+     * Reads every user. The items of the users are not yet linked to the resource database.
+     *
+     * @return the users, in the order they are kept in
+     * @throws IOException if the users could not be read
+     */
+    ArrayList<User> load() throws IOException;
+
+    /**
+     * Saves the users added, changed, removed or renamed since the users were last saved
+     *
+     * @param users every user as they are now
+     * @param changed the users added or changed
+     * @param deletedUsernames the usernames which no longer belong to a user
+     * @param commit the commit to stage any files or database work in
+     * @throws IOException if the changes could not be saved
+     */
+    void saveChanges(List<User> users, Collection<User> changed, Collection<String> deletedUsernames,
+            DataCommit commit) throws IOException;
+
+    /**
+     * Saves every user, replacing the users saved before
+     *
+     * @param users every user as they are now
+     * @param commit the commit to stage any files or database work in
+     * @throws IOException if the users could not be saved
+     */
+    void save(List<User> users, DataCommit commit) throws IOException;
+
+    /**
+     * Releases anything held open by the repository
+     *
+     * @throws IOException if the repository could not be closed cleanly
+     */
+    void close() throws IOException;
+}
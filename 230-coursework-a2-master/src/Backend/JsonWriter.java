@@ -0,0 +1,131 @@
+package Backend;
+
+/**
+ * Builds a JSON document in order, adding the commas between values itself. Only what the library service
+ * answers with is supported: objects, arrays, strings, numbers, booleans and null.
+ *
+ * Creation Date: 17/10/2026
+ *
+ * @author agent
+ */
+class JsonWriter {
+
+    private final StringBuilder json = new StringBuilder();
+
+    /**
+     * True when the next value is the first in its object or array, so is not preceded by a comma
+     */
+    private boolean first = true;
+
+    JsonWriter beginObject() {
+        separate();
+        json.append('{');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        json.append('}');
+        first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separate();
+        json.append('[');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        json.append(']');
+        first = false;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of an object
+     * @param name the name of the member
+     * @return this writer
+     */
+    JsonWriter name(String name) {
+        value(name);
+        json.append(':');
+        first = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            json.append("null");
+            return this;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escaped = escape(c);
+            if (escaped == null) {
+                json.append(c);
+            } else {
+                json.append(escaped);
+            }
+        }
+        json.append('"');
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separate();
+        json.append(value);
+        return this;
+    }
+
+    JsonWriter value(float value) {
+        separate();
+        // JSON has no infinity or NaN
+        json.append(Float.isFinite(value) ? Float.toString(value) : "null");
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separate();
+        json.append(value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return json.toString();
+    }
+
+    /**
+     * Escapes a character of a string value
+     * @param c the character
+     * @return the escape sequence written for the character, or null if it is written as it is
+     */
+    private static String escape(char c) {
+        if (c == '"') {
+            return "\\\"";
+        } else if (c == '\\') {
+            return "\\\\";
+        } else if (c == '\n') {
+            return "\\n";
+        } else if (c == '\r') {
+            return "\\r";
+        } else if (c == '\t') {
+            return "\\t";
+        } else if (c < ' ') {
+            return String.format("\\u%04x", (int) c);
+        } else {
+            return null;
+        }
+    }
+
+    private void separate() {
+        if (!first) {
+            json.append(',');
+        }
+        first = false;
+    }
+}
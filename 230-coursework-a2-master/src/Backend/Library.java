@@ -1,20 +1,49 @@
 package Backend;
 
+import Backend.Databases.DataCommit;
+import Backend.Databases.ResourceDatabase;
 import Backend.Databases.TransactionDatabase;
 import Backend.Databases.UserDatabase;
 import Backend.Resources.Copy;
 import Backend.Resources.Resource;
+import Backend.Transactions.Transaction;
 import Backend.Users.Librarian;
 import Backend.Users.User;
 
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 /**
  * The library is a static controller of the essential functions of a library and allows a high level
  * interaction with the resources and users that the library is composed of.
  *
+ * Each operation is atomic, so several terminals can use the library at once. An operation locks the resource
+ * it changes and then each user it changes, so operations on different resources and users run at the same time.
+ * A resource is always locked before a user and no more than one user is locked at a time, so two operations
+ * can never wait for each other.
+ *
+ * Every operation also holds the operation lock shared, before locking any resource or user. A checkpoint or
+ * snapshot holds it exclusively, so the databases are saved between operations and never part way through one.
+ *
  * @author Matt
  */
 public class Library {
 
+    /**
+     * Number of locks shared out between the resources, and between the users
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private static final LockStripes resourceLocks = new LockStripes(LOCK_STRIPES);
+    private static final LockStripes userLocks = new LockStripes(LOCK_STRIPES);
+
+    /**
+     * Held shared by every operation and exclusively while the databases are saved
+     */
+    private static final ReentrantReadWriteLock operationLock = new ReentrantReadWriteLock();
+
     /**
      * Issues the given copy of a resource to a user.
      *
@@ -23,15 +52,47 @@ public class Library {
      */
     public static void issueResource(User user, Copy copy){
 
-        if (user.getAccountBalance() < 0) {
-            throw new IllegalStateException(String.format("User %s has insufficient funds!", user.getUsername()));
-        } else {
-            System.out.println("Issuing");
-            copy.pushCurrentTransactionToHistory();
-            user.addBorrowedItem(copy);
-            copy.setCurrentTransaction(TransactionDatabase.addNewTransaction(user.getUsername(), copy.getResource().getID(), copy.getID(), false));
-        }
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock resourceLock = lockResource(copy.getResource());
+            try {
+                ReentrantLock userLock = lockUser(user);
+                try {
+                    if (user.getAccountBalance() < 0) {
+                        throw new IllegalStateException(String.format("User %s has insufficient funds!",
+                                user.getUsername()));
+                    }
 
+                    Copy.State loan = copy.getState();
+                    Transaction current = loan.getCurrentTransaction();
+                    boolean isReserved = loan.isReserved();
+                    if (!loan.isAvailable() && !isReserved) {
+                        throw new IllegalStateException(String.format("Copy %d is already on loan!", copy.getID()));
+                    } else if (isReserved && !current.getUSERNAME().equals(user.getUsername())) {
+                        throw new IllegalStateException(String.format("Copy %d is reserved for another user!",
+                                copy.getID()));
+                    } else {
+                        System.out.println("Issuing");
+                        Transaction transaction = TransactionDatabase.addNewTransaction(user.getUsername(),
+                                copy.getResource().getID(), copy.getID(), false);
+                        if (isReserved) {
+                            // The reservation is fulfilled by the loan
+                            current.makeReturned();
+                            TransactionDatabase.updateTransaction(current);
+                            user.removeReserved(copy);
+                        }
+                        user.addBorrowedItem(copy);
+                        copy.issue(transaction);
+                    }
+                } finally {
+                    userLock.unlock();
+                }
+            } finally {
+                resourceLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
     }
 
 
@@ -44,20 +105,56 @@ public class Library {
      * @param resource the resource being requested.
      */
     public static void requestResource(User user, Resource resource){
-        if(!resource.isRequestedBy(user)){
-            resource.request(user);
-            user.addRequest(resource);
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock resourceLock = lockResource(resource);
+            try {
+                if(!resource.isRequestedBy(user)){
+                    // Requesting may reserve copies for other users, so the user is only locked afterwards
+                    resource.request(user);
+                    ReentrantLock userLock = lockUser(user);
+                    try {
+                        user.addRequest(resource);
+                    } finally {
+                        userLock.unlock();
+                    }
+                }
+            } finally {
+                resourceLock.unlock();
+            }
+        } finally {
+            operation.unlock();
         }
     }
 
     /**
-     * Reserves a copy for a user. This performs no checks to see if a resource can be reserved.
+     * Reserves a copy for a user. This performs no checks to see if the user may reserve the resource, only that
+     * the copy is available.
      * @param c the copy of a resource to be reserved
      * @param user the user to reserve a copy for
      */
     public static void reserveCopy(Copy c, User user) {
-        c.setCurrentTransaction(TransactionDatabase.addNewTransaction(user.getUsername(), c.getResource().getID(), c.getID(), true));
-        user.addReserved(c);
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock resourceLock = lockResource(c.getResource());
+            try {
+                ReentrantLock userLock = lockUser(user);
+                try {
+                    if (!c.isAvailable()) {
+                        throw new IllegalStateException(String.format("Copy %d is not available!", c.getID()));
+                    }
+                    c.setCurrentTransaction(TransactionDatabase.addNewTransaction(user.getUsername(),
+                            c.getResource().getID(), c.getID(), true));
+                    user.addReserved(c);
+                } finally {
+                    userLock.unlock();
+                }
+            } finally {
+                resourceLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
     }
 
     /**
@@ -66,18 +163,18 @@ public class Library {
      * @param copy the copy to return.
      */
     public static void returnCopy(Copy copy){
-        System.out.println("Returning copy " + copy);
-        float overdueCharge = copy.getOverdueCharge();
-        User borrowingUser = UserDatabase.queryUserByUsername(copy.getCurrentTransaction().getUSERNAME());
-        if(overdueCharge > 0) {
-            addFine(borrowingUser, overdueCharge, copy, (int) -copy.getDaysUntilDue());
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock resourceLock = lockResource(copy.getResource());
+            try {
+                System.out.println("Returning copy " + copy);
+                endLoan(copy);
+            } finally {
+                resourceLock.unlock();
+            }
+        } finally {
+            operation.unlock();
         }
-
-        copy.clearDueDate();
-        copy.getCurrentTransaction().makeReturned();
-        copy.pushCurrentTransactionToHistory();
-
-        copy.getResource().updateRequests();
     }
 
     /**
@@ -89,15 +186,39 @@ public class Library {
         This code is practically identical to return copy (at time of writing). This is so changes can be made to either
         but are referenced accordingly
          */
-        float overdueCharge = copy.getOverdueCharge();
-        User borrowingUser = UserDatabase.queryUserByUsername(copy.getCurrentTransaction().getUSERNAME());
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock resourceLock = lockResource(copy.getResource());
+            try {
+                endLoan(copy);
+            } finally {
+                resourceLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
+    }
+
+    /**
+     * Ends the current loan or reservation of a copy, fining the user if it is overdue, and passes the copy on to
+     * the next request. The resource of the copy must be locked.
+     * @param copy the copy on loan or reserved.
+     */
+    private static void endLoan(Copy copy) {
+        Copy.State loan = copy.getState();
+        Transaction transaction = loan.getCurrentTransaction();
+        if (transaction == null) {
+            throw new IllegalStateException(String.format("Copy %d is not on loan!", copy.getID()));
+        }
+        float overdueCharge = loan.getOverdueCharge();
+        User borrowingUser = UserDatabase.queryUserByUsername(transaction.getUSERNAME());
         if(overdueCharge > 0) {
-            addFine(borrowingUser, overdueCharge, copy, (int) -copy.getDaysUntilDue());
+            addFine(borrowingUser, overdueCharge, copy, (int) -loan.getDaysUntilDue());
         }
 
-        copy.clearDueDate();
-        copy.getCurrentTransaction().makeReturned();
-        copy.pushCurrentTransactionToHistory();
+        transaction.makeReturned();
+        TransactionDatabase.updateTransaction(transaction);
+        copy.endCurrentTransaction();
 
         copy.getResource().updateRequests();
     }
@@ -108,9 +229,18 @@ public class Library {
      * @param user the user terminating the request
      */
     public static void cancelRequest(Resource resource, User user) {
-        resource.getRequestQueue().remove(user.getUsername());
-        resource.updateRequests();
-
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock resourceLock = lockResource(resource);
+            try {
+                resource.cancelRequest(user.getUsername());
+                resource.updateRequests();
+            } finally {
+                resourceLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
     }
 
     /**
@@ -136,12 +266,22 @@ public class Library {
      * @param user the user to promote.
      */
     public static Librarian promoteToLibrarian(User user) {
-        if(user instanceof Librarian){
-            return (Librarian) user;
+        Lock operation = lockOperation();
+        try {
+            if(user instanceof Librarian){
+                return (Librarian) user;
+            }
+            ReentrantLock userLock = lockUser(user);
+            try {
+                Librarian promoted = new Librarian(user, UserDatabase.nextStaffID());
+                UserDatabase.updateUser(user, promoted);
+                return promoted;
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            operation.unlock();
         }
-        Librarian promoted = new Librarian(user, UserDatabase.nextStaffID());
-        UserDatabase.updateUser(user, promoted);
-        return promoted;
     }
 
     /**
@@ -160,22 +300,122 @@ public class Library {
      * @param librarian the librarian to remove status from.
      */
     public static User revokeLibrarian(Librarian librarian){
-        User revoked = new User(librarian);
-        UserDatabase.updateUser(librarian, revoked);
-        return revoked;
+        Lock operation = lockOperation();
+        try {
+            ReentrantLock userLock = lockUser(librarian);
+            try {
+                User revoked = new User(librarian);
+                UserDatabase.updateUser(librarian, revoked);
+                return revoked;
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
     }
 
 
     public static void makePayment(User user, float payment){
-        assert (payment >= 0);
-        TransactionDatabase.addNewPayment(user.getUsername(), payment);
-        user.addToBalance(payment);
+        Lock operation = lockOperation();
+        try {
+            assert (payment >= 0);
+            ReentrantLock userLock = lockUser(user);
+            try {
+                TransactionDatabase.addNewPayment(user.getUsername(), payment);
+                user.addToBalance(payment);
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
     }
 
     public static void addFine(User user, float fine, Copy copy, int daysOverdue){
-        assert (fine >= 0);
-        TransactionDatabase.addNewFine(user.getUsername(), fine, copy, daysOverdue);
-        user.removeFromBalance(fine);
+        Lock operation = lockOperation();
+        try {
+            assert (fine >= 0);
+            ReentrantLock userLock = lockUser(user);
+            try {
+                TransactionDatabase.addNewFine(user.getUsername(), fine, copy, daysOverdue);
+                user.removeFromBalance(fine);
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            operation.unlock();
+        }
     }
 
+    /**
+     * Starts an operation, waiting while the databases are being saved. Operations started by an operation, such
+     * as reserving a copy for the next request when a copy is returned, take the lock again without waiting.
+     * @return the lock, to be unlocked once the operation is finished.
+     */
+    private static Lock lockOperation() {
+        Lock lock = operationLock.readLock();
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Waits for every operation in progress to finish and holds off new ones, so the databases can be saved as
+     * they are between operations. Must not be called during an operation.
+     * @return the lock, to be unlocked once the databases have been saved.
+     */
+    public static Lock quiesce() {
+        Lock lock = operationLock.writeLock();
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Locks a resource, waiting until no other operation holds it.
+     * @param resource the resource to lock.
+     * @return the lock, to be unlocked once the operation is finished.
+     */
+    private static ReentrantLock lockResource(Resource resource) {
+        ReentrantLock lock = resourceLocks.get(resource.getID());
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Locks a user, waiting until no other operation holds them. Users are locked by username, so a user who is
+     * promoted or revoked keeps their lock.
+     * @param user the user to lock.
+     * @return the lock, to be unlocked once the operation is finished.
+     */
+    private static ReentrantLock lockUser(User user) {
+        ReentrantLock lock = userLocks.get(user.getUsername());
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Saves every database as a single generation, so the files on disk always come from the same point in time.
+     * No operation runs while the databases are saved. If the save fails the files of the previous generation are
+     * kept.
+     *
+     * @return true if the databases were saved.
+     */
+    public static boolean checkpoint() {
+        Lock quiesced = quiesce();
+        DataCommit commit = new DataCommit();
+        try {
+            UserDatabase.checkpoint(commit);
+            ResourceDatabase.checkpoint(commit);
+            TransactionDatabase.checkpoint(commit);
+            commit.commit();
+            return true;
+        } catch (IOException ex) {
+            commit.abort();
+            System.out.println("Checkpoint failed, keeping generation " + DataCommit.getGeneration() + ": "
+                    + ex.getMessage());
+            return false;
+        } finally {
+            quiesced.unlock();
+        }
+    }
 }
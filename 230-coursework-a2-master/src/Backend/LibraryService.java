@@ -0,0 +1,418 @@
+package Backend;
+
+import Backend.Databases.ResourceDatabase;
+import Backend.Databases.UserDatabase;
+import Backend.Resources.Copy;
+import Backend.Resources.Resource;
+import Backend.Transactions.Transaction;
+import Backend.Users.Librarian;
+import Backend.Users.User;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the library without its user interface, as a service answering HTTP requests with JSON, so kiosks and
+ * self-checkout machines can issue and return copies. The service only listens on the local machine.
+ *
+ * Parameters are given in the query string or as a form in the body of the request. Searches are made with GET:
+ * <ul>
+ *     <li>/resources?query=&amp;type=book|dvd|laptop - the resources matching a search, with the state of each copy</li>
+ *     <li>/resource?resource= - one resource</li>
+ *     <li>/users?query= - the users matching a search</li>
+ *     <li>/user?username= - one user, with their loans, reservations and requests</li>
+ * </ul>
+ * Library operations are made with POST and answer with the resource or user they changed:
+ * <ul>
+ *     <li>/issue?username=&amp;resource=&amp;copy=</li>
+ *     <li>/return?resource=&amp;copy=</li>
+ *     <li>/reserve?username=&amp;resource=&amp;copy=</li>
+ *     <li>/request?username=&amp;resource=</li>
+ *     <li>/pay?username=&amp;amount=</li>
+ *     <li>/fine?username=&amp;amount=&amp;resource=&amp;copy=&amp;days=</li>
+ * </ul>
+ * A request which is not valid is answered with status 400, one naming a user, resource or copy which does not
+ * exist with 404, and an operation the library refuses, such as issuing a copy already on loan, with 409. Each
+ * error is answered with an object holding the message in "error".
+ *
+ * Each request is handled on its own virtual thread where the Java runtime has them, or else on a pool of
+ * threads. Library operations are atomic, so requests are handled at the same time.
+ *
+ * Creation Date: 17/10/2026
+ *
+ * @author agent
+ */
+public class LibraryService {
+
+    /**
+     * Port the service listens on when none is given
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Threads handling requests when the Java runtime has no virtual threads
+     */
+    private static final int WORKER_THREADS = 32;
+
+    /**
+     * Seconds given to requests being handled to finish when the service stops
+     */
+    private static final int STOP_DELAY_SECONDS = 2;
+
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_BAD_REQUEST = 400;
+    private static final int STATUS_NOT_FOUND = 404;
+    private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+    private static final int STATUS_CONFLICT = 409;
+    private static final int STATUS_SERVER_ERROR = 500;
+
+    /**
+     * Answers a request to one path of the service
+     */
+    private interface Endpoint {
+
+        /**
+         * @param parameters the parameters of the request, by name
+         * @return the JSON answer
+         */
+        JsonWriter handle(Map<String, String> parameters);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    /**
+     * Creates the service on a port of the local machine. The databases must be loaded before it is started.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port could not be listened on
+     */
+    public LibraryService(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        workers = newWorkers();
+        server.setExecutor(workers);
+
+        get("/resources", LibraryService::searchResources);
+        get("/resource", parameters -> writeResource(new JsonWriter(), resource(parameters)));
+        get("/users", LibraryService::searchUsers);
+        get("/user", parameters -> writeUser(new JsonWriter(), user(parameters)));
+
+        post("/issue", parameters -> {
+            User user = user(parameters);
+            Copy copy = copy(parameters);
+            Library.issueResource(user, copy);
+            return writeCopy(new JsonWriter(), copy.getState());
+        });
+        post("/return", parameters -> {
+            Copy copy = copy(parameters);
+            Library.returnCopy(copy);
+            return writeCopy(new JsonWriter(), copy.getState());
+        });
+        post("/reserve", parameters -> {
+            User user = user(parameters);
+            Copy copy = copy(parameters);
+            Library.reserveCopy(copy, user);
+            return writeCopy(new JsonWriter(), copy.getState());
+        });
+        post("/request", parameters -> {
+            User user = user(parameters);
+            Resource resource = resource(parameters);
+            if (resource.isRequestedBy(user)) {
+                throw new IllegalStateException(String.format("User %s has already requested resource %d!",
+                        user.getUsername(), resource.getID()));
+            }
+            Library.requestResource(user, resource);
+            return writeResource(new JsonWriter(), resource);
+        });
+        post("/pay", parameters -> {
+            User user = user(parameters);
+            Library.makePayment(user, amount(parameters));
+            return writeUser(new JsonWriter(), user);
+        });
+        post("/fine", parameters -> {
+            User user = user(parameters);
+            float amount = amount(parameters);
+            Copy copy = copy(parameters);
+            Library.addFine(user, amount, copy, integer(parameters, "days"));
+            return writeUser(new JsonWriter(), user);
+        });
+    }
+
+    /**
+     * Starts answering requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops answering requests, giving those being handled a moment to finish
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the port the service is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Creates a virtual thread for each request where the Java runtime has them, found by reflection so the
+     * library still builds and runs on a runtime without them
+     */
+    private static ExecutorService newWorkers() {
+        try {
+            Method perTask = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) perTask.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newFixedThreadPool(WORKER_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "Library service worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void get(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> answer(exchange, "GET", endpoint));
+    }
+
+    private void post(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> answer(exchange, "POST", endpoint));
+    }
+
+    private static void answer(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        int status = STATUS_OK;
+        JsonWriter json;
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                status = STATUS_METHOD_NOT_ALLOWED;
+                json = error("Use " + method + " for " + exchange.getHttpContext().getPath());
+            } else {
+                json = endpoint.handle(readParameters(exchange));
+            }
+        } catch (NoSuchElementException ex) {
+            status = STATUS_NOT_FOUND;
+            json = error(ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            status = STATUS_BAD_REQUEST;
+            json = error(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            status = STATUS_CONFLICT;
+            json = error(ex.getMessage());
+        } catch (RuntimeException ex) {
+            System.out.println("Library Service Error: " + ex);
+            status = STATUS_SERVER_ERROR;
+            json = error("The request could not be completed");
+        }
+
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static JsonWriter error(String message) {
+        return new JsonWriter().beginObject().name("error").value(message).endObject();
+    }
+
+    /**
+     * Reads the parameters of the query string and of a form in the body of the request
+     */
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        addParameters(exchange.getRequestURI().getRawQuery(), parameters);
+        try (InputStream in = exchange.getRequestBody()) {
+            addParameters(new String(in.readAllBytes(), StandardCharsets.UTF_8), parameters);
+        }
+        return parameters;
+    }
+
+    private static void addParameters(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals == -1 ? pair : pair.substring(0, equals);
+            String value = equals == -1 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static JsonWriter searchResources(Map<String, String> parameters) {
+        String query = parameters.getOrDefault("query", "");
+        String type = parameters.get("type");
+        if (type != null && !type.matches("(?i)book|dvd|laptop")) {
+            throw new IllegalArgumentException("Unknown resource type: " + type);
+        }
+        List<Resource> found = new ArrayList<>();
+        if (type == null || type.equalsIgnoreCase("book")) {
+            found.addAll(ResourceDatabase.queryBook(query));
+        }
+        if (type == null || type.equalsIgnoreCase("dvd")) {
+            found.addAll(ResourceDatabase.queryDVD(query));
+        }
+        if (type == null || type.equalsIgnoreCase("laptop")) {
+            found.addAll(ResourceDatabase.queryLaptop(query));
+        }
+
+        JsonWriter json = new JsonWriter().beginArray();
+        for (Resource resource : found) {
+            writeResource(json, resource);
+        }
+        return json.endArray();
+    }
+
+    private static JsonWriter searchUsers(Map<String, String> parameters) {
+        JsonWriter json = new JsonWriter().beginArray();
+        for (User user : UserDatabase.queryUser(parameters.getOrDefault("query", ""))) {
+            json.beginObject()
+                    .name("username").value(user.getUsername())
+                    .name("firstName").value(user.getFirstName())
+                    .name("lastName").value(user.getLastName())
+                    .name("librarian").value(user instanceof Librarian)
+                    .endObject();
+        }
+        return json.endArray();
+    }
+
+    private static JsonWriter writeResource(JsonWriter json, Resource resource) {
+        json.beginObject()
+                .name("id").value(resource.getID())
+                .name("type").value(resource.getTypeString())
+                .name("title").value(resource.getTitle())
+                .name("year").value(resource.getYear())
+                .name("requests").value(resource.getRequestQueue().size())
+                .name("copies").beginArray();
+        for (Copy.State copy : resource.getCopyStates()) {
+            writeCopy(json, copy);
+        }
+        return json.endArray().endObject();
+    }
+
+    /**
+     * Writes a copy from one state, so the loan written is never half of one loan and half of the next
+     */
+    private static JsonWriter writeCopy(JsonWriter json, Copy.State copy) {
+        Transaction transaction = copy.getCurrentTransaction();
+        return json.beginObject()
+                .name("resource").value(copy.getResource().getID())
+                .name("copy").value(copy.getCopy().getID())
+                .name("available").value(copy.isAvailable())
+                .name("reserved").value(copy.isReserved())
+                .name("username").value(transaction == null ? null : transaction.getUSERNAME())
+                .name("dueDate").value(copy.getDueDate())
+                .name("overdue").value(copy.isOverdue())
+                .endObject();
+    }
+
+    private static JsonWriter writeUser(JsonWriter json, User user) {
+        json.beginObject()
+                .name("username").value(user.getUsername())
+                .name("firstName").value(user.getFirstName())
+                .name("lastName").value(user.getLastName())
+                .name("librarian").value(user instanceof Librarian)
+                .name("balance").value(user.getAccountBalance());
+        json.name("borrowed").beginArray();
+        for (Copy copy : user.getBorrowedItems()) {
+            writeCopy(json, copy.getState());
+        }
+        json.endArray().name("reserved").beginArray();
+        for (Copy copy : user.getReservedItems()) {
+            writeCopy(json, copy.getState());
+        }
+        json.endArray().name("requested").beginArray();
+        for (Resource resource : user.getRequestedItems()) {
+            json.value(resource.getID());
+        }
+        return json.endArray().endObject();
+    }
+
+    private static User user(Map<String, String> parameters) {
+        String username = parameter(parameters, "username");
+        User user = UserDatabase.queryUserByUsername(username);
+        if (user == null) {
+            throw new NoSuchElementException("No user " + username);
+        }
+        return user;
+    }
+
+    private static Resource resource(Map<String, String> parameters) {
+        int resourceID = integer(parameters, "resource");
+        Resource resource = ResourceDatabase.getResourceByID(resourceID);
+        if (resource == null) {
+            throw new NoSuchElementException("No resource " + resourceID);
+        }
+        return resource;
+    }
+
+    private static Copy copy(Map<String, String> parameters) {
+        Resource resource = resource(parameters);
+        int copyID = integer(parameters, "copy");
+        Copy copy = resource.getCopy(copyID);
+        if (copy == null) {
+            throw new NoSuchElementException("No copy " + copyID + " of resource " + resource.getID());
+        }
+        return copy;
+    }
+
+    private static float amount(Map<String, String> parameters) {
+        String amount = parameter(parameters, "amount");
+        try {
+            float value = Float.parseFloat(amount);
+            if (!(value > 0) || Float.isInfinite(value)) {
+                throw new IllegalArgumentException("The amount must be more than 0: " + amount);
+            }
+            return value;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("The amount is not a number: " + amount);
+        }
+    }
+
+    private static int integer(Map<String, String> parameters, String name) {
+        String value = parameter(parameters, name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("The " + name + " is not a whole number: " + value);
+        }
+    }
+
+    private static String parameter(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,43 @@
+package Backend;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out between keys by their hash, so every resource or user can be locked on its own
+ * without a lock being created for each of them. Two keys may share a lock, which only means one waits for the
+ * other. The locks are reentrant, so an operation may lock a key it already holds.
+ *
+ * Creation Date: 17/10/2026
+ *
+ * @author agent
+ */
+class LockStripes {
+
+    private final ReentrantLock[] locks;
+
+    /**
+     * Creates the locks
+     *
+     * @param count the number of locks, rounded up to a power of two
+     */
+    LockStripes(int count) {
+        int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the lock shared by a key
+     *
+     * @param key the key to lock
+     * @return the lock of the key
+     */
+    ReentrantLock get(Object key) {
+        int hash = key.hashCode();
+        // Spread the high bits down, as sequential IDs differ only in their low bits
+        hash ^= hash >>> 16;
+        return locks[hash & (locks.length - 1)];
+    }
+}
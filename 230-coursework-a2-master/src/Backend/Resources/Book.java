@@ -1,5 +1,7 @@
 package Backend.Resources;
 
+import Backend.Databases.ResourceDatabase;
+
 public class Book extends Resource {
 
 	private static final float OVERDUE_DAY_RATE = 2.f;
@@ -55,6 +57,7 @@ public class Book extends Resource {
      */
 	public void setAuthor(String author) {
 		this.author = author;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the publisher of the book.
@@ -69,6 +72,7 @@ public class Book extends Resource {
      */
 	public void setPublisher(String publisher) {
 		this.publisher = publisher;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the genre of the book.
@@ -83,6 +87,7 @@ public class Book extends Resource {
      */
 	public void setGenre(String genre) {
 		this.genre = genre;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the ISBN of the book.
@@ -97,6 +102,7 @@ public class Book extends Resource {
      */
 	public void setISBN(String iSBN) {
 		ISBN = iSBN;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Sets the language of the book.
@@ -111,6 +117,7 @@ public class Book extends Resource {
      */
 	public void setLanguage(String language) {
 		this.language = language;
+		ResourceDatabase.reindex(this);
 	}
 
 	@Override
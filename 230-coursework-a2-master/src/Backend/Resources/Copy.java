@@ -2,60 +2,176 @@ package Backend.Resources;
 
 //import Backend.Transactions.Transaction;
 
-import Backend.Databases.ResourceDatabase;
+import Backend.Databases.CopyHistoryStore;
+import Backend.Databases.DateFormats;
+import Backend.Databases.RecordWriter;
+import Backend.Databases.TransactionDatabase;
 import Backend.Databases.UserDatabase;
 import Backend.Transactions.Transaction;
 import Backend.Users.User;
 
+import java.io.IOException;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 public class Copy {
 
-    private final int ID;
-    private final Resource resource;
+    /**
+     * The state of the loan of a copy at one moment. A state is never changed, each change to the loan of a copy
+     * replaces its state as a whole, so a report reading the state of a copy sees one version of the loan however
+     * long it takes, while the copy is issued and returned around it.
+     */
+    public static final class State {
+
+        private final Copy copy;
+        private final boolean isAvailable;
+        private final Transaction currentTransaction;
+        private final long dueDate;
+
+        private State(Copy copy, boolean isAvailable, Transaction currentTransaction, long dueDate) {
+            this.copy = copy;
+            this.isAvailable = isAvailable;
+            this.currentTransaction = currentTransaction;
+            this.dueDate = dueDate;
+        }
+
+        /**
+         * @return the copy this is the state of
+         */
+        public Copy getCopy() {
+            return copy;
+        }
+
+        public Resource getResource() {
+            return copy.resource;
+        }
+
+        public boolean isAvailable() {
+            return isAvailable;
+        }
 
-    private boolean isAvailable = true;
+        public boolean isReserved() {
+            if(isAvailable || currentTransaction == null){
+                return false;
+            }
+            return currentTransaction.getReserved();
+        }
+
+        public Transaction getCurrentTransaction() {
+            return currentTransaction;
+        }
 
-    private Transaction currentTransaction = null;
-    // A chronological history of all transactions associated with this copy. It is assumed that this will have earlier transactions at lower indices
-    private List<Transaction> history = new ArrayList<>();
+        /**
+         * @return the due date in the format dd/MM/yyyy, or null if the copy has none
+         */
+        public String getDueDate() {
+            return DateFormats.formatDay(dueDate);
+        }
 
-    private static final DateTimeFormatter DUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-    private String dueDate = null;
+        /**
+         * @return the due date in epoch days, or DateFormats.NO_DATE if the copy has none
+         */
+        public long getDueDateEpochDay() {
+            return dueDate;
+        }
 
+        public long getDueDateEpoch(){
+            if(dueDate == DateFormats.NO_DATE){
+                return Long.MAX_VALUE;
+            }
+            return DateFormats.startOfDay(dueDate);
+        }
+
+        /**
+         * @return the days until the due date, 0 if the copy has none and negative if it is overdue
+         */
+        public Long getDaysUntilDue() {
+            if(dueDate == DateFormats.NO_DATE){
+                return 0L;
+            }
+            return dueDate - DateFormats.today();
+        }
+
+        public boolean isOverdue() {
+            return getDaysUntilDue() < 0;
+        }
+
+        public float getOverdueCharge() {
+            return Math.min(getResource().getOverdueDayRate() * (-getDaysUntilDue()), getResource().getMaxCharge());
+        }
+    }
+
+    /**
+     * Transaction ID standing for no transaction when a copy is loaded from file
+     */
+    public static final int NO_TRANSACTION = -1;
+
+    private final int ID;
+    private final Resource resource;
+
+    // The state of the loan is changed by Library while it holds the lock of the resource, and is replaced as a
+    // whole so it can be read without the lock. Only the current transaction is held in memory, past transactions
+    // are kept in the CopyHistoryStore. The due date is in epoch days, formatted as dd/MM/yyyy only when it is
+    // displayed or saved.
+    private volatile State state = new State(this, true, null, DateFormats.NO_DATE);
+
+    // Transaction ID read from file, kept until the copy is linked to the transaction database
+    private int unlinkedCurrentTransactionID = NO_TRANSACTION;
 
     public Copy(Resource resource, int ID) {
         this.resource = resource;
         this.ID = ID;
     }
 
-    public Copy(Resource resource, boolean isAvailable, Transaction currentTransaction, List<Transaction> history,
-                String dueDate, int ID) {
+    /**
+     * Constructor for loading from file. The current transaction is only known by ID until linkTransactions is
+     * called, so copies can be read before the transaction database has been loaded. A history read from a file
+     * written before the CopyHistoryStore existed is moved into the store.
+     * The due date is in epoch days, or DateFormats.NO_DATE if the copy has none.
+     */
+    public Copy(Resource resource, boolean isAvailable, int currentTransactionID, int[] historyIDs,
+                long dueDate, int ID) {
         this.resource = resource;
-        this.isAvailable = isAvailable;
-        this.currentTransaction = currentTransaction;
-        this.history.addAll(history);
-        this.dueDate = dueDate; // Format dd/MM/yyyy
+        this.state = new State(this, isAvailable, null, dueDate);
+        this.unlinkedCurrentTransactionID = currentTransactionID;
         this.ID = ID;
+        if (historyIDs.length > 0) {
+            CopyHistoryStore.importHistory(resource.getID(), ID, historyIDs);
+        }
+    }
+
+    /**
+     * Looks up the current transaction of a copy loaded from file in the transaction database.
+     * Does nothing if the copy has already been linked.
+     */
+    public void linkTransactions() {
+        if (unlinkedCurrentTransactionID != NO_TRANSACTION) {
+            Transaction linked = TransactionDatabase.getSpecificTransaction(unlinkedCurrentTransactionID);
+            state = new State(this, state.isAvailable, linked, state.dueDate);
+            unlinkedCurrentTransactionID = NO_TRANSACTION;
+        }
+    }
+
+    /**
+     * Gets the state of the loan of the copy as it is now. Reading every value from one state gives a consistent
+     * view of the loan, where calling the getters of the copy one after another may see it change in between.
+     * @return the current state of the copy, which never changes
+     */
+    public State getState() {
+        return state;
     }
 
     public boolean isAvailable() {
-        return isAvailable;
+        return state.isAvailable();
     }
 
     public boolean isReserved() {
-        if(isAvailable || currentTransaction == null){
-            return false;
-        }
-        return currentTransaction.getReserved();
+        return state.isReserved();
     }
 
     public User getReservedFor() {
+        Transaction currentTransaction = state.getCurrentTransaction();
         if(currentTransaction == null || !currentTransaction.getReserved()){
             return null;
         }
@@ -64,23 +180,49 @@ public class Copy {
 
 
     public Transaction getCurrentTransaction() {
-        return currentTransaction;
+        return state.getCurrentTransaction();
     }
 
     public void setCurrentTransaction(Transaction currentTransaction) {
         if(currentTransaction == null){
             throw new IllegalArgumentException("Transactions can not be set to null, to clear the transaction use pushCurrentTransactionToHistory!");
         }
-        isAvailable = false;
-        this.currentTransaction = currentTransaction;
+        state = new State(this, false, currentTransaction, state.dueDate);
+    }
+
+    /**
+     * Issues the copy under a new transaction, saving the current transaction, such as a reservation, to the
+     * copy's history. The copy is never seen available in between.
+     * @param transaction the transaction of the loan
+     */
+    public void issue(Transaction transaction) {
+        if(transaction == null){
+            throw new IllegalArgumentException("Transactions can not be set to null, to clear the transaction use pushCurrentTransactionToHistory!");
+        }
+        State current = state;
+        if(current.currentTransaction != null) {
+            CopyHistoryStore.append(resource.getID(), ID, current.currentTransaction.getTRANSACTION_ID());
+        }
+        state = new State(this, false, transaction, current.dueDate);
     }
 
+    /**
+     * @return the due date in the format dd/MM/yyyy, or null if the copy has none
+     */
     public String getDueDate() {
-        return dueDate;
+        return state.getDueDate();
+    }
+
+    /**
+     * @return the due date in epoch days, or DateFormats.NO_DATE if the copy has none
+     */
+    public long getDueDateEpochDay() {
+        return state.getDueDateEpochDay();
     }
 
     public void setDueDate() {
-        LocalDate startDate = currentTransaction.getTransactionDateAsDate();
+        State current = state;
+        LocalDate startDate = current.currentTransaction.getTransactionDateAsDate();
         long borrowedFor = ChronoUnit.DAYS.between(startDate, LocalDate.now());
         int plusDays;
         if (borrowedFor >= Resource.daysInMinimumDuration(resource.getMinLoanDuration())) {
@@ -90,11 +232,12 @@ public class Copy {
             plusDays = (int) (Resource.daysInMinimumDuration(resource.getMinLoanDuration()) - borrowedFor);
         }
 
-        this.dueDate = DUE_DATE_FORMATTER.format(LocalDate.now().plusDays(plusDays));
+        state = new State(this, current.isAvailable, current.currentTransaction, DateFormats.today() + plusDays);
     }
 
     public void clearDueDate() {
-        this.dueDate = null;
+        State current = state;
+        state = new State(this, current.isAvailable, current.currentTransaction, DateFormats.NO_DATE);
     }
 
 
@@ -107,41 +250,60 @@ public class Copy {
     }
 
     /**
-     * Return a READ-ONLY version of this copy's history
+     * Return a READ-ONLY version of this copy's history. The whole history is read from the
+     * CopyHistoryStore, use getHistoryPage to read only part of it.
      * @return a collection of transactions representing the chronological history of this copy
      * (where smaller indices are older transactions)
      */
     public List<Transaction> getHistory(){
-        return history;
+        return CopyHistoryStore.readAll(resource.getID(), ID);
+    }
+
+    /**
+     * Reads one page of this copy's history
+     * @param page the page to read, 0 being the most recent transactions
+     * @param pageSize the number of transactions on a page
+     * @return the transactions on the page, newest first
+     */
+    public List<Transaction> getHistoryPage(int page, int pageSize) {
+        return CopyHistoryStore.readPage(resource.getID(), ID, page, pageSize);
+    }
+
+    /**
+     * @return the number of past transactions of this copy
+     */
+    public int getHistorySize() {
+        return CopyHistoryStore.getSize(resource.getID(), ID);
     }
 
     /**
      * Serialize copy to be saved in a file //todo improve
      *
-     * ID available duedate currentTransactionId LenHistory History...
+     * ID available duedate currentTransactionId LenHistory
+     * The history is kept in the CopyHistoryStore so its length is always written as 0
      *
      * @return
      */
     public String toLine(){
-        String delim = ResourceDatabase.DELIMITER;
-        String historyString = "";
-        for (int i = 0; i < history.size(); i++) {
-            historyString += history.get(i).getTRANSACTION_ID();
-            if(i != history.size() - 1){
-                historyString += delim;
-            }
-        }
-        String currentTransactionID = "null";
-        if(currentTransaction != null){
-            currentTransactionID = Integer.toString(currentTransaction.getTRANSACTION_ID());
-        }
-        String dueDate = "null";
-        if(this.dueDate != null){
-            dueDate = this.dueDate;
-        }
+        return RecordWriter.toLine(this::writeTo);
+    }
 
-        return ID + delim + isAvailable + delim + dueDate + delim + currentTransactionID + delim +
-                history.size() + delim + historyString;
+    /**
+     * Writes the copy in the format of toLine
+     * @param out the writer to write the copy to
+     * @throws IOException if the copy could not be written
+     */
+    public void writeTo(RecordWriter out) throws IOException {
+        // The line is written from one state so it is never half of one loan and half of the next.
+        // formatDay gives null when there is no due date, which is written as "null"
+        State current = state;
+        out.write(ID).delimiter().write(current.isAvailable).delimiter().write(current.getDueDate()).delimiter();
+        if(current.currentTransaction != null){
+            out.write(current.currentTransaction.getTRANSACTION_ID());
+        } else {
+            out.write("null");
+        }
+        out.delimiter().write(0);
     }
 
 
@@ -149,16 +311,29 @@ public class Copy {
      * Saves the current transaction to the copy's history.
      */
     public void pushCurrentTransactionToHistory() {
-        if(currentTransaction != null) {
-            history.add(currentTransaction);
-            currentTransaction = null;
+        State current = state;
+        if(current.currentTransaction != null) {
+            CopyHistoryStore.append(resource.getID(), ID, current.currentTransaction.getTRANSACTION_ID());
+        }
+        state = new State(this, true, null, current.dueDate);
+    }
+
+    /**
+     * Saves the current transaction to the copy's history and clears the due date, making the copy available in
+     * one change.
+     */
+    public void endCurrentTransaction() {
+        State current = state;
+        if(current.currentTransaction != null) {
+            CopyHistoryStore.append(resource.getID(), ID, current.currentTransaction.getTRANSACTION_ID());
         }
-        isAvailable = true;
+        state = new State(this, true, null, DateFormats.NO_DATE);
     }
 
     @Override
     public String toString(){
-        return "COPY OF: " + resource.toString() + "\nINDEX: " + getID() + "\nAvailable: " + isAvailable + "\t" + "Current transaction: " + currentTransaction + "\t" + "History Length: " + history.size();
+        State current = state;
+        return "COPY OF: " + resource.toString() + "\nINDEX: " + getID() + "\nAvailable: " + current.isAvailable + "\t" + "Current transaction: " + current.currentTransaction + "\t" + "History Length: " + getHistorySize();
     }
 
     /**
@@ -167,7 +342,7 @@ public class Copy {
      * @return
      */
     public boolean isOverdue() {
-        return getDaysUntilDue() < 0;
+        return state.isOverdue();
     }
 
     /**
@@ -177,29 +352,16 @@ public class Copy {
      * @return a Long value representing the days from the time of calling to the due date of the copy
      */
     public Long getDaysUntilDue() {
-        if(dueDate == null){
-            return 0L;
-        }
-        // Returns the current date and time
-        LocalDate now = LocalDate.now();
-        LocalDate timeDue = LocalDate.parse(dueDate, DUE_DATE_FORMATTER);
-        // Calculate how many days between now and the dueDate
-        return ChronoUnit.DAYS.between(now, timeDue);
+        return state.getDaysUntilDue();
     }
 
 
     public float getOverdueCharge() {
-        return Math.min(getResource().getOverdueDayRate() * (-getDaysUntilDue()), getResource().getMaxCharge());
+        return state.getOverdueCharge();
     }
 
     public long getDueDateEpoch(){
-        if(dueDate == null){
-            return Long.MAX_VALUE;
-        }
-
-        LocalDate date = LocalDate.parse(dueDate, DUE_DATE_FORMATTER);
-        ZonedDateTime zonedDateTime = date.atStartOfDay().atZone(ZoneId.systemDefault());
-        return zonedDateTime.toInstant().toEpochMilli()/1000;
+        return state.getDueDateEpoch();
     }
 
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package Backend.Resources;
 
+import Backend.Databases.ResourceDatabase;
+
 import java.util.Arrays;
 
 public class DVD extends Resource {
@@ -59,6 +61,7 @@ public class DVD extends Resource {
      */
 	public void setDirector(String director) {
 		this.director = director;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the Language of the DVD.
@@ -73,6 +76,7 @@ public class DVD extends Resource {
      */
 	public void setLanguage(String language) {
 		this.language = language;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the Subtitle array of the DVD.
@@ -101,6 +105,7 @@ public class DVD extends Resource {
      */
 	public void setRuntime(int runtime) {
 		this.runtime = runtime;
+		ResourceDatabase.reindex(this);
 	}
 
 	@Override
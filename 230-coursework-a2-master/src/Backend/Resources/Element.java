@@ -1,8 +1,10 @@
 package Backend.Resources;
 
-import Backend.Databases.ResourceDatabase;
+import Backend.Databases.RecordWriter;
 import Backend.Users.User;
 
+import java.io.IOException;
+
 public class Element {
 	private int rating;
 	private String reviewText = "";
@@ -73,6 +75,15 @@ public class Element {
 	}
 
     public String toLine() {
-    	return Integer.toString(rating) + ResourceDatabase.DELIMITER + reviewText + ResourceDatabase.DELIMITER + postedBy;
+    	return RecordWriter.toLine(this::writeTo);
+	}
+
+    /**
+     * writes the rating, text and poster of the review, in the format of toLine.
+     * @param out the writer to write the review to.
+     * @throws IOException if the review could not be written.
+     */
+	public void writeTo(RecordWriter out) throws IOException {
+		out.write(rating).delimiter().write(reviewText).delimiter().write(postedBy);
 	}
 }
\ No newline at end of file
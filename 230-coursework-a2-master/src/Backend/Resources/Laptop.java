@@ -1,5 +1,7 @@
 package Backend.Resources;
 
+import Backend.Databases.ResourceDatabase;
+
 public class Laptop extends Resource{
 
 	private static final float OVERDUE_DAY_RATE = 10.f;
@@ -57,6 +59,7 @@ public class Laptop extends Resource{
 	 */
 	public void setManufacturer(String manufacturer) {
 		this.manufacturer = manufacturer;
+		ResourceDatabase.reindex(this);
 	}
 	/** gets the model of the laptop.
 	 * @return model of the laptop.
@@ -69,6 +72,7 @@ public class Laptop extends Resource{
 	 */
 	public void setModel(String model) {
 		this.model = model;
+		ResourceDatabase.reindex(this);
 	}
 	/** gets the OS of the laptop.
 	 * @return OS of the laptop.
@@ -82,6 +86,7 @@ public class Laptop extends Resource{
 	 */
 	public void setOS(String oS) {
 		OS = oS;
+		ResourceDatabase.reindex(this);
 	}
 
 
@@ -1,15 +1,12 @@
 package Backend.Resources;
 
+import Backend.Databases.DateFormats;
+import Backend.Databases.ResourceDatabase;
 import Backend.Databases.UserDatabase;
 import Backend.Library;
 import Backend.Users.User;
 import javafx.util.StringConverter;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,9 +25,6 @@ public abstract class Resource {
 	public static final String FOUR_WEEKS = "4 Weeks";
 
 
-	private static final DateTimeFormatter EXPECTED_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-
-
 	private int ID;
 	private int nextCopyID;
 
@@ -40,8 +34,9 @@ public abstract class Resource {
 	private Review review = new Review(null);
 	private String minLoanDuration;
 
-	private ArrayList<Copy> copyList = new ArrayList<>();
-	private ArrayList<String> requestQueue = new ArrayList<String>();
+	// The lists are replaced rather than changed, so they can be read and saved while the resource is in use
+	private volatile ArrayList<Copy> copyList = new ArrayList<>();
+	private volatile ArrayList<String> requestQueue = new ArrayList<String>();
 
 	public Resource (String thumbnail, int ID, String title, int year, String minLoanDuration) {
 		this(thumbnail, ID, title, year, minLoanDuration,0);
@@ -79,7 +74,9 @@ public abstract class Resource {
      * @param ID of the Resource.
      */
 	public void setID(int iD) {
+		int oldID = ID;
 		ID = iD;
+		ResourceDatabase.changeResourceID(this, oldID);
 	}
     /**
      * Gets the Title of the Resource.
@@ -94,6 +91,7 @@ public abstract class Resource {
      */
 	public void setTitle(String title) {
 		this.title = title;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the Thumbnail String of the Resource.
@@ -122,6 +120,7 @@ public abstract class Resource {
      */
 	public void setYear(int year) {
 		this.year = year;
+		ResourceDatabase.reindex(this);
 	}
     /**
      * Gets the Array list of Copies of the Resource.
@@ -130,6 +129,20 @@ public abstract class Resource {
 	public ArrayList<Copy> getCopyList() {
 		return copyList;
 	}
+
+    /**
+     * Gets the state of each Copy of the Resource as it is now, for reports which read the loans of the copies
+     * while they are issued and returned.
+     * @return the state of each Copy, in the order of the copy list.
+     */
+	public List<Copy.State> getCopyStates() {
+		ArrayList<Copy> copies = copyList;
+		List<Copy.State> states = new ArrayList<>(copies.size());
+		for(Copy c: copies){
+			states.add(c.getState());
+		}
+		return states;
+	}
     /**
      * Sets the Array list of Copies of the Resource.
      * @param Array list of Copies of the Resource.
@@ -157,7 +170,9 @@ public abstract class Resource {
      */
 	public Copy createAndAddCopy(){
 		Copy copy = new Copy(this, nextCopyID++);
-		copyList.add(copy);
+		ArrayList<Copy> copies = new ArrayList<>(copyList);
+		copies.add(copy);
+		copyList = copies;
 		return copy;
 	}
     /**
@@ -250,8 +265,16 @@ public abstract class Resource {
 	 * @return
 	 */
 	public String getExpectedAvailableDate() {
+		return DateFormats.formatDay(getExpectedAvailableDay());
+	}
+
+	/**
+	 * Gets the day a copy of this resource is expected to be available, as for getExpectedAvailableDate
+	 * @return the expected date in epoch days, or DateFormats.NO_DATE if the resource has no copies
+	 */
+	public long getExpectedAvailableDay() {
 		if(copyList.size() == 0){
-			return null;
+			return DateFormats.NO_DATE;
 		}
 
 		// Iterate through each copy to find how many days until each one is available
@@ -259,10 +282,10 @@ public abstract class Resource {
 		for(Copy copy: copyList){
 			if(copy.isAvailable()){
 				// A copy is already available, return now
-				return EXPECTED_DATE_FORMAT.format(LocalDateTime.now());
+				return DateFormats.today();
 			}
 
-			if(copy.getDueDate() == null){
+			if(copy.getDueDateEpochDay() == DateFormats.NO_DATE){
 				// If the copy is has no due date treat it as full duration
 				timesUntilAvailable.add((long) daysInMinimumDuration(copy.getResource().getMinLoanDuration()));
 			} else {
@@ -279,18 +302,16 @@ public abstract class Resource {
 		int partialWaitTime = cycles * daysInMinimumDuration(getMinLoanDuration());
 		int fullWaitTime = (int) (partialWaitTime + timesUntilAvailable.get(offset));
 
-		return EXPECTED_DATE_FORMAT.format(LocalDateTime.now().plusDays(fullWaitTime));
+		return DateFormats.today() + fullWaitTime;
 	}
 
 
 	public long getExpectedAvailableDateEpoch() {
-		String expectedAvailableDate = getExpectedAvailableDate();
-		if(expectedAvailableDate == null){
+		long expectedAvailableDay = getExpectedAvailableDay();
+		if(expectedAvailableDay == DateFormats.NO_DATE){
 			return Long.MAX_VALUE;
 		}
-		LocalDate dateTime = LocalDate.parse(expectedAvailableDate, EXPECTED_DATE_FORMAT);
-		ZonedDateTime zonedDateTime = dateTime.atStartOfDay(ZoneId.systemDefault());
-		return zonedDateTime.toInstant().toEpochMilli()/1000;
+		return DateFormats.startOfDay(expectedAvailableDay);
 	}
 
 	/**
@@ -323,8 +344,11 @@ public abstract class Resource {
 	 * @param copy the copy to remove from this resource
 	 */
 	public void removeCopy(Copy copy){
-		if(copy.isAvailable() && !copy.isReserved())
-		this.copyList.remove(copy);
+		if(copy.isAvailable() && !copy.isReserved()) {
+			ArrayList<Copy> copies = new ArrayList<>(copyList);
+			copies.remove(copy);
+			this.copyList = copies;
+		}
 	}
 
 	/**
@@ -333,10 +357,22 @@ public abstract class Resource {
 	 * @param user the user requesting the resource
 	 */
 	public void request(User user){
-		requestQueue.add(user.getUsername());
+		ArrayList<String> queue = new ArrayList<>(requestQueue);
+		queue.add(user.getUsername());
+		requestQueue = queue;
 		updateRequests();
 	}
 
+	/**
+	 * Removes a user from this resource's request queue
+	 * @param username the username of the user no longer requesting the resource
+	 */
+	public void cancelRequest(String username){
+		ArrayList<String> queue = new ArrayList<>(requestQueue);
+		queue.remove(username);
+		requestQueue = queue;
+	}
+
 	/**
 	 * Check if the request queue can be moved forwards, this should be performed any time a copy becomes available or
 	 * a user requests a copy
@@ -347,25 +383,19 @@ public abstract class Resource {
 				String username = requestQueue.get(0);
 				if (c.isAvailable()) {
 					Library.reserveCopy(c, UserDatabase.queryUserByUsername(username));
-					requestQueue.remove(0);
+					requestQueue = new ArrayList<>(requestQueue.subList(1, requestQueue.size()));
 				}
 			}
 		}
 		// If there are more requests than available copies
 		if(requestQueue.size() > 0){
 			List<Copy> copyListClone = new ArrayList<>(copyList);
-			Collections.sort(copyListClone, (o1, o2) -> {
-                DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"); // Used to format the date
-                LocalDateTime o1Time = LocalDateTime.parse(o1.getCurrentTransaction().getTRANSACTION_DATE(), dtf);
-                LocalDateTime o2Time = LocalDateTime.parse(o2.getCurrentTransaction().getTRANSACTION_DATE(), dtf);
-                long o1Epoch = o1Time.atZone(ZoneId.systemDefault()).toEpochSecond();
-                long o2Epoch = o2Time.atZone(ZoneId.systemDefault()).toEpochSecond();
-                return Long.compare(o1Epoch, o2Epoch);
-            });
+			Collections.sort(copyListClone, (o1, o2) -> Long.compare(
+					o1.getCurrentTransaction().startDateEpoch(), o2.getCurrentTransaction().startDateEpoch()));
 			// copyListClone is now in ascending order of transaction time
 			for(int i = 0; i < requestQueue.size() && i < copyListClone.size(); i++){
 				// Add a due date to each item in the copy list that does not have one already
-				if(copyListClone.get(i).getDueDate() == null) {
+				if(copyListClone.get(i).getDueDateEpochDay() == DateFormats.NO_DATE) {
 					copyListClone.get(i).setDueDate();
 				}
 			}
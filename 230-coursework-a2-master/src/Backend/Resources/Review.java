@@ -1,7 +1,8 @@
 package Backend.Resources;
 
-import Backend.Databases.ResourceDatabase;
+import Backend.Databases.RecordWriter;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -110,12 +111,20 @@ public class Review {
 	}
 
 	public String toLine(){
-		String line = Integer.toString(reviewList.size());
+		return RecordWriter.toLine(this::writeTo);
+	}
+
+    /**
+     * writes the number of reviews followed by each review, in the format of toLine.
+     * @param out the writer to write the reviews to.
+     * @throws IOException if the reviews could not be written.
+     */
+	public void writeTo(RecordWriter out) throws IOException {
+		out.write(reviewList.size());
 		for (Element e : reviewList) {
-			line += ResourceDatabase.DELIMITER;
-			line += e.toLine();
+			out.delimiter();
+			e.writeTo(out);
 		}
-		return line;
 	}
 
 
@@ -1,22 +1,16 @@
 package Backend.Transactions;
 
+import Backend.Databases.DateFormats;
+import Backend.Databases.RecordWriter;
 import Backend.Databases.ResourceDatabase;
-import Backend.Databases.TransactionDatabase;
 import javafx.scene.layout.VBox;
 
-import java.text.DateFormat;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
 
 public abstract class FinancialTransaction {
 
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"); // Used to format the date
-
     private final String USERNAME; // The username of the user associated with the transaction
-    private final String TRANSACTION_DATE; // The date of which the transaction has occurred
+    private final long TRANSACTION_DATE; // The date of which the transaction has occurred, in epoch seconds
     private final float VALUE;
 
     /**
@@ -27,29 +21,23 @@ public abstract class FinancialTransaction {
         this.USERNAME = username;
         this.VALUE = value;
 
-        LocalDateTime now = LocalDateTime.now(); // Returns the current date and time
-        this.TRANSACTION_DATE = DATE_FORMAT.format(now); // Saves the transaction date in the above specified format
+        this.TRANSACTION_DATE = DateFormats.now(); // Saves the current date and time
     }
 
     /**
      * Instantiates a Transaction. Used when importing from file when date and time has already been set.
      * @param username The username associated with the transaction
      * @param value The copy value associated with the transaction
-     * @param date Date of the transaction, if it has already been set
+     * @param date Date of the transaction in epoch seconds
      */
-    public FinancialTransaction (String username, float value, String date) {
+    public FinancialTransaction (String username, float value, long date) {
         this.USERNAME = username;
         this.VALUE = value;
         this.TRANSACTION_DATE = date;
     }
 
     public long startDateEpoch(){
-        return dateEpoch(TRANSACTION_DATE);
-    }
-
-    private long dateEpoch(String date){
-        ZonedDateTime zonedDateTime = ZonedDateTime.parse(date, DATE_FORMAT);
-        return zonedDateTime.toEpochSecond();
+        return TRANSACTION_DATE;
     }
 
 
@@ -74,7 +62,7 @@ public abstract class FinancialTransaction {
      */
     public String getTRANSACTION_DATE() {
 
-        return TRANSACTION_DATE;
+        return DateFormats.formatDateTime(TRANSACTION_DATE);
     }
 
     /**
@@ -82,13 +70,18 @@ public abstract class FinancialTransaction {
      * @return a transaction to a string
      */
     public String toLine() {
-        String delim = TransactionDatabase.DELIMITER;
-        String transactionLine =
-                getUSERNAME() + delim +
-                getVALUE() + delim +
-                getTRANSACTION_DATE() + delim;
-        return transactionLine;
+        return RecordWriter.toLine(this::writeTo);
+    }
 
+    /**
+     * Writes the transaction in the format of toLine
+     * @param out the writer to write the transaction to
+     * @throws IOException if the transaction could not be written
+     */
+    public void writeTo(RecordWriter out) throws IOException {
+        out.write(getUSERNAME()).delimiter()
+                .write(getVALUE()).delimiter()
+                .write(getTRANSACTION_DATE()).delimiter();
     }
 
     /**
@@ -100,13 +93,11 @@ public abstract class FinancialTransaction {
         return "Transaction{" +
                 ", USERNAME='" + USERNAME + '\'' +
                 ", VALUE='" + VALUE + "\'" +
-                ", TRANSACTION_DATE='" + TRANSACTION_DATE + '\'' +
+                ", TRANSACTION_DATE='" + getTRANSACTION_DATE() + '\'' +
                 '}';
     }
 
     public long getTRANSACTION_DATE_epoch() {
-        LocalDateTime date = LocalDateTime.parse(TRANSACTION_DATE, DATE_FORMAT);
-        ZonedDateTime zonedDateTime = date.atZone(ZoneId.systemDefault());
-        return zonedDateTime.toInstant().toEpochMilli()/1000;
+        return TRANSACTION_DATE;
     }
 }
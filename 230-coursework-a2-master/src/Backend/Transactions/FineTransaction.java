@@ -1,9 +1,11 @@
 package Backend.Transactions;
 
-import Backend.Databases.TransactionDatabase;
+import Backend.Databases.RecordWriter;
 import Backend.Resources.Copy;
 import Backend.Resources.Resource;
 
+import java.io.IOException;
+
 public class FineTransaction extends FinancialTransaction {
 
 
@@ -30,9 +32,9 @@ public class FineTransaction extends FinancialTransaction {
      *
      * @param username      The username associated with the transaction
      * @param value         The copy value associated with the transaction
-     * @param date          Date of the transaction, if it has already been set
+     * @param date          Date of the transaction in epoch seconds
      */
-    public FineTransaction(String username, float value, int copyID, int resourceID, int daysOverdue, String date) {
+    public FineTransaction(String username, float value, int copyID, int resourceID, int daysOverdue, long date) {
         super(username, value, date);
         this.RESOURCE_ID = resourceID;
         this.COPY_ID = copyID;
@@ -41,19 +43,16 @@ public class FineTransaction extends FinancialTransaction {
 
 
     /**
-     * Converts a transaction object into a string line to be placed in the file
-     * @return a transaction to a string
+     * Writes the transaction in the format of toLine
+     * @param out the writer to write the transaction to
+     * @throws IOException if the transaction could not be written
      */
     @Override
-    public String toLine() {
-        String delim = TransactionDatabase.DELIMITER;
-        String transactionLine = super.toLine();
-        transactionLine +=
-                        getCOPY_ID() + delim +
-                        getRESOURCE_ID() + delim +
-                        getDAYS_OVERDUE();
-        return transactionLine;
-
+    public void writeTo(RecordWriter out) throws IOException {
+        super.writeTo(out);
+        out.write(getCOPY_ID()).delimiter()
+                .write(getRESOURCE_ID()).delimiter()
+                .write(getDAYS_OVERDUE());
     }
 
     /**
@@ -17,9 +17,9 @@ public class PaymentTransaction extends FinancialTransaction {
      *
      * @param username      The username associated with the transaction
      * @param value         The copy value associated with the transaction
-     * @param date          Date of the transaction, if it has already been set
+     * @param date          Date of the transaction in epoch seconds
      */
-    public PaymentTransaction(String username, float value, String date) {
+    public PaymentTransaction(String username, float value, long date) {
         super(username, value, date);
     }
 }
@@ -10,14 +10,13 @@ package Backend.Transactions;
  * @author Ryan Lucas
  */
 
+import Backend.Databases.DateFormats;
+import Backend.Databases.RecordWriter;
 import Backend.Databases.ResourceDatabase;
-import Backend.Databases.TransactionDatabase;
 
+import java.io.IOException;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.LocalDateTime;
 
 /**
  * Purpose:
@@ -25,19 +24,26 @@ import java.time.LocalDateTime;
  * resource out, the specific copy instance of that resource and the date and time the transaction has
  * taken place.
  * Note: Transactions.txt are immutable once creates with the exception of their reserve status
+ * Dates are held in epoch seconds and only formatted when they are asked for as a String.
  */
 public class Transaction {
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"); // Used to format the date
+
+    /**
+     * Return date of a transaction which has not been returned
+     */
+    public static final long NOT_RETURNED = Long.MAX_VALUE;
+
     private static final DateTimeFormatter OUTPUT_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"); // Used to format the date
 
     private final int TRANSACTION_ID; // The unique transaction ID for the transaction
     private final String USERNAME; // The USERNAME of the user associated with the transaction
     private final int RESOURCE_ID; // The resource ID associated with the transaction
     private final int COPY_ID; // The copy of a resource associated with the transaction
-    private final String TRANSACTION_DATE; // The date of which the transaction has occurred
+    private final long TRANSACTION_DATE; // The date of which the transaction has occurred, in epoch seconds
 
-    private String returnDate; // The date of which the transaction was returned
-    private Boolean isReserved; // If the copy has been reserved
+    // Changed while the copy is locked and read by reports without the lock
+    private volatile long returnDate = NOT_RETURNED; // The date of which the transaction was returned, in epoch seconds
+    private volatile boolean isReserved; // If the copy has been reserved
 
     /**
      * Instantiates a Transaction for the first time
@@ -54,8 +60,7 @@ public class Transaction {
         this.COPY_ID = copyID;
         this.isReserved = isReserved;
 
-        LocalDateTime now = LocalDateTime.now(); // Returns the current date and time
-        this.TRANSACTION_DATE = DATE_FORMAT.format(now); // Saves the transaction date in the above specified format
+        this.TRANSACTION_DATE = DateFormats.now(); // Saves the current date and time
 
     }
 
@@ -65,35 +70,28 @@ public class Transaction {
      * @param USERNAME The USERNAME associated with the transaction
      * @param copyID The copy id associated with the transaction
      * @param isReserved If the item is reserved
-     * @param date Date of the transaction, if it has already been set
+     * @param date Date of the transaction in epoch seconds
+     * @param returnDate Date the transaction was returned in epoch seconds, or NOT_RETURNED
      */
-    public Transaction (int transactionID, String USERNAME, int resourceID, int copyID, Boolean isReserved, String date, String returnDate) {
+    public Transaction (int transactionID, String USERNAME, int resourceID, int copyID, boolean isReserved, long date, long returnDate) {
 
         this.TRANSACTION_ID = transactionID;
         this.USERNAME = USERNAME;
         this.COPY_ID = copyID;
         this.RESOURCE_ID = resourceID;
         this.isReserved = isReserved;
-        this.TRANSACTION_DATE = date; // Saves the transaction date in the above specified format
+        this.TRANSACTION_DATE = date;
         this.returnDate = returnDate;
     }
 
     public long startDateEpoch(){
-        return dateEpoch(TRANSACTION_DATE);
+        return TRANSACTION_DATE;
     }
 
     public long returnDateEpoch(){
-        if(this.returnDate == null){
-            return Long.MAX_VALUE;
-        }
-        return dateEpoch(returnDate);
+        return returnDate;
     }
 
-    private long dateEpoch(String date){
-        LocalDateTime dateTime = LocalDateTime.parse(date, DATE_FORMAT);
-        ZonedDateTime zonedDateTime = dateTime.atZone(ZoneId.systemDefault());
-        return zonedDateTime.toInstant().toEpochMilli()/1000;
-    }
 
 
     public boolean isActive() {
@@ -138,19 +136,19 @@ public class Transaction {
      */
     public String getTRANSACTION_DATE() {
 
-        return TRANSACTION_DATE;
+        return DateFormats.formatDateTime(TRANSACTION_DATE);
     }
 
     /**
      * @return The transaction date as a LocalDate object
      */
     public LocalDate getTransactionDateAsDate() {
-        return LocalDateTime.parse(TRANSACTION_DATE, DATE_FORMAT).toLocalDate();
+        return DateFormats.toDateTime(TRANSACTION_DATE).toLocalDate();
     }
 
 
     public String getOutputFormatTRANSACTION_DATE() {
-        return LocalDateTime.parse(TRANSACTION_DATE, DATE_FORMAT).format(OUTPUT_DATE_FORMAT);
+        return DateFormats.toDateTime(TRANSACTION_DATE).format(OUTPUT_DATE_FORMAT);
     }
 
     /**
@@ -174,8 +172,7 @@ public class Transaction {
      * Adds a return date to this transaction set to the current system time
      */
     public void makeReturned() {
-        LocalDateTime now = LocalDateTime.now(); // Returns the current date and time
-        this.returnDate = DATE_FORMAT.format(now); // Saves the return date in the above specified format
+        this.returnDate = DateFormats.now(); // Saves the current date and time
     }
 
     /**
@@ -183,7 +180,10 @@ public class Transaction {
      * @return
      */
     public String getReturnDate() {
-        return returnDate;
+        if (returnDate == NOT_RETURNED) {
+            return null;
+        }
+        return DateFormats.formatDateTime(returnDate);
     }
 
     /**
@@ -191,17 +191,25 @@ public class Transaction {
      * @return a transaction to a string
      */
     public String transactionToLine() {
-        String delim = TransactionDatabase.DELIMITER;
-        String transactonLine = getTRANSACTION_ID() + delim
-                + getUSERNAME()
-                + delim + getCOPY_ID() + delim + getRESOURCE_ID() + delim
-                + getReserved() + delim
-                + getTRANSACTION_DATE().split(" ")[0] + delim
-                + getTRANSACTION_DATE().split(" ")[1] + delim
-                + returnDate;
-
-        return transactonLine;
+        return RecordWriter.toLine(this::writeTo);
+    }
 
+    /**
+     * Writes the transaction in the format of transactionToLine
+     * @param out the writer to write the transaction to
+     * @throws IOException if the transaction could not be written
+     */
+    public void writeTo(RecordWriter out) throws IOException {
+        String transactionDate = getTRANSACTION_DATE();
+        int dateEnd = transactionDate.indexOf(' ');
+        out.write(getTRANSACTION_ID()).delimiter()
+                .write(getUSERNAME()).delimiter()
+                .write(getCOPY_ID()).delimiter()
+                .write(getRESOURCE_ID()).delimiter()
+                .write(getReserved()).delimiter()
+                .write(transactionDate, 0, dateEnd).delimiter()
+                .write(transactionDate, dateEnd + 1, transactionDate.length()).delimiter()
+                .write(getReturnDate());
     }
 
     /**
@@ -215,8 +223,8 @@ public class Transaction {
                 ", USERNAME='" + USERNAME + '\'' +
                 ", RESOURCE_ID='" + RESOURCE_ID + '\'' +
                 ", COPY_ID='" + COPY_ID + '\'' +
-                ", TRANSACTION_DATE='" + TRANSACTION_DATE + '\'' +
-                ", returnDate='" + returnDate + '\'' +
+                ", TRANSACTION_DATE='" + getTRANSACTION_DATE() + '\'' +
+                ", returnDate='" + getReturnDate() + '\'' +
                 ", isReserved=" + isReserved +
                 '}';
     }
@@ -1,10 +1,10 @@
 package Backend.Users;
 
+import Backend.Databases.DateFormats;
+import Backend.Databases.UserDatabase;
 import Backend.Resources.Copy;
 import Backend.Resources.Resource;
 
-import java.time.format.DateTimeFormatter;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 /**
@@ -12,7 +12,7 @@ import java.util.ArrayList;
  * @author Dominic McGinty
  */
 public class Librarian extends User {
-    private final String EMPLOYMENT_DATE;
+    private final long EMPLOYMENT_DATE; // In epoch days
     private int staffNumber;
 
     /**
@@ -34,12 +34,8 @@ public class Librarian extends User {
         super(user.getUsername(),user.getFirstName(),user.getLastName(),user.getMobileNumber(),user.getEmailAddress(),
                 user.getAddressLine1(), user.getAddressLine2(),user.getPostTown(),user.getPostcode(),user.getProfileImageLocation());
 
-        // Used to format the date
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        // Returns the current date and time
-        LocalDateTime now = LocalDateTime.now();
-        // Saves the userCreationDate in the above specified format
-        this.EMPLOYMENT_DATE = dtf.format(now);
+        // Saves the current date as the employment date
+        this.EMPLOYMENT_DATE = DateFormats.today();
         this.staffNumber=staffNumber;
     }
 
@@ -64,12 +60,8 @@ public class Librarian extends User {
         super(username,firstName,lastName,mobileNumber,emailAddress,address1,address2,postTown,postcode,
                 profileImageLocation);
 
-        // Used to format the date
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        // Returns the current date and time
-        LocalDateTime now = LocalDateTime.now();
-        // Saves the userCreationDate in the above specified format
-        this.EMPLOYMENT_DATE = dtf.format(now);
+        // Saves the current date as the employment date
+        this.EMPLOYMENT_DATE = DateFormats.today();
         this.staffNumber=staffNumber;
     }
 
@@ -85,14 +77,14 @@ public class Librarian extends User {
      * @param postTown Town of residence of the librarian.
      * @param postcode Postcode of the librarian.
      * @param profileImageLocation Location of the librarian's account image.
-     * @param USER_CREATION_DATE Creation date of the librarian's account.
-     * @param EMPLOYMENT_DATE Employment date of the librarian.
+     * @param USER_CREATION_DATE Creation date of the librarian's account in epoch days.
+     * @param EMPLOYMENT_DATE Employment date of the librarian in epoch days.
      * @param staffNumber Staff number of the librarian.
      */
     public Librarian(String username, String firstName, String lastName, String mobileNumber, String emailAddress,
                      String addressLine1, String addressLine2, String postTown, String postcode,
-                     String profileImageLocation, String USER_CREATION_DATE, float accountBalance, ArrayList<Copy> borrowedItems,
-                     ArrayList<Copy> reservedItems, ArrayList<Resource> requestedItems, String EMPLOYMENT_DATE,
+                     String profileImageLocation, long USER_CREATION_DATE, float accountBalance, ArrayList<Copy> borrowedItems,
+                     ArrayList<Copy> reservedItems, ArrayList<Resource> requestedItems, long EMPLOYMENT_DATE,
                      int staffNumber ) {
         super(username,firstName,lastName,mobileNumber,emailAddress,addressLine1,addressLine2,postTown,postcode,
                 profileImageLocation,USER_CREATION_DATE, accountBalance, borrowedItems, reservedItems, requestedItems);
@@ -106,6 +98,14 @@ public class Librarian extends User {
      * @return Employment date of the librarian.
      */
     public String getEMPLOYMENT_DATE() {
+        return DateFormats.formatDay(this.EMPLOYMENT_DATE);
+    }
+
+    /**
+     * Gets the employment date of the librarian.
+     * @return Employment date of the librarian in epoch days.
+     */
+    public long getEMPLOYMENT_DATE_epochDay() {
         return this.EMPLOYMENT_DATE;
     }
 
@@ -115,6 +115,7 @@ public class Librarian extends User {
      */
     public void setStaffNumber(int staffNumber) {
         this.staffNumber = staffNumber;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -1,23 +1,17 @@
 package Backend.Users;
 
+import Backend.Databases.DateFormats;
 import Backend.Databases.ResourceDatabase;
 import Backend.Databases.UserDatabase;
 import Backend.Resources.*;
 
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.time.format.DateTimeFormatter;
-import java.time.LocalDateTime;
 /**
  * The user class.
  * @author Dominic McGinty
  */
 public class User {
 
-    private static final DateTimeFormatter CREATION_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-
     private String username;
     private String firstName;
     private String lastName;
@@ -28,11 +22,12 @@ public class User {
     private String postTown;
     private String postcode;
     private String profileImageLocation;
-    private final String USER_CREATION_DATE;
-    private float accountBalance;
-    private ArrayList<Copy> borrowedItems = new ArrayList<Copy>();
-    private ArrayList<Copy> reservedItems = new ArrayList<Copy>();
-    private ArrayList<Resource> requestedItems = new ArrayList<Resource>();
+    private final long USER_CREATION_DATE; // In epoch days
+    private volatile float accountBalance; // Changed by Library while it holds the lock of the user
+    // The item lists are replaced rather than changed, so they can be read and saved while the user is in use
+    private volatile ArrayList<Copy> borrowedItems = new ArrayList<Copy>();
+    private volatile ArrayList<Copy> reservedItems = new ArrayList<Copy>();
+    private volatile ArrayList<Resource> requestedItems = new ArrayList<Resource>();
 
 
     /**
@@ -63,11 +58,8 @@ public class User {
         this.postcode = postcode;
         this.accountBalance = 0;
         this.profileImageLocation = profileImageLocation;
-        // Used to format the date
-        // Returns the current date and time
-        LocalDateTime now = LocalDateTime.now();
-        // Saves the userCreationDate in the above specified format
-        this.USER_CREATION_DATE = CREATION_DATE_FORMAT.format(now);
+        // Saves the current date as the userCreationDate
+        this.USER_CREATION_DATE = DateFormats.today();
     }
 
     /**
@@ -83,7 +75,7 @@ public class User {
      * @param postTown Town of residence for the user.
      * @param postcode Postcode of the user.
      * @param profileImageLocation Location of the user's account image.
-     * @param userCreationDate Creation date of the user's account.
+     * @param userCreationDate Creation date of the user's account in epoch days.
      * @param accountBalance Account balance of the user's account.
      * @param borrowedItems List of borrowed item's of the user's account.
      * @param reservedItems List of reserved item's of the user's account.
@@ -91,7 +83,7 @@ public class User {
      */
     public User(String username, String firstName, String lastName, String mobileNumber, String emailAddress,
                 String addressLine1, String addressLine2, String postTown, String postcode,
-                String profileImageLocation, String USER_CREATION_DATE, float accountBalance,
+                String profileImageLocation, long USER_CREATION_DATE, float accountBalance,
                 ArrayList<Copy> borrowedItems, ArrayList<Copy> reservedItems, ArrayList<Resource> requestedItems ) {
         this.username = username;
         this.firstName = firstName;
@@ -125,7 +117,7 @@ public class User {
         this.postTown =             librarian.getPostTown();
         this.postcode =             librarian.getPostcode();
         this.profileImageLocation = librarian.getProfileImageLocation();
-        this.USER_CREATION_DATE =   librarian.getUSER_CREATION_DATE();
+        this.USER_CREATION_DATE =   librarian.getUSER_CREATION_DATE_epochDay();
         this.accountBalance =       librarian.getAccountBalance();
         this.borrowedItems =        librarian.getBorrowedItems();
         this.reservedItems =        librarian.getReservedItems();
@@ -142,7 +134,9 @@ public class User {
         if(check != null && ! this.username.equals(username)){
             throw new IllegalArgumentException("Username: " + username + " is already taken. You cannot set two users to the same name!");
         }
+        String oldUsername = this.username;
         this.username = username;
+        UserDatabase.changeUsername(this, oldUsername);
     }
 
     /**
@@ -159,6 +153,7 @@ public class User {
      */
     public void setFirstName(String firstName) {
         this.firstName = firstName;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -175,6 +170,7 @@ public class User {
      */
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -191,6 +187,7 @@ public class User {
      */
     public void setMobileNumber(String mobileNumber) {
         this.mobileNumber = mobileNumber;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -207,6 +204,7 @@ public class User {
      */
     public void setEmailAddress(String emailAddress) {
         this.emailAddress = emailAddress;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -223,6 +221,7 @@ public class User {
      */
     public void setAddressLine1(String addressLine1) {
         this.addressLine1 = addressLine1;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -239,6 +238,7 @@ public class User {
      */
     public void setAddressLine2(String addressLine2) {
         this.addressLine2 = addressLine2;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -255,6 +255,7 @@ public class User {
      */
     public void setPostTown(String postTown) {
         this.postTown = postTown;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -271,6 +272,7 @@ public class User {
      */
     public void setPostcode(String postcode) {
         this.postTown = postTown;
+        UserDatabase.reindex(this);
     }
 
     /**
@@ -287,6 +289,7 @@ public class User {
      */
     public void setProfileImageLocation(String profileImageLocation) {
         this.profileImageLocation = profileImageLocation;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -302,6 +305,14 @@ public class User {
      * @return Creation date of the user's account.
      */
     public String getUSER_CREATION_DATE() {
+        return DateFormats.formatDay(this.USER_CREATION_DATE);
+    }
+
+    /**
+     * Gets the creation date of the user's account.
+     * @return Creation date of the user's account in epoch days.
+     */
+    public long getUSER_CREATION_DATE_epochDay() {
         return this.USER_CREATION_DATE;
     }
 
@@ -338,7 +349,10 @@ public class User {
      * @param borrowedResource A copy of a resource.
      */
     public void addBorrowedItem(Copy borrowedResource) {
-        borrowedItems.add(borrowedResource);
+        ArrayList<Copy> items = new ArrayList<>(borrowedItems);
+        items.add(borrowedResource);
+        borrowedItems = items;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -346,7 +360,10 @@ public class User {
      * @param returnedResource A copy of a resource.
      */
     public void removeBorrowedItem(Copy returnedResource) {
-        borrowedItems.remove(returnedResource);
+        ArrayList<Copy> items = new ArrayList<>(borrowedItems);
+        items.remove(returnedResource);
+        borrowedItems = items;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -355,6 +372,7 @@ public class User {
      */
     public void setBorrowedItems(ArrayList<Copy> borrowedItems) {
         this.borrowedItems = borrowedItems;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -363,6 +381,7 @@ public class User {
      */
     public void setReservedItems(ArrayList<Copy> reservedItems) {
         this.reservedItems = reservedItems;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -371,6 +390,7 @@ public class User {
      */
     public void setRequestedItems(ArrayList<Resource> requestedItems) {
         this.requestedItems = requestedItems;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -386,7 +406,10 @@ public class User {
      * @param newResource A resource.
      */
     public void addRequest(Resource newResource) {
-        requestedItems.add(newResource);
+        ArrayList<Resource> items = new ArrayList<>(requestedItems);
+        items.add(newResource);
+        requestedItems = items;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -402,7 +425,21 @@ public class User {
      * @param c A Copy of a resource.
      */
     public void addReserved(Copy c) {
-        reservedItems.add(c);
+        ArrayList<Copy> items = new ArrayList<>(reservedItems);
+        items.add(c);
+        reservedItems = items;
+        UserDatabase.markDirty(this);
+    }
+
+    /**
+     * Removes a copy of a resource from the user's reserved items.
+     * @param c A Copy of a resource.
+     */
+    public void removeReserved(Copy c) {
+        ArrayList<Copy> items = new ArrayList<>(reservedItems);
+        items.remove(c);
+        reservedItems = items;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -411,6 +448,7 @@ public class User {
      */
     public void addToBalance(float amount) {
         this.accountBalance += amount;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -419,6 +457,7 @@ public class User {
      */
     public void removeFromBalance(float amount) {
         this.accountBalance -= amount;
+        UserDatabase.markDirty(this);
     }
 
     /**
@@ -433,15 +472,13 @@ public class User {
                 "Address: " + addressLine1 + " " + addressLine2 + '\n' + postTown + '\n' + postcode + '\n' +
                 "Debt Accrued: " + (-accountBalance) + '\n' +
                 "Image Location: " + profileImageLocation + '\n' +
-                "Creation Date: " + USER_CREATION_DATE + '\n' +
+                "Creation Date: " + getUSER_CREATION_DATE() + '\n' +
                 '}';
     }
 
 
     public long getUSER_CREATION_DATE_epoch() {
-        LocalDate date = LocalDate.parse(USER_CREATION_DATE, CREATION_DATE_FORMAT);
-        ZonedDateTime zonedDateTime = date.atStartOfDay().atZone(ZoneId.systemDefault());
-        return zonedDateTime.toInstant().toEpochMilli()/1000;
+        return DateFormats.startOfDay(USER_CREATION_DATE);
     }
 
     /**
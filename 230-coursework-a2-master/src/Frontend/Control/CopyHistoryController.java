@@ -7,6 +7,8 @@ import Backend.Transactions.Transaction;
 import Backend.Users.User;
 import Frontend.Tools.TransactionTableDataModel;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -31,6 +33,11 @@ import java.util.Collections;
  */
 public class CopyHistoryController {
 
+    /**
+     * Number of past transactions read from the history store at a time.
+     */
+    private static final int HISTORY_PAGE_SIZE = 50;
+
     @FXML private TableColumn<TransactionTableDataModel, String> viewUserColumn;
     @FXML private TableColumn<Object, Object> userColumn;
     @FXML private TableColumn<Object, Object> actionColumn;
@@ -38,10 +45,13 @@ public class CopyHistoryController {
 
     @FXML private Label headerLabel;
     @FXML private TableView<TransactionTableDataModel> historyTable;
+    @FXML private Button showOlderButton;
 
     private Stage stage;
     private User callingUser;
     private Copy copy;
+    private ObservableList<TransactionTableDataModel> data;
+    private int pagesShown;
 
     /**
      * Set the user who called this window to allow context based
@@ -68,13 +78,15 @@ public class CopyHistoryController {
                 )
         );
 
+        showOlderButton.setDisable(true);
         if (copy.getCurrentTransaction() == null
-                && copy.getHistory().size() == 0) {
+                && copy.getHistorySize() == 0) {
             // Copy has no history. Terminate early
             historyTable.setPlaceholder(new Label("Copy has no history"));
             return;
         }
-        ArrayList<TransactionTableDataModel> data = new ArrayList<>();
+        data = FXCollections.observableArrayList();
+        pagesShown = 0;
 
         final String alignment = "-fx-alignment: CENTER;";
 
@@ -90,18 +102,46 @@ public class CopyHistoryController {
         dateColumn.setStyle(alignment);
         viewUserColumn.setCellFactory(param -> createButtonColumnCallback());
 
-        for (Transaction t: copy.getHistory()) {
-            data.addAll(TransactionTableDataModel.getData(t));
-        }
+        historyTable.setItems(data);
         if (copy.getCurrentTransaction() != null) {
-            data.addAll(TransactionTableDataModel.getData(
-                    copy.getCurrentTransaction())
-            );
+            addTransaction(copy.getCurrentTransaction());
+        }
+        showNextPage();
+    }
+
+    /**
+     * Add the next page of older transactions to the bottom of the table.
+     */
+    private void showNextPage() {
+        for (Transaction t: copy.getHistoryPage(pagesShown, HISTORY_PAGE_SIZE)) {
+            addTransaction(t);
         }
-        // We are currently in chronological, we want reverse chronological
-        Collections.reverse(data);
+        pagesShown++;
+        showOlderButton.setDisable(
+                pagesShown * HISTORY_PAGE_SIZE >= copy.getHistorySize()
+        );
+    }
 
-        historyTable.setItems(FXCollections.observableArrayList(data));
+    /**
+     * Add the rows of a transaction to the table data, newest first.
+     * @param transaction the transaction to add.
+     */
+    private void addTransaction(final Transaction transaction) {
+        ArrayList<TransactionTableDataModel> rows =
+                TransactionTableDataModel.getData(transaction);
+        // Rows are in chronological order, we want reverse chronological
+        Collections.reverse(rows);
+        data.addAll(rows);
+    }
+
+    /**
+     * Show the next page of older transactions.
+     * @param actionEvent the button press event.
+     */
+    @FXML
+    private void handleShowOlder(final ActionEvent actionEvent) {
+        SoundEffects.submitButton.play();
+        showNextPage();
     }
 
     /**
@@ -120,17 +120,19 @@ public class DashboardController {
     private HashMap<String, Comparator<Node>> resourceSorts = new HashMap<>();
     private HashMap<String, Comparator<Node>> copySorts = new HashMap<>();
     private HashMap<Node, Resource> resourceResults = new HashMap<>();
-    private HashMap<Node, Copy> copyResults = new HashMap<>();
+    // Copies are kept as the state they were found in, so the views and
+    // sorts of one search all agree while copies are issued and returned
+    private HashMap<Node, Copy.State> copyResults = new HashMap<>();
     
     private ArrayList<Node> borrowedNodes = new ArrayList<>();
     private ArrayList<Node> requestedNodes = new ArrayList<>();
     private ArrayList<Node> reservedNodes = new ArrayList<>();
     private ArrayList<Node> overdueNodes = new ArrayList<>();
 
-    private ArrayList<Copy> borrowedResults = new ArrayList<>();
+    private ArrayList<Copy.State> borrowedResults = new ArrayList<>();
     private ArrayList<Resource> requestedResults = new ArrayList<>();
-    private ArrayList<Copy> reservedResults = new ArrayList<>();
-    private ArrayList<Copy> overdueResults = new ArrayList<>();
+    private ArrayList<Copy.State> reservedResults = new ArrayList<>();
+    private ArrayList<Copy.State> overdueResults = new ArrayList<>();
 
 
     private Stage stage;
@@ -590,9 +592,9 @@ public class DashboardController {
      * resource views this will error.
      */
     private void processBorrowed() throws IOException {
-        for (Copy c: borrowedResults) {
+        for (Copy.State c: borrowedResults) {
             Node resourceView = ResourceViewer.borrowedStyle(
-                    c,
+                    c.getCopy(),
                     c.getCurrentTransaction().getOutputFormatTRANSACTION_DATE(),
                     c.getDueDate(),
                     c.isOverdue()
@@ -642,9 +644,9 @@ public class DashboardController {
      * resource views this will error.
      */
     private void processReserved() throws IOException {
-        for (Copy c: reservedResults) {
+        for (Copy.State c: reservedResults) {
             Node resourceView = ResourceViewer.reservedStyle(
-                    c,
+                    c.getCopy(),
                     c.getCurrentTransaction().getOutputFormatTRANSACTION_DATE(),
                     c.getDueDate(),
                     c.isOverdue()
@@ -652,7 +654,7 @@ public class DashboardController {
             Button cancelReservationButton = (Button) resourceView
                     .lookup("#cancelReservationButton");
             cancelReservationButton.setOnAction(
-                    event -> cancelReserveAction(c, resourceView)
+                    event -> cancelReserveAction(c.getCopy(), resourceView)
             );
             reservedNodes.add(resourceView);
             copyResults.put(resourceView, c);
@@ -671,9 +673,9 @@ public class DashboardController {
      * resource views this will error.
      */
     private void processOverdue() throws IOException {
-        for (Copy c: overdueResults) {
+        for (Copy.State c: overdueResults) {
             Node resourceView = ResourceViewer.overdueStyle(
-                    c,
+                    c.getCopy(),
                     c.getDueDate(),
                     c.getResource().getOverdueDayRate(),
                     c.getOverdueCharge()
@@ -846,13 +848,13 @@ public class DashboardController {
      * </ol>
      * @param resources the list of resources
      * @param user the user to filter by
-     * @return the produced list of copies (which may be empty) but not null
+     * @return the states of the produced copies (which may be empty) but not null
      */
-    private static ArrayList<Copy> getBorrowedBy(
+    private static ArrayList<Copy.State> getBorrowedBy(
             final ArrayList<Resource> resources, final User user) {
-        ArrayList<Copy> copies = new ArrayList<>();
+        ArrayList<Copy.State> copies = new ArrayList<>();
         for (Resource r: resources) {
-            for (Copy c: r.getCopyList()) {
+            for (Copy.State c: r.getCopyStates()) {
                 Transaction cTransaction = c.getCurrentTransaction();
                 if (!(cTransaction == null)
                         && !cTransaction.getReserved()
@@ -896,13 +898,13 @@ public class DashboardController {
      * </ol>
      * @param resources the list of resources
      * @param user the user to filter by
-     * @return the produced list of copies (which may be empty) but not null
+     * @return the states of the produced copies (which may be empty) but not null
      */
-    private static ArrayList<Copy> getReservedBy(
+    private static ArrayList<Copy.State> getReservedBy(
             final ArrayList<Resource> resources, final User user) {
-        ArrayList<Copy> copies = new ArrayList<>();
+        ArrayList<Copy.State> copies = new ArrayList<>();
         for (Resource r: resources) {
-            for (Copy c: r.getCopyList()) {
+            for (Copy.State c: r.getCopyStates()) {
                 Transaction cTransaction = c.getCurrentTransaction();
                 if (!(cTransaction == null)
                         && cTransaction.getReserved()
@@ -926,13 +928,13 @@ public class DashboardController {
      * </ol>
      * @param resources the list of resources
      * @param user the user to filter by
-     * @return the produced list of copies (which may be empty) but not null
+     * @return the states of the produced copies (which may be empty) but not null
      */
-    private static ArrayList<Copy> getOverdueBy(
+    private static ArrayList<Copy.State> getOverdueBy(
             final ArrayList<Resource> resources, final User user) {
-        ArrayList<Copy> copies = new ArrayList<>();
+        ArrayList<Copy.State> copies = new ArrayList<>();
         for (Resource r: resources) {
-            for (Copy c: r.getCopyList()) {
+            for (Copy.State c: r.getCopyStates()) {
                 Transaction cTransaction = c.getCurrentTransaction();
                 if (!(cTransaction == null)
                         && c.isOverdue()
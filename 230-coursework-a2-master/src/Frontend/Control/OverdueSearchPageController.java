@@ -57,7 +57,8 @@ public class OverdueSearchPageController {
     @FXML private VBox resourceDisplayArea;
 
     // Results
-    private HashMap<Node, Copy> results = new HashMap<>();
+    // Each result is the state of a copy when it was found, so sorting never sees it returned part way through
+    private HashMap<Node, Copy.State> results = new HashMap<>();
     private HashMap<String, Comparator<Node>> sorts = new HashMap<>();
 
     private User user;
@@ -148,11 +149,11 @@ public class OverdueSearchPageController {
 
         results.clear();
 
-        ArrayList<Copy> found = doSearch();
+        ArrayList<Copy.State> found = doSearch();
         ArrayList<Node> resourceViews = new ArrayList<>();
-        for (Copy c: found) {
+        for (Copy.State c: found) {
             Node resourceView = ResourceViewer.overdueOverviewStyle(
-                    c,
+                    c.getCopy(),
                     c.getDueDate(),
                     c.getOverdueCharge(),
                     (int) -c.getDaysUntilDue(),
@@ -175,9 +176,11 @@ public class OverdueSearchPageController {
      *     <li>Copies that match the query</li>
      *     <li>Copies that are currently overdue</li>
      * </ol>
-     * @return a list of copies matching these parameters.
+     * Each copy is read as one state, so a copy returned while the search
+     * runs is either listed with its loan or not listed at all.
+     * @return the states of the copies matching these parameters.
      */
-    private ArrayList<Copy> doSearch() {
+    private ArrayList<Copy.State> doSearch() {
         ArrayList<Resource> found = new ArrayList<>();
         if (booksToggle.isSelected()) {
             found.addAll(ResourceDatabase.queryBook(searchBar.getText()));
@@ -188,9 +191,9 @@ public class OverdueSearchPageController {
         if (laptopsToggle.isSelected()) {
             found.addAll(ResourceDatabase.queryLaptop(searchBar.getText()));
         }
-        ArrayList<Copy> copies = new ArrayList<>();
+        ArrayList<Copy.State> copies = new ArrayList<>();
         for (Resource resource: found) {
-            for (Copy c: resource.getCopyList()) {
+            for (Copy.State c: resource.getCopyStates()) {
                 if (c.isOverdue()) {
                     copies.add(c);
                 }
@@ -517,7 +517,7 @@ public class UserInspectController {
         overdueColumn.setCellFactory(createOverdueColumnCallback());
 
 
-        ArrayList<Transaction> activeTransactions = TransactionDatabase.getAllTransactionsUser(user.getUsername());
+        ArrayList<Transaction> activeTransactions = TransactionDatabase.getOpenTransactionsUser(user.getUsername());
         getActiveTransaction(activeTransactions);
 
         for (Transaction t: activeTransactions) {
@@ -1,27 +1,85 @@
+import Backend.Databases.CopyHistoryStore;
+import Backend.Databases.DatabaseLoader;
+import Backend.Databases.JdbcStore;
+import Backend.Databases.PersistenceWriter;
 import Backend.Databases.ResourceDatabase;
+import Backend.Databases.SnapshotManager;
 import Backend.Databases.TransactionDatabase;
 import Backend.Databases.UserDatabase;
+import Backend.LibraryService;
 import Frontend.UIManager;
+import javafx.application.Platform;
 
+import java.io.IOException;
 import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
-    public static void main(String[] args) throws ParseException {
+    /**
+     * Minutes between the snapshots taken while the program runs
+     */
+    private static final long SNAPSHOT_INTERVAL_MINUTES = 30;
+
+    /**
+     * Argument which runs the library as a service instead of starting the GUI, optionally followed by the port
+     */
+    private static final String HEADLESS_ARGUMENT = "--headless";
+
+    public static void main(String[] args) throws ParseException, IOException {
 
         System.out.println("Loading databases");
-        TransactionDatabase.init();
-        ResourceDatabase.init();
-        UserDatabase.init();
+        DatabaseLoader.loadAll();
+
+        if (args.length > 0 && args[0].equals(HEADLESS_ARGUMENT)) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : LibraryService.DEFAULT_PORT;
+            startService(port);
+            return;
+        }
+
+        // Snapshots read the databases, so they are taken on the JavaFX thread which changes them
+        SnapshotManager.schedule(SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES, Platform::runLater);
 
         System.out.println("Starting GUI");
         try {
             UIManager.main();
         } finally {
-            System.out.println("Saving databases");
-            UserDatabase.close();
-            ResourceDatabase.close();
-            TransactionDatabase.close();
+            save();
+        }
+    }
+
+    /**
+     * Runs the library as a service until the program is stopped, saving the databases as it stops
+     */
+    private static void startService(int port) throws IOException {
+        // A snapshot waits for the library operations in progress to finish and holds off new ones while it saves
+        // the databases, so snapshots are taken on the thread which schedules them
+        SnapshotManager.schedule(SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES, Runnable::run);
+
+        LibraryService service = new LibraryService(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.stop();
+            save();
+        }, "Library service shutdown"));
+        service.start();
+        System.out.println("Library service listening on http://localhost:" + service.getPort());
+    }
+
+    /**
+     * Takes a last snapshot, then closes every database. If the snapshot fails each database is saved on its own
+     * as it closes.
+     */
+    private static void save() {
+        System.out.println("Saving databases");
+        SnapshotManager.cancelSchedule();
+        if (SnapshotManager.takeSnapshot() == null) {
+            System.out.println("Saving each database without a snapshot");
         }
+        UserDatabase.close();
+        ResourceDatabase.close();
+        TransactionDatabase.close();
+        PersistenceWriter.shutdown();
+        CopyHistoryStore.close();
+        JdbcStore.close();
     }
 }